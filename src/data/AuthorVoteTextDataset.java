@@ -1,13 +1,23 @@
 package data;
 
+import gnu.trove.map.hash.TIntIntHashMap;
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import sampling.util.SparseCount;
 import util.IOUtils;
 
@@ -20,6 +30,11 @@ public class AuthorVoteTextDataset extends TextDataset {
     public static final String voteVocabExt = ".vvoc";
     public static final String authorVoteExt = ".votes";
     public static final String voteTextExt = ".votetext";
+    public static final String binaryExt = ".bin";
+    public static final String wordCountExt = ".wcount";
+    private static final int BINARY_MAGIC = 0x41565444;
+    private static final int BINARY_VERSION = 1;
+    private static final int VOTES_PER_INT = 16; // 2-bit vote cells
     public static final int AGAINST = 0;
     public static final int WITH = 1;
     // header in author vocab file
@@ -42,10 +57,12 @@ public class AuthorVoteTextDataset extends TextDataset {
     protected int[][] authorWords;
     protected int[][][] authorSentWords;
     protected String[][] authorRawSents;
-    protected HashMap<Integer, Integer>[] authorVotes; // length = # authors
+    protected TIntIntHashMap[] authorVotes; // length = # authors
     protected int[][] votes;
     protected HashMap<String, Vote> voteTable;
     protected ArrayList<String> voteProperties;
+    protected boolean binaryFormat; // output the binary format when formatting, use it when loading
+    protected int numThreads = 1; // number of threads to process texts when formatting
 
     public AuthorVoteTextDataset(String name) {
         super(name);
@@ -96,10 +113,42 @@ public class AuthorVoteTextDataset extends TextDataset {
         this.rawAuthorVotes = aVotes;
     }
 
-    public HashMap<Integer, Integer>[] getAuthorVotes() {
+    public TIntIntHashMap[] getAuthorVotes() {
+        if (this.authorVotes == null && this.votes != null) { // loaded from binary
+            this.authorVotes = new TIntIntHashMap[votes.length];
+            for (int aa = 0; aa < votes.length; aa++) {
+                int numVotes = 0;
+                for (int bb = 0; bb < votes[aa].length; bb++) {
+                    if (votes[aa][bb] != Vote.MISSING) {
+                        numVotes++;
+                    }
+                }
+                this.authorVotes[aa] = new TIntIntHashMap(Math.max(numVotes, 1));
+                for (int bb = 0; bb < votes[aa].length; bb++) {
+                    if (votes[aa][bb] != Vote.MISSING) {
+                        this.authorVotes[aa].put(bb, votes[aa][bb]);
+                    }
+                }
+            }
+        }
         return this.authorVotes;
     }
 
+    public void setNumThreads(int numThreads) {
+        this.numThreads = numThreads;
+    }
+
+    /**
+     * Set whether format() also outputs the binary format, which can be
+     * loaded much faster than the text files, and whether loadFormattedData
+     * uses an up-to-date binary file.
+     *
+     * @param binaryFormat
+     */
+    public void setBinaryFormat(boolean binaryFormat) {
+        this.binaryFormat = binaryFormat;
+    }
+
     public void setVoteVocab(ArrayList<String> vVoc) {
         this.voteVocab = vVoc;
     }
@@ -214,60 +263,44 @@ public class AuthorVoteTextDataset extends TextDataset {
     }
 
     private void formatAuthorSentWords() {
-        HashMap<Integer, ArrayList<int[]>> authorSentWordListMap
-                = new HashMap<Integer, ArrayList<int[]>>();
+        // first pass: count sentences of each author
+        int[] authorNumSents = new int[authorVocab.size()];
         for (int d = 0; d < sentWords.length; d++) {
-            int author = authors[d];
-            ArrayList<int[]> authorSentWordList = authorSentWordListMap.get(author);
-            if (authorSentWordList == null) {
-                authorSentWordList = new ArrayList<int[]>();
-            }
-            authorSentWordList.addAll(Arrays.asList(sentWords[d]));
-            authorSentWordListMap.put(author, authorSentWordList);
+            authorNumSents[authors[d]] += sentWords[d].length;
         }
 
+        // second pass: fill in sentences in document order
         authorSentWords = new int[authorVocab.size()][][];
         for (int a = 0; a < authorVocab.size(); a++) {
-            ArrayList<int[]> authorSentWordList = authorSentWordListMap.get(a);
-            if (authorSentWordList == null) {
-                authorSentWords[a] = new int[0][];
-                continue;
-            }
-            int[][] sws = new int[authorSentWordList.size()][];
-            for (int ii = 0; ii < sws.length; ii++) {
-                sws[ii] = authorSentWordList.get(ii);
-            }
-            authorSentWords[a] = sws;
+            authorSentWords[a] = new int[authorNumSents[a]][];
+        }
+        int[] authorPos = new int[authorVocab.size()];
+        for (int d = 0; d < sentWords.length; d++) {
+            int author = authors[d];
+            System.arraycopy(sentWords[d], 0, authorSentWords[author],
+                    authorPos[author], sentWords[d].length);
+            authorPos[author] += sentWords[d].length;
         }
     }
 
     public void formatAuthorWords() {
-        HashMap<Integer, ArrayList<Integer>> authorWordListMap = new HashMap<Integer, ArrayList<Integer>>();
+        // first pass: count tokens of each author
+        int[] authorNumTokens = new int[authorVocab.size()];
         for (int d = 0; d < words.length; d++) {
-            int author = authors[d];
-            ArrayList<Integer> authorWordList = authorWordListMap.get(author);
-            if (authorWordList == null) {
-                authorWordList = new ArrayList<Integer>();
-            }
-
-            for (int n = 0; n < words[d].length; n++) {
-                authorWordList.add(words[d][n]);
-            }
-            authorWordListMap.put(author, authorWordList);
+            authorNumTokens[authors[d]] += words[d].length;
         }
 
+        // second pass: fill in tokens in document order
         authorWords = new int[authorVocab.size()][];
         for (int a = 0; a < authorWords.length; a++) {
-            ArrayList<Integer> authorWordList = authorWordListMap.get(a);
-            if (authorWordList == null) {
-                authorWords[a] = new int[0];
-                continue;
-            }
-            int[] ws = new int[authorWordList.size()];
-            for (int ii = 0; ii < ws.length; ii++) {
-                ws[ii] = authorWordList.get(ii);
-            }
-            authorWords[a] = ws;
+            authorWords[a] = new int[authorNumTokens[a]];
+        }
+        int[] authorPos = new int[authorVocab.size()];
+        for (int d = 0; d < words.length; d++) {
+            int author = authors[d];
+            System.arraycopy(words[d], 0, authorWords[author], authorPos[author],
+                    words[d].length);
+            authorPos[author] += words[d].length;
         }
     }
 
@@ -281,8 +314,10 @@ public class AuthorVoteTextDataset extends TextDataset {
         IOUtils.createFolder(outputFolder);
 
         String[] rawTexts = textList.toArray(new String[textList.size()]);
-        corpProc.setRawTexts(rawTexts);
-        corpProc.process();
+        ParallelCorpusProcessor cp = new ParallelCorpusProcessor(corpProc, numThreads);
+        cp.setRawTexts(rawTexts);
+        cp.process();
+        corpProc = cp;
 
         if (voteText != null) {
             formatVoteText(outputFolder);
@@ -299,13 +334,320 @@ public class AuthorVoteTextDataset extends TextDataset {
         if (sent) {
             outputSentTextData(outputFolder);
         }
+        outputWordCounts(cp, outputFolder);
+
+        updateBinaryData(outputFolder);
+    }
+
+    /**
+     * Output the word counts used to select new word types when appending.
+     * Counts are not available when the documents were tokenized against a
+     * given word vocab, in which case appending keeps the word vocab.
+     *
+     * @param cp The corpus processor
+     * @param outputFolder Formatted folder
+     */
+    private void outputWordCounts(ParallelCorpusProcessor cp, String outputFolder) {
+        File wordCountFile = new File(outputFolder, formatFilename + wordCountExt);
+        if (cp.hasWordCounts()) {
+            cp.outputWordCounts(wordCountFile);
+        } else if (wordCountFile.exists() && !wordCountFile.delete()) {
+            throw new RuntimeException("Failed to delete outdated " + wordCountFile);
+        }
+    }
+
+    /**
+     * Remove the outdated binary file and output a new one if needed.
+     *
+     * @param outputFolder Formatted folder
+     */
+    private void updateBinaryData(String outputFolder) {
+        File binaryFile = new File(outputFolder, formatFilename + binaryExt);
+        if (binaryFile.exists() && !binaryFile.delete()) {
+            throw new RuntimeException("Failed to delete outdated " + binaryFile);
+        }
+        if (binaryFormat) {
+            // load back the text files so that both formats give the same data
+            AuthorVoteTextDataset formatted = new AuthorVoteTextDataset(name, outputFolder);
+            formatted.setFormatFilename(formatFilename);
+            formatted.loadFormattedData(outputFolder);
+            formatted.outputBinaryData(binaryFile);
+        }
+    }
+
+    /**
+     * Append new documents and votes to an existing formatted dataset without
+     * reprocessing the documents already formatted. The inputs are set in the
+     * same way as for format(): documents whose IDs are already in the
+     * formatted data are skipped, votes of the current vote vocab are matched
+     * by ID, and new votes, new authors and new word types are added at the
+     * end of the existing vocabularies so that existing indices are kept.
+     *
+     * New documents are tokenized against the existing word vocab, so words
+     * already in the vocab are always kept. New word types are selected by
+     * the vocabulary cutoffs applied to the word counts saved when formatting,
+     * updated with the counts of the new documents, so the documents already
+     * formatted are not processed again. Bigrams are those selected when the
+     * data were formatted. If no word counts were saved, the word vocab is
+     * kept.
+     *
+     * If no formatted data exist, this is the same as format().
+     *
+     * @param outputFolder Formatted folder
+     */
+    public void append(String outputFolder) throws Exception {
+        if (!new File(outputFolder, formatFilename + numDocDataExt).exists()) {
+            format(outputFolder);
+            return;
+        }
+        if (verbose) {
+            logln("--- Appending to " + outputFolder);
+        }
+
+        // existing formatted data
+        AuthorVoteTextDataset existing = new AuthorVoteTextDataset(name, outputFolder);
+        existing.setFormatFilename(formatFilename);
+        existing.inputWordVocab(new File(outputFolder, formatFilename + wordVocabExt));
+        existing.inputDocumentInfo(new File(outputFolder, formatFilename + docInfoExt));
+        existing.inputAuthorVocab(new File(outputFolder, formatFilename + speakerVocabExt));
+        existing.inputVoteVocab(new File(outputFolder, formatFilename + voteVocabExt));
+        existing.inputAuthorVotes(new File(outputFolder, formatFilename + authorVoteExt));
+        File voteTextFile = new File(outputFolder, formatFilename + voteTextExt);
+
+        // votes: map current vote indices to the extended vote vocab
+        ArrayList<String> newVoteVocab = new ArrayList<>(existing.voteVocab);
+        int[] voteMapping = mergeVocab(newVoteVocab, voteVocab);
+        ArrayList<String> newVoteText = new ArrayList<>();
+        for (int vv = 0; vv < voteVocab.size(); vv++) {
+            if (voteMapping[vv] >= existing.voteVocab.size() && voteText != null) {
+                newVoteText.add(voteText.get(vv));
+            }
+        }
+        int numNewVotes = newVoteVocab.size() - existing.voteVocab.size();
+        if (numNewVotes > 0 && voteTextFile.exists() && voteText == null) {
+            throw new RuntimeException("Missing text of " + numNewVotes + " new votes");
+        }
+
+        // authors
+        ArrayList<String> curAuthorVocab = this.authorVocab;
+        if (curAuthorVocab == null) {
+            curAuthorVocab = new ArrayList<>();
+            for (String author : authorList) {
+                if (rawAuthorVotes.get(author) != null && !curAuthorVocab.contains(author)) {
+                    curAuthorVocab.add(author);
+                }
+            }
+        }
+        ArrayList<String> newAuthorVocab = new ArrayList<>(existing.authorVocab);
+        mergeVocab(newAuthorVocab, curAuthorVocab);
+
+        // merge existing votes with new and changed votes
+        HashMap<String, HashMap<Integer, Integer>> mergedVotes = new HashMap<>();
+        for (int aa = 0; aa < existing.authorVocab.size(); aa++) {
+            HashMap<Integer, Integer> aVotes = new HashMap<>();
+            for (int vv : existing.authorVotes[aa].keys()) {
+                aVotes.put(vv, existing.authorVotes[aa].get(vv));
+            }
+            mergedVotes.put(existing.authorVocab.get(aa), aVotes);
+        }
+        StringBuilder appendedVotes = new StringBuilder();
+        int numAppendedVotes = 0;
+        for (int aa = 0; aa < newAuthorVocab.size(); aa++) {
+            String author = newAuthorVocab.get(aa);
+            HashMap<Integer, Integer> aVotes = mergedVotes.get(author);
+            if (aVotes == null) {
+                aVotes = new HashMap<>();
+                mergedVotes.put(author, aVotes);
+            }
+            HashMap<Integer, Integer> curVotes = rawAuthorVotes.get(author);
+            if (curVotes == null) {
+                continue;
+            }
+            for (int vv : curVotes.keySet()) {
+                int mergedVv = voteMapping[vv];
+                Integer curVote = curVotes.get(vv);
+                if (!curVote.equals(aVotes.get(mergedVv))) {
+                    aVotes.put(mergedVv, curVote);
+                    appendedVotes.append(aa).append("\t").append(mergedVv)
+                            .append("\t").append(curVote).append("\n");
+                    numAppendedVotes++;
+                }
+            }
+        }
+
+        // new documents
+        HashSet<String> existingDocIds = new HashSet<>(Arrays.asList(existing.docIds));
+        ArrayList<String> newDocIdList = new ArrayList<>();
+        ArrayList<String> newTextList = new ArrayList<>();
+        ArrayList<String> newAuthorList = new ArrayList<>();
+        ArrayList<String> newBillList = new ArrayList<>();
+        for (int dd = 0; dd < docIdList.size(); dd++) {
+            if (!existingDocIds.contains(docIdList.get(dd))) {
+                newDocIdList.add(docIdList.get(dd));
+                newTextList.add(textList.get(dd));
+                newAuthorList.add(authorList.get(dd));
+                newBillList.add(billList.get(dd));
+            }
+        }
+        if (verbose) {
+            logln("--- --- # new documents: " + newDocIdList.size());
+            logln("--- --- # new authors: "
+                    + (newAuthorVocab.size() - existing.authorVocab.size()));
+            logln("--- --- # new votes: " + numNewVotes);
+            logln("--- --- # new vote records: " + numAppendedVotes);
+        }
+
+        // properties of existing authors and votes are kept
+        for (String authorId : existing.authorVocab) {
+            this.authorTable.put(authorId, existing.authorTable.get(authorId));
+        }
+        for (String voteId : existing.voteVocab) {
+            this.voteTable.put(voteId, existing.voteTable.get(voteId));
+        }
+        this.authorProperties = existing.authorProperties;
+        this.voteProperties = existing.voteProperties;
+        this.authorVocab = newAuthorVocab;
+        this.voteVocab = newVoteVocab;
+        this.rawAuthorVotes = mergedVotes;
+        this.setTextData(newDocIdList, newTextList);
+        this.authorList = newAuthorList;
+        this.billList = newBillList;
+        this.processedDocIndices = new ArrayList<>();
+
+        // extend the word vocab with the new word types passing the cutoffs
+        // and tokenize the new documents against the extended vocab
+        CorpusProcessor cp = new ParallelCorpusProcessor(corpProc, numThreads);
+        ArrayList<String> newWordVocab = new ArrayList<>(existing.wordVocab);
+        File tempFolder = new File(outputFolder, formatFilename + ".append");
+        IOUtils.createFolder(tempFolder);
+        File wordCountFile = new File(outputFolder, formatFilename + wordCountExt);
+        ParallelCorpusProcessor counter = null;
+        if (!newTextList.isEmpty()) {
+            String[] newTexts = newTextList.toArray(new String[newTextList.size()]);
+            if (wordCountFile.exists()) {
+                counter = new ParallelCorpusProcessor(corpProc, numThreads);
+                counter.setVocab(null);
+                counter.inputWordCounts(wordCountFile);
+                counter.setRawTexts(newTexts);
+                counter.process();
+                mergeVocab(newWordVocab, counter.getVocab());
+            } else if (verbose) {
+                logln("--- --- No word counts found. Keeping the word vocab");
+            }
+            if (verbose) {
+                logln("--- --- # new word types: "
+                        + (newWordVocab.size() - existing.wordVocab.size()));
+            }
+
+            // the processor looks words up with binary search
+            ArrayList<String> sortedWordVocab = new ArrayList<>(newWordVocab);
+            Collections.sort(sortedWordVocab);
+            int[] wordMapping = mergeVocab(new ArrayList<>(newWordVocab), sortedWordVocab);
+            cp.setVocab(sortedWordVocab);
+            cp.setRawTexts(newTexts);
+            cp.process();
+            remapWords(cp.getNumerics(), wordMapping);
+            if (sent) {
+                for (int[][] docSents : cp.getNumericSentences()) {
+                    remapWords(docSents, wordMapping);
+                }
+            }
+        }
+        cp.setVocab(newWordVocab);
+        this.corpProc = cp;
+        if (numNewVotes > 0 && voteTextFile.exists()) {
+            this.voteText = newVoteText;
+            formatVoteText(tempFolder.getAbsolutePath());
+        }
+
+        // output
+        outputWordVocab(outputFolder);
+        formatAuthors(outputFolder);
+        outputVoteVocab(outputFolder);
+        ArrayList<String> exts = new ArrayList<>();
+        if (!newTextList.isEmpty()) {
+            outputTextData(tempFolder.getAbsolutePath());
+            outputDocumentInfo(tempFolder.getAbsolutePath());
+            exts.add(numDocDataExt);
+            exts.add(docInfoExt);
+            if (sent) {
+                outputSentTextData(tempFolder.getAbsolutePath());
+                exts.add(numSentDataExt);
+                exts.add(numSentDataExt + ".raw");
+            }
+        }
+        if (numNewVotes > 0 && voteTextFile.exists()) {
+            exts.add(voteTextExt);
+        }
+        for (String ext : exts) {
+            appendFile(new File(tempFolder, formatFilename + ext),
+                    new File(outputFolder, formatFilename + ext));
+        }
+        BufferedWriter writer = new BufferedWriter(new FileWriter(
+                new File(outputFolder, formatFilename + authorVoteExt), true));
+        writer.write(appendedVotes.toString());
+        writer.close();
+        if (counter != null) {
+            counter.outputWordCounts(wordCountFile);
+        }
+        IOUtils.deleteFolderContent(tempFolder.getAbsolutePath());
+        if (!tempFolder.delete()) {
+            throw new RuntimeException("Failed to delete " + tempFolder);
+        }
+
+        updateBinaryData(outputFolder);
+    }
+
+    private static void appendFile(File src, File dest) throws IOException {
+        if (!src.exists()) {
+            return;
+        }
+        try (FileOutputStream out = new FileOutputStream(dest, true)) {
+            Files.copy(src.toPath(), out);
+        }
+    }
+
+    private static void remapWords(int[][] docWords, int[] mapping) {
+        for (int[] docWord : docWords) {
+            for (int nn = 0; nn < docWord.length; nn++) {
+                docWord[nn] = mapping[docWord[nn]];
+            }
+        }
+    }
+
+    /**
+     * Add the items of a vocab which are not in the current vocab at the end
+     * of the current vocab.
+     *
+     * @param curVocab Current vocab, which is extended
+     * @param newVocab New vocab
+     * @return Index in the extended vocab of each item in the new vocab
+     */
+    private static int[] mergeVocab(ArrayList<String> curVocab, ArrayList<String> newVocab) {
+        HashMap<String, Integer> curIndices = new HashMap<>();
+        for (int ii = 0; ii < curVocab.size(); ii++) {
+            curIndices.put(curVocab.get(ii), ii);
+        }
+        int[] mapping = new int[newVocab.size()];
+        for (int ii = 0; ii < newVocab.size(); ii++) {
+            String item = newVocab.get(ii);
+            Integer idx = curIndices.get(item);
+            if (idx == null) {
+                idx = curVocab.size();
+                curVocab.add(item);
+                curIndices.put(item, idx);
+            }
+            mapping[ii] = idx;
+        }
+        return mapping;
     }
 
     private void formatVoteText(String outputFolder) {
         if (verbose) {
             logln("--- Formatting vote text ...");
         }
-        CorpusProcessor cp = new CorpusProcessor(corpProc);
+        CorpusProcessor cp = new ParallelCorpusProcessor(corpProc, numThreads);
+        cp.setVocab(null);
         cp.unigramCountCutoff = 1;
         cp.bigramCountCutoff = 2;
         cp.docTypeCountCutoff = 2;
@@ -320,17 +662,7 @@ public class AuthorVoteTextDataset extends TextDataset {
             logln("--- --- Vote Word vocab size: " + newWordVocab.size());
         }
 
-        HashMap<Integer, Integer> mapping = new HashMap<>();
-        for (int vv = 0; vv < newWordVocab.size(); vv++) {
-            String word = newWordVocab.get(vv);
-            int idx = Collections.binarySearch(curWordVocab, word);
-            if (idx < 0) {
-                mapping.put(vv, curWordVocab.size());
-                curWordVocab.add(word);
-            } else {
-                mapping.put(vv, idx);
-            }
-        }
+        int[] mapping = mergeVocab(curWordVocab, newWordVocab);
         if (verbose) {
             logln("--- --- Word vocab size (after): " + curWordVocab.size());
         }
@@ -341,11 +673,10 @@ public class AuthorVoteTextDataset extends TextDataset {
         voteWords = cp.getNumerics();
         for (int[] voteWord : voteWords) {
             for (int nn = 0; nn < voteWord.length; nn++) {
-                Integer mappedWord = mapping.get(voteWord[nn]);
-                if (mappedWord == null) {
+                if (voteWord[nn] < 0 || voteWord[nn] >= mapping.length) {
                     throw new RuntimeException("NULL. " + voteWord[nn]);
                 }
-                voteWord[nn] = mappedWord;
+                voteWord[nn] = mapping[voteWord[nn]];
             }
         }
 
@@ -548,9 +879,9 @@ public class AuthorVoteTextDataset extends TextDataset {
         if (verbose) {
             logln("--- Inputing author votes from " + file);
         }
-        this.authorVotes = new HashMap[authorVocab.size()];
+        this.authorVotes = new TIntIntHashMap[authorVocab.size()];
         for (int aa = 0; aa < this.authorVotes.length; aa++) {
-            this.authorVotes[aa] = new HashMap<Integer, Integer>();
+            this.authorVotes[aa] = new TIntIntHashMap();
         }
         BufferedReader reader = IOUtils.getBufferedReader(file);
         String line;
@@ -566,13 +897,9 @@ public class AuthorVoteTextDataset extends TextDataset {
 
         this.votes = new int[authorVocab.size()][voteVocab.size()];
         for (int a = 0; a < authorVocab.size(); a++) {
-            for (int b = 0; b < voteVocab.size(); b++) {
-                Integer voteVal = this.authorVotes[a].get(b);
-                if (voteVal == null) {
-                    this.votes[a][b] = Vote.MISSING;
-                } else {
-                    this.votes[a][b] = voteVal;
-                }
+            Arrays.fill(this.votes[a], Vote.MISSING);
+            for (int b : this.authorVotes[a].keys()) {
+                this.votes[a][b] = this.authorVotes[a].get(b);
             }
         }
     }
@@ -629,8 +956,199 @@ public class AuthorVoteTextDataset extends TextDataset {
         }
     }
 
+    /**
+     * Output the loaded words, authors, votes and vote text in a binary format.
+     * All values are 4-byte big-endian integers:
+     * <pre>
+     * magic, version, D, N, A, B, hasVoteText
+     * [D + 1] document offsets, [N] word types, [D] authors
+     * [ceil(A * B / 16)] votes, 2 bits per (author, bill) in row-major order:
+     *      0 = missing, 1 = against, 2 = with
+     * if hasVoteText: numVoteDocs, numVoteTokens,
+     *      [numVoteDocs + 1] offsets, [numVoteTokens] word types
+     * </pre>
+     * Vocabularies and properties stay in the text files.
+     *
+     * @param file Output file
+     */
+    public void outputBinaryData(File file) {
+        if (verbose) {
+            logln("--- Outputing binary data to " + file);
+        }
+        int A = authorVocab.size();
+        int B = voteVocab.size();
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(file)));
+            out.writeInt(BINARY_MAGIC);
+            out.writeInt(BINARY_VERSION);
+            out.writeInt(words.length);
+            out.writeInt(getNumTokens(words));
+            out.writeInt(A);
+            out.writeInt(B);
+            out.writeInt(voteWords == null ? 0 : 1);
+            outputBinaryWords(out, words);
+            for (int dd = 0; dd < words.length; dd++) {
+                out.writeInt(authors[dd]);
+            }
+
+            int cell = 0;
+            int numCells = 0;
+            for (int aa = 0; aa < A; aa++) {
+                for (int bb = 0; bb < B; bb++) {
+                    int vote = votes[aa][bb];
+                    if (vote != Vote.MISSING && vote != AGAINST && vote != WITH) {
+                        throw new RuntimeException("Vote " + vote + " of author "
+                                + aa + " on bill " + bb + " cannot be encoded");
+                    }
+                    cell |= (vote + 1) << (2 * (numCells % VOTES_PER_INT));
+                    numCells++;
+                    if (numCells % VOTES_PER_INT == 0) {
+                        out.writeInt(cell);
+                        cell = 0;
+                    }
+                }
+            }
+            if (numCells % VOTES_PER_INT != 0) {
+                out.writeInt(cell);
+            }
+
+            if (voteWords != null) {
+                out.writeInt(voteWords.length);
+                out.writeInt(getNumTokens(voteWords));
+                outputBinaryWords(out, voteWords);
+            }
+            out.close();
+        } catch (IOException | RuntimeException e) {
+            e.printStackTrace();
+            throw new RuntimeException("Exception while outputing binary data to " + file);
+        }
+    }
+
+    private static int getNumTokens(int[][] docWords) {
+        int numTokens = 0;
+        for (int[] docWord : docWords) {
+            numTokens += docWord.length;
+        }
+        return numTokens;
+    }
+
+    private static void outputBinaryWords(DataOutputStream out, int[][] docWords)
+            throws IOException {
+        int offset = 0;
+        out.writeInt(offset);
+        for (int[] docWord : docWords) {
+            offset += docWord.length;
+            out.writeInt(offset);
+        }
+        for (int[] docWord : docWords) {
+            for (int word : docWord) {
+                out.writeInt(word);
+            }
+        }
+    }
+
+    private static int[][] inputBinaryWords(IntBuffer in, int numDocs) {
+        int[] offsets = new int[numDocs + 1];
+        in.get(offsets);
+        int[][] docWords = new int[numDocs][];
+        for (int dd = 0; dd < numDocs; dd++) {
+            docWords[dd] = new int[offsets[dd + 1] - offsets[dd]];
+            in.get(docWords[dd]);
+        }
+        return docWords;
+    }
+
+    /**
+     * Input words, authors, votes and vote text from a binary file output by
+     * outputBinaryData. The file is memory-mapped read-only, so concurrent
+     * processes loading the same file share its page-cached copy.
+     *
+     * @param file The binary file
+     */
+    protected void inputBinaryData(File file) throws Exception {
+        if (verbose) {
+            logln("--- Inputing binary data from " + file);
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new RuntimeException("Binary file is too large to be mapped. " + file);
+            }
+            IntBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())
+                    .asIntBuffer();
+            if (in.get() != BINARY_MAGIC) {
+                throw new RuntimeException("Not a binary data file. " + file);
+            }
+            int version = in.get();
+            if (version != BINARY_VERSION) {
+                throw new RuntimeException("Binary version " + version + " not supported");
+            }
+            int D = in.get();
+            in.get(); // number of tokens
+            int A = in.get();
+            int B = in.get();
+            boolean hasVoteText = in.get() == 1;
+            if (A != authorVocab.size() || B != voteVocab.size()) {
+                throw new RuntimeException("Binary data mismatch vocabularies. "
+                        + A + " vs. " + authorVocab.size() + ". "
+                        + B + " vs. " + voteVocab.size());
+            }
+
+            this.words = inputBinaryWords(in, D);
+            this.authors = new int[D];
+            in.get(this.authors);
+
+            this.votes = new int[A][B];
+            int numCells = 0;
+            int cell = 0;
+            for (int aa = 0; aa < A; aa++) {
+                for (int bb = 0; bb < B; bb++) {
+                    if (numCells % VOTES_PER_INT == 0) {
+                        cell = in.get();
+                    }
+                    this.votes[aa][bb] = ((cell >>> (2 * (numCells % VOTES_PER_INT))) & 3) - 1;
+                    numCells++;
+                }
+            }
+            this.authorVotes = null;
+
+            if (hasVoteText) {
+                int numVoteDocs = in.get();
+                in.get(); // number of vote tokens
+                this.voteWords = inputBinaryWords(in, numVoteDocs);
+            }
+        }
+    }
+
+    /**
+     * Whether an up-to-date binary file exists, i.e., it is not older than
+     * any of the text files it was created from: the words, document info,
+     * votes, vote text and the vocabularies.
+     *
+     * @param fFolder Formatted folder
+     */
+    public boolean hasBinaryData(String fFolder) {
+        File binaryFile = new File(fFolder, formatFilename + binaryExt);
+        if (!binaryFile.exists()) {
+            return false;
+        }
+        String[] exts = {numDocDataExt, docInfoExt, authorVoteExt, voteTextExt,
+            wordVocabExt, speakerVocabExt, voteVocabExt};
+        for (String ext : exts) {
+            File textFile = new File(fFolder, formatFilename + ext);
+            if (textFile.lastModified() > binaryFile.lastModified()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     @Override
     public void loadFormattedData(String fFolder) {
+        if (binaryFormat && hasBinaryData(fFolder)) {
+            loadBinaryFormattedData(fFolder);
+            return;
+        }
         try {
             super.loadFormattedData(fFolder);
             inputAuthorVocab(new File(fFolder, formatFilename + speakerVocabExt));
@@ -647,6 +1165,32 @@ public class AuthorVoteTextDataset extends TextDataset {
         }
     }
 
+    /**
+     * Load formatted data using the binary file for words, authors, votes and
+     * vote text, and the text files for everything else.
+     *
+     * @param fFolder Formatted folder
+     */
+    protected void loadBinaryFormattedData(String fFolder) {
+        if (verbose) {
+            logln("--- Loading binary formatted data from " + fFolder);
+        }
+        try {
+            inputWordVocab(new File(fFolder, formatFilename + wordVocabExt));
+            inputDocumentInfo(new File(fFolder, formatFilename + docInfoExt));
+            File sentFile = new File(fFolder, formatFilename + numSentDataExt);
+            if (sentFile.exists()) {
+                inputSentenceTextData(sentFile);
+            }
+            inputAuthorVocab(new File(fFolder, formatFilename + speakerVocabExt));
+            inputVoteVocab(new File(fFolder, formatFilename + voteVocabExt));
+            inputBinaryData(new File(fFolder, formatFilename + binaryExt));
+        } catch (Exception e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
     protected void inputAuthorVocab(File authorVocFile) throws Exception {
         if (verbose) {
             logln("Loading authors from vocab file " + authorVocFile);
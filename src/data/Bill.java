@@ -25,6 +25,7 @@ public class Bill extends LabelTextDataset {
     // formatted topics
     protected ArrayList<String> topicVocab;
     protected int[] topics;
+    protected int numThreads = 1; // number of threads to process texts when formatting
 
     public Bill(String name, String folder) {
         super(name, folder);
@@ -35,6 +36,10 @@ public class Bill extends LabelTextDataset {
         super(name, folder, corpProc);
     }
 
+    public void setNumThreads(int numThreads) {
+        this.numThreads = numThreads;
+    }
+
     public ArrayList<String> getTopicVocab() {
         return this.topicVocab;
     }
@@ -87,6 +92,7 @@ public class Bill extends LabelTextDataset {
     public void format(String outputFolder) throws Exception {
         IOUtils.createFolder(outputFolder);
         formatTopic(outputFolder);
+        corpProc = new ParallelCorpusProcessor(corpProc, numThreads);
         super.format(outputFolder);
     }
 
@@ -25,6 +25,7 @@ public class Congress extends AbstractTokenizeDataset {
     private HashMap<String, GTLegislator> legislators;
     private ArrayList<String> labelVocab;
     private FWYear[] congressYears;
+    private int numThreads = 1; // number of threads to process texts
 
     public Congress(String datasetName, String folder) {
         super(datasetName, folder);
@@ -42,6 +43,11 @@ public class Congress extends AbstractTokenizeDataset {
         this.congressYears = y;
     }
 
+    public void setNumThreads(int numThreads) {
+        this.numThreads = numThreads;
+        this.billData.setNumThreads(numThreads);
+    }
+
     public FWYear[] getCongressYears() {
         return this.congressYears;
     }
@@ -153,9 +159,14 @@ public class Congress extends AbstractTokenizeDataset {
         logln("--- # debate texts: " + debateTexts.length);
 
         String[] rawTexts = concat(billTexts, debateTexts);
+        corpProc = new ParallelCorpusProcessor(corpProc, numThreads);
         corpProc.setRawTexts(rawTexts);
         corpProc.process();
 
+        // bills and debates are tokenized against the vocab of all texts
+        debateData.setCorpusProcessor(corpProc);
+        billData.setCorpusProcessor(corpProc);
+
         if (labelVocab != null) {
             debateData.setLabelVocab(labelVocab);
         }
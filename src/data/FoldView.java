@@ -0,0 +1,198 @@
+package data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * View of a cross-validation fold over a loaded author-vote-text dataset, in
+ * which authors are split into training and test authors. Membership of
+ * authors and documents is kept in bit sets, and the vote masks share the rows
+ * of the dataset-wide mask of observed votes instead of copying them, so
+ * setting up a fold takes linear time in the number of authors and documents.
+ *
+ * The vote masks returned by a view are shared and must not be modified.
+ *
+ * @author vietan
+ */
+public class FoldView {
+
+    /**
+     * Read-only statistics of a dataset shared by all of its folds.
+     */
+    public static class Base {
+
+        private final int[] docAuthors;         // [D]: author of each document
+        private final boolean[][] observedVotes; // [A][B]: whether a vote is not missing
+        private final boolean[] noVotes;         // [B]: shared row without any vote
+        private final int[] authorNumVotes;     // [A]: number of observed votes per author
+
+        /**
+         * @param votes Votes of all authors, Vote.MISSING if not observed
+         * @param docAuthors Author of each document
+         */
+        public Base(int[][] votes, int[] docAuthors) {
+            this.docAuthors = docAuthors;
+            int A = votes.length;
+            this.observedVotes = new boolean[A][];
+            this.authorNumVotes = new int[A];
+            for (int aa = 0; aa < A; aa++) {
+                this.observedVotes[aa] = new boolean[votes[aa].length];
+                for (int bb = 0; bb < votes[aa].length; bb++) {
+                    if (votes[aa][bb] != Vote.MISSING) {
+                        this.observedVotes[aa][bb] = true;
+                        this.authorNumVotes[aa]++;
+                    }
+                }
+            }
+            this.noVotes = new boolean[A == 0 ? 0 : votes[0].length];
+        }
+
+        public int getNumAuthors() {
+            return this.observedVotes.length;
+        }
+
+        public int getNumDocuments() {
+            return this.docAuthors.length;
+        }
+    }
+
+    private final Base base;
+    private final BitSet trainAuthors;
+    private final BitSet trainDocs;
+
+    /**
+     * @param base Shared dataset statistics
+     * @param trainAuthors Set of training authors. All other authors are test
+     * authors.
+     */
+    public FoldView(Base base, BitSet trainAuthors) {
+        this.base = base;
+        this.trainAuthors = trainAuthors;
+        this.trainDocs = new BitSet(base.getNumDocuments());
+        for (int dd = 0; dd < base.getNumDocuments(); dd++) {
+            if (trainAuthors.get(base.docAuthors[dd])) {
+                this.trainDocs.set(dd);
+            }
+        }
+    }
+
+    public boolean isTrainAuthor(int aa) {
+        return this.trainAuthors.get(aa);
+    }
+
+    public boolean isTrainDocument(int dd) {
+        return this.trainDocs.get(dd);
+    }
+
+    public boolean isTrainVote(int aa, int bb) {
+        return this.trainAuthors.get(aa) && base.observedVotes[aa][bb];
+    }
+
+    public boolean isTestVote(int aa, int bb) {
+        return !this.trainAuthors.get(aa) && base.observedVotes[aa][bb];
+    }
+
+    public ArrayList<Integer> getTrainAuthorIndices() {
+        return getIndices(trainAuthors, base.getNumAuthors(), true);
+    }
+
+    public ArrayList<Integer> getTestAuthorIndices() {
+        return getIndices(trainAuthors, base.getNumAuthors(), false);
+    }
+
+    public ArrayList<Integer> getTrainDocumentIndices() {
+        return getIndices(trainDocs, base.getNumDocuments(), true);
+    }
+
+    public ArrayList<Integer> getTestDocumentIndices() {
+        return getIndices(trainDocs, base.getNumDocuments(), false);
+    }
+
+    /**
+     * Mask of training votes. Rows of training authors are shared with the
+     * mask of observed votes, rows of test authors are a shared empty row.
+     */
+    public boolean[][] getTrainVotes() {
+        return getVotes(true);
+    }
+
+    /**
+     * Mask of test votes. Rows of test authors are shared with the mask of
+     * observed votes, rows of training authors are a shared empty row.
+     */
+    public boolean[][] getTestVotes() {
+        return getVotes(false);
+    }
+
+    public int getNumTrainVotes() {
+        return getNumVotes(true);
+    }
+
+    public int getNumTestVotes() {
+        return getNumVotes(false);
+    }
+
+    private boolean[][] getVotes(boolean train) {
+        boolean[][] mask = new boolean[base.getNumAuthors()][];
+        for (int aa = 0; aa < mask.length; aa++) {
+            mask[aa] = trainAuthors.get(aa) == train ? base.observedVotes[aa] : base.noVotes;
+        }
+        return mask;
+    }
+
+    private int getNumVotes(boolean train) {
+        int count = 0;
+        for (int aa = 0; aa < base.getNumAuthors(); aa++) {
+            if (trainAuthors.get(aa) == train) {
+                count += base.authorNumVotes[aa];
+            }
+        }
+        return count;
+    }
+
+    private static ArrayList<Integer> getIndices(BitSet set, int size, boolean member) {
+        ArrayList<Integer> indices = new ArrayList<>();
+        for (int ii = 0; ii < size; ii++) {
+            if (set.get(ii) == member) {
+                indices.add(ii);
+            }
+        }
+        return indices;
+    }
+
+    /**
+     * Inverse map of a list of indices: the returned array maps each index in
+     * the list to its position in the list, and all other indices smaller than
+     * the array length to -1.
+     *
+     * @param indices List of distinct non-negative indices
+     */
+    public static int[] getInverseIndices(List<Integer> indices) {
+        int max = -1;
+        for (int idx : indices) {
+            max = Math.max(max, idx);
+        }
+        int[] inverse = new int[max + 1];
+        Arrays.fill(inverse, -1);
+        for (int ii = 0; ii < indices.size(); ii++) {
+            inverse[indices.get(ii)] = ii;
+        }
+        return inverse;
+    }
+
+    /**
+     * Position of an index in a list given the inverse map of the list, -1 if
+     * the index is not in the list.
+     *
+     * @param inverse Inverse map returned by getInverseIndices
+     * @param idx The index
+     */
+    public static int getPosition(int[] inverse, int idx) {
+        if (idx < 0 || idx >= inverse.length) {
+            return -1;
+        }
+        return inverse[idx];
+    }
+}
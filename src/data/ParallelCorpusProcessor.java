@@ -0,0 +1,590 @@
+package data;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import util.IOUtils;
+import util.RankingItem;
+
+/**
+ * CorpusProcessor that splits sentences, tokenizes and counts documents using
+ * multiple threads. Documents are divided into contiguous chunks. Each thread
+ * processes whole chunks with its own copy of the OpenNLP models, and the
+ * counts of the chunks are merged in chunk order. Bigram scoring, the
+ * vocabulary cutoffs and the indexing of documents are then done in the same
+ * way as CorpusProcessor.process(), so the vocabulary and the numeric
+ * documents are identical to those of the sequential processor regardless of
+ * the number of threads.
+ *
+ * The counts of the vocabulary candidates (after merging bigrams) can be saved
+ * and loaded back as prior counts. When processing new documents with prior
+ * counts, the bigrams are those of the prior counts and the vocabulary cutoffs
+ * are applied to the prior counts plus the counts of the new documents, so
+ * that the vocabulary of a growing corpus can be updated without processing
+ * the documents counted before.
+ *
+ * @author vietan
+ */
+public class ParallelCorpusProcessor extends CorpusProcessor {
+
+    public static final int NUM_CHUNKS_PER_THREAD = 4;
+    private final int numThreads;
+    private String[] texts;
+    private int[][] numericDocs;
+    private int[][][] numericSentences;
+    // processing state
+    private CorpusProcessor[] procs; // [thread]: copy of the models
+    private int[] chunkStarts;
+    private String[][][] tokens; // [doc][sentence]: normalized tokens
+    private ChunkCounts[] chunkCounts;
+    private boolean buildVocab;
+    // counts of the vocabulary candidates, including the prior counts
+    private HashMap<String, Integer> typeFreq;
+    private HashMap<String, Integer> typeDocFreq;
+    private int numCountedDocs;
+    // prior counts
+    private LinkedHashMap<String, Integer> priorTypeFreq;
+    private LinkedHashMap<String, Integer> priorTypeDocFreq;
+    private int priorNumDocs;
+
+    /**
+     * Create a processor with the same settings and vocabulary as a given
+     * processor.
+     *
+     * @param corpProc The corpus processor
+     * @param numThreads Number of threads
+     */
+    public ParallelCorpusProcessor(CorpusProcessor corpProc, int numThreads) {
+        super(corpProc);
+        this.minWordLength = corpProc.minWordLength;
+        this.setVocab(corpProc.getVocab());
+        this.numThreads = Math.max(1, numThreads);
+    }
+
+    @Override
+    public void setRawTexts(String[] rawTexts) {
+        super.setRawTexts(rawTexts);
+        this.texts = rawTexts;
+    }
+
+    @Override
+    public int[][] getNumerics() {
+        return this.numericDocs;
+    }
+
+    @Override
+    public int[][][] getNumericSentences() {
+        return this.numericSentences;
+    }
+
+    /**
+     * Whether the counts of the vocabulary candidates are available, i.e., the
+     * vocabulary has been built from the processed documents.
+     */
+    public boolean hasWordCounts() {
+        return this.typeFreq != null;
+    }
+
+    /**
+     * Output the counts of the vocabulary candidates. The first line is the
+     * number of documents counted, followed by one line per type with its term
+     * and document frequencies.
+     *
+     * @param file Output file
+     */
+    public void outputWordCounts(File file) {
+        if (typeFreq == null) {
+            throw new RuntimeException("Word counts are not available");
+        }
+        try {
+            BufferedWriter writer = IOUtils.getBufferedWriter(file);
+            writer.write(numCountedDocs + "\n");
+            for (String type : typeFreq.keySet()) {
+                writer.write(type + "\t" + typeFreq.get(type)
+                        + "\t" + typeDocFreq.get(type) + "\n");
+            }
+            writer.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+            throw new RuntimeException("Exception while outputing word counts to "
+                    + file);
+        }
+    }
+
+    /**
+     * Load the counts of the vocabulary candidates of previously processed
+     * documents, which are added to the counts of the documents processed
+     * next.
+     *
+     * @param file File output by outputWordCounts
+     */
+    public void inputWordCounts(File file) {
+        priorTypeFreq = new LinkedHashMap<>();
+        priorTypeDocFreq = new LinkedHashMap<>();
+        try {
+            BufferedReader reader = IOUtils.getBufferedReader(file);
+            priorNumDocs = Integer.parseInt(reader.readLine());
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] sline = line.split("\t");
+                priorTypeFreq.put(sline[0], Integer.parseInt(sline[1]));
+                priorTypeDocFreq.put(sline[0], Integer.parseInt(sline[2]));
+            }
+            reader.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+            throw new RuntimeException("Exception while loading word counts from "
+                    + file);
+        }
+    }
+
+    /**
+     * Process the raw texts. If the processor has a vocabulary, documents are
+     * tokenized against it; otherwise, the vocabulary is built from the
+     * documents.
+     */
+    @Override
+    public void process() {
+        if (texts == null) {
+            if (getRawSentences() == null) {
+                throw new RuntimeException("Both rawTexts and rawSentences "
+                        + "have not been initialized yet");
+            }
+            processDocuments(getRawSentences(), getVocab() != null);
+        } else {
+            processDocuments(new String[texts.length][], getVocab() != null);
+        }
+    }
+
+    /**
+     * Build the vocabulary from documents already split into sentences and
+     * tokenize them.
+     *
+     * @param rawSentences Sentences of each document
+     */
+    @Override
+    public void process(String[][] rawSentences) {
+        this.texts = null;
+        processDocuments(rawSentences, false);
+    }
+
+    private void processDocuments(String[][] sentences, boolean useVocab) {
+        setRawSentences(sentences);
+        int D = sentences.length;
+        int numChunks = Math.max(1, Math.min(D, numThreads * NUM_CHUNKS_PER_THREAD));
+        chunkStarts = new int[numChunks + 1];
+        for (int cc = 0; cc <= numChunks; cc++) {
+            chunkStarts[cc] = (int) ((long) cc * D / numChunks);
+        }
+        procs = new CorpusProcessor[Math.min(numThreads, numChunks)];
+        procs[0] = this;
+        for (int ii = 1; ii < procs.length; ii++) {
+            procs[ii] = new CorpusProcessor(this);
+            procs[ii].minWordLength = this.minWordLength;
+        }
+        tokens = new String[D][][];
+        chunkCounts = new ChunkCounts[numChunks];
+        buildVocab = !useVocab;
+        typeFreq = null;
+        typeDocFreq = null;
+
+        // split sentences, tokenize and count
+        runTasks(numChunks, new Task() {
+            @Override
+            public void run(int cc, CorpusProcessor proc) {
+                tokenizeChunk(cc, proc);
+            }
+        });
+
+        if (useVocab) {
+            runTasks(numChunks, new Task() {
+                @Override
+                public void run(int cc, CorpusProcessor proc) {
+                    filterChunk(cc);
+                }
+            });
+        } else {
+            mergeTokenCounts();
+            final Set<String> bigrams = selectBigrams();
+            runTasks(numChunks, new Task() {
+                @Override
+                public void run(int cc, CorpusProcessor proc) {
+                    mergeChunkBigrams(cc, bigrams);
+                }
+            });
+            selectVocab(D);
+        }
+
+        numericDocs = new int[D][];
+        numericSentences = new int[D][][];
+        runTasks(numChunks, new Task() {
+            @Override
+            public void run(int cc, CorpusProcessor proc) {
+                indexChunk(cc);
+            }
+        });
+        tokens = null;
+        chunkCounts = null;
+        procs = null;
+    }
+
+    /**
+     * Split sentences (if needed), tokenize and normalize the documents of a
+     * chunk, and count unigrams and bigrams when building the vocabulary.
+     */
+    private void tokenizeChunk(int cc, CorpusProcessor proc) {
+        String[][] sentences = getRawSentences();
+        ChunkCounts counts = buildVocab ? new ChunkCounts() : null;
+        for (int dd = chunkStarts[cc]; dd < chunkStarts[cc + 1]; dd++) {
+            if (sentences[dd] == null) {
+                sentences[dd] = proc.sentenceDetector.sentDetect(texts[dd]);
+            }
+            HashSet<String> docTypes = new HashSet<>();
+            tokens[dd] = new String[sentences[dd].length][];
+            for (int ss = 0; ss < sentences[dd].length; ss++) {
+                String[] rawTokens = proc.tokenizer.tokenize(sentences[dd][ss].toLowerCase());
+                String[] sentTokens = new String[rawTokens.length];
+                for (int nn = 0; nn < rawTokens.length; nn++) {
+                    String token = proc.normalize(rawTokens[nn]);
+                    sentTokens[nn] = token;
+                    if (counts == null || token.isEmpty()) {
+                        continue;
+                    }
+                    increment(counts.termFreq, token, 1);
+                    docTypes.add(token);
+                    if (nn - 1 >= 0 && !sentTokens[nn - 1].isEmpty()) {
+                        String prevToken = sentTokens[nn - 1];
+                        increment(counts.leftFreq, prevToken, 1);
+                        increment(counts.rightFreq, token, 1);
+                        increment(counts.bigramFreq, getBigramString(prevToken, token), 1);
+                        counts.totalBigram++;
+                    }
+                }
+                tokens[dd][ss] = sentTokens;
+            }
+            if (counts != null) {
+                for (String type : docTypes) {
+                    increment(counts.docFreq, type, 1);
+                }
+            }
+        }
+        chunkCounts[cc] = counts;
+    }
+
+    /**
+     * Merge the unigram and bigram counts of all chunks in chunk order.
+     */
+    private void mergeTokenCounts() {
+        for (ChunkCounts counts : chunkCounts) {
+            addCounts(termFreq, counts.termFreq);
+            addCounts(docFreq, counts.docFreq);
+            addCounts(leftFreq, counts.leftFreq);
+            addCounts(rightFreq, counts.rightFreq);
+            addCounts(bigramFreq, counts.bigramFreq);
+            totalBigram += counts.totalBigram;
+        }
+    }
+
+    /**
+     * Score the bigrams passing the count cutoff in parallel. With prior
+     * counts, the bigrams are those of the prior counts.
+     *
+     * @return Bigrams to merge
+     */
+    private Set<String> selectBigrams() {
+        if (priorTypeFreq != null) {
+            Set<String> bigrams = new HashSet<>();
+            for (String type : priorTypeFreq.keySet()) {
+                if (type.contains("_")) { // normalized unigrams are alphanumeric
+                    bigrams.add(type);
+                }
+            }
+            return bigrams;
+        }
+        final ArrayList<String> candidates = new ArrayList<>();
+        for (String bigram : bigramFreq.keySet()) {
+            if (bigramFreq.get(bigram) >= bigramCountCutoff) {
+                candidates.add(bigram);
+            }
+        }
+        final boolean[] selected = new boolean[candidates.size()];
+        final int numTasks = chunkStarts.length - 1;
+        runTasks(numTasks, new Task() {
+            @Override
+            public void run(int tt, CorpusProcessor proc) {
+                int end = (int) ((long) (tt + 1) * candidates.size() / numTasks);
+                for (int ii = (int) ((long) tt * candidates.size() / numTasks); ii < end; ii++) {
+                    String bigram = candidates.get(ii);
+                    selected[ii] = scoreBigram(getTokensFromBigram(bigram)) >= bigramScoreCutoff;
+                }
+            }
+        });
+        Set<String> bigrams = new HashSet<>();
+        for (int ii = 0; ii < selected.length; ii++) {
+            if (selected[ii]) {
+                bigrams.add(candidates.get(ii));
+            }
+        }
+        return bigrams;
+    }
+
+    /**
+     * Merge the selected bigrams in the documents of a chunk, drop infrequent
+     * unigrams and count the resulting types.
+     */
+    private void mergeChunkBigrams(int cc, Set<String> bigrams) {
+        ChunkCounts counts = new ChunkCounts();
+        for (int dd = chunkStarts[cc]; dd < chunkStarts[cc + 1]; dd++) {
+            HashSet<String> docTypes = new HashSet<>();
+            for (int ss = 0; ss < tokens[dd].length; ss++) {
+                String[] sentTokens = tokens[dd][ss];
+                ArrayList<String> merged = new ArrayList<>();
+                for (int nn = 0; nn < sentTokens.length; nn++) {
+                    String token = sentTokens[nn];
+                    if (token.isEmpty()) {
+                        continue;
+                    }
+                    if (nn + 1 < sentTokens.length && !sentTokens[nn + 1].isEmpty()) {
+                        String bigram = getBigramString(token, sentTokens[nn + 1]);
+                        if (bigrams.contains(bigram)) {
+                            merged.add(bigram);
+                            increment(counts.termFreq, bigram, 1);
+                            nn++;
+                            continue;
+                        }
+                    }
+                    if (getUnigramCount(token) >= unigramCountCutoff) {
+                        merged.add(token);
+                        increment(counts.termFreq, token, 1);
+                    }
+                }
+                tokens[dd][ss] = merged.toArray(new String[merged.size()]);
+                docTypes.addAll(merged);
+            }
+            for (String type : docTypes) {
+                increment(counts.docFreq, type, 1);
+            }
+        }
+        chunkCounts[cc] = counts;
+    }
+
+    /**
+     * Count of a unigram used for the unigram count cutoff. Prior counts only
+     * include the occurrences outside the merged bigrams.
+     */
+    private int getUnigramCount(String token) {
+        int count = termFreq.get(token);
+        if (priorTypeFreq != null && priorTypeFreq.containsKey(token)) {
+            count += priorTypeFreq.get(token);
+        }
+        return count;
+    }
+
+    /**
+     * Select the vocabulary by TF-IDF among the types passing the cutoffs.
+     *
+     * @param D Number of documents
+     */
+    private void selectVocab(int D) {
+        // types are added in order of first occurrence, as in the sequential
+        // processor, so that ties are ranked the same way
+        typeFreq = new HashMap<>();
+        typeDocFreq = new HashMap<>();
+        if (priorTypeFreq != null) {
+            addCounts(typeFreq, priorTypeFreq);
+            addCounts(typeDocFreq, priorTypeDocFreq);
+            D += priorNumDocs;
+        }
+        numCountedDocs = D;
+        for (ChunkCounts counts : chunkCounts) {
+            addCounts(typeFreq, counts.termFreq);
+            addCounts(typeDocFreq, counts.docFreq);
+        }
+        ArrayList<RankingItem<String>> rankItems = new ArrayList<>();
+        for (String type : typeFreq.keySet()) {
+            int tf = typeFreq.get(type);
+            int df = typeDocFreq.get(type);
+            if (tf < vocabTermFreqMinCutoff || tf > vocabTermFreqMaxCutoff
+                    || df < vocabDocFreqMinCutoff || df > vocabDocFreqMaxCutoff) {
+                continue;
+            }
+            double tfidf = Math.log(tf + 1) * (Math.log(D) - Math.log(df + 1));
+            rankItems.add(new RankingItem<String>(type, tfidf));
+        }
+        Collections.sort(rankItems);
+        int vocabSize = Math.min(maxVocabSize, rankItems.size());
+        ArrayList<String> vocab = new ArrayList<>();
+        for (int ii = 0; ii < vocabSize; ii++) {
+            vocab.add(rankItems.get(ii).getObject());
+        }
+        Collections.sort(vocab);
+        setVocab(vocab);
+    }
+
+    /**
+     * Merge bigrams and keep the tokens in the existing vocabulary for the
+     * documents of a chunk.
+     */
+    private void filterChunk(int cc) {
+        Set<String> vocab = new HashSet<>(getVocab());
+        for (int dd = chunkStarts[cc]; dd < chunkStarts[cc + 1]; dd++) {
+            for (int ss = 0; ss < tokens[dd].length; ss++) {
+                String[] sentTokens = tokens[dd][ss];
+                ArrayList<String> kept = new ArrayList<>();
+                for (int nn = 0; nn < sentTokens.length; nn++) {
+                    String token = sentTokens[nn];
+                    if (token.isEmpty()) {
+                        continue;
+                    }
+                    if (nn + 1 < sentTokens.length && !sentTokens[nn + 1].isEmpty()) {
+                        String bigram = getBigramString(token, sentTokens[nn + 1]);
+                        if (vocab.contains(bigram)) {
+                            kept.add(bigram);
+                            nn++;
+                            continue;
+                        }
+                    }
+                    if (vocab.contains(token)) {
+                        kept.add(token);
+                    }
+                }
+                tokens[dd][ss] = kept.toArray(new String[kept.size()]);
+            }
+        }
+    }
+
+    /**
+     * Map the tokens of the documents of a chunk to vocabulary indices.
+     */
+    private void indexChunk(int cc) {
+        ArrayList<String> vocab = getVocab();
+        for (int dd = chunkStarts[cc]; dd < chunkStarts[cc + 1]; dd++) {
+            int[][] docSents = new int[tokens[dd].length][];
+            int docLength = 0;
+            for (int ss = 0; ss < tokens[dd].length; ss++) {
+                int[] sent = new int[tokens[dd][ss].length];
+                int sentLength = 0;
+                for (String token : tokens[dd][ss]) {
+                    int idx = Collections.binarySearch(vocab, token);
+                    if (idx >= 0) {
+                        sent[sentLength++] = idx;
+                    }
+                }
+                docSents[ss] = Arrays.copyOf(sent, sentLength);
+                docLength += sentLength;
+            }
+            int[] doc = new int[docLength];
+            int pos = 0;
+            for (int[] sent : docSents) {
+                System.arraycopy(sent, 0, doc, pos, sent.length);
+                pos += sent.length;
+            }
+            numericSentences[dd] = docSents;
+            numericDocs[dd] = doc;
+        }
+    }
+
+    private static void increment(Map<String, Integer> counts, String key, int delta) {
+        Integer count = counts.get(key);
+        counts.put(key, count == null ? delta : count + delta);
+    }
+
+    private static void addCounts(Map<String, Integer> dest, Map<String, Integer> src) {
+        for (Map.Entry<String, Integer> entry : src.entrySet()) {
+            increment(dest, entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Run tasks on the threads, each with its own copy of the models.
+     */
+    private void runTasks(int numTasks, Task task) {
+        int numRunners = Math.min(procs.length, numTasks);
+        AtomicInteger next = new AtomicInteger();
+        TaskRunner[] runners = new TaskRunner[numRunners];
+        for (int ii = 0; ii < numRunners; ii++) {
+            runners[ii] = new TaskRunner(task, numTasks, next, procs[ii]);
+        }
+        if (numRunners == 1) {
+            runners[0].run();
+        } else {
+            ArrayList<Thread> threads = new ArrayList<>();
+            for (int ii = 0; ii < numRunners; ii++) {
+                Thread thread = new Thread(runners[ii], "corpus-processor-" + ii);
+                threads.add(thread);
+                thread.start();
+            }
+            try {
+                for (Thread thread : threads) {
+                    thread.join();
+                }
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+                throw new RuntimeException("Interrupted while processing corpus");
+            }
+        }
+        for (TaskRunner runner : runners) {
+            if (runner.exception != null) {
+                throw new RuntimeException("Exception while processing corpus",
+                        runner.exception);
+            }
+        }
+    }
+
+    interface Task {
+
+        void run(int taskIndex, CorpusProcessor proc);
+    }
+
+    static class TaskRunner implements Runnable {
+
+        private final Task task;
+        private final int numTasks;
+        private final AtomicInteger next;
+        private final CorpusProcessor proc;
+        private RuntimeException exception;
+
+        TaskRunner(Task task, int numTasks, AtomicInteger next, CorpusProcessor proc) {
+            this.task = task;
+            this.numTasks = numTasks;
+            this.next = next;
+            this.proc = proc;
+        }
+
+        @Override
+        public void run() {
+            try {
+                int tt;
+                while ((tt = next.getAndIncrement()) < numTasks) {
+                    task.run(tt, proc);
+                }
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+                this.exception = e;
+            }
+        }
+    }
+
+    /**
+     * Counts of the documents of a chunk, in order of first occurrence.
+     */
+    static class ChunkCounts {
+
+        final LinkedHashMap<String, Integer> termFreq = new LinkedHashMap<>();
+        final LinkedHashMap<String, Integer> docFreq = new LinkedHashMap<>();
+        final LinkedHashMap<String, Integer> leftFreq = new LinkedHashMap<>();
+        final LinkedHashMap<String, Integer> rightFreq = new LinkedHashMap<>();
+        final LinkedHashMap<String, Integer> bigramFreq = new LinkedHashMap<>();
+        int totalBigram;
+    }
+}
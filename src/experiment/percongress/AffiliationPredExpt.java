@@ -99,6 +99,24 @@ public class AffiliationPredExpt extends VotePredExpt {
         }
     }
 
+    private AffiliationPredExpt(AffiliationType affType) {
+        this.affType = affType;
+    }
+
+    /**
+     * Share the loaded data of another experiment to run a single fold.
+     *
+     * @param other The experiment whose data have been loaded
+     */
+    private void shareAffiliationData(AffiliationPredExpt other) {
+        shareFormattedData(other);
+        this.gopAuthorList = other.gopAuthorList;
+        this.gopTPAffList = other.gopTPAffList;
+        this.authorDocIndices = other.authorDocIndices;
+        this.trainVoteWords = other.trainVoteWords;
+        this.trainVoteTopics = other.trainVoteTopics;
+    }
+
     @Override
     public String getConfiguredExptFolder() {
         return affType + "-cv-" + numFolds + "-" + teRatio + "-" + trToDevRatio;
@@ -168,8 +186,8 @@ public class AffiliationPredExpt extends VotePredExpt {
             trainVoteTopics[bb] = billData.getTopics()[idx];
         }
 
-        File congressFolder = new File(experimentPath, congressNum);
-        File configureFolder = new File(congressFolder, getConfiguredExptFolder());
+        final File congressFolder = new File(experimentPath, congressNum);
+        final File configureFolder = new File(congressFolder, getConfiguredExptFolder());
         IOUtils.createFolder(configureFolder);
 
         ArrayList<Integer> runningFolds = new ArrayList<Integer>();
@@ -179,53 +197,82 @@ public class AffiliationPredExpt extends VotePredExpt {
                 runningFolds.add(Integer.parseInt(f));
             }
         }
+        ArrayList<Integer> folds = new ArrayList<>();
         for (int ff = 0; ff < numFolds; ff++) {
-            if (!runningFolds.isEmpty() && !runningFolds.contains(ff)) {
-                continue;
+            if (runningFolds.isEmpty() || runningFolds.contains(ff)) {
+                folds.add(ff);
             }
-            if (verbose) {
-                System.out.println("\nRunning fold " + ff);
+        }
+
+        FoldScheduler scheduler = getFoldScheduler();
+        if (scheduler.getNumConcurrentFolds(folds.size()) > 1) {
+            // each fold is run by a separate experiment sharing the loaded data
+            final AffiliationPredExpt loadedExpt = this;
+            scheduler.run(folds, new FoldScheduler.FoldTask() {
+                @Override
+                public void runFold(int ff) throws Exception {
+                    AffiliationPredExpt foldExpt = new AffiliationPredExpt(affType);
+                    foldExpt.shareAffiliationData(loadedExpt);
+                    foldExpt.runFold(congressFolder, configureFolder, ff);
+                }
+            });
+        } else {
+            for (int ff : folds) {
+                runFold(congressFolder, configureFolder, ff);
             }
+        }
+    }
+
+    /**
+     * Run the model on a single fold.
+     *
+     * @param congressFolder Folder of the congress
+     * @param configureFolder Folder of the experiment configuration
+     * @param ff Fold number
+     */
+    private void runFold(File congressFolder, File configureFolder, int ff) throws Exception {
+        if (verbose) {
+            System.out.println("\nRunning fold " + ff);
+        }
 
-            Fold fold = new Fold(ff, new File(processedDataFolder, getCVFolder()).getAbsolutePath());
-            inputFold(fold);
+        Fold fold = new Fold(ff, new File(processedDataFolder, getCVFolder()).getAbsolutePath());
+        inputFold(fold);
 
-            File foldFeatureFolder = new File(new File(congressFolder, getCVFolder()), fold.getFoldName());
-            File foldResultFolder = new File(configureFolder, fold.getFoldName());
-            IOUtils.createFolder(foldResultFolder);
+        File foldFeatureFolder = new File(new File(congressFolder, getCVFolder()), fold.getFoldName());
+        File foldResultFolder = new File(configureFolder, fold.getFoldName());
+        IOUtils.createFolder(foldResultFolder);
 
-            String model = CLIUtils.getStringArgument(cmd, "model", "random");
-            switch (model) {
-                case "random":
-                    runRandom(foldResultFolder);
-                    break;
-                case "test":
-                    runTest(foldResultFolder);
-                    break;
-                case "vote":
-                    getVoteFeatures(foldFeatureFolder);
-                    runFeatures(foldFeatureFolder, foldResultFolder, "vote");
-                    break;
-                case "tf":
-                    getTFFeatures(foldFeatureFolder);
-                    runFeatures(foldFeatureFolder, foldResultFolder, "tf");
-                    break;
-                case "tfidf":
-                    getTFIDFFeatures(foldResultFolder);
-                    runFeatures(foldFeatureFolder, foldResultFolder, "tfidf");
-                    break;
-                case "hier-mult-shdp":
-                    runHierMuilSHDP(foldFeatureFolder);
-                    break;
-                case "hiptm_all":
-                    runFeatures(foldFeatureFolder, foldResultFolder, "Hier-Mult-SHDP_all");
-                    break;
-                case "combine":
-                    runMetaCombinedFeature(foldFeatureFolder, foldResultFolder);
-                    break;
-                default:
-                    throw new RuntimeException("Model " + model + " not supported");
-            }
+        String model = CLIUtils.getStringArgument(cmd, "model", "random");
+        switch (model) {
+            case "random":
+                runRandom(foldResultFolder);
+                break;
+            case "test":
+                runTest(foldResultFolder);
+                break;
+            case "vote":
+                getVoteFeatures(foldFeatureFolder);
+                runFeatures(foldFeatureFolder, foldResultFolder, "vote");
+                break;
+            case "tf":
+                getTFFeatures(foldFeatureFolder);
+                runFeatures(foldFeatureFolder, foldResultFolder, "tf");
+                break;
+            case "tfidf":
+                getTFIDFFeatures(foldResultFolder);
+                runFeatures(foldFeatureFolder, foldResultFolder, "tfidf");
+                break;
+            case "hier-mult-shdp":
+                runHierMuilSHDP(foldFeatureFolder);
+                break;
+            case "hiptm_all":
+                runFeatures(foldFeatureFolder, foldResultFolder, "Hier-Mult-SHDP_all");
+                break;
+            case "combine":
+                runMetaCombinedFeature(foldFeatureFolder, foldResultFolder);
+                break;
+            default:
+                throw new RuntimeException("Model " + model + " not supported");
         }
     }
 
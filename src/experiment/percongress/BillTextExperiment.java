@@ -72,6 +72,7 @@ public class BillTextExperiment extends AbstractExperiment<Bill> {
                 null, //new File(congressFolder, "debates").getAbsolutePath(),
                 new File(congressFolder, "legislators.txt").getAbsolutePath(),
                 null, null, corpProc);
+        congressData.setNumThreads(CLIUtils.getIntegerArgument(cmd, "format-threads", 1));
         data = congressData.getBillData();
         data.format(processedDataFolder);
     }
@@ -213,6 +214,7 @@ public class BillTextExperiment extends AbstractExperiment<Bill> {
             addOption("model-folder", "Model folder");
             addOption("expt-folder", "Experiment folder");
             addOption("processed-data-folder", "Processed data folder");
+            addOption("format-threads", "Number of threads to process texts when formatting data");
 
             addOption("tr2dev-ratio", "Training-to-developmeng ratio");
 
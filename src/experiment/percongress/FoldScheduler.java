@@ -0,0 +1,199 @@
+package experiment.percongress;
+
+import java.util.ArrayList;
+import util.MiscUtils;
+import votepredictor.textidealpoint.RandomStreams;
+
+/**
+ * Run cross-validation folds concurrently within the same JVM. The number of
+ * folds running at the same time is capped both by a maximum number of threads
+ * and by a heap budget: each fold is assumed to need a fixed amount of heap on
+ * top of what has already been allocated (e.g., the shared formatted data).
+ *
+ * Each fold should be run by its own experiment object so that fold-specific
+ * states (train/test indices, votes, etc.) are not shared, while the loaded
+ * datasets are shared read-only. The same applies to other independent tasks
+ * run by the scheduler, such as the configurations of a hyperparameter sweep.
+ *
+ * @author vietan
+ */
+public class FoldScheduler {
+
+    public static final long MB = 1024L * 1024L;
+
+    /**
+     * Task to run a single fold.
+     */
+    public interface FoldTask {
+
+        public void runFold(int ff) throws Exception;
+    }
+
+    private final int maxNumThreads;
+    private final long foldHeapSize; // estimated heap needed per fold, in bytes
+    private boolean verbose;
+    private String taskName = "fold";
+
+    /**
+     * @param maxNumThreads Maximum number of folds running at the same time
+     * @param foldHeapMB Estimated heap (in MB) needed by each fold, 0 to
+     * ignore the heap budget
+     */
+    public FoldScheduler(int maxNumThreads, long foldHeapMB) {
+        this.maxNumThreads = Math.max(1, maxNumThreads);
+        this.foldHeapSize = foldHeapMB * MB;
+    }
+
+    public void setVerbose(boolean verbose) {
+        this.verbose = verbose;
+    }
+
+    /**
+     * Name of the tasks in log messages, e.g., "fold" (default).
+     *
+     * @param taskName Task name
+     */
+    public void setTaskName(String taskName) {
+        this.taskName = taskName;
+    }
+
+    /**
+     * Number of folds that can run concurrently given the heap currently
+     * available.
+     *
+     * @param numFolds Number of folds to run
+     */
+    public int getNumConcurrentFolds(int numFolds) {
+        int numConcurrents = Math.min(maxNumThreads, numFolds);
+        if (foldHeapSize > 0) {
+            Runtime runtime = Runtime.getRuntime();
+            long used = runtime.totalMemory() - runtime.freeMemory();
+            long available = runtime.maxMemory() - used;
+            numConcurrents = (int) Math.min(numConcurrents, available / foldHeapSize);
+        }
+        return Math.max(1, numConcurrents);
+    }
+
+    /**
+     * Run a set of folds. Each worker thread takes the next fold from the list
+     * until all folds are done.
+     *
+     * @param folds List of folds to run
+     * @param task The task that runs a fold
+     */
+    public void run(ArrayList<Integer> folds, FoldTask task) {
+        int numConcurrents = getNumConcurrentFolds(folds.size());
+        if (verbose) {
+            Runtime runtime = Runtime.getRuntime();
+            VotePredExpt.logln("--- Running " + folds.size() + " " + taskName
+                    + "s with " + numConcurrents + " threads. Max heap: "
+                    + runtime.maxMemory() / MB + " MB. Heap per " + taskName + ": "
+                    + foldHeapSize / MB + " MB");
+        }
+
+        FoldQueue queue = new FoldQueue(folds);
+        RandomStreams foldStreams = RandomStreams.splitThreadStream();
+        ArrayList<Thread> threads = new ArrayList<>();
+        for (int ii = 0; ii < numConcurrents; ii++) {
+            Thread thread = new Thread(new FoldWorker(queue, task, foldStreams, verbose,
+                    taskName), taskName + "-worker-" + ii);
+            threads.add(thread);
+            thread.start();
+        }
+        try {
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+            throw new RuntimeException("Interrupted while running folds");
+        }
+        if (queue.getException() != null) {
+            throw new RuntimeException("Exception while running " + taskName + " "
+                    + queue.getFailedFold(), queue.getException());
+        }
+    }
+
+    /**
+     * Remaining folds shared by the worker threads.
+     */
+    static class FoldQueue {
+
+        private final ArrayList<Integer> folds;
+        private int next;
+        private Exception exception;
+        private int failedFold;
+
+        FoldQueue(ArrayList<Integer> folds) {
+            this.folds = folds;
+            this.next = 0;
+        }
+
+        /**
+         * Get the next fold to run, or null if all folds have been taken or a
+         * fold has failed.
+         */
+        synchronized Integer poll() {
+            if (exception != null || next >= folds.size()) {
+                return null;
+            }
+            return folds.get(next++);
+        }
+
+        synchronized void fail(int ff, Exception e) {
+            if (exception == null) {
+                exception = e;
+                failedFold = ff;
+            }
+        }
+
+        synchronized Exception getException() {
+            return exception;
+        }
+
+        synchronized int getFailedFold() {
+            return failedFold;
+        }
+    }
+
+    static class FoldWorker implements Runnable {
+
+        private final FoldQueue queue;
+        private final FoldTask task;
+        private final RandomStreams foldStreams;
+        private final boolean verbose;
+        private final String taskName;
+
+        FoldWorker(FoldQueue queue, FoldTask task, RandomStreams foldStreams,
+                boolean verbose, String taskName) {
+            this.queue = queue;
+            this.task = task;
+            this.foldStreams = foldStreams;
+            this.verbose = verbose;
+            this.taskName = taskName;
+        }
+
+        @Override
+        public void run() {
+            Integer ff;
+            while ((ff = queue.poll()) != null) {
+                long sTime = System.currentTimeMillis();
+                if (foldStreams != null) { // same stream whichever worker runs the fold
+                    RandomStreams.setThreadStream(foldStreams.getStream(ff));
+                }
+                try {
+                    task.runFold(ff);
+                } catch (Exception e) {
+                    e.printStackTrace();
+                    queue.fail(ff, e);
+                    return;
+                }
+                if (verbose) {
+                    VotePredExpt.logln("--- " + taskName + " " + ff + " done in "
+                            + MiscUtils.formatDouble((System.currentTimeMillis() - sTime) / 1000.0)
+                            + " s");
+                }
+            }
+        }
+    }
+}
@@ -3,7 +3,6 @@ package experiment.percongress;
 import data.Congress;
 import data.TextDataset;
 import data.Vote;
-import java.io.File;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
@@ -11,7 +10,6 @@ import java.util.Arrays;
 import java.util.Date;
 import org.apache.commons.cli.ParseException;
 import util.CLIUtils;
-import util.IOUtils;
 
 /**
  *
@@ -25,18 +23,10 @@ public class GOPExpt extends VotePredExpt {
     }
 
     /**
-     * Estimate on all data.
+     * Train on Republicans only.
      */
     @Override
-    public void run() {
-        if (verbose) {
-            logln("Running models ...");
-        }
-        
-        setupSampling();
-        
-        loadFormattedData();
-        
+    protected void setupTrainingData() {
         trainAuthorIndices = new ArrayList<>();
         for (int aa = 0; aa < debateVoteData.getAuthorVocab().size(); aa++) {
             String authorId = debateVoteData.getAuthorVocab().get(aa);
@@ -73,13 +63,11 @@ public class GOPExpt extends VotePredExpt {
             logln("--- # debates: " + this.trainDebateIndices.size()
                     + " / " + debateVoteData.getWords().length);
         }
-        
-        File estimateFolder = new File(new File(experimentPath, congressNum),
-                getConfiguredExptFolder());
-        IOUtils.createFolder(estimateFolder);
+    }
 
-        // run models
-        this.runModel(estimateFolder);
+    @Override
+    protected VotePredExpt createSweepExperiment() {
+        return new GOPExpt();
     }
     
     public static void main(String[] args) {
@@ -110,6 +98,9 @@ public class GOPExpt extends VotePredExpt {
                 case "run":
                     expt.run();
                     break;
+                case "sweep":
+                    expt.sweep();
+                    break;
                 default:
                     throw new RuntimeException("Run mode " + runMode + " is not supported");
             }
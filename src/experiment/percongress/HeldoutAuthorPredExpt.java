@@ -4,8 +4,8 @@ import static core.AbstractExperiment.max_iters;
 import core.AbstractModel;
 import core.AbstractSampler.InitialState;
 import data.Congress;
+import data.FoldView;
 import data.TextDataset;
-import data.Vote;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
@@ -13,6 +13,7 @@ import java.io.IOException;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
@@ -66,26 +67,54 @@ public class HeldoutAuthorPredExpt extends VotePredExpt {
 
         setupSampling();
 
-        File configureFolder = new File(new File(experimentPath, congressNum),
+        final File configureFolder = new File(new File(experimentPath, congressNum),
                 getConfiguredExptFolder());
 
+        ArrayList<Integer> folds = new ArrayList<>();
         for (int ff = 0; ff < numFolds; ff++) {
-            if (!runningFolds.isEmpty() && !runningFolds.contains(ff)) {
-                continue;
-            }
-            if (verbose) {
-                logln("--- Running fold " + ff);
+            if (runningFolds.isEmpty() || runningFolds.contains(ff)) {
+                folds.add(ff);
             }
+        }
 
-            File foldFolder = new File(configureFolder, "fold-" + ff);
-            IOUtils.createFolder(foldFolder);
+        FoldScheduler scheduler = getFoldScheduler();
+        if (scheduler.getNumConcurrentFolds(folds.size()) > 1) {
+            // each fold is run by a separate experiment sharing the loaded data
+            final HeldoutAuthorPredExpt loadedExpt = this;
+            scheduler.run(folds, new FoldScheduler.FoldTask() {
+                @Override
+                public void runFold(int ff) {
+                    HeldoutAuthorPredExpt foldExpt = new HeldoutAuthorPredExpt();
+                    foldExpt.shareFormattedData(loadedExpt);
+                    foldExpt.runFold(configureFolder, ff);
+                }
+            });
+        } else {
+            for (int ff : folds) {
+                runFold(configureFolder, ff);
+            }
+        }
 
-            inputCrossValidatedData(ff);
+        evaluate();
+    }
 
-            runModel(foldFolder);
+    /**
+     * Run the model on a single fold.
+     *
+     * @param configureFolder Folder of the experiment configuration
+     * @param ff Fold number
+     */
+    protected void runFold(File configureFolder, int ff) {
+        if (verbose) {
+            logln("--- Running fold " + ff);
         }
 
-        evaluate();
+        File foldFolder = new File(configureFolder, "fold-" + ff);
+        IOUtils.createFolder(foldFolder);
+
+        inputCrossValidatedData(ff);
+
+        runModel(foldFolder);
     }
 
     public void analyze() {
@@ -802,17 +831,20 @@ public class HeldoutAuthorPredExpt extends VotePredExpt {
         for (int ff = 0; ff < numFolds; ff++) {
             this.trainAuthorIndices = new ArrayList<>();
             this.testAuthorIndices = new ArrayList<>();
+            BitSet trainAuthors = new BitSet(A);
             Collections.shuffle(authorIndices);
 
             for (int ii = 0; ii < A; ii++) {
                 int aa = authorIndices.get(ii);
                 if (!authorDocCount.containsIndex(aa)) {
                     this.trainAuthorIndices.add(aa);
+                    trainAuthors.set(aa);
                 } else {
                     if (rand.nextDouble() < teRatio) {
                         this.testAuthorIndices.add(aa);
                     } else {
                         this.trainAuthorIndices.add(aa);
+                        trainAuthors.set(aa);
                     }
                 }
             }
@@ -825,7 +857,7 @@ public class HeldoutAuthorPredExpt extends VotePredExpt {
 
             writer = IOUtils.getBufferedWriter(new File(cvFolder, "fold-" + ff + ".dat"));
             for (int aa = 0; aa < A; aa++) {
-                if (trainAuthorIndices.contains(aa)) {
+                if (trainAuthors.get(aa)) {
                     writer.write(aa + "\t" + TRAIN_POSFIX + "\n");
                 } else {
                     writer.write(aa + "\t" + TEST_POSFIX + "\n");
@@ -842,18 +874,6 @@ public class HeldoutAuthorPredExpt extends VotePredExpt {
      */
     protected void inputCrossValidatedData(int ff) {
         int A = debateVoteData.getAuthorVocab().size();
-        int B = debateVoteData.getVoteVocab().size();
-        int D = debateVoteData.getWords().length;
-
-        this.trainAuthorIndices = new ArrayList<>();
-        this.trainDebateIndices = new ArrayList<>();
-        this.trainVotes = new boolean[A][B];
-        this.trainBillIndices = null; // use all bills
-
-        this.testAuthorIndices = new ArrayList<>();
-        this.testDebateIndices = new ArrayList<>();
-        this.testVotes = new boolean[A][B];
-        this.testBillIndices = null; // use all bills
 
         File cvFolder = new File(processedDataFolder, getConfiguredExptFolder());
         try {
@@ -861,6 +881,7 @@ public class HeldoutAuthorPredExpt extends VotePredExpt {
                 logln("--- Loading fold " + ff + " from " + cvFolder);
             }
 
+            BitSet trainAuthors = new BitSet(A);
             BufferedReader reader = IOUtils.getBufferedReader(new File(cvFolder,
                     "fold-" + ff + ".dat"));
             for (int aa = 0; aa < A; aa++) {
@@ -869,46 +890,29 @@ public class HeldoutAuthorPredExpt extends VotePredExpt {
                     throw new RuntimeException("Mismatch");
                 }
                 if (sline[1].equals(TRAIN_POSFIX)) {
-                    this.trainAuthorIndices.add(aa);
-                } else {
-                    this.testAuthorIndices.add(aa);
+                    trainAuthors.set(aa);
                 }
             }
             reader.close();
 
-            for (int dd = 0; dd < D; dd++) {
-                int aa = debateVoteData.getAuthors()[dd];
-                if (trainAuthorIndices.contains(aa)) {
-                    trainDebateIndices.add(dd);
-                } else {
-                    testDebateIndices.add(dd);
-                }
-            }
+            FoldView view = new FoldView(getFoldBase(), trainAuthors);
+            this.trainAuthorIndices = view.getTrainAuthorIndices();
+            this.trainDebateIndices = view.getTrainDocumentIndices();
+            this.trainVotes = view.getTrainVotes();
+            this.trainBillIndices = null; // use all bills
 
-            int numTrainVotes = 0;
-            int numTestVotes = 0;
-            for (int ii = 0; ii < A; ii++) {
-                for (int jj = 0; jj < B; jj++) {
-                    if (debateVoteData.getVotes()[ii][jj] == Vote.MISSING) {
-                        this.trainVotes[ii][jj] = false;
-                        this.testVotes[ii][jj] = false;
-                    } else if (trainAuthorIndices.contains(ii)) {
-                        this.trainVotes[ii][jj] = true;
-                        numTrainVotes++;
-                    } else {
-                        this.testVotes[ii][jj] = true;
-                        numTestVotes++;
-                    }
-                }
-            }
+            this.testAuthorIndices = view.getTestAuthorIndices();
+            this.testDebateIndices = view.getTestDocumentIndices();
+            this.testVotes = view.getTestVotes();
+            this.testBillIndices = null; // use all bills
 
             if (verbose) {
                 logln("--- --- train. # authors: " + trainAuthorIndices.size()
                         + ". # documents: " + trainDebateIndices.size()
-                        + ". # votes: " + numTrainVotes);
+                        + ". # votes: " + view.getNumTrainVotes());
                 logln("--- --- test. # authors: " + testAuthorIndices.size()
                         + ". # documents: " + testDebateIndices.size()
-                        + ". # votes: " + numTestVotes);
+                        + ". # votes: " + view.getNumTestVotes());
             }
         } catch (IOException | RuntimeException e) {
             e.printStackTrace();
@@ -0,0 +1,205 @@
+package experiment.percongress;
+
+import core.AbstractExperiment;
+import core.AbstractModel;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import util.IOUtils;
+import util.evaluation.Measurement;
+
+/**
+ * Grid of hyperparameter configurations of an experiment. The grid is
+ * specified as "name=value,value;name=value,...", e.g.,
+ * "K=10,25;alpha=0.1,1;sigma=2.5", and expands to every combination of the
+ * values. Each configuration has its own folder in the sweep folder, named
+ * after its values, where the model folders of the configuration are stored.
+ *
+ * @author vietan
+ */
+public class ParameterSweep {
+
+    public static final String SweepFolder = "sweep";
+    public static final String[] PHASES = {AbstractExperiment.TRAIN_PREFIX,
+        AbstractExperiment.DEV_PREFIX, AbstractExperiment.TEST_PREFIX};
+    private final ArrayList<String> names;
+    private final ArrayList<HashMap<String, String>> configurations;
+
+    /**
+     * @param grid Specification of the grid
+     */
+    public ParameterSweep(String grid) {
+        this.names = new ArrayList<>();
+        this.configurations = new ArrayList<>();
+        this.configurations.add(new LinkedHashMap<String, String>());
+        for (String param : grid.split(";")) {
+            if (param.trim().isEmpty()) {
+                continue;
+            }
+            String[] sparam = param.split("=");
+            if (sparam.length != 2 || sparam[0].trim().isEmpty()) {
+                throw new IllegalArgumentException("Invalid parameter " + param
+                        + " in grid " + grid);
+            }
+            String name = sparam[0].trim();
+            if (names.contains(name)) {
+                throw new IllegalArgumentException("Duplicate parameter " + name
+                        + " in grid " + grid);
+            }
+            names.add(name);
+
+            ArrayList<HashMap<String, String>> expanded = new ArrayList<>();
+            for (HashMap<String, String> config : configurations) {
+                for (String value : sparam[1].split(",")) {
+                    HashMap<String, String> newConfig = new LinkedHashMap<>(config);
+                    newConfig.put(name, value.trim());
+                    expanded.add(newConfig);
+                }
+            }
+            configurations.clear();
+            configurations.addAll(expanded);
+        }
+        if (names.isEmpty()) {
+            throw new IllegalArgumentException("Empty grid " + grid);
+        }
+    }
+
+    public ArrayList<String> getParameterNames() {
+        return this.names;
+    }
+
+    public int getNumConfigurations() {
+        return this.configurations.size();
+    }
+
+    /**
+     * Option values of a configuration.
+     *
+     * @param cc Configuration index
+     */
+    public HashMap<String, String> getConfiguration(int cc) {
+        return this.configurations.get(cc);
+    }
+
+    /**
+     * Name of a configuration, e.g., "K-10_alpha-0.1_sigma-2.5".
+     *
+     * @param cc Configuration index
+     */
+    public String getConfigurationName(int cc) {
+        StringBuilder str = new StringBuilder();
+        for (String name : names) {
+            if (str.length() > 0) {
+                str.append("_");
+            }
+            str.append(name).append("-").append(configurations.get(cc).get(name));
+        }
+        return str.toString();
+    }
+
+    /**
+     * Folder of a configuration.
+     *
+     * @param sweepFolder Sweep folder
+     * @param cc Configuration index
+     */
+    public File getConfigurationFolder(File sweepFolder, int cc) {
+        return new File(sweepFolder, getConfigurationName(cc));
+    }
+
+    /**
+     * Whether a configuration has already been run, i.e., one of its model
+     * folders has a result file.
+     *
+     * @param sweepFolder Sweep folder
+     * @param cc Configuration index
+     */
+    public boolean hasResults(File sweepFolder, int cc) {
+        return !getResultFiles(getConfigurationFolder(sweepFolder, cc)).isEmpty();
+    }
+
+    /**
+     * Result files of the model folders in a configuration folder, keyed by
+     * the model folder and the phase separated by a tab.
+     *
+     * @param configFolder Configuration folder
+     */
+    private static LinkedHashMap<String, File> getResultFiles(File configFolder) {
+        LinkedHashMap<String, File> resultFiles = new LinkedHashMap<>();
+        String[] modelFolders = configFolder.list();
+        if (modelFolders == null) {
+            return resultFiles;
+        }
+        Arrays.sort(modelFolders);
+        for (String modelFolder : modelFolders) {
+            for (String phase : PHASES) {
+                File resultFile = new File(new File(new File(configFolder, modelFolder),
+                        phase + AbstractExperiment.RESULT_FOLDER),
+                        AbstractExperiment.RESULT_FILE);
+                if (resultFile.exists()) {
+                    resultFiles.put(modelFolder + "\t" + phase, resultFile);
+                }
+            }
+        }
+        return resultFiles;
+    }
+
+    /**
+     * Output a table of the measurements of all configurations, one row per
+     * configuration, model and phase.
+     *
+     * @param sweepFolder Sweep folder
+     * @param summaryFile Output file
+     */
+    public void outputSummary(File sweepFolder, File summaryFile) {
+        ArrayList<String> rows = new ArrayList<>();
+        ArrayList<HashMap<String, Double>> rowValues = new ArrayList<>();
+        ArrayList<String> measureNames = new ArrayList<>();
+        for (int cc = 0; cc < getNumConfigurations(); cc++) {
+            LinkedHashMap<String, File> resultFiles = getResultFiles(
+                    getConfigurationFolder(sweepFolder, cc));
+            for (String key : resultFiles.keySet()) {
+                HashMap<String, Double> values = new HashMap<>();
+                for (Measurement m : AbstractModel.inputPerformances(resultFiles.get(key))) {
+                    if (!measureNames.contains(m.getName())) {
+                        measureNames.add(m.getName());
+                    }
+                    values.put(m.getName(), m.getValue());
+                }
+                StringBuilder row = new StringBuilder();
+                for (String name : names) {
+                    row.append(getConfiguration(cc).get(name)).append("\t");
+                }
+                rows.add(row.append(key).toString());
+                rowValues.add(values);
+            }
+        }
+
+        try {
+            BufferedWriter writer = IOUtils.getBufferedWriter(summaryFile);
+            for (String name : names) {
+                writer.write(name + "\t");
+            }
+            writer.write("Model\tPhase");
+            for (String measureName : measureNames) {
+                writer.write("\t" + measureName);
+            }
+            writer.write("\n");
+            for (int ii = 0; ii < rows.size(); ii++) {
+                writer.write(rows.get(ii));
+                for (String measureName : measureNames) {
+                    Double value = rowValues.get(ii).get(measureName);
+                    writer.write("\t" + (value == null ? "" : value));
+                }
+                writer.write("\n");
+            }
+            writer.close();
+        } catch (Exception e) {
+            e.printStackTrace();
+            throw new RuntimeException("Exception while outputing to " + summaryFile);
+        }
+    }
+}
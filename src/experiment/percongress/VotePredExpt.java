@@ -9,6 +9,7 @@ import data.Bill;
 import data.Congress;
 import data.CorpusProcessor;
 import data.Debate;
+import data.FoldView;
 import data.TextDataset;
 import data.Vote;
 import java.io.BufferedReader;
@@ -18,6 +19,7 @@ import java.io.IOException;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
@@ -58,12 +60,20 @@ import votepredictor.LexicalIdealPoint;
 import votepredictor.LexicalSNLDAIdealPoint;
 import votepredictor.SLDAMultIdealPoint;
 import votepredictor.textidealpoint.flat.HybridSLDAIdealPoint;
+import votepredictor.textidealpoint.AbstractTextIdealPoint;
 import votepredictor.textidealpoint.HybridSNHDPIdealPoint;
 import votepredictor.textidealpoint.HybridSNLDAIdealPoint;
 import votepredictor.textidealpoint.RecursiveSLDAIdealPoint;
+import votepredictor.textidealpoint.TokenStore;
 import votepredictor.textidealpoint.flat.LexicalSLDAIdealPoint;
 import votepredictor.textidealpoint.flat.HybridSLDAMultipleIdealPoint;
 import votepredictor.textidealpoint.hierarchy.HierMultSHDP;
+import votepredictor.textidealpoint.LDAInitCache;
+import votepredictor.textidealpoint.MultiChainRunner;
+import votepredictor.textidealpoint.RandomStreams;
+import votepredictor.textidealpoint.SnapshotCache;
+import votepredictor.textidealpoint.VotePredictionServer;
+import votepredictor.textidealpoint.VotePredictionService;
 import votepredictor.textidealpoint.hierarchy.HierMultiTIPM;
 import votepredictor.textidealpoint.hierarchy.MultTopicIdealPoint;
 
@@ -83,6 +93,10 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
     public static final String LexicalFile = "lexical.txt";
     public static final int AGAINST = 0;
     public static final int WITH = 1;
+    // options that are read once for all configurations of a sweep
+    public static final String[] SHARED_OPTIONS = {"burnIn", "maxIter",
+        "sampleLag", "report", "init", "paramOpt", "run-mode", "sweep",
+        "sweep-threads", "sweep-heap-mb", "seed", "snapshot-cache-mb", "init-cache"};
     protected String congressNum;
     protected String datasetFolder;
     protected String formatFolder;
@@ -123,6 +137,10 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
     protected HashMap<String, Integer> spEndorsementMapping;
 
     protected TextDataset voteDataset;
+    protected FoldView.Base foldBase;
+    // option values of a sweep configuration, overriding the command line
+    protected HashMap<String, String> optionOverrides;
+    protected File initFolder;
 
     public VotePredExpt() {
         congressYearMap = new HashMap<String, int[]>();
@@ -220,17 +238,140 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
             logln("Setting up ...");
         }
 
-        congressNum = CLIUtils.getStringArgument(cmd, "congress-num", "112");
-        datasetFolder = CLIUtils.getStringArgument(cmd, "data-folder",
+        congressNum = getStringArgument("congress-num", "112");
+        datasetFolder = getStringArgument("data-folder",
                 "/fs/clip-political/vietan/data/govtrack");
-        numTopWords = CLIUtils.getIntegerArgument(cmd, "num-top-words", 15);
-        numFolds = CLIUtils.getIntegerArgument(cmd, "num-folds", 5);
-        trToDevRatio = CLIUtils.getDoubleArgument(cmd, "tr2dev-ratio", 1.0);
-        teRatio = CLIUtils.getDoubleArgument(cmd, "te-ratio", 0.2);
-
-        processedDataFolder = cmd.getOptionValue("processed-data-folder");
-        experimentPath = CLIUtils.getStringArgument(cmd, "expt-folder", "vote-experiments");
-        modelFolder = CLIUtils.getStringArgument(cmd, "model-folder", "model");
+        numTopWords = getIntegerArgument("num-top-words", 15);
+        numFolds = getIntegerArgument("num-folds", 5);
+        trToDevRatio = getDoubleArgument("tr2dev-ratio", 1.0);
+        teRatio = getDoubleArgument("te-ratio", 0.2);
+
+        processedDataFolder = getOptionValue("processed-data-folder");
+        experimentPath = getStringArgument("expt-folder", "vote-experiments");
+        modelFolder = getStringArgument("model-folder", "model");
+    }
+
+    /**
+     * Share the settings and the loaded (read-only) data of another experiment
+     * so that this experiment can run a single fold without reloading data.
+     *
+     * @param other The experiment whose data have been loaded
+     */
+    protected void shareFormattedData(VotePredExpt other) {
+        this.congressNum = other.congressNum;
+        this.datasetFolder = other.datasetFolder;
+        this.formatFolder = other.formatFolder;
+        this.modelFolder = other.modelFolder;
+        this.numTopWords = other.numTopWords;
+        this.processedDataFolder = other.processedDataFolder;
+        this.numFolds = other.numFolds;
+        this.trToDevRatio = other.trToDevRatio;
+        this.teRatio = other.teRatio;
+        this.keyvotes = other.keyvotes;
+        this.voteMap = other.voteMap;
+        this.fwYears = other.fwYears;
+        this.debateVoteData = other.debateVoteData;
+        this.billData = other.billData;
+        this.votes = other.votes;
+        this.keyvoteBills = other.keyvoteBills;
+        this.policyAgendaIssues = other.policyAgendaIssues;
+        this.voteToBillMapping = other.voteToBillMapping;
+        this.teapartyCaucusMapping = other.teapartyCaucusMapping;
+        this.fwEndorsementMapping = other.fwEndorsementMapping;
+        this.tpExpressMapping = other.tpExpressMapping;
+        this.spEndorsementMapping = other.spEndorsementMapping;
+        this.voteDataset = other.voteDataset;
+        this.foldBase = other.getFoldBase();
+        this.initState = other.initState;
+        this.paramOpt = other.paramOpt;
+    }
+
+    /**
+     * Share the training, development and test data of another experiment.
+     *
+     * @param other The experiment whose data have been set up
+     */
+    protected void shareTrainingData(VotePredExpt other) {
+        this.trainAuthorIndices = other.trainAuthorIndices;
+        this.trainBillIndices = other.trainBillIndices;
+        this.trainDebateIndices = other.trainDebateIndices;
+        this.trainVotes = other.trainVotes;
+        this.devVotes = other.devVotes;
+        this.testAuthorIndices = other.testAuthorIndices;
+        this.testBillIndices = other.testBillIndices;
+        this.testDebateIndices = other.testDebateIndices;
+        this.testVotes = other.testVotes;
+    }
+
+    protected boolean hasOption(String name) {
+        if (optionOverrides != null && optionOverrides.containsKey(name)) {
+            return true;
+        }
+        return cmd.hasOption(name);
+    }
+
+    protected String getOptionValue(String name) {
+        if (optionOverrides != null && optionOverrides.containsKey(name)) {
+            return optionOverrides.get(name);
+        }
+        return cmd.getOptionValue(name);
+    }
+
+    protected String getStringArgument(String name, String defaultValue) {
+        if (hasOption(name)) {
+            return getOptionValue(name);
+        }
+        return defaultValue;
+    }
+
+    protected double getDoubleArgument(String name, double defaultValue) {
+        if (hasOption(name)) {
+            return Double.parseDouble(getOptionValue(name));
+        }
+        return defaultValue;
+    }
+
+    protected int getIntegerArgument(String name, int defaultValue) {
+        if (hasOption(name)) {
+            return Integer.parseInt(getOptionValue(name));
+        }
+        return defaultValue;
+    }
+
+    protected double[] getDoubleArrayArgument(String name, double[] defaultValue,
+            String separator) {
+        if (hasOption(name)) {
+            String[] svalues = getOptionValue(name).split(separator);
+            double[] values = new double[svalues.length];
+            for (int ii = 0; ii < svalues.length; ii++) {
+                values[ii] = Double.parseDouble(svalues[ii]);
+            }
+            return values;
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Dataset statistics shared by all fold views, computed once after the
+     * formatted data are loaded.
+     */
+    protected synchronized FoldView.Base getFoldBase() {
+        if (foldBase == null) {
+            foldBase = new FoldView.Base(votes, debateVoteData.getAuthors());
+        }
+        return foldBase;
+    }
+
+    /**
+     * Scheduler to run cross-validation folds concurrently, configured by
+     * the fold-threads and fold-heap-mb options.
+     */
+    protected FoldScheduler getFoldScheduler() {
+        FoldScheduler scheduler = new FoldScheduler(
+                getIntegerArgument("fold-threads", 1),
+                getIntegerArgument("fold-heap-mb", 0));
+        scheduler.setVerbose(verbose);
+        return scheduler;
     }
 
     @Override
@@ -240,7 +381,7 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
         }
         try {
             loadFreedomWorksData();
-            preprocessCongressionalData();
+            preprocessCongressionalData(false);
             adhocProcess();
         } catch (Exception e) {
             e.printStackTrace();
@@ -248,6 +389,23 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
         }
     }
 
+    /**
+     * Add new debates and votes to the formatted debate data without
+     * reprocessing the existing ones.
+     */
+    public void preprocessAppend() {
+        if (verbose) {
+            logln("Preprocessing new debates and votes ...");
+        }
+        try {
+            loadFreedomWorksData();
+            preprocessCongressionalData(true);
+        } catch (Exception e) {
+            e.printStackTrace();
+            throw new RuntimeException("Exception while preprocessing");
+        }
+    }
+
     public void preprocessVoteText() throws Exception {
         if (verbose) {
             logln("Preprocessing vote text ...");
@@ -282,7 +440,7 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
         if (verbose) {
             logln("--- Loading FreedomWorks data ...");
         }
-        String fwFolder = cmd.getOptionValue("fw-folder");
+        String fwFolder = getOptionValue("fw-folder");
         this.keyvotes = new HashMap<String, Vote>();
         this.voteMap = new HashMap<Integer, HashMap<String, FWVote>>();
         int[] years = congressYearMap.get(congressNum);
@@ -358,7 +516,7 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
 
         BufferedWriter writer = IOUtils.getBufferedWriter("/fs/clip-political/vietan/herbal/budget_control.txt");
 
-        String fwFolder = cmd.getOptionValue("fw-folder");
+        String fwFolder = getOptionValue("fw-folder");
         this.keyvotes = new HashMap<String, Vote>();
         this.voteMap = new HashMap<Integer, HashMap<String, FWVote>>();
         int[] years = congressYearMap.get(congressNum);
@@ -493,8 +651,11 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
 
     /**
      * Process text data.
+     *
+     * @param append Whether to append to the existing formatted debate data.
+     * Bill data are not reformatted in this case.
      */
-    private void preprocessCongressionalData() throws Exception {
+    private void preprocessCongressionalData(boolean append) throws Exception {
         if (verbose) {
             logln("--- Loading Congressional data ...");
         }
@@ -606,6 +767,12 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
             setVotePropertyValues(debateVoteData, vid);
         }
         debateVoteData.setHasSentences(true);
+        debateVoteData.setBinaryFormat(hasOption("binary-data"));
+        debateVoteData.setNumThreads(getIntegerArgument("format-threads", 1));
+        if (append) {
+            debateVoteData.append(processedDataFolder);
+            return;
+        }
         debateVoteData.format(processedDataFolder);
 
         // process bill data
@@ -644,7 +811,12 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
             logln("--- Loading debate data from " + processedDataFolder);
         }
         debateVoteData = new AuthorVoteTextDataset(congressNum, processedDataFolder);
+        debateVoteData.setBinaryFormat(hasOption("binary-data"));
         debateVoteData.loadFormattedData(processedDataFolder);
+        if (hasOption("binary-data") && !debateVoteData.hasBinaryData(processedDataFolder)) {
+            debateVoteData.outputBinaryData(new File(processedDataFolder,
+                    debateVoteData.getFormatFilename() + AuthorVoteTextDataset.binaryExt));
+        }
         votes = debateVoteData.getVotes();
         debateVoteData.prepareTopicCoherence(numTopWords);
 
@@ -762,28 +934,25 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
 
         loadFormattedData();
 
-        trainAuthorIndices = new ArrayList<>();
-        for (int aa = 0; aa < debateVoteData.getAuthorVocab().size(); aa++) {
-            trainAuthorIndices.add(aa);
-        }
+        setupTrainingData();
 
-        trainVotes = new boolean[votes.length][];
-        for (int aa = 0; aa < votes.length; aa++) {
-            trainVotes[aa] = new boolean[votes[aa].length];
-            for (int bb = 0; bb < votes[aa].length; bb++) {
-                if (votes[aa][bb] != Vote.MISSING) {
-                    trainVotes[aa][bb] = true;
-                }
-            }
-        }
+        File configureFolder = new File(new File(experimentPath, congressNum),
+                getConfiguredExptFolder());
+        IOUtils.createFolder(configureFolder);
 
-        trainDebateIndices = new ArrayList<>();
-        for (int dd = 0; dd < debateVoteData.getWords().length; dd++) {
-            int author = debateVoteData.getAuthors()[dd];
-            if (trainAuthorIndices.contains(author)) {
-                this.trainDebateIndices.add(dd);
-            }
-        }
+        this.runModel(configureFolder);
+    }
+
+    /**
+     * Set up the training data from the loaded data.
+     */
+    protected void setupTrainingData() {
+        BitSet allAuthors = new BitSet();
+        allAuthors.set(0, debateVoteData.getAuthorVocab().size());
+        FoldView view = new FoldView(getFoldBase(), allAuthors);
+        trainAuthorIndices = view.getTrainAuthorIndices();
+        trainVotes = view.getTrainVotes();
+        trainDebateIndices = view.getTrainDocumentIndices();
 
         if (verbose) {
             logln("--- # lawmakers: " + trainAuthorIndices.size()
@@ -791,12 +960,92 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
             logln("--- # debates: " + this.trainDebateIndices.size()
                     + " / " + debateVoteData.getWords().length);
         }
+    }
 
-        File configureFolder = new File(new File(experimentPath, congressNum),
+    /**
+     * Run the model with every configuration of a hyperparameter grid, given
+     * by the sweep option (e.g., "K=10,25;alpha=0.1,1"). The data are loaded
+     * once and shared by all configurations, which run concurrently (up to
+     * sweep-threads at a time). Each configuration writes to its own folder
+     * and is skipped if that folder already has results. Initial states are
+     * stored in a common folder so that configurations with the same number
+     * of topics and priors reuse them. A summary table of the results of all
+     * configurations is written to the sweep folder.
+     */
+    public void sweep() {
+        if (verbose) {
+            logln("Sweeping ...");
+        }
+        final ParameterSweep grid = new ParameterSweep(getStringArgument("sweep", ""));
+        for (String name : grid.getParameterNames()) {
+            if (!options.hasOption(name)) {
+                throw new RuntimeException("Option " + name + " not found");
+            }
+            if (Arrays.asList(SHARED_OPTIONS).contains(name)) {
+                throw new RuntimeException("Option " + name
+                        + " is shared by all configurations and cannot be swept");
+            }
+        }
+
+        setupSampling();
+
+        loadFormattedData();
+
+        setupTrainingData();
+
+        final File configureFolder = new File(new File(experimentPath, congressNum),
                 getConfiguredExptFolder());
-        IOUtils.createFolder(configureFolder);
+        final File sweepFolder = new File(configureFolder, ParameterSweep.SweepFolder);
+        IOUtils.createFolder(sweepFolder);
+
+        ArrayList<Integer> configs = new ArrayList<>();
+        for (int cc = 0; cc < grid.getNumConfigurations(); cc++) {
+            if (grid.hasResults(sweepFolder, cc)) {
+                if (verbose) {
+                    logln("--- Skipping configuration " + grid.getConfigurationName(cc)
+                            + ". Results exist.");
+                }
+            } else {
+                configs.add(cc);
+            }
+        }
 
-        this.runModel(configureFolder);
+        FoldScheduler scheduler = new FoldScheduler(
+                getIntegerArgument("sweep-threads", 1),
+                getIntegerArgument("sweep-heap-mb", 0));
+        scheduler.setVerbose(verbose);
+        scheduler.setTaskName("configuration");
+        final VotePredExpt loadedExpt = this;
+        scheduler.run(configs, new FoldScheduler.FoldTask() {
+            @Override
+            public void runFold(int cc) {
+                if (verbose) {
+                    logln("--- Running configuration " + grid.getConfigurationName(cc));
+                }
+                VotePredExpt configExpt = createSweepExperiment();
+                configExpt.shareFormattedData(loadedExpt);
+                configExpt.shareTrainingData(loadedExpt);
+                configExpt.optionOverrides = grid.getConfiguration(cc);
+                configExpt.initFolder = configureFolder;
+                File configFolder = grid.getConfigurationFolder(sweepFolder, cc);
+                IOUtils.createFolder(configFolder);
+                configExpt.runModel(configFolder);
+            }
+        });
+
+        File summaryFile = new File(sweepFolder, SUMMARY_FILE);
+        if (verbose) {
+            logln("--- Summarizing " + grid.getNumConfigurations()
+                    + " configurations to " + summaryFile);
+        }
+        grid.outputSummary(sweepFolder, summaryFile);
+    }
+
+    /**
+     * New experiment to run a sweep configuration.
+     */
+    protected VotePredExpt createSweepExperiment() {
+        return new VotePredExpt();
     }
 
     protected int[] concatArray(int[] a, int[] b) {
@@ -828,7 +1077,7 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
             trainVoteTopics[bb] = billData.getTopics()[idx];
         }
 
-        String model = CLIUtils.getStringArgument(cmd, "model", "random");
+        String model = getStringArgument("model", "random");
         switch (model) {
             case "random":
                 runRandom(outputFolder);
@@ -1054,7 +1303,7 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
         RandomPredictor randPred = new RandomPredictor("random");
         File predFolder = new File(outputFolder, randPred.getName());
 
-        if (cmd.hasOption("testvote") || cmd.hasOption("testauthor")) {
+        if (hasOption("testvote") || hasOption("testauthor")) {
             SparseVector[] predictions = randPred.test(testVotes);
             File teResultFolder = new File(predFolder, TEST_PREFIX + RESULT_FOLDER);
             IOUtils.createFolder(teResultFolder);
@@ -1064,23 +1313,23 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
     }
 
     protected void runLDADebates(File outputFolder) {
-        double alpha = CLIUtils.getDoubleArgument(cmd, "alpha", 0.1);
-        double beta = CLIUtils.getDoubleArgument(cmd, "beta", 0.1);
+        double alpha = getDoubleArgument("alpha", 0.1);
+        double beta = getDoubleArgument("beta", 0.1);
         int V = debateVoteData.getWordVocab().size();
 
         int K;
         double[][] issuePhis;
-        if (cmd.hasOption("K")) {
+        if (hasOption("K")) {
             issuePhis = null;
-            K = Integer.parseInt(cmd.getOptionValue("K"));
+            K = Integer.parseInt(getOptionValue("K"));
         } else {
             issuePhis = estimateIssues();
             K = issuePhis.length;
         }
 
         LDA sampler = new LDA();
-        sampler.setVerbose(cmd.hasOption("v"));
-        sampler.setDebug(cmd.hasOption("d"));
+        sampler.setVerbose(hasOption("v"));
+        sampler.setDebug(hasOption("d"));
         sampler.setLog(true);
         sampler.setReport(true);
         sampler.setWordVocab(debateVoteData.getWordVocab());
@@ -1092,7 +1341,7 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
         File samplerFolder = new File(sampler.getSamplerFolderPath());
         IOUtils.createFolder(samplerFolder);
 
-        if (cmd.hasOption("train")) {
+        if (hasOption("train")) {
             sampler.train(debateVoteData.getWords(), null);
             sampler.initialize(null, issuePhis);
             sampler.iterate();
@@ -1146,12 +1395,12 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
             System.out.println("\n");
         }
 
-        double alpha = CLIUtils.getDoubleArgument(cmd, "alpha", 0.1);
-        double beta = CLIUtils.getDoubleArgument(cmd, "beta", 0.1);
+        double alpha = getDoubleArgument("alpha", 0.1);
+        double beta = getDoubleArgument("beta", 0.1);
 
         LDA sampler = new LDA();
-        sampler.setVerbose(cmd.hasOption("v"));
-        sampler.setDebug(cmd.hasOption("d"));
+        sampler.setVerbose(hasOption("v"));
+        sampler.setDebug(hasOption("d"));
         sampler.setLog(true);
         sampler.setReport(true);
         sampler.setWordVocab(debateVoteData.getWordVocab());
@@ -1163,7 +1412,7 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
         File samplerFolder = new File(sampler.getSamplerFolderPath());
         IOUtils.createFolder(samplerFolder);
 
-        if (cmd.hasOption("train")) {
+        if (hasOption("train")) {
             sampler.train(debateVoteData.getWords(), null);
             sampler.initialize(null, priors);
             sampler.iterate();
@@ -1171,18 +1420,76 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
         }
     }
 
+    /**
+     * Use block-Newton updates or Polya-Gamma Gibbs sweeps of the ideal points,
+     * background evaluation, parallel LDA initialization and adaptive topic
+     * truncation if requested, and the shared initialization folder in a
+     * sweep.
+     *
+     * @param sampler The sampler
+     */
+    private void setSamplerOptions(AbstractTextIdealPoint sampler) {
+        if (hasOption("newton")) {
+            sampler.setNewtonUXY(getDoubleArgument("newton", 1E-6),
+                    getIntegerArgument("newton-iters", 20));
+        } else if (hasOption("polya-gamma")) {
+            sampler.setPolyaGammaUXY(getIntegerArgument("polya-gamma", 1));
+        }
+        sampler.setBackgroundEvaluation(hasOption("background-eval"));
+        sampler.setLDAInitializationThreads(getIntegerArgument("init-threads", 1));
+        if (hasOption("truncate")) {
+            sampler.setAdaptiveTruncation(getDoubleArgument("truncate", 0.001),
+                    getIntegerArgument("truncate-checks", 2));
+        }
+        if (initFolder != null) {
+            sampler.setInitializationFolder(initFolder.getAbsolutePath());
+        }
+    }
+
+    /**
+     * Keep the final state of a trained sampler in memory and serve vote
+     * predictions of new authors from their text over local HTTP until the
+     * process is stopped.
+     *
+     * @param sampler The configured sampler
+     */
+    private void serve(AbstractTextIdealPoint sampler) {
+        int port = getIntegerArgument("serve", 8080);
+        int numThreads = getIntegerArgument("serve-threads",
+                Runtime.getRuntime().availableProcessors());
+        VotePredictionService service = new VotePredictionService();
+        service.setVerbose(verbose);
+        service.setFoldInIterations(
+                getIntegerArgument("serve-iters",
+                        VotePredictionService.DEFAULT_NUM_ITERS),
+                getIntegerArgument("serve-burn-in",
+                        VotePredictionService.DEFAULT_BURN_IN));
+        service.addModel(getStringArgument("model", "random"),
+                sampler, TextDataset.createCorpusProcessor(),
+                sampler.getFinalStateFile(), trainBillIndices, numThreads);
+        try {
+            new VotePredictionServer(service).start(port, numThreads);
+        } catch (IOException e) {
+            e.printStackTrace();
+            throw new RuntimeException("Exception while serving on port " + port);
+        }
+    }
+
     protected void runIdealPoint(File outputFolder) {
-        double alpha = CLIUtils.getDoubleArgument(cmd, "alpha", 5.0);
-        double eta = CLIUtils.getDoubleArgument(cmd, "eta", 0.01);
+        double alpha = getDoubleArgument("alpha", 5.0);
+        double eta = getDoubleArgument("eta", 0.01);
 
         IdealPoint pred = new IdealPoint("ideal-point");
         pred.configure(alpha, eta, max_iters);
+        if (hasOption("newton")) {
+            pred.setNewton(getDoubleArgument("newton", 1E-6));
+        }
         pred.setAuthorVocab(debateVoteData.getAuthorVocab());
         pred.setVoteVocab(debateVoteData.getVoteVocab());
 
         File predFolder = new File(outputFolder, pred.getName());
 
-        if (cmd.hasOption("train")) {
+        if (hasOption("train")) {
             pred.setTrain(votes, trainAuthorIndices, trainBillIndices, trainVotes);
             pred.train();
             IOUtils.createFolder(predFolder);
@@ -1199,7 +1506,7 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
                     debateVoteData.getVoteTable());
         }
 
-        if (cmd.hasOption("testvote")) {
+        if (hasOption("testvote")) {
             pred.input(new File(predFolder, MODEL_FILE));
 
             SparseVector[] predictions = pred.test(testVotes);
@@ -1211,19 +1518,22 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
     }
 
     protected void runBayesianIdealPoint(File outputFolder) {
-        double alpha = CLIUtils.getDoubleArgument(cmd, "alpha", 5.0);
-        double eta = CLIUtils.getDoubleArgument(cmd, "eta", 0.01);
-        double mu = CLIUtils.getDoubleArgument(cmd, "mu", 0.0);
-        double sigma = CLIUtils.getDoubleArgument(cmd, "sigma", 2.5);
+        double alpha = getDoubleArgument("alpha", 5.0);
+        double eta = getDoubleArgument("eta", 0.01);
+        double mu = getDoubleArgument("mu", 0.0);
+        double sigma = getDoubleArgument("sigma", 2.5);
 
         BayesianIdealPoint pred = new BayesianIdealPoint("bayesian-ideal-point");
         pred.configure(alpha, eta, max_iters, mu, sigma);
+        if (hasOption("newton")) {
+            pred.setNewton(getDoubleArgument("newton", 1E-6));
+        }
         pred.setAuthorVocab(debateVoteData.getAuthorVocab());
         pred.setVoteVocab(debateVoteData.getVoteVocab());
 
         File predFolder = new File(outputFolder, pred.getName());
 
-        if (cmd.hasOption("train")) {
+        if (hasOption("train")) {
             pred.setTrain(votes, trainAuthorIndices, trainBillIndices, trainVotes);
             pred.train();
             IOUtils.createFolder(predFolder);
@@ -1248,7 +1558,7 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
 //                    AbstractVotePredictor.evaluateAll(votes, trainVotes, predictions));
         }
 
-        if (cmd.hasOption("testvote")) {
+        if (hasOption("testvote")) {
             pred.input(new File(predFolder, MODEL_FILE));
             SparseVector[] predictions = pred.test(testVotes);
             File teResultFolder = new File(predFolder, TEST_PREFIX + RESULT_FOLDER);
@@ -1257,7 +1567,7 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
                     AbstractVotePredictor.evaluateAll(votes, testVotes, predictions));
         }
 
-        if (cmd.hasOption("dev")) {
+        if (hasOption("dev")) {
             if (verbose) {
                 logln("Tuning " + pred.getBasename());
             }
@@ -1324,11 +1634,11 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
     }
 
     protected void runBayesianMultIdealPoint(File outputFolder) {
-        double alpha = CLIUtils.getDoubleArgument(cmd, "alpha", 5.0);
-        double eta = CLIUtils.getDoubleArgument(cmd, "eta", 0.01);
-        double mu = CLIUtils.getDoubleArgument(cmd, "mu", 0.0);
-        double sigma = CLIUtils.getDoubleArgument(cmd, "sigma", 2.5);
-        int K = CLIUtils.getIntegerArgument(cmd, "K", 10);
+        double alpha = getDoubleArgument("alpha", 5.0);
+        double eta = getDoubleArgument("eta", 0.01);
+        double mu = getDoubleArgument("mu", 0.0);
+        double sigma = getDoubleArgument("sigma", 2.5);
+        int K = getIntegerArgument("K", 10);
 
         BayesianMultIdealPoint pred = new BayesianMultIdealPoint("bayesian-mult-ideal-point");
         pred.configure(alpha, eta, max_iters, mu, sigma, K);
@@ -1336,7 +1646,7 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
         pred.setVoteVocab(debateVoteData.getVoteVocab());
 
         File predFolder = new File(outputFolder, pred.getName());
-        if (cmd.hasOption("train")) {
+        if (hasOption("train")) {
             pred.setTrain(votes, trainAuthorIndices, trainBillIndices, trainVotes);
             pred.train();
             IOUtils.createFolder(predFolder);
@@ -1350,7 +1660,7 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
                     AbstractVotePredictor.evaluateAll(votes, trainVotes, predictions));
         }
 
-        if (cmd.hasOption("testvote")) {
+        if (hasOption("testvote")) {
             pred.input(new File(predFolder, MODEL_FILE));
             SparseVector[] predictions = pred.test(testVotes);
             File teResultFolder = new File(predFolder, TEST_PREFIX + RESULT_FOLDER);
@@ -1361,9 +1671,9 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
     }
 
     protected void runBayesianMultIdealPointOWLQN(File outputFolder) {
-        double l1 = CLIUtils.getDoubleArgument(cmd, "l1", 0.0);
-        double l2 = CLIUtils.getDoubleArgument(cmd, "l2", 2.5);
-        int K = CLIUtils.getIntegerArgument(cmd, "K", 10);
+        double l1 = getDoubleArgument("l1", 0.0);
+        double l2 = getDoubleArgument("l2", 2.5);
+        int K = getIntegerArgument("K", 10);
 
         BayesianMultIdealPointOWLQN pred = new BayesianMultIdealPointOWLQN("bayesian-mult-ideal-point-owlqn");
         pred.configure(max_iters, l1, l2, K);
@@ -1371,14 +1681,14 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
         pred.setVoteVocab(debateVoteData.getVoteVocab());
 
         File predFolder = new File(outputFolder, pred.getName());
-        if (cmd.hasOption("train")) {
+        if (hasOption("train")) {
             pred.setTrain(votes, trainAuthorIndices, trainBillIndices, trainVotes);
             pred.train();
             IOUtils.createFolder(predFolder);
             pred.output(new File(predFolder, MODEL_FILE));
         }
 
-        if (cmd.hasOption("testvote")) {
+        if (hasOption("testvote")) {
             pred.input(new File(predFolder, MODEL_FILE));
             SparseVector[] predictions = pred.test(testVotes);
             File teResultFolder = new File(predFolder, TEST_PREFIX + RESULT_FOLDER);
@@ -1389,21 +1699,21 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
     }
 
     protected void runLexicalIdealPoint(File outputFolder) {
-        double rho = CLIUtils.getDoubleArgument(cmd, "rho", 0.1);
-        double sigma = CLIUtils.getDoubleArgument(cmd, "sigma", 0.1);
-        double lambda = CLIUtils.getDoubleArgument(cmd, "lambda", 2.5);
-        double l1 = CLIUtils.getDoubleArgument(cmd, "l1", 0.0);
-        double l2 = CLIUtils.getDoubleArgument(cmd, "l2", 0.0);
+        double rho = getDoubleArgument("rho", 0.1);
+        double sigma = getDoubleArgument("sigma", 0.1);
+        double lambda = getDoubleArgument("lambda", 2.5);
+        double l1 = getDoubleArgument("l1", 0.0);
+        double l2 = getDoubleArgument("l2", 0.0);
 
         LexicalIdealPoint lip = new LexicalIdealPoint();
-        if (cmd.hasOption("lambda")) {
+        if (hasOption("lambda")) {
             lip.configure(outputFolder.getAbsolutePath(),
                     debateVoteData.getWordVocab().size(), rho, sigma, lambda,
-                    max_iters, cmd.hasOption("tfidf"));
+                    max_iters, hasOption("tfidf"));
         } else {
             lip.configure(outputFolder.getAbsolutePath(),
                     debateVoteData.getWordVocab().size(), rho, sigma, l1, l2,
-                    max_iters, cmd.hasOption("tfidf"));
+                    max_iters, hasOption("tfidf"));
         }
         File samplerFolder = new File(outputFolder, lip.getSamplerFolder());
         IOUtils.createFolder(samplerFolder);
@@ -1411,7 +1721,7 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
         File trResultFolder = new File(samplerFolder, TRAIN_PREFIX + RESULT_FOLDER);
         File teResultFolder = new File(samplerFolder, TEST_PREFIX + RESULT_FOLDER);
 
-        if (cmd.hasOption("train")) {
+        if (hasOption("train")) {
             IOUtils.createFolder(trResultFolder);
 
             lip.setupData(trainDebateIndices,
@@ -1446,7 +1756,7 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
                     debateVoteData.getVoteTable());
         }
 
-        if (cmd.hasOption("testvote")) {
+        if (hasOption("testvote")) {
             IOUtils.createFolder(teResultFolder);
 
             lip.setupData(testDebateIndices,
@@ -1464,7 +1774,7 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
                     AbstractVotePredictor.evaluateAll(votes, testVotes, predictions));
         }
 
-        if (cmd.hasOption("testauthor")) {
+        if (hasOption("testauthor")) {
             IOUtils.createFolder(teResultFolder);
 
             lip.setupData(testDebateIndices,
@@ -1490,11 +1800,11 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
                     debateVoteData.getAuthorTable());
         }
 
-        if (cmd.hasOption("analyzeerror")) {
+        if (hasOption("analyzeerror")) {
             analyzeError(samplerFolder);
         }
 
-        if (cmd.hasOption("dev")) {
+        if (hasOption("dev")) {
             if (verbose) {
                 logln("Tuning " + lip.getBasename());
             }
@@ -1523,7 +1833,7 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
                                 lip = new LexicalIdealPoint();
                                 lip.configure(outputFolder.getAbsolutePath(),
                                         debateVoteData.getWordVocab().size(), r, s, el1, el2,
-                                        max_iters, cmd.hasOption("tfidf"));
+                                        max_iters, hasOption("tfidf"));
                                 samplerFolder = new File(outputFolder, lip.getSamplerFolder());
                                 teResultFolder = new File(samplerFolder, TEST_PREFIX + RESULT_FOLDER);
                                 IOUtils.createFolder(teResultFolder);
@@ -1586,23 +1896,87 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
         }
     }
 
+    /**
+     * Run multiple chains of SLDAIdealPoint concurrently. All chains share the
+     * training data and configuration of the given sampler, which is used as
+     * chain 0.
+     *
+     * @param sampler The configured sampler with its data set up
+     * @param issuePhis Seeded topics
+     * @param numChains Number of chains
+     * @param samplerFolder Folder to output convergence diagnostics
+     */
+    protected void runSLDAIdealPointChains(final SLDAIdealPoint sampler,
+            final double[][] issuePhis, int numChains, File samplerFolder) {
+        MultiChainRunner<SLDAIdealPoint> runner = new MultiChainRunner<>(numChains,
+                new MultiChainRunner.ChainTask<SLDAIdealPoint>() {
+                    @Override
+                    public SLDAIdealPoint createChain(int chain) {
+                        if (chain == 0) {
+                            return sampler;
+                        }
+                        SLDAIdealPoint chainSampler = new SLDAIdealPoint();
+                        chainSampler.setVerbose(verbose);
+                        chainSampler.setDebug(debug);
+                        chainSampler.setLog(true);
+                        chainSampler.setReport(true);
+                        chainSampler.setWordVocab(debateVoteData.getWordVocab());
+                        chainSampler.setAuthorVocab(debateVoteData.getAuthorVocab());
+                        chainSampler.setVoteVocab(debateVoteData.getVoteVocab());
+                        chainSampler.configure(sampler);
+                        chainSampler.setSweepOrder(TokenStore.SweepOrder.valueOf(
+                                getStringArgument("sweep-order", "document").toUpperCase()));
+                        chainSampler.setIncrementalLogLikelihood(hasOption("incremental-llh"));
+                        if (hasOption("svi-batch")) {
+                            chainSampler.setStochasticVariational(
+                                    getIntegerArgument("svi-batch", 256),
+                                    getDoubleArgument("svi-tau", 64.0),
+                                    getDoubleArgument("svi-kappa", 0.7),
+                                    getIntegerArgument("svi-local-iters", 5));
+                        }
+                        setSamplerOptions(chainSampler);
+                        chainSampler.setupData(trainDebateIndices,
+                                debateVoteData.getWords(),
+                                debateVoteData.getAuthors(),
+                                votes,
+                                trainAuthorIndices,
+                                trainBillIndices,
+                                trainVotes);
+                        return chainSampler;
+                    }
+
+                    @Override
+                    public void initializeChain(SLDAIdealPoint chainSampler) {
+                        chainSampler.initialize(issuePhis);
+                    }
+
+                    @Override
+                    public void iterateChain(SLDAIdealPoint chainSampler) {
+                        chainSampler.iterate();
+                    }
+                });
+        runner.setVerbose(verbose);
+        runner.run();
+        runner.outputDiagnostics(new File(samplerFolder, MultiChainRunner.DiagnosticFile));
+    }
+
     protected void runSLDAIdealPoint(File outputFolder) {
         int K;
         double[][] issuePhis;
-        if (cmd.hasOption("K")) {
+        if (hasOption("K")) {
             issuePhis = null;
-            K = Integer.parseInt(cmd.getOptionValue("K"));
+            K = Integer.parseInt(getOptionValue("K"));
         } else {
             issuePhis = estimateIssues();
             K = issuePhis.length;
         }
-        double alpha = CLIUtils.getDoubleArgument(cmd, "alpha", 0.1);
-        double beta = CLIUtils.getDoubleArgument(cmd, "beta", 0.1);
-        double mu = CLIUtils.getDoubleArgument(cmd, "mu", 0.0);
-        double sigma = CLIUtils.getDoubleArgument(cmd, "sigma", 10);
-        double rate_alpha = CLIUtils.getDoubleArgument(cmd, "rate-alpha", 1);
-        double rate_eta = CLIUtils.getDoubleArgument(cmd, "rate-eta", 0.01);
-        double rho = CLIUtils.getDoubleArgument(cmd, "rho", 1.0);
+        double alpha = getDoubleArgument("alpha", 0.1);
+        double beta = getDoubleArgument("beta", 0.1);
+        double mu = getDoubleArgument("mu", 0.0);
+        double sigma = getDoubleArgument("sigma", 10);
+        double rate_alpha = getDoubleArgument("rate-alpha", 1);
+        double rate_eta = getDoubleArgument("rate-eta", 0.01);
+        double rho = getDoubleArgument("rho", 1.0);
 
         SLDAIdealPoint sampler = new SLDAIdealPoint();
         sampler.setVerbose(verbose);
@@ -1618,10 +1992,21 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
                 alpha, beta, rho, mu, sigma, rate_alpha, rate_eta,
                 initState, paramOpt,
                 burn_in, max_iters, sample_lag, report_interval);
+        sampler.setSweepOrder(TokenStore.SweepOrder.valueOf(
+                getStringArgument("sweep-order", "document").toUpperCase()));
+        sampler.setIncrementalLogLikelihood(hasOption("incremental-llh"));
+        if (hasOption("svi-batch")) {
+            sampler.setStochasticVariational(
+                    getIntegerArgument("svi-batch", 256),
+                    getDoubleArgument("svi-tau", 64.0),
+                    getDoubleArgument("svi-kappa", 0.7),
+                    getIntegerArgument("svi-local-iters", 5));
+        }
+        setSamplerOptions(sampler);
         File samplerFolder = new File(outputFolder, sampler.getSamplerFolder());
         IOUtils.createFolder(samplerFolder);
 
-        if (cmd.hasOption("train")) {
+        if (hasOption("train")) {
             sampler.setupData(trainDebateIndices,
                     debateVoteData.getWords(),
                     debateVoteData.getAuthors(),
@@ -1629,8 +2014,13 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
                     trainAuthorIndices,
                     trainBillIndices,
                     trainVotes);
-            sampler.initialize(issuePhis);
-            sampler.iterate();
+            int numChains = getIntegerArgument("num-chains", 1);
+            if (numChains > 1) {
+                runSLDAIdealPointChains(sampler, issuePhis, numChains, samplerFolder);
+            } else {
+                sampler.initialize(issuePhis);
+                sampler.iterate();
+            }
             if (issuePhis == null) {
                 sampler.outputTopicTopWords(new File(samplerFolder, TopWordFile),
                         numTopWords);
@@ -1660,7 +2050,7 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
                     AbstractVotePredictor.evaluateAll(votes, trainVotes, predictions));
         }
 
-        if (cmd.hasOption("testvote")) { // average over multiple test chains
+        if (hasOption("testvote")) { // average over multiple test chains
             sampler.setupData(testDebateIndices,
                     debateVoteData.getWords(),
                     debateVoteData.getAuthors(),
@@ -1679,12 +2069,12 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
                     AbstractVotePredictor.evaluateAll(votes, testVotes, predictions));
         }
 
-        if (cmd.hasOption("testauthor")) {
+        if (hasOption("testauthor")) {
             File teResultFolder = new File(samplerFolder, TEST_PREFIX + RESULT_FOLDER);
             IOUtils.createFolder(teResultFolder);
 
             SparseVector[] predictions;
-            if (cmd.hasOption("parallel")) {
+            if (hasOption("parallel")) {
                 predictions = SLDAIdealPoint.parallelTest(testDebateIndices,
                         debateVoteData.getWords(),
                         debateVoteData.getAuthors(),
@@ -1715,30 +2105,34 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
                     AbstractVotePredictor.evaluateAll(votes, testVotes, predictions));
         }
 
-        if (cmd.hasOption("analyzeerror")) {
+        if (hasOption("analyzeerror")) {
             analyzeError(samplerFolder);
         }
+
+        if (hasOption("serve")) {
+            serve(sampler);
+        }
     }
 
 //    protected void runHierSingleTIPM(File outputFolder) {
 //        int K;
 //        double[][] issuePhis;
-//        if (cmd.hasOption("K")) {
+//        if (hasOption("K")) {
 //            issuePhis = null;
-//            K = Integer.parseInt(cmd.getOptionValue("K"));
+//            K = Integer.parseInt(getOptionValue("K"));
 //        } else {
 //            issuePhis = estimateIssues();
 //            K = issuePhis.length;
 //        }
-//        int J = CLIUtils.getIntegerArgument(cmd, "J", 5);
-//        double topicAlpha = CLIUtils.getDoubleArgument(cmd, "alpha", 0.1);
-//        double topicBeta = CLIUtils.getDoubleArgument(cmd, "beta", 0.1);
+//        int J = getIntegerArgument("J", 5);
+//        double topicAlpha = getDoubleArgument("alpha", 0.1);
+//        double topicBeta = getDoubleArgument("beta", 0.1);
 //        double frameAlpha = topicAlpha;
 //        double frameBeta = topicAlpha;
 //
-//        double rho = CLIUtils.getDoubleArgument(cmd, "rho", 0.1);
-//        double sigma = CLIUtils.getDoubleArgument(cmd, "sigma", 0.5);
-//        double gamma = CLIUtils.getDoubleArgument(cmd, "gamma", 2.5);
+//        double rho = getDoubleArgument("rho", 0.1);
+//        double sigma = getDoubleArgument("sigma", 0.5);
+//        double gamma = getDoubleArgument("gamma", 2.5);
 //
 //        HierSingleTIPM sampler = new HierSingleTIPM();
 //        sampler.setVerbose(verbose);
@@ -1758,7 +2152,7 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
 //        File samplerFolder = new File(outputFolder, sampler.getSamplerFolder());
 //        IOUtils.createFolder(samplerFolder);
 //
-//        if (cmd.hasOption("train")) {
+//        if (hasOption("train")) {
 //            sampler.setupData(trainDebateIndices,
 //                    debateVoteData.getWords(),
 //                    debateVoteData.getAuthors(),
@@ -1829,7 +2223,7 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
 //                    AbstractVotePredictor.evaluateAll(votes, trainVotes, predictions));
 //        }
 //
-//        if (cmd.hasOption("analyze")) {
+//        if (hasOption("analyze")) {
 //            sampler.setAuthorVocab(debateVoteData.getAuthorVocab());
 //            sampler.setupData(trainDebateIndices,
 //                    debateVoteData.getWords(),
@@ -1890,24 +2284,24 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
         createBillPriors();
         int K;
         double[][] issuePhis;
-        if (cmd.hasOption("K")) {
+        if (hasOption("K")) {
             issuePhis = null;
-            K = Integer.parseInt(cmd.getOptionValue("K"));
+            K = Integer.parseInt(getOptionValue("K"));
         } else {
             issuePhis = estimateIssues();
             K = issuePhis.length;
         }
-        int J = CLIUtils.getIntegerArgument(cmd, "J", 5);
-        double topicAlpha = CLIUtils.getDoubleArgument(cmd, "alpha", 0.1);
-        double topicBeta = CLIUtils.getDoubleArgument(cmd, "beta", 0.1);
+        int J = getIntegerArgument("J", 5);
+        double topicAlpha = getDoubleArgument("alpha", 0.1);
+        double topicBeta = getDoubleArgument("beta", 0.1);
         double frameAlpha = topicAlpha;
         double frameBeta = topicAlpha;
 
-        double rho = CLIUtils.getDoubleArgument(cmd, "rho", 0.1);
-        double sigma = CLIUtils.getDoubleArgument(cmd, "sigma", 0.5);
-        double gamma = CLIUtils.getDoubleArgument(cmd, "gamma", 2.5);
-        double lambda = CLIUtils.getDoubleArgument(cmd, "lambda", 0.75);
-        double epsilon = CLIUtils.getDoubleArgument(cmd, "epsilon", 0.001);
+        double rho = getDoubleArgument("rho", 0.1);
+        double sigma = getDoubleArgument("sigma", 0.5);
+        double gamma = getDoubleArgument("gamma", 2.5);
+        double lambda = getDoubleArgument("lambda", 0.75);
+        double epsilon = getDoubleArgument("epsilon", 0.001);
 
         HierMultiTIPM sampler = new HierMultiTIPM();
         sampler.setVerbose(verbose);
@@ -1927,7 +2321,7 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
         File samplerFolder = new File(outputFolder, sampler.getSamplerFolder());
         IOUtils.createFolder(samplerFolder);
 
-        if (cmd.hasOption("train")) {
+        if (hasOption("train")) {
             sampler.setupData(trainDebateIndices,
                     debateVoteData.getWords(),
                     debateVoteData.getAuthors(),
@@ -2011,7 +2405,7 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
                     AbstractVotePredictor.evaluateAll(votes, trainVotes, predictions));
         }
 
-        if (cmd.hasOption("analyze")) {
+        if (hasOption("analyze")) {
             sampler.setAuthorVocab(debateVoteData.getAuthorVocab());
             sampler.setupData(trainDebateIndices,
                     debateVoteData.getWords(),
@@ -2036,12 +2430,12 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
                     debateVoteData.getRawSentences());
         }
 
-        if (cmd.hasOption("testauthor")) {
+        if (hasOption("testauthor")) {
             File teResultFolder = new File(samplerFolder, TEST_PREFIX + RESULT_FOLDER);
             IOUtils.createFolder(teResultFolder);
 
             SparseVector[] predictions;
-            if (cmd.hasOption("parallel")) {
+            if (hasOption("parallel")) {
                 predictions = HierMultiTIPM.parallelTest(testDebateIndices,
                         debateVoteData.getWords(),
                         debateVoteData.getAuthors(),
@@ -2071,10 +2465,10 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
         double[][] billTopicPriors = createBillPriors();
         int K = billTopicPriors.length;
 
-        double alpha = CLIUtils.getDoubleArgument(cmd, "alpha", 5.0);
-        double eta = CLIUtils.getDoubleArgument(cmd, "eta", 0.01);
-        double mu = CLIUtils.getDoubleArgument(cmd, "mu", 0.0);
-        double sigma = CLIUtils.getDoubleArgument(cmd, "sigma", 2.5);
+        double alpha = getDoubleArgument("alpha", 5.0);
+        double eta = getDoubleArgument("eta", 0.01);
+        double mu = getDoubleArgument("mu", 0.0);
+        double sigma = getDoubleArgument("sigma", 2.5);
 
         MultTopicIdealPoint pred = new MultTopicIdealPoint("topic-ideal-point");
         pred.configure(alpha, eta, max_iters, mu, sigma);
@@ -2083,7 +2477,7 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
 
         File predFolder = new File(outputFolder, pred.getName());
 
-        if (cmd.hasOption("train")) {
+        if (hasOption("train")) {
             pred.setTrain(votes, trainAuthorIndices, trainBillIndices, trainVotes);
             pred.train();
             IOUtils.createFolder(predFolder);
@@ -2110,32 +2504,91 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
 
     }
 
+    /**
+     * Run multiple chains of HierMultSHDP concurrently. All chains share the
+     * training data and configuration of the given sampler, which is used as
+     * chain 0. Only the log likelihood is diagnosed since the sampler keeps
+     * the ideal points fixed.
+     *
+     * @param sampler The configured sampler with its data and bill priors set
+     * up
+     * @param billTopicPriors Topic priors of the bills
+     * @param numChains Number of chains
+     * @param samplerFolder Folder to output convergence diagnostics
+     */
+    protected void runHierMultSHDPChains(final HierMultSHDP sampler,
+            final double[][] billTopicPriors, int numChains, File samplerFolder) {
+        MultiChainRunner<HierMultSHDP> runner = new MultiChainRunner<>(numChains,
+                new MultiChainRunner.ChainTask<HierMultSHDP>() {
+                    @Override
+                    public HierMultSHDP createChain(int chain) {
+                        if (chain == 0) {
+                            return sampler;
+                        }
+                        HierMultSHDP chainSampler = new HierMultSHDP();
+                        chainSampler.setVerbose(verbose);
+                        chainSampler.setDebug(debug);
+                        chainSampler.setLog(true);
+                        chainSampler.setReport(true);
+                        chainSampler.setWordVocab(debateVoteData.getWordVocab());
+                        chainSampler.setAuthorVocab(debateVoteData.getAuthorVocab());
+                        chainSampler.setVoteVocab(debateVoteData.getVoteVocab());
+                        chainSampler.setTopicVocab(policyAgendaIssues);
+                        chainSampler.setBillWords(trainVoteWords);
+                        chainSampler.setInitMaxIter(getIntegerArgument("init-maxiter", 5000));
+                        chainSampler.configure(sampler);
+                        chainSampler.setupData(trainDebateIndices,
+                                debateVoteData.getWords(),
+                                debateVoteData.getAuthors(),
+                                votes,
+                                trainAuthorIndices,
+                                trainBillIndices,
+                                trainVotes);
+                        chainSampler.setBillTopicPriors(billTopicPriors);
+                        return chainSampler;
+                    }
+
+                    @Override
+                    public void initializeChain(HierMultSHDP chainSampler) {
+                        chainSampler.initialize();
+                    }
+
+                    @Override
+                    public void iterateChain(HierMultSHDP chainSampler) {
+                        chainSampler.metaIterate();
+                    }
+                });
+        runner.setVerbose(verbose);
+        runner.run();
+        runner.outputDiagnostics(new File(samplerFolder, MultiChainRunner.DiagnosticFile));
+    }
+
     protected void runHierMultSHDP(File outputFolder) {
         createBillPriors();
         int K;
         double[][] issuePhis;
-        if (cmd.hasOption("K")) {
+        if (hasOption("K")) {
             issuePhis = null;
-            K = Integer.parseInt(cmd.getOptionValue("K"));
+            K = Integer.parseInt(getOptionValue("K"));
         } else {
             issuePhis = estimateIssues();
             K = issuePhis.length;
         }
-        int J = CLIUtils.getIntegerArgument(cmd, "J", 0);
-        double topicAlpha = CLIUtils.getDoubleArgument(cmd, "alpha", 0.1);
-        double frameAlphaGlobal = CLIUtils.getDoubleArgument(cmd, "global-alpha", 0.001);
-        double frameAlphaLocal = CLIUtils.getDoubleArgument(cmd, "local-alpha", 0.1);
+        int J = getIntegerArgument("J", 0);
+        double topicAlpha = getDoubleArgument("alpha", 0.1);
+        double frameAlphaGlobal = getDoubleArgument("global-alpha", 0.001);
+        double frameAlphaLocal = getDoubleArgument("local-alpha", 0.1);
 
-        double topicBeta = CLIUtils.getDoubleArgument(cmd, "topic-beta", 0.1);
-        double frameBeta = CLIUtils.getDoubleArgument(cmd, "frame-beta", 0.1);
+        double topicBeta = getDoubleArgument("topic-beta", 0.1);
+        double frameBeta = getDoubleArgument("frame-beta", 0.1);
 
-        double rho = CLIUtils.getDoubleArgument(cmd, "rho", 0.1);
-        double sigma = CLIUtils.getDoubleArgument(cmd, "sigma", 0.5);
-        double gamma = CLIUtils.getDoubleArgument(cmd, "gamma", 2.5);
-        double lambda = CLIUtils.getDoubleArgument(cmd, "lambda", 0.5);
-        double epsilon = CLIUtils.getDoubleArgument(cmd, "epsilon", 0.001);
-        int initMaxIter = CLIUtils.getIntegerArgument(cmd, "init-maxiter", 5000);
-        boolean isUP = cmd.hasOption("up");
+        double rho = getDoubleArgument("rho", 0.1);
+        double sigma = getDoubleArgument("sigma", 0.5);
+        double gamma = getDoubleArgument("gamma", 2.5);
+        double lambda = getDoubleArgument("lambda", 0.5);
+        double epsilon = getDoubleArgument("epsilon", 0.001);
+        int initMaxIter = getIntegerArgument("init-maxiter", 5000);
+        boolean isUP = hasOption("up");
 
         HierMultSHDP sampler = new HierMultSHDP();
         sampler.setVerbose(verbose);
@@ -2150,7 +2603,7 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
         sampler.setInitMaxIter(initMaxIter);
 
         PathAssumption pathAssumption = PathAssumption.MAXIMAL;
-        String path = CLIUtils.getStringArgument(cmd, "path", "max");
+        String path = getStringArgument("path", "max");
         switch (path) {
             case "max":
                 pathAssumption = PathAssumption.MAXIMAL;
@@ -2199,7 +2652,7 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
         }
         System.out.println("# Tea Party Caucus members = " + count);
 
-        if (cmd.hasOption("initialize")) {
+        if (hasOption("initialize")) {
             sampler.setupData(trainDebateIndices,
                     debateVoteData.getWords(),
                     debateVoteData.getAuthors(),
@@ -2247,7 +2700,7 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
                     debateVoteData.getVoteTable(), 5);
         }
 
-        if (cmd.hasOption("train")) {
+        if (hasOption("train")) {
             sampler.setupData(trainDebateIndices,
                     debateVoteData.getWords(),
                     debateVoteData.getAuthors(),
@@ -2264,36 +2717,41 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
                     null, null,
                     debateVoteData.getVoteTable());
 
-            sampler.initialize();
-
-            outputVoteScores(new File(samplerFolder, VoteScoreFile + ".init"),
-                    debateVoteData.getVoteVocab(),
-                    trainBillIndices,
-                    sampler.getXs(), sampler.getYs(),
-                    debateVoteData.getVoteTable());
-
-            outputVoteScores(new File(samplerFolder, VoteScoreFile + ".topics.init"),
-                    debateVoteData.getVoteVocab(),
-                    trainBillIndices,
-                    sampler.getBillThetas(),
-                    sampler.getXs(), sampler.getYs(),
-                    debateVoteData.getVoteTable());
-
-            outputAuthorScore(new File(samplerFolder, AuthorScoreFile + ".init"),
-                    debateVoteData.getAuthorVocab(),
-                    trainAuthorIndices,
-                    trainVotes,
-                    sampler.getUs(),
-                    sampler.getMultiUs(),
-                    debateVoteData.getAuthorTable());
+            int numChains = getIntegerArgument("num-chains", 1);
+            if (numChains > 1) {
+                runHierMultSHDPChains(sampler, billTopicPriors, numChains, samplerFolder);
+            } else {
+                sampler.initialize();
+
+                outputVoteScores(new File(samplerFolder, VoteScoreFile + ".init"),
+                        debateVoteData.getVoteVocab(),
+                        trainBillIndices,
+                        sampler.getXs(), sampler.getYs(),
+                        debateVoteData.getVoteTable());
+
+                outputVoteScores(new File(samplerFolder, VoteScoreFile + ".topics.init"),
+                        debateVoteData.getVoteVocab(),
+                        trainBillIndices,
+                        sampler.getBillThetas(),
+                        sampler.getXs(), sampler.getYs(),
+                        debateVoteData.getVoteTable());
+
+                outputAuthorScore(new File(samplerFolder, AuthorScoreFile + ".init"),
+                        debateVoteData.getAuthorVocab(),
+                        trainAuthorIndices,
+                        trainVotes,
+                        sampler.getUs(),
+                        sampler.getMultiUs(),
+                        debateVoteData.getAuthorTable());
 
-            outputVoteScores(new File(samplerFolder, VoteScoreFile + ".top-topics.init"),
-                    debateVoteData.getVoteVocab(),
-                    trainBillIndices,
-                    sampler.getBillThetas(),
-                    debateVoteData.getVoteTable(), 5);
+                outputVoteScores(new File(samplerFolder, VoteScoreFile + ".top-topics.init"),
+                        debateVoteData.getVoteVocab(),
+                        trainBillIndices,
+                        sampler.getBillThetas(),
+                        debateVoteData.getVoteTable(), 5);
 
-            sampler.metaIterate();
+                sampler.metaIterate();
+            }
 
             if (issuePhis == null) {
                 sampler.outputTopicTopWords(new File(samplerFolder, TopWordFile),
@@ -2342,7 +2800,7 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
                     AbstractVotePredictor.evaluateAll(votes, trainVotes, predictions));
         }
 
-        if (cmd.hasOption("analyze")) {
+        if (hasOption("analyze")) {
             sampler.setAuthorVocab(debateVoteData.getAuthorVocab());
             sampler.setupData(trainDebateIndices,
                     debateVoteData.getWords(),
@@ -2394,7 +2852,7 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
                     debateVoteData.getRawSentences());
         }
 
-        if (cmd.hasOption("html")) {
+        if (hasOption("html")) {
             sampler.setupData(trainDebateIndices,
                     debateVoteData.getWords(),
                     debateVoteData.getAuthors(),
@@ -2414,12 +2872,12 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
                     GovtrackUrl + congressNum + "/cr/");
         }
 
-        if (cmd.hasOption("testauthor")) {
+        if (hasOption("testauthor")) {
             File teResultFolder = new File(samplerFolder, TEST_PREFIX + RESULT_FOLDER);
             IOUtils.createFolder(teResultFolder);
 
             SparseVector[] predictions;
-            if (cmd.hasOption("parallel")) {
+            if (hasOption("parallel")) {
                 predictions = HierMultSHDP.parallelTest(testDebateIndices,
                         debateVoteData.getWords(),
                         debateVoteData.getAuthors(),
@@ -2444,26 +2902,30 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
             AbstractModel.outputPerformances(new File(teResultFolder, RESULT_FILE),
                     AbstractVotePredictor.evaluateAll(votes, testVotes, predictions));
         }
+
+        if (hasOption("serve")) {
+            serve(sampler);
+        }
     }
 
     protected void runRecursiveSLDAIdealPoint(File outputFolder) {
         int K;
         double[][] issuePhis;
-        if (cmd.hasOption("K")) {
+        if (hasOption("K")) {
             issuePhis = null;
-            K = Integer.parseInt(cmd.getOptionValue("K"));
+            K = Integer.parseInt(getOptionValue("K"));
         } else {
             issuePhis = estimateIssues();
             K = issuePhis.length;
         }
-        double alpha = CLIUtils.getDoubleArgument(cmd, "alpha", 0.1);
-        double beta = CLIUtils.getDoubleArgument(cmd, "beta", 0.1);
+        double alpha = getDoubleArgument("alpha", 0.1);
+        double beta = getDoubleArgument("beta", 0.1);
 
-        double rho = CLIUtils.getDoubleArgument(cmd, "rho", 0.1);
-        double sigma = CLIUtils.getDoubleArgument(cmd, "sigma", 0.5);
+        double rho = getDoubleArgument("rho", 0.1);
+        double sigma = getDoubleArgument("sigma", 0.5);
 
-        double mu = CLIUtils.getDoubleArgument(cmd, "mu", 0.0);
-        double gamma = CLIUtils.getDoubleArgument(cmd, "gamma", 2.5);
+        double mu = getDoubleArgument("mu", 0.0);
+        double gamma = getDoubleArgument("gamma", 2.5);
 
         RecursiveSLDAIdealPoint sampler = new RecursiveSLDAIdealPoint();
         sampler.setVerbose(verbose);
@@ -2482,7 +2944,7 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
         File samplerFolder = new File(outputFolder, sampler.getSamplerFolder());
         IOUtils.createFolder(samplerFolder);
 
-        if (cmd.hasOption("train")) {
+        if (hasOption("train")) {
             sampler.setupData(trainDebateIndices,
                     debateVoteData.getWords(),
                     debateVoteData.getAuthors(),
@@ -2516,7 +2978,7 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
                     AbstractVotePredictor.evaluateAll(votes, trainVotes, predictions));
         }
 
-        if (cmd.hasOption("analyzeerror")) {
+        if (hasOption("analyzeerror")) {
             analyzeError(samplerFolder);
         }
     }
@@ -2524,21 +2986,21 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
     protected void runLexicalSLDAIdealPoint(File outputFolder) {
         int K;
         double[][] issuePhis;
-        if (cmd.hasOption("K")) {
+        if (hasOption("K")) {
             issuePhis = null;
-            K = Integer.parseInt(cmd.getOptionValue("K"));
+            K = Integer.parseInt(getOptionValue("K"));
         } else {
             issuePhis = estimateIssues();
             K = issuePhis.length;
         }
-        double alpha = CLIUtils.getDoubleArgument(cmd, "alpha", 0.1);
-        double beta = CLIUtils.getDoubleArgument(cmd, "beta", 0.1);
-        double sigma = CLIUtils.getDoubleArgument(cmd, "sigma", 2.5);
-        double lambda = CLIUtils.getDoubleArgument(cmd, "lambda", 2.5);
-        double l1 = CLIUtils.getDoubleArgument(cmd, "l1", 0.0);
-        double l2 = CLIUtils.getDoubleArgument(cmd, "l2", 0.001);
-        double gamma = CLIUtils.getDoubleArgument(cmd, "gamma", 2.5);
-        double rho = CLIUtils.getDoubleArgument(cmd, "rho", 0.1);
+        double alpha = getDoubleArgument("alpha", 0.1);
+        double beta = getDoubleArgument("beta", 0.1);
+        double sigma = getDoubleArgument("sigma", 2.5);
+        double lambda = getDoubleArgument("lambda", 2.5);
+        double l1 = getDoubleArgument("l1", 0.0);
+        double l2 = getDoubleArgument("l2", 0.001);
+        double gamma = getDoubleArgument("gamma", 2.5);
+        double rho = getDoubleArgument("rho", 0.1);
 
         LexicalSLDAIdealPoint sampler = new LexicalSLDAIdealPoint();
         sampler.setVerbose(verbose);
@@ -2562,12 +3024,13 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
                     initState, paramOpt,
                     burn_in, max_iters, sample_lag, report_interval);
         }
+        setSamplerOptions(sampler);
         File samplerFolder = new File(outputFolder, sampler.getSamplerFolder());
         IOUtils.createFolder(samplerFolder);
         File trResultFolder = new File(samplerFolder, TRAIN_PREFIX + RESULT_FOLDER);
         IOUtils.createFolder(trResultFolder);
 
-        if (cmd.hasOption("train")) {
+        if (hasOption("train")) {
             sampler.setupData(trainDebateIndices,
                     debateVoteData.getWords(),
                     debateVoteData.getAuthors(),
@@ -2605,12 +3068,12 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
                     AbstractVotePredictor.evaluateAll(votes, trainVotes, predictions));
         }
 
-        if (cmd.hasOption("coherence")) {
+        if (hasOption("coherence")) {
             sampler.computeAvgTopicCoherence(new File(trResultFolder, TopicCoherenceFile),
                     debateVoteData.getTopicCoherence());
         }
 
-        if (cmd.hasOption("testvote")) { // average over multiple test chains
+        if (hasOption("testvote")) { // average over multiple test chains
             sampler.setupData(testDebateIndices,
                     debateVoteData.getWords(),
                     debateVoteData.getAuthors(),
@@ -2629,12 +3092,12 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
                     AbstractVotePredictor.evaluateAll(votes, testVotes, predictions));
         }
 
-        if (cmd.hasOption("testauthor")) {
+        if (hasOption("testauthor")) {
             File teResultFolder = new File(samplerFolder, TEST_PREFIX + RESULT_FOLDER);
             IOUtils.createFolder(teResultFolder);
 
             SparseVector[] predictions;
-            if (cmd.hasOption("parallel")) {
+            if (hasOption("parallel")) {
                 predictions = LexicalSLDAIdealPoint.parallelTest(testDebateIndices,
                         debateVoteData.getWords(),
                         debateVoteData.getAuthors(),
@@ -2665,7 +3128,7 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
                     AbstractVotePredictor.evaluateAll(votes, testVotes, predictions));
         }
 
-        if (cmd.hasOption("analyzeerror")) {
+        if (hasOption("analyzeerror")) {
             analyzeError(samplerFolder);
         }
     }
@@ -2673,21 +3136,21 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
     protected void runHybridSLDAIdealPoint(File outputFolder) {
         int K;
         double[][] issuePhis;
-        if (cmd.hasOption("K")) {
+        if (hasOption("K")) {
             issuePhis = null;
-            K = Integer.parseInt(cmd.getOptionValue("K"));
+            K = Integer.parseInt(getOptionValue("K"));
         } else {
             issuePhis = estimateIssues();
             K = issuePhis.length;
         }
-        double alpha = CLIUtils.getDoubleArgument(cmd, "alpha", 0.1);
-        double beta = CLIUtils.getDoubleArgument(cmd, "beta", 0.1);
-        double rho = CLIUtils.getDoubleArgument(cmd, "rho", 0.1);
-        double sigma = CLIUtils.getDoubleArgument(cmd, "sigma", 0.5);
-        double gamma = CLIUtils.getDoubleArgument(cmd, "gamma", 5.0);
-        double lambda = CLIUtils.getDoubleArgument(cmd, "lambda", 5);
-        double l1 = CLIUtils.getDoubleArgument(cmd, "l1", 0.0);
-        double l2 = CLIUtils.getDoubleArgument(cmd, "l2", 0.001);
+        double alpha = getDoubleArgument("alpha", 0.1);
+        double beta = getDoubleArgument("beta", 0.1);
+        double rho = getDoubleArgument("rho", 0.1);
+        double sigma = getDoubleArgument("sigma", 0.5);
+        double gamma = getDoubleArgument("gamma", 5.0);
+        double lambda = getDoubleArgument("lambda", 5);
+        double l1 = getDoubleArgument("l1", 0.0);
+        double l2 = getDoubleArgument("l2", 0.001);
 
         HybridSLDAIdealPoint sampler = new HybridSLDAIdealPoint();
         sampler.setVerbose(verbose);
@@ -2697,7 +3160,7 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
         sampler.setWordVocab(debateVoteData.getWordVocab());
         sampler.setAuthorVocab(debateVoteData.getAuthorVocab());
         sampler.setVoteVocab(debateVoteData.getVoteVocab());
-        if (!cmd.hasOption("K")) {
+        if (!hasOption("K")) {
             sampler.setLabelVocab(billData.getTopicVocab());
         }
 
@@ -2707,13 +3170,14 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
                 initState, paramOpt,
                 burn_in, max_iters, sample_lag, report_interval);
 
+        setSamplerOptions(sampler);
         File samplerFolder = new File(outputFolder, sampler.getSamplerFolder());
         IOUtils.createFolder(samplerFolder);
         File trResultFolder = new File(samplerFolder, TRAIN_PREFIX + RESULT_FOLDER);
         IOUtils.createFolder(trResultFolder);
         File teResultFolder = new File(samplerFolder, TEST_PREFIX + RESULT_FOLDER);
 
-        if (cmd.hasOption("train")) {
+        if (hasOption("train")) {
             sampler.setupData(trainDebateIndices,
                     debateVoteData.getWords(),
                     debateVoteData.getAuthors(),
@@ -2744,12 +3208,12 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
                     AbstractVotePredictor.evaluateAll(votes, trainVotes, predictions));
         }
 
-        if (cmd.hasOption("coherence")) {
+        if (hasOption("coherence")) {
             sampler.computeAvgTopicCoherence(new File(trResultFolder, TopicCoherenceFile),
                     debateVoteData.getTopicCoherence());
         }
 
-        if (cmd.hasOption("testvote")) { // average over multiple test chains
+        if (hasOption("testvote")) { // average over multiple test chains
             IOUtils.createFolder(teResultFolder);
 
             sampler.setupData(testDebateIndices,
@@ -2768,11 +3232,11 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
                     AbstractVotePredictor.evaluateAll(votes, testVotes, predictions));
         }
 
-        if (cmd.hasOption("testauthor")) {
+        if (hasOption("testauthor")) {
             IOUtils.createFolder(teResultFolder);
 
             SparseVector[] predictions;
-            if (cmd.hasOption("parallel")) {
+            if (hasOption("parallel")) {
                 predictions = HybridSLDAIdealPoint.parallelTest(testDebateIndices,
                         debateVoteData.getWords(),
                         debateVoteData.getAuthors(),
@@ -2803,11 +3267,11 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
                     AbstractVotePredictor.evaluateAll(votes, testVotes, predictions));
         }
 
-        if (cmd.hasOption("analyzeerror")) {
+        if (hasOption("analyzeerror")) {
             analyzeError(samplerFolder);
         }
 
-        if (cmd.hasOption("dev")) {
+        if (hasOption("dev")) {
             File devFolder = new File(outputFolder, sampler.getBasename());
             IOUtils.createFolder(devFolder);
             try {
@@ -2896,20 +3360,20 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
     protected void runHybridSLDAMultipleIdealPoint(File outputFolder) {
         int K;
         double[][] issuePhis;
-        if (cmd.hasOption("K")) {
+        if (hasOption("K")) {
             issuePhis = null;
-            K = Integer.parseInt(cmd.getOptionValue("K"));
+            K = Integer.parseInt(getOptionValue("K"));
         } else {
             issuePhis = estimateIssues();
             K = issuePhis.length;
         }
-        double alpha = CLIUtils.getDoubleArgument(cmd, "alpha", 0.1);
-        double beta = CLIUtils.getDoubleArgument(cmd, "beta", 0.1);
-        double rho = CLIUtils.getDoubleArgument(cmd, "rho", 0.1);
-        double sigma = CLIUtils.getDoubleArgument(cmd, "sigma", 0.1);
-        double gamma = CLIUtils.getDoubleArgument(cmd, "gamma", 5.0);
-        double l1 = CLIUtils.getDoubleArgument(cmd, "l1", 0.0);
-        double l2 = CLIUtils.getDoubleArgument(cmd, "l2", 0.001);
+        double alpha = getDoubleArgument("alpha", 0.1);
+        double beta = getDoubleArgument("beta", 0.1);
+        double rho = getDoubleArgument("rho", 0.1);
+        double sigma = getDoubleArgument("sigma", 0.1);
+        double gamma = getDoubleArgument("gamma", 5.0);
+        double l1 = getDoubleArgument("l1", 0.0);
+        double l2 = getDoubleArgument("l2", 0.001);
 
         HybridSLDAMultipleIdealPoint sampler = new HybridSLDAMultipleIdealPoint();
         sampler.setVerbose(verbose);
@@ -2919,7 +3383,7 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
         sampler.setWordVocab(debateVoteData.getWordVocab());
         sampler.setAuthorVocab(debateVoteData.getAuthorVocab());
         sampler.setVoteVocab(debateVoteData.getVoteVocab());
-        if (!cmd.hasOption("K")) {
+        if (!hasOption("K")) {
             sampler.setLabelVocab(billData.getTopicVocab());
         }
 
@@ -2935,7 +3399,7 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
         IOUtils.createFolder(trResultFolder);
         File teResultFolder = new File(samplerFolder, TEST_PREFIX + RESULT_FOLDER);
 
-        if (cmd.hasOption("train")) {
+        if (hasOption("train")) {
             sampler.setupData(trainDebateIndices,
                     debateVoteData.getWords(),
                     debateVoteData.getAuthors(),
@@ -2954,11 +3418,11 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
                     AbstractVotePredictor.evaluateAll(votes, trainVotes, predictions));
         }
 
-//        if (cmd.hasOption("testauthor")) {
+//        if (hasOption("testauthor")) {
 //            IOUtils.createFolder(teResultFolder);
 //
 //            SparseVector[] predictions;
-//            if (cmd.hasOption("parallel")) {
+//            if (hasOption("parallel")) {
 //                predictions = HybridSLDAIdealPoint.parallelTest(testDebateIndices,
 //                        debateVoteData.getWords(),
 //                        debateVoteData.getAuthors(),
@@ -2993,20 +3457,20 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
     protected void runSLDAMultIdealPoint(File outputFolder) {
         int K;
         double[][] issuePhis;
-        if (cmd.hasOption("K")) {
+        if (hasOption("K")) {
             issuePhis = null;
-            K = Integer.parseInt(cmd.getOptionValue("K"));
+            K = Integer.parseInt(getOptionValue("K"));
         } else {
             issuePhis = estimateIssues();
             K = issuePhis.length;
         }
-        double alpha = CLIUtils.getDoubleArgument(cmd, "alpha", 0.1);
-        double beta = CLIUtils.getDoubleArgument(cmd, "beta", 0.1);
-        double rho = CLIUtils.getDoubleArgument(cmd, "rho", 2.5);
-        double sigma = CLIUtils.getDoubleArgument(cmd, "sigma", 2.5);
-        double gamma = CLIUtils.getDoubleArgument(cmd, "gamma", 2.5);
-        double l1 = CLIUtils.getDoubleArgument(cmd, "l1", 0.0);
-        double l2 = CLIUtils.getDoubleArgument(cmd, "l2", 2.5);
+        double alpha = getDoubleArgument("alpha", 0.1);
+        double beta = getDoubleArgument("beta", 0.1);
+        double rho = getDoubleArgument("rho", 2.5);
+        double sigma = getDoubleArgument("sigma", 2.5);
+        double gamma = getDoubleArgument("gamma", 2.5);
+        double l1 = getDoubleArgument("l1", 0.0);
+        double l2 = getDoubleArgument("l2", 2.5);
 
         SLDAMultIdealPoint sampler = new SLDAMultIdealPoint();
         sampler.setVerbose(verbose);
@@ -3028,7 +3492,7 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
         File teResultFolder = new File(samplerFolder, TEST_PREFIX + RESULT_FOLDER);
         File trResultFolder = new File(samplerFolder, TRAIN_PREFIX + RESULT_FOLDER);
 
-        if (cmd.hasOption("train")) {
+        if (hasOption("train")) {
             sampler.setupData(trainDebateIndices,
                     debateVoteData.getWords(),
                     debateVoteData.getAuthors(),
@@ -3059,7 +3523,7 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
                     AbstractVotePredictor.evaluateAll(votes, trainVotes, predictions));
         }
 
-        if (cmd.hasOption("testvote")) { // average over multiple test chains
+        if (hasOption("testvote")) { // average over multiple test chains
             IOUtils.createFolder(teResultFolder);
             sampler.setupData(testDebateIndices,
                     debateVoteData.getWords(),
@@ -3075,10 +3539,10 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
                     AbstractVotePredictor.evaluateAll(votes, testVotes, predictions));
         }
 
-        if (cmd.hasOption("testauthor")) {
+        if (hasOption("testauthor")) {
             IOUtils.createFolder(teResultFolder);
             SparseVector[] predictions;
-            if (cmd.hasOption("parallel")) {
+            if (hasOption("parallel")) {
                 predictions = SLDAMultIdealPoint.parallelTest(testDebateIndices,
                         debateVoteData.getWords(),
                         debateVoteData.getAuthors(),
@@ -3107,17 +3571,70 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
                     AbstractVotePredictor.evaluateAll(votes, testVotes, predictions));
         }
 
-        if (cmd.hasOption("analyzeerror")) {
+        if (hasOption("analyzeerror")) {
             analyzeError(samplerFolder);
         }
     }
 
+    /**
+     * Run multiple chains of SNLDAIdealPoint concurrently. All chains share the
+     * training data and configuration of the given sampler, which is used as
+     * chain 0.
+     *
+     * @param sampler The configured sampler with its data set up
+     * @param numChains Number of chains
+     * @param samplerFolder Folder to output convergence diagnostics
+     */
+    protected void runSNLDAIdealPointChains(final SNLDAIdealPoint sampler,
+            int numChains, File samplerFolder) {
+        MultiChainRunner<SNLDAIdealPoint> runner = new MultiChainRunner<>(numChains,
+                new MultiChainRunner.ChainTask<SNLDAIdealPoint>() {
+                    @Override
+                    public SNLDAIdealPoint createChain(int chain) {
+                        if (chain == 0) {
+                            return sampler;
+                        }
+                        SNLDAIdealPoint chainSampler = new SNLDAIdealPoint();
+                        chainSampler.setVerbose(verbose);
+                        chainSampler.setDebug(debug);
+                        chainSampler.setLog(true);
+                        chainSampler.setReport(true);
+                        chainSampler.setWordVocab(debateVoteData.getWordVocab());
+                        chainSampler.setAuthorVocab(debateVoteData.getAuthorVocab());
+                        if (!hasOption("K")) {
+                            chainSampler.setLabelVocab(billData.getTopicVocab());
+                        }
+                        chainSampler.configure(sampler);
+                        setSamplerOptions(chainSampler);
+                        chainSampler.setupData(trainDebateIndices,
+                                debateVoteData.getWords(),
+                                debateVoteData.getAuthors(),
+                                votes, trainAuthorIndices, trainBillIndices,
+                                trainVotes);
+                        return chainSampler;
+                    }
+
+                    @Override
+                    public void initializeChain(SNLDAIdealPoint chainSampler) {
+                        chainSampler.initialize();
+                    }
+
+                    @Override
+                    public void iterateChain(SNLDAIdealPoint chainSampler) {
+                        chainSampler.iterate();
+                    }
+                });
+        runner.setVerbose(verbose);
+        runner.run();
+        runner.outputDiagnostics(new File(samplerFolder, MultiChainRunner.DiagnosticFile));
+    }
+
     protected void runSNLDAIdealPoint(File outputFolder) {
         // estimate seeded issues
         double[][] issuePhis;
-        if (cmd.hasOption("K")) {
+        if (hasOption("K")) {
             int V = debateVoteData.getWordVocab().size();
-            int K = Integer.parseInt(cmd.getOptionValue("K"));
+            int K = Integer.parseInt(getOptionValue("K"));
             issuePhis = new double[K][V];
             for (int kk = 0; kk < K; kk++) {
                 Arrays.fill(issuePhis[kk], 1.0 / V);
@@ -3125,19 +3642,19 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
         } else {
             issuePhis = estimateIssues();
         }
-        int J = CLIUtils.getIntegerArgument(cmd, "J", 3);
-        double[] alphas = CLIUtils.getDoubleArrayArgument(cmd, "alphas",
+        int J = getIntegerArgument("J", 3);
+        double[] alphas = getDoubleArrayArgument("alphas",
                 new double[]{0.1, 0.1}, ",");
-        double[] betas = CLIUtils.getDoubleArrayArgument(cmd, "betas",
+        double[] betas = getDoubleArrayArgument("betas",
                 new double[]{10, 10, 0.1}, ",");
-        double[] gamma_means = CLIUtils.getDoubleArrayArgument(cmd, "gamma-means",
+        double[] gamma_means = getDoubleArrayArgument("gamma-means",
                 new double[]{0.2, 0.2}, ",");
-        double[] gamma_scales = CLIUtils.getDoubleArrayArgument(cmd, "gamma-scales",
+        double[] gamma_scales = getDoubleArrayArgument("gamma-scales",
                 new double[]{10, 1}, ",");
-        double mu = CLIUtils.getDoubleArgument(cmd, "mu", 0.0);
-        double sigma = CLIUtils.getDoubleArgument(cmd, "sigma", 10);
-        double rho = CLIUtils.getDoubleArgument(cmd, "rho", 1.0);
-        boolean hasRootTopic = cmd.hasOption("roottopic");
+        double mu = getDoubleArgument("mu", 0.0);
+        double sigma = getDoubleArgument("sigma", 10);
+        double rho = getDoubleArgument("rho", 1.0);
+        boolean hasRootTopic = hasOption("roottopic");
 
         SNLDAIdealPoint sampler = new SNLDAIdealPoint();
         sampler.setVerbose(verbose);
@@ -3146,12 +3663,12 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
         sampler.setReport(true);
         sampler.setWordVocab(debateVoteData.getWordVocab());
         sampler.setAuthorVocab(debateVoteData.getAuthorVocab());
-        if (!cmd.hasOption("K")) {
+        if (!hasOption("K")) {
             sampler.setLabelVocab(billData.getTopicVocab());
         }
 
         PathAssumption pathAssumption = PathAssumption.MAXIMAL;
-        String path = CLIUtils.getStringArgument(cmd, "path", "max");
+        String path = getStringArgument("path", "max");
         switch (path) {
             case "max":
                 pathAssumption = PathAssumption.MAXIMAL;
@@ -3169,20 +3686,26 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
                 rho, mu, sigma, hasRootTopic,
                 initState, pathAssumption, paramOpt,
                 burn_in, max_iters, sample_lag, report_interval);
+        setSamplerOptions(sampler);
         File samplerFolder = new File(outputFolder, sampler.getSamplerFolder());
         IOUtils.createFolder(samplerFolder);
 
         File teResultFolder = new File(samplerFolder, TEST_PREFIX + RESULT_FOLDER);
         File trResultFolder = new File(samplerFolder, TRAIN_PREFIX + RESULT_FOLDER);
 
-        if (cmd.hasOption("train")) {
+        if (hasOption("train")) {
             sampler.setupData(trainDebateIndices,
                     debateVoteData.getWords(),
                     debateVoteData.getAuthors(),
                     votes, trainAuthorIndices, trainBillIndices,
                     trainVotes);
-            sampler.initialize();
-            sampler.iterate();
+            int numChains = getIntegerArgument("num-chains", 1);
+            if (numChains > 1) {
+                runSNLDAIdealPointChains(sampler, numChains, samplerFolder);
+            } else {
+                sampler.initialize();
+                sampler.iterate();
+            }
             sampler.outputTopicTopWords(new File(samplerFolder, TopWordFile), numTopWords);
             outputAuthorScore(new File(samplerFolder, AuthorScoreFile),
                     debateVoteData.getAuthorVocab(),
@@ -3203,7 +3726,7 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
                     AbstractVotePredictor.evaluateAll(votes, trainVotes, predictions));
         }
 
-        if (cmd.hasOption("testvote")) { // average over multiple test chains
+        if (hasOption("testvote")) { // average over multiple test chains
             IOUtils.createFolder(teResultFolder);
             sampler.setupData(testDebateIndices,
                     debateVoteData.getWords(),
@@ -3219,10 +3742,10 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
                     AbstractVotePredictor.evaluateAll(votes, testVotes, predictions));
         }
 
-        if (cmd.hasOption("testauthor")) {
+        if (hasOption("testauthor")) {
             IOUtils.createFolder(teResultFolder);
             SparseVector[] predictions;
-            if (cmd.hasOption("parallel")) {
+            if (hasOption("parallel")) {
                 File iterPredFolderPath = new File(samplerFolder,
                         AbstractSampler.IterPredictionFolder);
                 predictions = SNLDAIdealPoint.parallelTest(testDebateIndices,
@@ -3256,11 +3779,11 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
                     AbstractVotePredictor.evaluateAll(votes, testVotes, predictions));
         }
 
-        if (cmd.hasOption("analyzeerror")) {
+        if (hasOption("analyzeerror")) {
             analyzeError(samplerFolder);
         }
 
-        if (cmd.hasOption("visualize")) {
+        if (hasOption("visualize")) {
             sampler.setupData(trainDebateIndices,
                     debateVoteData.getWords(),
                     debateVoteData.getAuthors(),
@@ -3279,20 +3802,25 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
                     GovtrackUrl + congressNum + "/cr/");
         }
 
-        if (cmd.hasOption("testeval")) {
+        if (hasOption("testeval")) {
             SparseVector[] predictions = AbstractVotePredictor.inputPredictions(
                     new File(teResultFolder, PREDICTION_FILE));
             AbstractModel.outputPerformances(new File(teResultFolder, RESULT_FILE),
                     AbstractVotePredictor.evaluateAll(votes, testVotes, predictions));
         }
+
+        if (hasOption("serve")) {
+            sampler.setVoteVocab(debateVoteData.getVoteVocab());
+            serve(sampler);
+        }
     }
 
     protected void runLexicalSNLDAIdealPoint(File outputFolder) {
         // estimate seeded issues
         double[][] issuePhis;
-        if (cmd.hasOption("K")) {
+        if (hasOption("K")) {
             int V = debateVoteData.getWordVocab().size();
-            int K = Integer.parseInt(cmd.getOptionValue("K"));
+            int K = Integer.parseInt(getOptionValue("K"));
             issuePhis = new double[K][V];
             for (int kk = 0; kk < K; kk++) {
                 Arrays.fill(issuePhis[kk], 1.0 / V);
@@ -3300,21 +3828,21 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
         } else {
             issuePhis = estimateIssues();
         }
-        int J = CLIUtils.getIntegerArgument(cmd, "J", 3);
-        double[] alphas = CLIUtils.getDoubleArrayArgument(cmd, "alphas",
+        int J = getIntegerArgument("J", 3);
+        double[] alphas = getDoubleArrayArgument("alphas",
                 new double[]{0.1, 0.1}, ",");
-        double[] betas = CLIUtils.getDoubleArrayArgument(cmd, "betas",
+        double[] betas = getDoubleArrayArgument("betas",
                 new double[]{10, 10, 0.1}, ",");
-        double[] gamma_means = CLIUtils.getDoubleArrayArgument(cmd, "gamma-means",
+        double[] gamma_means = getDoubleArrayArgument("gamma-means",
                 new double[]{0.2, 0.2}, ",");
-        double[] gamma_scales = CLIUtils.getDoubleArrayArgument(cmd, "gamma-scales",
+        double[] gamma_scales = getDoubleArrayArgument("gamma-scales",
                 new double[]{10, 1}, ",");
-        double[] sigmas = CLIUtils.getDoubleArrayArgument(cmd, "sigmas",
+        double[] sigmas = getDoubleArrayArgument("sigmas",
                 new double[]{0.0, 2.5, 5}, ",");
-        double sigma = CLIUtils.getDoubleArgument(cmd, "sigma", 10);
-        double rho = CLIUtils.getDoubleArgument(cmd, "rho", 0.05);
-        double lambda = CLIUtils.getDoubleArgument(cmd, "lambda", 2.5);
-        boolean hasRootTopic = cmd.hasOption("roottopic");
+        double sigma = getDoubleArgument("sigma", 10);
+        double rho = getDoubleArgument("rho", 0.05);
+        double lambda = getDoubleArgument("lambda", 2.5);
+        boolean hasRootTopic = hasOption("roottopic");
 
         LexicalSNLDAIdealPoint sampler = new LexicalSNLDAIdealPoint();
         sampler.setVerbose(verbose);
@@ -3323,12 +3851,12 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
         sampler.setReport(true);
         sampler.setWordVocab(debateVoteData.getWordVocab());
         sampler.setAuthorVocab(debateVoteData.getAuthorVocab());
-        if (!cmd.hasOption("K")) {
+        if (!hasOption("K")) {
             sampler.setLabelVocab(billData.getTopicVocab());
         }
 
         PathAssumption pathAssumption = PathAssumption.MAXIMAL;
-        String path = CLIUtils.getStringArgument(cmd, "path", "max");
+        String path = getStringArgument("path", "max");
         switch (path) {
             case "max":
                 pathAssumption = PathAssumption.MAXIMAL;
@@ -3352,7 +3880,7 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
         File teResultFolder = new File(samplerFolder, TEST_PREFIX + RESULT_FOLDER);
         File trResultFolder = new File(samplerFolder, TRAIN_PREFIX + RESULT_FOLDER);
 
-        if (cmd.hasOption("train")) {
+        if (hasOption("train")) {
             sampler.setupData(trainDebateIndices,
                     debateVoteData.getWords(),
                     debateVoteData.getAuthors(),
@@ -3381,7 +3909,7 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
                     AbstractVotePredictor.evaluateAll(votes, trainVotes, predictions));
         }
 
-        if (cmd.hasOption("testvote")) { // average over multiple test chains
+        if (hasOption("testvote")) { // average over multiple test chains
             IOUtils.createFolder(teResultFolder);
             sampler.setupData(testDebateIndices,
                     debateVoteData.getWords(),
@@ -3397,10 +3925,10 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
                     AbstractVotePredictor.evaluateAll(votes, testVotes, predictions));
         }
 
-        if (cmd.hasOption("testauthor")) {
+        if (hasOption("testauthor")) {
             IOUtils.createFolder(teResultFolder);
             SparseVector[] predictions;
-            if (cmd.hasOption("parallel")) {
+            if (hasOption("parallel")) {
                 File iterPredFolderPath = new File(samplerFolder,
                         AbstractSampler.IterPredictionFolder);
                 predictions = LexicalSNLDAIdealPoint.parallelTest(testDebateIndices,
@@ -3434,7 +3962,7 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
                     AbstractVotePredictor.evaluateAll(votes, testVotes, predictions));
         }
 
-        if (cmd.hasOption("visualize")) {
+        if (hasOption("visualize")) {
             sampler.setupData(trainDebateIndices,
                     debateVoteData.getWords(),
                     debateVoteData.getAuthors(),
@@ -3475,9 +4003,9 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
         // estimate seeded issues
         double[][] issuePhis;
         int K;
-        if (cmd.hasOption("K")) {
+        if (hasOption("K")) {
             int V = debateVoteData.getWordVocab().size();
-            K = Integer.parseInt(cmd.getOptionValue("K"));
+            K = Integer.parseInt(getOptionValue("K"));
             issuePhis = new double[K][V];
             for (int kk = 0; kk < K; kk++) {
                 Arrays.fill(issuePhis[kk], 1.0 / V);
@@ -3486,21 +4014,21 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
             issuePhis = estimateIssues();
             K = issuePhis.length;
         }
-        int J = CLIUtils.getIntegerArgument(cmd, "J", 3);
-        double[] alphas = CLIUtils.getDoubleArrayArgument(cmd, "alphas",
+        int J = getIntegerArgument("J", 3);
+        double[] alphas = getDoubleArrayArgument("alphas",
                 new double[]{0.1, 0.1}, ",");
-        double[] betas = CLIUtils.getDoubleArrayArgument(cmd, "betas",
+        double[] betas = getDoubleArrayArgument("betas",
                 new double[]{10, 10, 0.1}, ",");
-        double[] pis = CLIUtils.getDoubleArrayArgument(cmd, "pis",
+        double[] pis = getDoubleArrayArgument("pis",
                 new double[]{0.2, 0.2}, ",");
-        double[] gammas = CLIUtils.getDoubleArrayArgument(cmd, "gammas",
+        double[] gammas = getDoubleArrayArgument("gammas",
                 new double[]{10, 1}, ",");
-        double[] sigmas = CLIUtils.getDoubleArrayArgument(cmd, "sigmas",
+        double[] sigmas = getDoubleArrayArgument("sigmas",
                 new double[]{2.5, 5}, ",");
-        double sigma = CLIUtils.getDoubleArgument(cmd, "sigma", 1.0);
-        double rho = CLIUtils.getDoubleArgument(cmd, "rho", 0.5);
-        double lambda = CLIUtils.getDoubleArgument(cmd, "lambda", 2.5);
-        boolean hasRootTopic = cmd.hasOption("roottopic");
+        double sigma = getDoubleArgument("sigma", 1.0);
+        double rho = getDoubleArgument("rho", 0.5);
+        double lambda = getDoubleArgument("lambda", 2.5);
+        boolean hasRootTopic = hasOption("roottopic");
 
         HybridSNLDAIdealPoint sampler = new HybridSNLDAIdealPoint();
         sampler.setVerbose(verbose);
@@ -3509,7 +4037,7 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
         sampler.setReport(true);
         sampler.setWordVocab(debateVoteData.getWordVocab());
         sampler.setAuthorVocab(debateVoteData.getAuthorVocab());
-        if (!cmd.hasOption("K")) {
+        if (!hasOption("K")) {
             sampler.setLabelVocab(billData.getTopicVocab());
         }
 
@@ -3519,13 +4047,14 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
                 rho, sigma, sigmas, lambda, hasRootTopic,
                 initState, paramOpt,
                 burn_in, max_iters, sample_lag, report_interval);
+        setSamplerOptions(sampler);
         File samplerFolder = new File(outputFolder, sampler.getSamplerFolder());
         IOUtils.createFolder(samplerFolder);
 
         File teResultFolder = new File(samplerFolder, TEST_PREFIX + RESULT_FOLDER);
         File trResultFolder = new File(samplerFolder, TRAIN_PREFIX + RESULT_FOLDER);
 
-        if (cmd.hasOption("train")) {
+        if (hasOption("train")) {
             sampler.setupData(trainDebateIndices,
                     debateVoteData.getWords(),
                     debateVoteData.getAuthors(),
@@ -3555,7 +4084,7 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
                     debateVoteData.getAuthorTable());
         }
 
-        if (cmd.hasOption("testvote")) { // average over multiple test chains
+        if (hasOption("testvote")) { // average over multiple test chains
             IOUtils.createFolder(teResultFolder);
             sampler.setupData(testDebateIndices,
                     debateVoteData.getWords(),
@@ -3571,10 +4100,10 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
                     AbstractVotePredictor.evaluateAll(votes, testVotes, predictions));
         }
 
-        if (cmd.hasOption("testauthor")) {
+        if (hasOption("testauthor")) {
             IOUtils.createFolder(teResultFolder);
             SparseVector[] predictions;
-            if (cmd.hasOption("parallel")) {
+            if (hasOption("parallel")) {
                 File iterPredFolderPath = new File(samplerFolder,
                         AbstractSampler.IterPredictionFolder);
                 predictions = HybridSNLDAIdealPoint.parallelTest(testDebateIndices,
@@ -3617,9 +4146,9 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
         // estimate seeded issues
         double[][] issuePhis;
         int K;
-        if (cmd.hasOption("K")) {
+        if (hasOption("K")) {
             int V = debateVoteData.getWordVocab().size();
-            K = Integer.parseInt(cmd.getOptionValue("K"));
+            K = Integer.parseInt(getOptionValue("K"));
             issuePhis = new double[K][V];
             for (int kk = 0; kk < K; kk++) {
                 Arrays.fill(issuePhis[kk], 1.0 / V);
@@ -3628,23 +4157,23 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
             issuePhis = estimateIssues();
             K = issuePhis.length;
         }
-        double[] localAlphas = CLIUtils.getDoubleArrayArgument(cmd, "local-alphas",
+        double[] localAlphas = getDoubleArrayArgument("local-alphas",
                 new double[]{0.1, 0.1}, ",");
-        double[] globalAlphas = CLIUtils.getDoubleArrayArgument(cmd, "global-alphas",
+        double[] globalAlphas = getDoubleArrayArgument("global-alphas",
                 new double[]{0.1, 0.1}, ",");
-        double[] betas = CLIUtils.getDoubleArrayArgument(cmd, "betas",
+        double[] betas = getDoubleArrayArgument("betas",
                 new double[]{10, 5, 0.1}, ",");
-        double pi = CLIUtils.getDoubleArgument(cmd, "pi", 0.2);
-        double[] gammas = CLIUtils.getDoubleArrayArgument(cmd, "gammas",
+        double pi = getDoubleArgument("pi", 0.2);
+        double[] gammas = getDoubleArrayArgument("gammas",
                 new double[]{10, 1}, ",");
-        double lambda = CLIUtils.getDoubleArgument(cmd, "lambda", 2.5);
-        double l1 = CLIUtils.getDoubleArgument(cmd, "l1", 0.1);
-        double l2 = CLIUtils.getDoubleArgument(cmd, "l2", 0.001);
-        double[] sigmas = CLIUtils.getDoubleArrayArgument(cmd, "sigmas",
+        double lambda = getDoubleArgument("lambda", 2.5);
+        double l1 = getDoubleArgument("l1", 0.1);
+        double l2 = getDoubleArgument("l2", 0.001);
+        double[] sigmas = getDoubleArrayArgument("sigmas",
                 new double[]{0.0, 1.0, 2.5}, ",");
-        double sigma = CLIUtils.getDoubleArgument(cmd, "sigma", 2.5);
-        double rho = CLIUtils.getDoubleArgument(cmd, "rho", 1.0);
-        boolean hasRootTopic = cmd.hasOption("roottopic");
+        double sigma = getDoubleArgument("sigma", 2.5);
+        double rho = getDoubleArgument("rho", 1.0);
+        boolean hasRootTopic = hasOption("roottopic");
 
         HybridSNHDPIdealPoint sampler = new HybridSNHDPIdealPoint();
         sampler.setVerbose(verbose);
@@ -3653,12 +4182,12 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
         sampler.setReport(true);
         sampler.setWordVocab(debateVoteData.getWordVocab());
         sampler.setAuthorVocab(debateVoteData.getAuthorVocab());
-        if (!cmd.hasOption("K")) {
+        if (!hasOption("K")) {
             sampler.setLabelVocab(billData.getTopicVocab());
         }
 
         PathAssumption pathAssumption = PathAssumption.MAXIMAL;
-        String path = CLIUtils.getStringArgument(cmd, "path", "max");
+        String path = getStringArgument("path", "max");
         switch (path) {
             case "max":
                 pathAssumption = PathAssumption.MAXIMAL;
@@ -3684,12 +4213,13 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
                     initState, pathAssumption, paramOpt,
                     burn_in, max_iters, sample_lag, report_interval);
         }
+        setSamplerOptions(sampler);
         File samplerFolder = new File(outputFolder, sampler.getSamplerFolder());
         IOUtils.createFolder(samplerFolder);
 
         File teResultFolder = new File(samplerFolder, TEST_PREFIX + RESULT_FOLDER);
         File trResultFolder = new File(samplerFolder, TRAIN_PREFIX + RESULT_FOLDER);
-        if (cmd.hasOption("train")) {
+        if (hasOption("train")) {
             sampler.setupData(trainDebateIndices,
                     debateVoteData.getWords(),
                     debateVoteData.getAuthors(),
@@ -3719,10 +4249,10 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
                     debateVoteData.getAuthorTable());
         }
 
-        if (cmd.hasOption("testauthor")) {
+        if (hasOption("testauthor")) {
             IOUtils.createFolder(teResultFolder);
             SparseVector[] predictions;
-            if (cmd.hasOption("parallel")) {
+            if (hasOption("parallel")) {
                 File iterPredFolderPath = new File(samplerFolder,
                         AbstractSampler.IterPredictionFolder);
                 predictions = HybridSNHDPIdealPoint.parallelTest(testDebateIndices,
@@ -3764,9 +4294,9 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
     protected void runSNHDPIdealPoint(File outputFolder) {
         // estimate seeded issues
         double[][] issuePhis;
-        if (cmd.hasOption("K")) {
+        if (hasOption("K")) {
             int V = debateVoteData.getWordVocab().size();
-            int K = Integer.parseInt(cmd.getOptionValue("K"));
+            int K = Integer.parseInt(getOptionValue("K"));
             issuePhis = new double[K][V];
             for (int kk = 0; kk < K; kk++) {
                 Arrays.fill(issuePhis[kk], 1.0 / V);
@@ -3774,22 +4304,22 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
         } else {
             issuePhis = estimateIssues();
         }
-        double[] localAlphas = CLIUtils.getDoubleArrayArgument(cmd, "local-alphas",
+        double[] localAlphas = getDoubleArrayArgument("local-alphas",
                 new double[]{0.1, 0.1}, ",");
-        double[] globalAlphas = CLIUtils.getDoubleArrayArgument(cmd, "global-alphas",
+        double[] globalAlphas = getDoubleArrayArgument("global-alphas",
                 new double[]{0.1, 0.1}, ",");
-        double[] betas = CLIUtils.getDoubleArrayArgument(cmd, "betas",
+        double[] betas = getDoubleArrayArgument("betas",
                 new double[]{10, 5, 0.1}, ",");
-        double[] gamma_means = CLIUtils.getDoubleArrayArgument(cmd, "gamma-means",
+        double[] gamma_means = getDoubleArrayArgument("gamma-means",
                 new double[]{0.2, 0.2}, ",");
-        double[] gamma_scales = CLIUtils.getDoubleArrayArgument(cmd, "gamma-scales",
+        double[] gamma_scales = getDoubleArrayArgument("gamma-scales",
                 new double[]{10, 1}, ",");
-        double mu = CLIUtils.getDoubleArgument(cmd, "mu", 0.0);
-        double[] sigmas = CLIUtils.getDoubleArrayArgument(cmd, "sigmas",
+        double mu = getDoubleArgument("mu", 0.0);
+        double[] sigmas = getDoubleArrayArgument("sigmas",
                 new double[]{0.0, 1.0, 2.5}, ",");
-        double sigma = CLIUtils.getDoubleArgument(cmd, "sigma", 2.5);
-        double rho = CLIUtils.getDoubleArgument(cmd, "rho", 1.0);
-        boolean hasRootTopic = cmd.hasOption("roottopic");
+        double sigma = getDoubleArgument("sigma", 2.5);
+        double rho = getDoubleArgument("rho", 1.0);
+        boolean hasRootTopic = hasOption("roottopic");
 
         SNHDPIdealPoint sampler = new SNHDPIdealPoint();
         sampler.setVerbose(verbose);
@@ -3798,12 +4328,12 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
         sampler.setReport(true);
         sampler.setWordVocab(debateVoteData.getWordVocab());
         sampler.setAuthorVocab(debateVoteData.getAuthorVocab());
-        if (!cmd.hasOption("K")) {
+        if (!hasOption("K")) {
             sampler.setLabelVocab(billData.getTopicVocab());
         }
 
         PathAssumption pathAssumption = PathAssumption.MAXIMAL;
-        String path = CLIUtils.getStringArgument(cmd, "path", "max");
+        String path = getStringArgument("path", "max");
         switch (path) {
             case "max":
                 pathAssumption = PathAssumption.MAXIMAL;
@@ -3827,7 +4357,7 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
         File teResultFolder = new File(samplerFolder, TEST_PREFIX + RESULT_FOLDER);
         File trResultFolder = new File(samplerFolder, TRAIN_PREFIX + RESULT_FOLDER);
 
-        if (cmd.hasOption("train")) {
+        if (hasOption("train")) {
             sampler.setupData(trainDebateIndices,
                     debateVoteData.getWords(),
                     debateVoteData.getAuthors(),
@@ -3848,7 +4378,7 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
                     debateVoteData.getVoteTable());
         }
 
-        if (cmd.hasOption("testvote")) {
+        if (hasOption("testvote")) {
             IOUtils.createFolder(teResultFolder);
             sampler.setupData(testDebateIndices,
                     debateVoteData.getWords(),
@@ -3885,10 +4415,10 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
                     AbstractVotePredictor.evaluateAll(votes, testVotes, predictions));
         }
 
-        if (cmd.hasOption("testauthor")) {
+        if (hasOption("testauthor")) {
             IOUtils.createFolder(teResultFolder);
             SparseVector[] predictions;
-            if (cmd.hasOption("parallel")) {
+            if (hasOption("parallel")) {
                 File iterPredFolderPath = new File(samplerFolder,
                         AbstractSampler.IterPredictionFolder);
                 predictions = SNHDPIdealPoint.parallelTest(testDebateIndices,
@@ -3924,23 +4454,23 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
 
     protected void runSNLDAMultIdealPoint(File outputFolder) {
 //        double[][] issuePhis = estimateIssues();
-//        int J = CLIUtils.getIntegerArgument(cmd, "J", 3);
-//        double[] alphas = CLIUtils.getDoubleArrayArgument(cmd, "alphas",
+//        int J = getIntegerArgument("J", 3);
+//        double[] alphas = getDoubleArrayArgument("alphas",
 //                new double[]{0.1, 0.1}, ",");
-//        double[] betas = CLIUtils.getDoubleArrayArgument(cmd, "betas",
+//        double[] betas = getDoubleArrayArgument("betas",
 //                new double[]{10, 10, 0.1}, ",");
-//        double[] gamma_means = CLIUtils.getDoubleArrayArgument(cmd, "gamma-means",
+//        double[] gamma_means = getDoubleArrayArgument("gamma-means",
 //                new double[]{0.2, 0.2}, ",");
-//        double[] gamma_scales = CLIUtils.getDoubleArrayArgument(cmd, "gamma-scales",
+//        double[] gamma_scales = getDoubleArrayArgument("gamma-scales",
 //                new double[]{10, 1}, ",");
-//        double mu = CLIUtils.getDoubleArgument(cmd, "mu", 0.0);
-//        double[] sigmas = CLIUtils.getDoubleArrayArgument(cmd, "sigmas",
+//        double mu = getDoubleArgument("mu", 0.0);
+//        double[] sigmas = getDoubleArrayArgument("sigmas",
 //                new double[]{0.0, 1.0, 2.5}, ",");
-//        double l1 = CLIUtils.getDoubleArgument(cmd, "l1", 0.0);
-//        double l2 = CLIUtils.getDoubleArgument(cmd, "l2", 1.0);
-//        double lexl1 = CLIUtils.getDoubleArgument(cmd, "lexl1", 0.0);
-//        double lexl2 = CLIUtils.getDoubleArgument(cmd, "lexl2", 0.0);
-//        boolean hasRootTopic = cmd.hasOption("roottopic");
+//        double l1 = getDoubleArgument("l1", 0.0);
+//        double l2 = getDoubleArgument("l2", 1.0);
+//        double lexl1 = getDoubleArgument("lexl1", 0.0);
+//        double lexl2 = getDoubleArgument("lexl2", 0.0);
+//        boolean hasRootTopic = hasOption("roottopic");
 //
 //        SNLDAMultIdealPoint sampler = new SNLDAMultIdealPoint();
 //        sampler.setVerbose(verbose);
@@ -3952,7 +4482,7 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
 //        sampler.setLabelVocab(billData.getTopicVocab());
 //
 //        PathAssumption pathAssumption = PathAssumption.MAXIMAL;
-//        String path = CLIUtils.getStringArgument(cmd, "path", "max");
+//        String path = getStringArgument("path", "max");
 //        switch (path) {
 //            case "max":
 //                pathAssumption = PathAssumption.MAXIMAL;
@@ -3973,7 +4503,7 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
 //        File samplerFolder = new File(outputFolder, sampler.getSamplerFolder());
 //        IOUtils.createFolder(samplerFolder);
 //
-//        if (cmd.hasOption("train")) {
+//        if (hasOption("train")) {
 //            sampler.setupData(trainDebateIndices,
 //                    debateVoteData.getWords(),
 //                    debateVoteData.getAuthors(),
@@ -3984,7 +4514,7 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
 //            sampler.outputTopicTopWords(new File(samplerFolder, TopWordFile), numTopWords);
 //        }
 //
-//        if (cmd.hasOption("testauthor")) {
+//        if (hasOption("testauthor")) {
 //            File teResultFolder = new File(samplerFolder, TEST_PREFIX + RESULT_FOLDER);
 //            IOUtils.createFolder(teResultFolder);
 //
@@ -5103,6 +5633,31 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
         addOption("wwt", "Word weight type");
 
         addOption("init-maxiter", "Init max iter");
+        addOption("sweep-order", "Order of tokens in each sampling sweep (document or word)");
+        addOption("fold-threads", "Maximum number of cross-validation folds run concurrently");
+        addOption("fold-heap-mb", "Estimated heap (MB) needed per fold when running folds concurrently");
+        addOption("sweep", "Hyperparameter grid of the sweep run mode, e.g., K=10,25;alpha=0.1,1");
+        addOption("sweep-threads", "Maximum number of sweep configurations run concurrently");
+        addOption("sweep-heap-mb", "Estimated heap (MB) needed per configuration when running a sweep");
+        addOption("format-threads", "Number of threads to process texts when formatting data");
+        addOption("svi-batch", "Mini-batch size to train with stochastic variational inference");
+        addOption("svi-tau", "Delay of the stochastic variational learning rate");
+        addOption("svi-kappa", "Forgetting rate of the stochastic variational learning rate");
+        addOption("svi-local-iters", "Number of local updates per document in each mini-batch");
+        addOption("num-chains", "Number of Markov chains run concurrently");
+        addOption("seed", "Seed of per-thread random streams for reproducible parallel runs");
+        addOption("newton", "Tolerance of block-Newton ideal point updates (replaces gradient ascent)");
+        addOption("newton-iters", "Maximum number of block-Newton passes per ideal point update");
+        addOption("polya-gamma", "Number of threads of Polya-Gamma Gibbs sweeps of the ideal points (replaces gradient ascent)");
+        addOption("serve", "Port of the local HTTP vote prediction service over the trained model");
+        addOption("serve-threads", "Number of concurrent requests of the vote prediction service");
+        addOption("serve-iters", "Number of fold-in sweeps per vote prediction request");
+        addOption("serve-burn-in", "Number of burn-in fold-in sweeps per vote prediction request");
+        addOption("snapshot-cache-mb", "Memory (MB) of the shared cache of decompressed snapshots (0 to disable)");
+        addOption("init-cache", "Folder of the content-addressed cache of LDA initializations");
+        addOption("init-threads", "Number of threads of approximate parallel LDA initialization (1 for exact LDA)");
+        addOption("truncate", "Minimum fraction of tokens of a topic before it is deactivated (adaptive truncation)");
+        addOption("truncate-checks", "Number of consecutive checks below the minimum before a topic is deactivated");
         addOption("path", "Path assumption");
 
         // mode parameters
@@ -5140,6 +5695,9 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
 
         options.addOption("roottopic", false, "roottopic");
         options.addOption("mh", false, "Metropolis-Hastings");
+        options.addOption("incremental-llh", false, "Maintain log likelihoods incrementally while sampling");
+        options.addOption("binary-data", false, "Use the binary format of the debate data");
+        options.addOption("background-eval", false, "Evaluate training predictions on a background thread");
         options.addOption("initialize", false, "initialize");
         options.addOption("train", false, "train");
         options.addOption("dev", false, "development");
@@ -5197,6 +5755,17 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
             Congress.setDebug(debug);
             TextDataset.setDebug(debug);
             TextDataset.setVerbose(verbose);
+            if (cmd.hasOption("seed")) {
+                RandomStreams.install(Long.parseLong(cmd.getOptionValue("seed")));
+            }
+            if (cmd.hasOption("snapshot-cache-mb")) {
+                long cacheMb = Long.parseLong(cmd.getOptionValue("snapshot-cache-mb"));
+                SnapshotCache.getInstance().setCapacity(cacheMb * 1024 * 1024 / 2); // 2 bytes per char
+            }
+            if (cmd.hasOption("init-cache")) {
+                LDAInitCache.getInstance().setFolder(new File(cmd.getOptionValue("init-cache")));
+                LDAInitCache.getInstance().setVerbose(verbose);
+            }
 
             VotePredExpt expt = new VotePredExpt();
             expt.setup();
@@ -5205,12 +5774,18 @@ public class VotePredExpt extends AbstractExperiment<Congress> {
                 case "preprocess":
                     expt.preprocess();
                     break;
+                case "preprocess-append":
+                    expt.preprocessAppend();
+                    break;
                 case "preprocess-vote":
                     expt.preprocessVoteText();
                     break;
                 case "run":
                     expt.run();
                     break;
+                case "sweep":
+                    expt.sweep();
+                    break;
                 case "adhoc":
                     expt.adhocProcess();
                     break;
@@ -52,7 +52,8 @@ public class BayesianIdealPoint extends IdealPoint {
                 + "_e-" + MiscUtils.formatDouble(eta)
                 + "_m-" + maxIter
                 + "_m-" + MiscUtils.formatDouble(mean)
-                + "_s-" + MiscUtils.formatDouble(var);
+                + "_s-" + MiscUtils.formatDouble(var)
+                + getOptimizerSuffix();
     }
 
     @Override
@@ -97,8 +98,22 @@ public class BayesianIdealPoint extends IdealPoint {
         }
     }
 
+    @Override
+    protected double getPriorMean() {
+        return this.mean;
+    }
+
+    @Override
+    protected double getPriorVariance() {
+        return this.var;
+    }
+
     @Override
     protected void iterate() {
+        if (optimizerType == OptimizerType.NEWTON) {
+            iterateNewton();
+            return;
+        }
         this.authorList = new ArrayList<>();
         for (int aa = 0; aa < A; aa++) {
             this.authorList.add(aa);
@@ -5,6 +5,8 @@ import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import optimization.OWLQN;
 import util.IOUtils;
 import util.MiscUtils;
@@ -138,6 +140,46 @@ public class BayesianMultIdealPointOWLQN extends BayesianIdealPoint {
         }
     }
 
+    @Override
+    protected void ensureBillCapacity(int capacity) {
+        super.ensureBillCapacity(capacity);
+        if (xs.length < validBs.length) {
+            int oldCapacity = xs.length;
+            this.xs = Arrays.copyOf(this.xs, validBs.length);
+            for (int bb = oldCapacity; bb < xs.length; bb++) {
+                this.xs[bb] = new double[K + 1];
+            }
+        }
+    }
+
+    @Override
+    protected void initializeBill(int bb) {
+        Arrays.fill(this.xs[bb], 0.0);
+    }
+
+    /**
+     * Local updates of the affected bills and authors, each running OWL-QN
+     * for a few iterations from its current value.
+     *
+     * @param bills Affected bills
+     * @param authors Affected authors
+     */
+    @Override
+    protected void updateOnline(ArrayList<Integer> bills, ArrayList<Integer> authors) {
+        for (int bb : bills) {
+            OWLQN minimizer = new OWLQN();
+            minimizer.setQuiet(true);
+            minimizer.setMaxIters(numOnlineSteps);
+            minimizer.minimize(new XYDiffFunc(bb), xs[bb], l1);
+        }
+        for (int aa : authors) {
+            OWLQN minimizer = new OWLQN();
+            minimizer.setQuiet(true);
+            minimizer.setMaxIters(numOnlineSteps);
+            minimizer.minimize(new UDiffFunc(aa), us[aa], l1);
+        }
+    }
+
     @Override
     public double getLogLikelihood() {
         double llh = 0.0;
@@ -1,6 +1,8 @@
 package votepredictor;
 
 import votepredictor.textidealpoint.AbstractTextIdealPoint;
+import votepredictor.textidealpoint.ActiveComponents;
+import votepredictor.textidealpoint.TokenStore;
 import edu.stanford.nlp.optimization.DiffFunction;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
@@ -37,7 +39,8 @@ public class DirSLDAIdealPoint extends AbstractTextIdealPoint {
     // latent variables
     protected DirMult[] topicWords;
     protected DirMult[] docTopics;
-    protected int[][] z;
+    protected TokenStore tokens; // words and topic assignments
+    protected ActiveComponents activeTopics; // topics kept by adaptive truncation
     protected double[] eta; // regression parameters for topics
     protected double[] x; // [B]
     protected double[] y; // [B]
@@ -69,6 +72,7 @@ public class DirSLDAIdealPoint extends AbstractTextIdealPoint {
                 sampler.MAX_ITER,
                 sampler.LAG,
                 sampler.REP_INTERVAL);
+        this.setAdaptiveTruncation(sampler.truncationMinMass, sampler.truncationNumChecks);
     }
 
     public void configure(
@@ -151,6 +155,11 @@ public class DirSLDAIdealPoint extends AbstractTextIdealPoint {
         return us;
     }
 
+    @Override
+    protected boolean supportsAdaptiveTruncation() {
+        return true;
+    }
+
     public double[] getXs() {
         return this.x;
     }
@@ -313,8 +322,8 @@ public class DirSLDAIdealPoint extends AbstractTextIdealPoint {
             for (int d = 0; d < D; d++) {
                 assignStr.append(d).append("\n");
                 assignStr.append(DirMult.output(docTopics[d])).append("\n");
-                for (int n = 0; n < z[d].length; n++) {
-                    assignStr.append(z[d][n]).append("\t");
+                for (int ii = tokens.getStart(d); ii < tokens.getEnd(d); ii++) {
+                    assignStr.append(tokens.getZ(ii)).append("\t");
                 }
                 assignStr.append("\n");
             }
@@ -378,6 +387,7 @@ public class DirSLDAIdealPoint extends AbstractTextIdealPoint {
         for (int k = 0; k < K; k++) {
             eta[k] = SamplerUtils.getGaussian(mu, sigma);
         }
+        activeTopics = new ActiveComponents(K);
 
         this.x = new double[B];
         this.y = new double[B];
@@ -387,10 +397,26 @@ public class DirSLDAIdealPoint extends AbstractTextIdealPoint {
         }
     }
 
+    @Override
+    public void shareTokens(AbstractTextIdealPoint other) {
+        TokenStore otherTokens = ((DirSLDAIdealPoint) other).tokens;
+        if (otherTokens == null) {
+            throw new RuntimeException("Chain " + other.getChain()
+                    + " has not been initialized");
+        }
+        if (otherTokens.getNumDocuments() != D) {
+            throw new MismatchRuntimeException(otherTokens.getNumDocuments(), D);
+        }
+        this.tokens = otherTokens;
+        this.words = null; // new assignments over the shared word types
+    }
+
     protected void initializeDataStructure() {
-        z = new int[D][];
-        for (int d = 0; d < D; d++) {
-            z[d] = new int[words[d].length];
+        if (words != null) {
+            tokens = new TokenStore(words, K);
+            words = null; // the word types are kept by the token store
+        } else {
+            tokens = new TokenStore(tokens, K);
         }
 
         docTopics = new DirMult[D];
@@ -434,51 +460,22 @@ public class DirSLDAIdealPoint extends AbstractTextIdealPoint {
         int lda_burnin = 10;
         int lda_maxiter = 100;
         int lda_samplelag = 10;
-        LDA lda = new LDA();
-        lda.setDebug(debug);
-        lda.setVerbose(verbose);
-        lda.setLog(false);
         double lda_alpha = hyperparams.get(ALPHA);
         double lda_beta = hyperparams.get(BETA);
-
-        lda.configure(folder, V, K, lda_alpha, lda_beta, InitialState.RANDOM, false,
-                lda_burnin, lda_maxiter, lda_samplelag, lda_samplelag);
-
-        int[][] ldaZ = null;
-        try {
-            File ldaFile = new File(lda.getSamplerFolderPath(), basename + ".zip");
-            lda.train(words, null);
-            if (ldaFile.exists()) {
-                if (verbose) {
-                    logln("--- --- LDA file exists. Loading from " + ldaFile);
-                }
-                lda.inputState(ldaFile);
-            } else {
-                if (verbose) {
-                    logln("--- --- LDA not found. Running LDA ...");
-                }
-                lda.initialize();
-                lda.iterate();
-                IOUtils.createFolder(lda.getSamplerFolderPath());
-                lda.outputState(ldaFile);
-                lda.setWordVocab(wordVocab);
-                lda.outputTopicTopWords(new File(lda.getSamplerFolderPath(), TopWordFile), 20);
-            }
-            ldaZ = lda.getZs();
-        } catch (Exception e) {
-            e.printStackTrace();
-            throw new RuntimeException("Exception while running LDA for initialization");
-        }
-        setLog(log);
+        LDA lda = runLDA(tokens.getWords(), K, V, null, null,
+                lda_alpha, lda_beta,
+                lda_burnin, lda_maxiter, lda_samplelag);
+        int[][] ldaZ = lda.getZs();
 
         // initialize assignments
         for (int dd = 0; dd < D; dd++) {
             int aa = authors[dd];
-            for (int nn = 0; nn < words[dd].length; nn++) {
-                z[dd][nn] = ldaZ[dd][nn];
-                docTopics[dd].increment(z[dd][nn]);
-                topicWords[z[dd][nn]].increment(words[dd][nn]);
-                za[aa].change(z[dd][nn], 1.0 / authorTotalWordWeights[aa]);
+            for (int nn = 0; nn < tokens.getLength(dd); nn++) {
+                int kk = ldaZ[dd][nn];
+                tokens.setZ(dd, nn, kk);
+                docTopics[dd].increment(kk);
+                topicWords[kk].increment(tokens.getWord(dd, nn));
+                za[aa].change(kk, 1.0 / authorTotalWordWeights[aa]);
             }
         }
     }
@@ -534,6 +531,10 @@ public class DirSLDAIdealPoint extends AbstractTextIdealPoint {
             updateUXY();
             sampleZs(REMOVE, ADD, REMOVE, ADD, OBSERVED);
 
+            if (isTruncationCheck()) {
+                truncateTopics();
+            }
+
             // parameter optimization
             if (iter % LAG == 0 && iter >= BURN_IN) {
                 if (paramOptimized) { // slice sampling
@@ -598,58 +599,26 @@ public class DirSLDAIdealPoint extends AbstractTextIdealPoint {
         long sTime = System.currentTimeMillis();
         numTokensChanged = 0;
         numTokensAccepted = 0;
-        for (int d = 0; d < D; d++) {
-            int aa = authors[d];
-            for (int n = 0; n < words[d].length; n++) {
-                if (removeFromModel) {
-                    topicWords[z[d][n]].decrement(words[d][n]);
-                }
-                if (removeFromData) {
-                    docTopics[d].decrement(z[d][n]);
-                    za[aa].change(z[d][n], -1.0 / authorTotalWordWeights[aa]);
-                }
-
-//                double[] logprobs = new double[K];
-//                for (int kk = 0; kk < K; kk++) {
-//                    logprobs[kk]
-//                            = Math.log(docTopics[d].getCount(kk) + hyperparams.get(ALPHA))
-//                            + Math.log(topicWords[kk].getProbability(words[d][n]));
-//                    if (observe) {
-//                        double aMean = authorMeans[aa]
-//                                + eta[kk] / authorTotalWordWeights[aa];
-//                        double resLLh = StatUtils.logNormalProbability(u[aa], aMean, Math.sqrt(rho));
-//                        logprobs[kk] += resLLh;
-//                    }
-//                }
-//                int sampledZ = SamplerUtils.logMaxRescaleSample(logprobs);
-//                if (sampledZ == K) {
-//                    logln("iter = " + iter + ". d = " + d + ". n = " + n);
-//                    for (int kk = 0; kk < K; kk++) {
-//                        logln("k = " + kk
-//                                + ". " + (Math.log(docTopics[d].getCount(kk) + hyperparams.get(ALPHA)))
-//                                + ". " + (Math.log(topicWords[kk].getProbability(words[d][n]))));
-//                    }
-//                    throw new RuntimeException("Out-of-bound sample. "
-//                            + "SampledZ = " + sampledZ);
-//                }
-//                if (z[d][n] != sampledZ) {
-//                    numTokensChanged++; // for debugging
-//                }
-                // update
-                z[d][n] = sampleZ(d, n, observe);
-
-                if (addToModel) {
-                    topicWords[z[d][n]].increment(words[d][n]);
+        if (sweepOrder == TokenStore.SweepOrder.WORD) {
+            if (!tokens.hasWordIndex()) {
+                tokens.buildWordIndex(V);
+            }
+            for (int vv = 0; vv < V; vv++) {
+                for (int jj = tokens.getWordStart(vv); jj < tokens.getWordEnd(vv); jj++) {
+                    sampleToken(tokens.getWordTokenDoc(jj), tokens.getWordToken(jj),
+                            removeFromModel, addToModel, removeFromData, addToData, observe);
                 }
-                if (addToData) {
-                    docTopics[d].increment(z[d][n]);
-                    za[aa].change(z[d][n], 1.0 / authorTotalWordWeights[aa]);
+            }
+        } else {
+            for (int d = 0; d < D; d++) {
+                for (int ii = tokens.getStart(d); ii < tokens.getEnd(d); ii++) {
+                    sampleToken(d, ii, removeFromModel, addToModel, removeFromData, addToData, observe);
                 }
             }
         }
         long eTime = System.currentTimeMillis() - sTime;
         if (isReporting) {
-            logln("--- --- time: " + eTime);
+            logln("--- --- time: " + eTime + " (" + sweepOrder + ")");
             logln("--- --- # tokens: " + numTokens
                     + ". # tokens changed: " + numTokensChanged
                     + " (" + MiscUtils.formatDouble((double) numTokensChanged / numTokens) + ")"
@@ -659,36 +628,108 @@ public class DirSLDAIdealPoint extends AbstractTextIdealPoint {
         return eTime;
     }
 
+    /**
+     * Sample the topic assignment of a single token.
+     *
+     * @param d Document index
+     * @param ii Token position in the token store
+     * @param removeFromModel
+     * @param addToModel
+     * @param removeFromData
+     * @param addToData
+     * @param observe
+     */
+    private void sampleToken(int d, int ii,
+            boolean removeFromModel, boolean addToModel,
+            boolean removeFromData, boolean addToData,
+            boolean observe) {
+        int aa = authors[d];
+        int vv = tokens.getWord(ii);
+        int curZ = tokens.getZ(ii);
+        if (removeFromModel) {
+            topicWords[curZ].decrement(vv);
+        }
+        if (removeFromData) {
+            docTopics[d].decrement(curZ);
+            za[aa].change(curZ, -1.0 / authorTotalWordWeights[aa]);
+        }
+
+        int sampledZ = sampleZ(d, ii, observe);
+        tokens.setZ(ii, sampledZ);
+
+        if (addToModel) {
+            topicWords[sampledZ].increment(vv);
+        }
+        if (addToData) {
+            docTopics[d].increment(sampledZ);
+            za[aa].change(sampledZ, 1.0 / authorTotalWordWeights[aa]);
+        }
+    }
+
     /**
      * Sample topic assignment using Metropolis-Hastings.
      *     
 * @param dd
-     * @param nn
+     * @param ii Token position in the token store
      * @param observe
      * @return
      */
-    private int sampleZ(int dd, int nn, boolean observe) {
-        double[] probs = new double[K];
-        for (int kk = 0; kk < K; kk++) {
-            probs[kk] = (docTopics[dd].getCount(kk) + hyperparams.get(ALPHA))
-                    * topicWords[kk].getProbability(words[dd][nn]);
-        }
-        int sampledZ = SamplerUtils.scaleSample(probs);
+    private int sampleZ(int dd, int ii, boolean observe) {
+        int vv = tokens.getWord(ii);
+        int curZ = tokens.getZ(ii);
+        int[] candidates = activeTopics.getIndices();
+        double[] probs = new double[candidates.length];
+        for (int jj = 0; jj < candidates.length; jj++) {
+            int kk = candidates[jj];
+            probs[jj] = (docTopics[dd].getCount(kk) + hyperparams.get(ALPHA))
+                    * topicWords[kk].getProbability(vv);
+        }
+        int sampledZ = candidates[SamplerUtils.scaleSample(probs)];
         boolean accept;
-        if (!observe || sampledZ == z[dd][nn]) {
+        if (!observe || sampledZ == curZ) {
             accept = true;
         } else {
-            accept = evaluateProposalAssignment(authors[dd], z[dd][nn], sampledZ);
+            accept = evaluateProposalAssignment(authors[dd], curZ, sampledZ);
         }
         if (accept) {
             numTokensAccepted++;
-            if (z[dd][nn] != sampledZ) {
+            if (curZ != sampledZ) {
                 numTokensChanged++;
             }
             return sampledZ;
         } else {
-            return z[dd][nn];
+            return curZ;
+        }
+    }
+
+    /**
+     * Deactivate the topics whose token counts have stayed below the minimum
+     * and reassign their tokens to the active topics. The tokens are sampled
+     * from the proposal distribution directly since a rejected proposal would
+     * leave them in a deactivated topic.
+     */
+    protected void truncateTopics() {
+        int[] counts = new int[K];
+        for (int kk = 0; kk < K; kk++) {
+            counts[kk] = topicWords[kk].getCountSum();
+        }
+        ArrayList<Integer> deactivated = activeTopics.update(counts,
+                truncationMinMass * numTokens, truncationNumChecks);
+        if (deactivated.isEmpty()) {
+            return;
         }
+        int numReassigned = 0;
+        for (int d = 0; d < D; d++) {
+            for (int ii = tokens.getStart(d); ii < tokens.getEnd(d); ii++) {
+                if (!activeTopics.isActive(tokens.getZ(ii))) {
+                    sampleToken(d, ii, REMOVE, ADD, REMOVE, ADD, !OBSERVED);
+                    numReassigned++;
+                }
+            }
+        }
+        logln("--- Iter " + iter + ". Deactivated topics " + deactivated
+                + ". # tokens reassigned: " + numReassigned
+                + ". # active topics: " + activeTopics.getNumActive() + "/" + K);
     }
 
     /**
@@ -786,11 +827,25 @@ public class DirSLDAIdealPoint extends AbstractTextIdealPoint {
         }
         long sTime = System.currentTimeMillis();
 
+        // only the active topics are regressed on
+        int[] active = activeTopics.getIndices();
+        double[] params = eta;
+        if (active.length < K) {
+            params = new double[active.length];
+            for (int jj = 0; jj < active.length; jj++) {
+                params[jj] = eta[active[jj]];
+            }
+        }
         OWLQN minimizer = new OWLQN();
         minimizer.setQuiet(true);
         minimizer.setMaxIters(100);
-        EtaDiffFunc diff = new EtaDiffFunc();
-        minimizer.minimize(diff, eta, 0.0);
+        EtaDiffFunc diff = new EtaDiffFunc(active);
+        minimizer.minimize(diff, params, 0.0);
+        if (params != eta) {
+            for (int jj = 0; jj < active.length; jj++) {
+                eta[active[jj]] = params[jj];
+            }
+        }
 
         long eTime = System.currentTimeMillis() - sTime;
         if (isReporting) {
@@ -906,8 +961,8 @@ public class DirSLDAIdealPoint extends AbstractTextIdealPoint {
             for (int d = 0; d < D; d++) {
                 assignStr.append(d).append("\n");
                 assignStr.append(DirMult.output(docTopics[d])).append("\n");
-                for (int n = 0; n < z[d].length; n++) {
-                    assignStr.append(z[d][n]).append("\t");
+                for (int ii = tokens.getStart(d); ii < tokens.getEnd(d); ii++) {
+                    assignStr.append(tokens.getZ(ii)).append("\t");
                 }
                 assignStr.append("\n");
             }
@@ -970,6 +1025,15 @@ public class DirSLDAIdealPoint extends AbstractTextIdealPoint {
                 eta[kk] = Double.parseDouble(reader.readLine());
                 topicWords[kk] = DirMult.input(reader.readLine());
             }
+            // topics emptied by truncation during training stay inactive
+            activeTopics = new ActiveComponents(K);
+            if (isTruncating()) {
+                for (int kk = 0; kk < K; kk++) {
+                    if (topicWords[kk].getCountSum() == 0) {
+                        activeTopics.deactivate(kk);
+                    }
+                }
+            }
 
             wordWeights = new double[V];
             for (int vv = 0; vv < V; vv++) {
@@ -1008,14 +1072,15 @@ public class DirSLDAIdealPoint extends AbstractTextIdealPoint {
                 docTopics[d] = DirMult.input(reader.readLine());
 
                 String[] sline = reader.readLine().split("\t");
-                if (sline.length != words[d].length) {
+                if (sline.length != tokens.getLength(d)) {
                     throw new RuntimeException("[MISMATCH]. Doc "
-                            + d + ". " + sline.length + " vs. " + words[d].length);
+                            + d + ". " + sline.length + " vs. " + tokens.getLength(d));
                 }
                 int aa = authors[d];
-                for (int n = 0; n < words[d].length; n++) {
-                    z[d][n] = Integer.parseInt(sline[n]);
-                    za[aa].change(z[d][n], 1.0 / authorTotalWordWeights[aa]);
+                for (int n = 0; n < tokens.getLength(d); n++) {
+                    int kk = Integer.parseInt(sline[n]);
+                    tokens.setZ(d, n, kk);
+                    za[aa].change(kk, 1.0 / authorTotalWordWeights[aa]);
                 }
             }
             reader.close();
@@ -1099,52 +1164,74 @@ public class DirSLDAIdealPoint extends AbstractTextIdealPoint {
     }
 
     /**
-     * Optimize eta for vote likelihood.
+     * Optimize eta of the active topics for vote likelihood.
      */
     class EtaDiffFunc implements DiffFunction {
 
+        private final int[] active;
+
+        EtaDiffFunc(int[] active) {
+            this.active = active;
+        }
+
+        /**
+         * Etas of all topics, which are zero for inactive topics.
+         */
+        private double[] expand(double[] w) {
+            if (active.length == K) {
+                return w;
+            }
+            double[] fullW = new double[K];
+            for (int jj = 0; jj < active.length; jj++) {
+                fullW[active[jj]] = w[jj];
+            }
+            return fullW;
+        }
+
         @Override
         public int domainDimension() {
-            return K;
+            return active.length;
         }
 
         @Override
         public double valueAt(double[] w) {
+            double[] fullW = expand(w);
             double llh = 0.0;
             for (int aa = 0; aa < A; aa++) {
                 for (int bb = 0; bb < B; bb++) {
                     if (isValidVote(aa, bb)) {
-                        double dotprod = za[aa].dotProduct(w) * x[bb] + y[bb];
+                        double dotprod = za[aa].dotProduct(fullW) * x[bb] + y[bb];
                         llh += getVote(aa, bb) * dotprod - Math.log(Math.exp(dotprod) + 1);
                     }
                 }
             }
 
             double reg = 0.0;
-            for (int kk = 0; kk < K; kk++) {
-                reg += 0.5 * w[kk] * w[kk] / sigma;
+            for (int jj = 0; jj < active.length; jj++) {
+                reg += 0.5 * w[jj] * w[jj] / sigma;
             }
             return -llh + reg;
         }
 
         @Override
         public double[] derivativeAt(double[] w) {
-            double[] grads = new double[K];
+            double[] fullW = expand(w);
+            double[] grads = new double[active.length];
             for (int aa = 0; aa < A; aa++) {
                 for (int bb = 0; bb < B; bb++) {
                     if (isValidVote(aa, bb)) {
-                        double dotprod = za[aa].dotProduct(w) * x[bb] + y[bb];
+                        double dotprod = za[aa].dotProduct(fullW) * x[bb] + y[bb];
                         double score = Math.exp(dotprod);
                         double prob = score / (1 + score);
-                        for (int kk = 0; kk < K; kk++) {
-                            grads[kk] -= x[bb] * za[aa].get(kk) * (getVote(aa, bb) - prob);
+                        for (int jj = 0; jj < active.length; jj++) {
+                            grads[jj] -= x[bb] * za[aa].get(active[jj]) * (getVote(aa, bb) - prob);
                         }
                     }
                 }
             }
 
-            for (int kk = 0; kk < K; kk++) {
-                grads[kk] += w[kk] / sigma;
+            for (int jj = 0; jj < active.length; jj++) {
+                grads[jj] += w[jj] / sigma;
             }
             return grads;
         }
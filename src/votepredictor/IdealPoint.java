@@ -1,11 +1,13 @@
 package votepredictor;
 
+import data.FoldView;
 import data.Vote;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import util.IOUtils;
 import util.MiscUtils;
@@ -44,6 +46,20 @@ public class IdealPoint extends AbstractVotePredictor {
     protected int negAnchor;
     protected final double anchorMean = 3.0;
     protected final double anchorVar = 0.01;
+    // online
+    protected int numOnlineSteps = 5; // number of local steps per online update
+    protected int resyncInterval = 0; // full re-sync every this many updates, 0 to disable
+    protected int numOnlineUpdates;
+    // optimizer
+    protected OptimizerType optimizerType = OptimizerType.GRADIENT;
+    protected double newtonTolerance = 1E-6;
+    protected NewtonIdealPointOptimizer optimizer; // built once, extended online
+    protected ObservedVotes observedVotes;
+
+    public enum OptimizerType {
+
+        GRADIENT, NEWTON
+    }
 
     public IdealPoint() {
         this.name = "ideal-point";
@@ -68,7 +84,31 @@ public class IdealPoint extends AbstractVotePredictor {
         return this.name
                 + "_a-" + MiscUtils.formatDouble(alpha)
                 + "_e-" + MiscUtils.formatDouble(eta)
-                + "_m-" + maxIter;
+                + "_m-" + maxIter
+                + getOptimizerSuffix();
+    }
+
+    protected String getOptimizerSuffix() {
+        if (optimizerType == OptimizerType.NEWTON) {
+            return "_newton-" + newtonTolerance;
+        }
+        return "";
+    }
+
+    /**
+     * Optimize with block-Newton passes instead of gradient ascent. Passes
+     * stop when the relative change of the log posterior is below the
+     * tolerance or after maxIter passes. No learning rate is needed.
+     *
+     * @param tolerance Convergence tolerance
+     */
+    public void setNewton(double tolerance) {
+        this.optimizerType = OptimizerType.NEWTON;
+        this.newtonTolerance = tolerance;
+    }
+
+    public OptimizerType getOptimizerType() {
+        return this.optimizerType;
     }
 
     public double[] getUs() {
@@ -107,6 +147,18 @@ public class IdealPoint extends AbstractVotePredictor {
         this.voteVocab = voteVoc;
     }
 
+    /**
+     * Configure online updates.
+     *
+     * @param numOnlineSteps Number of local steps for each online update
+     * @param resyncInterval Run a full re-sync after every this many online
+     * updates, 0 to only re-sync when resync() is called
+     */
+    public void setOnlineParameters(int numOnlineSteps, int resyncInterval) {
+        this.numOnlineSteps = numOnlineSteps;
+        this.resyncInterval = resyncInterval;
+    }
+
     public double getLearningRate() {
         return eta * Math.pow(alpha, -(double) iter / maxIter);
     }
@@ -154,6 +206,8 @@ public class IdealPoint extends AbstractVotePredictor {
             }
         }
 
+        this.observedVotes = null;
+        this.optimizer = null;
         this.validAs = new boolean[A];
         this.validBs = new boolean[B];
         for (int aa = 0; aa < A; aa++) {
@@ -212,6 +266,10 @@ public class IdealPoint extends AbstractVotePredictor {
     }
 
     protected void iterate() {
+        if (optimizerType == OptimizerType.NEWTON) {
+            iterateNewton();
+            return;
+        }
         int stepSize = MiscUtils.getRoundStepSize(maxIter, 10);
         for (iter = 0; iter < maxIter; iter++) {
             if (verbose && iter % stepSize == 0) {
@@ -228,6 +286,28 @@ public class IdealPoint extends AbstractVotePredictor {
         }
     }
 
+    /**
+     * Optimize all parameters with block-Newton passes, using a Gaussian prior
+     * so that authors and bills whose votes are perfectly separated stay
+     * finite.
+     */
+    protected void iterateNewton() {
+        NewtonIdealPointOptimizer optimizer = getOptimizer();
+        optimizer.setTolerance(newtonTolerance);
+        optimizer.setMaxIterations(maxIter);
+        double logPosterior = optimizer.optimize(u, x, y);
+        iter = optimizer.getNumIterations();
+        if (verbose) {
+            logln("--- Newton converged after " + iter + " passes"
+                    + "\tlog posterior = " + MiscUtils.formatDouble(logPosterior)
+                    + "\tllh = " + MiscUtils.formatDouble(getLogLikelihood())
+                    + ". positive anchor (" + posAnchor + "): "
+                    + MiscUtils.formatDouble(u[posAnchor])
+                    + ". negative anchor (" + negAnchor + "): "
+                    + MiscUtils.formatDouble(u[negAnchor]));
+        }
+    }
+
     protected void updateUs() {
         double aRate = getLearningRate();
         for (int a = 0; a < A; a++) {
@@ -261,6 +341,177 @@ public class IdealPoint extends AbstractVotePredictor {
         }
     }
 
+    /**
+     * Online update of a trained model with the votes on new bills, or new
+     * votes on existing bills. The new votes are added to the training data,
+     * then only the parameters of the affected bills and authors are updated
+     * with a few local steps, keeping all other parameters fixed. Votes of
+     * authors not in the model are ignored.
+     *
+     * @param votes All votes, indexed in the same way as in setTrain
+     * @param newBillIndices Bills having new votes
+     * @param newVotes New votes to add
+     */
+    public void update(int[][] votes,
+            ArrayList<Integer> newBillIndices,
+            boolean[][] newVotes) {
+        if (this.votes == null) {
+            throw new RuntimeException("Training votes are not available. "
+                    + "Online updates need a model trained with setTrain or "
+                    + "output with its training votes.");
+        }
+        int[] billPos = FoldView.getInverseIndices(billIndices);
+        boolean[] affectedAs = new boolean[A];
+        ArrayList<Integer> affectedBills = new ArrayList<>();
+        ArrayList<Integer> addedAuthors = new ArrayList<>();
+        ArrayList<Integer> addedBills = new ArrayList<>();
+        for (int bill : newBillIndices) {
+            int bb = FoldView.getPosition(billPos, bill);
+            if (bb < 0) { // new bill
+                bb = B;
+                ensureBillCapacity(B + 1);
+                billIndices.add(bill);
+                B++;
+                initializeBill(bb);
+            }
+            for (int aa = 0; aa < A; aa++) {
+                int author = authorIndices.get(aa);
+                if (newVotes[author][bill]) {
+                    if (observedVotes != null) {
+                        if (this.mask[aa][bb]) {
+                            observedVotes.setVote(aa, bb, votes[author][bill]);
+                        } else {
+                            addedAuthors.add(aa);
+                            addedBills.add(bb);
+                        }
+                    }
+                    this.votes[aa][bb] = votes[author][bill];
+                    this.mask[aa][bb] = true;
+                    this.validAs[aa] = true;
+                    this.validBs[bb] = true;
+                    affectedAs[aa] = true;
+                }
+            }
+            if (validBs[bb]) {
+                affectedBills.add(bb);
+            }
+        }
+        ArrayList<Integer> affectedAuthors = new ArrayList<>();
+        for (int aa = 0; aa < A; aa++) {
+            if (affectedAs[aa]) {
+                affectedAuthors.add(aa);
+            }
+        }
+        if (observedVotes != null) {
+            int[] as = new int[addedAuthors.size()];
+            int[] bs = new int[addedBills.size()];
+            int[] vs = new int[addedAuthors.size()];
+            for (int ii = 0; ii < as.length; ii++) {
+                as[ii] = addedAuthors.get(ii);
+                bs[ii] = addedBills.get(ii);
+                vs[ii] = this.votes[as[ii]][bs[ii]];
+            }
+            observedVotes.addVotes(B, as, bs, vs);
+        }
+        if (verbose) {
+            logln("--- Online update. # bills: " + affectedBills.size()
+                    + ". # authors: " + affectedAuthors.size());
+        }
+
+        updateOnline(affectedBills, affectedAuthors);
+        numOnlineUpdates++;
+        if (resyncInterval > 0 && numOnlineUpdates % resyncInterval == 0) {
+            resync();
+        }
+    }
+
+    /**
+     * Full re-sync: re-optimize all parameters on all training votes,
+     * starting from the current parameters.
+     */
+    public void resync() {
+        if (verbose) {
+            logln("--- Re-syncing after " + numOnlineUpdates + " online updates");
+        }
+        iterate();
+    }
+
+    /**
+     * Make sure that the bill-specific arrays can hold a given number of bills.
+     * Extra columns of the vote mask are not observed, so they are skipped by
+     * all updates.
+     *
+     * @param capacity Number of bills
+     */
+    protected void ensureBillCapacity(int capacity) {
+        if (mask.length > 0 && mask[0].length >= capacity) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, 2 * B);
+        for (int aa = 0; aa < A; aa++) {
+            this.votes[aa] = Arrays.copyOf(this.votes[aa], newCapacity);
+            this.mask[aa] = Arrays.copyOf(this.mask[aa], newCapacity);
+        }
+        this.validBs = Arrays.copyOf(this.validBs, newCapacity);
+        if (this.x != null) {
+            this.x = Arrays.copyOf(this.x, newCapacity);
+            this.y = Arrays.copyOf(this.y, newCapacity);
+        }
+    }
+
+    /**
+     * Initialize the parameters of a new bill added online.
+     *
+     * @param bb Bill index
+     */
+    protected void initializeBill(int bb) {
+        this.x[bb] = getPriorMean();
+        this.y[bb] = getPriorMean();
+    }
+
+    protected double getPriorMean() {
+        return 0.0;
+    }
+
+    protected double getPriorVariance() {
+        return 5.0;
+    }
+
+    /**
+     * Local updates of the affected bills and authors. Each parameter is
+     * updated with Newton steps on its log posterior, using a Gaussian prior
+     * to keep bills and authors with few votes well-conditioned.
+     *
+     * @param bills Affected bills
+     * @param authors Affected authors
+     */
+    protected void updateOnline(ArrayList<Integer> bills, ArrayList<Integer> authors) {
+        NewtonIdealPointOptimizer optimizer = getOptimizer();
+        for (int ss = 0; ss < numOnlineSteps; ss++) {
+            for (int bb : bills) {
+                optimizer.updateBill(bb, u, x, y);
+            }
+            for (int aa : authors) {
+                optimizer.updateAuthor(aa, u, x, y);
+            }
+        }
+    }
+
+    /**
+     * Block-Newton optimizer on the current training votes, using the prior
+     * of this model. The observed votes are indexed once and extended with the
+     * votes added by online updates.
+     */
+    protected NewtonIdealPointOptimizer getOptimizer() {
+        if (optimizer == null) {
+            observedVotes = ObservedVotes.create(votes, mask, A, B);
+            optimizer = new NewtonIdealPointOptimizer(observedVotes);
+        }
+        optimizer.setAuthorPrior(getPriorMean(), getPriorVariance());
+        optimizer.setBillPrior(getPriorMean(), getPriorVariance());
+        return optimizer;
+    }
+
     public double getLogLikelihood() {
         double llh = 0.0;
         int count = 0;
@@ -310,6 +561,24 @@ public class IdealPoint extends AbstractVotePredictor {
             for (int bb = 0; bb < B; bb++) {
                 writer.write(x[bb] + "\t" + y[bb] + "\n");
             }
+            // training votes, needed by online updates
+            if (votes != null) {
+                StringBuilder str = new StringBuilder();
+                for (int bb = 0; bb < B; bb++) {
+                    str.append(bb == 0 ? "" : "\t").append(billIndices.get(bb));
+                }
+                writer.write(str.toString() + "\n");
+                for (int aa = 0; aa < A; aa++) {
+                    str = new StringBuilder();
+                    str.append(authorIndices.get(aa));
+                    for (int bb = 0; bb < B; bb++) {
+                        if (mask[aa][bb]) {
+                            str.append("\t").append(bb).append(":").append(votes[aa][bb]);
+                        }
+                    }
+                    writer.write(str.toString() + "\n");
+                }
+            }
             writer.close();
         } catch (IOException e) {
             e.printStackTrace();
@@ -339,6 +608,35 @@ public class IdealPoint extends AbstractVotePredictor {
                 x[bb] = Double.parseDouble(sline[0]);
                 y[bb] = Double.parseDouble(sline[1]);
             }
+            // training votes, absent in models output without them
+            this.votes = null;
+            this.mask = null;
+            this.observedVotes = null;
+            this.optimizer = null;
+            String line = reader.readLine();
+            if (line != null) {
+                this.billIndices = new ArrayList<>();
+                for (String bill : line.split("\t")) {
+                    this.billIndices.add(Integer.parseInt(bill));
+                }
+                this.authorIndices = new ArrayList<>();
+                this.votes = new int[A][B];
+                this.mask = new boolean[A][B];
+                this.validAs = new boolean[A];
+                this.validBs = new boolean[B];
+                for (int aa = 0; aa < A; aa++) {
+                    String[] sline = reader.readLine().split("\t");
+                    this.authorIndices.add(Integer.parseInt(sline[0]));
+                    for (int ii = 1; ii < sline.length; ii++) {
+                        String[] vote = sline[ii].split(":");
+                        int bb = Integer.parseInt(vote[0]);
+                        this.votes[aa][bb] = Integer.parseInt(vote[1]);
+                        this.mask[aa][bb] = true;
+                        this.validAs[aa] = true;
+                        this.validBs[bb] = true;
+                    }
+                }
+            }
             reader.close();
         } catch (IOException | NumberFormatException e) {
             e.printStackTrace();
@@ -0,0 +1,375 @@
+package votepredictor;
+
+/**
+ * Block-Newton optimizer of the MAP estimate of a one-dimensional ideal point
+ * model, where the probability that author a votes with bill b is
+ * logistic(u_a * x_b + y_b), with Gaussian priors on u, x and y.
+ *
+ * Each pass updates every bill's (x_b, y_b) with a two-dimensional Newton step
+ * and then every author's u_a with a one-dimensional Newton step, keeping the
+ * other block fixed. Bills go first so that the orientation of the given ideal
+ * points (e.g., from the anchored initialization) is kept. The gradient and
+ * the Hessian of each block are accumulated in a single pass over its observed
+ * votes. Since full Newton steps can overshoot when the votes are far from
+ * being fitted, steps are halved until the block's log posterior does not
+ * decrease. Passes stop when the relative change of the log posterior is below
+ * a tolerance.
+ *
+ * Observed votes are stored per author and per bill, so a pass takes time
+ * linear in the number of observed votes.
+ *
+ * @author vietan
+ */
+public class NewtonIdealPointOptimizer {
+
+    public static final int MAX_NUM_HALVINGS = 20;
+
+    private final int A;
+    private final ObservedVotes votes;
+    // priors
+    private double[] authorMeans;
+    private double authorMean = 0.0;
+    private double authorVar = 1.0;
+    private double billMean = 0.0;
+    private double billVar = 1.0;
+    // configure
+    private double tolerance = 1E-6;
+    private int maxIter = 100;
+    private int numIters;
+
+    /**
+     * @param votes Observed votes
+     */
+    public NewtonIdealPointOptimizer(ObservedVotes votes) {
+        this.votes = votes;
+        this.A = votes.getNumAuthors();
+    }
+
+    /**
+     * Create an optimizer from a dense vote matrix.
+     *
+     * @param votes Votes [A][B]
+     * @param mask Observed votes [A][B]
+     * @param A Number of authors
+     * @param B Number of bills
+     */
+    public static NewtonIdealPointOptimizer create(int[][] votes, boolean[][] mask,
+            int A, int B) {
+        return new NewtonIdealPointOptimizer(ObservedVotes.create(votes, mask, A, B));
+    }
+
+    /**
+     * Gaussian prior shared by all authors' ideal points.
+     *
+     * @param mean Prior mean
+     * @param var Prior variance
+     */
+    public void setAuthorPrior(double mean, double var) {
+        this.authorMeans = null;
+        this.authorMean = mean;
+        this.authorVar = var;
+    }
+
+    /**
+     * Gaussian prior with an author-specific mean, e.g., the ideal point
+     * predicted from the author's text.
+     *
+     * @param means Prior mean of each author
+     * @param var Prior variance
+     */
+    public void setAuthorPrior(double[] means, double var) {
+        this.authorMeans = means;
+        this.authorVar = var;
+    }
+
+    /**
+     * Gaussian prior on bills' polarity x and popularity y.
+     *
+     * @param mean Prior mean
+     * @param var Prior variance
+     */
+    public void setBillPrior(double mean, double var) {
+        this.billMean = mean;
+        this.billVar = var;
+    }
+
+    public void setTolerance(double tolerance) {
+        this.tolerance = tolerance;
+    }
+
+    public void setMaxIterations(int maxIter) {
+        this.maxIter = maxIter;
+    }
+
+    /**
+     * Number of passes run in the last call to optimize.
+     */
+    public int getNumIterations() {
+        return this.numIters;
+    }
+
+    /**
+     * Alternate Newton passes over authors and bills until convergence.
+     *
+     * @param u Authors' ideal points, updated in place
+     * @param x Bills' polarities, updated in place
+     * @param y Bills' popularities, updated in place
+     * @return Final log posterior
+     */
+    public double optimize(double[] u, double[] x, double[] y) {
+        double curVal = getLogPosterior(u, x, y);
+        for (numIters = 0; numIters < maxIter;) {
+            for (int bb = 0; bb < votes.getNumBills(); bb++) {
+                updateBill(bb, u, x, y);
+            }
+            for (int aa = 0; aa < A; aa++) {
+                updateAuthor(aa, u, x, y);
+            }
+            updateScaleShift(u, x, y);
+            numIters++;
+            double newVal = getLogPosterior(u, x, y);
+            double diff = Math.abs(newVal - curVal);
+            curVal = newVal;
+            if (diff <= tolerance * Math.max(1.0, Math.abs(curVal))) {
+                break;
+            }
+        }
+        return curVal;
+    }
+
+    /**
+     * Newton step with step halving on an author's ideal point.
+     *
+     * @param aa Author index
+     * @param u Authors' ideal points
+     * @param x Bills' polarities
+     * @param y Bills' popularities
+     */
+    public void updateAuthor(int aa, double[] u, double[] x, double[] y) {
+        double mean = getAuthorMean(aa);
+        double prec = 1.0 / authorVar;
+        double grad = -(u[aa] - mean) * prec;
+        double hess = prec;
+        int[] bills = votes.getAuthorBills(aa);
+        int[] vals = votes.getAuthorValues(aa);
+        for (int ii = 0; ii < bills.length; ii++) {
+            int bb = bills[ii];
+            double prob = 1.0 / (1.0 + Math.exp(-(u[aa] * x[bb] + y[bb])));
+            grad += x[bb] * (vals[ii] - prob);
+            hess += x[bb] * x[bb] * prob * (1 - prob);
+        }
+        double step = grad / hess;
+        double curVal = getAuthorLogPosterior(aa, u[aa], x, y);
+        double oldU = u[aa];
+        for (int ls = 0; ls < MAX_NUM_HALVINGS; ls++) {
+            if (getAuthorLogPosterior(aa, oldU + step, x, y) >= curVal) {
+                u[aa] = oldU + step;
+                break;
+            }
+            step /= 2;
+        }
+    }
+
+    /**
+     * Newton step with step halving on a bill's polarity and popularity.
+     *
+     * @param bb Bill index
+     * @param u Authors' ideal points
+     * @param x Bills' polarities
+     * @param y Bills' popularities
+     */
+    public void updateBill(int bb, double[] u, double[] x, double[] y) {
+        double prec = 1.0 / billVar;
+        double gradX = -(x[bb] - billMean) * prec;
+        double gradY = -(y[bb] - billMean) * prec;
+        double hXX = prec;
+        double hXY = 0.0;
+        double hYY = prec;
+        int[] authors = votes.getBillAuthors(bb);
+        int[] vals = votes.getBillValues(bb);
+        for (int ii = 0; ii < authors.length; ii++) {
+            int aa = authors[ii];
+            double prob = 1.0 / (1.0 + Math.exp(-(u[aa] * x[bb] + y[bb])));
+            double w = prob * (1 - prob);
+            gradX += u[aa] * (vals[ii] - prob);
+            gradY += vals[ii] - prob;
+            hXX += u[aa] * u[aa] * w;
+            hXY += u[aa] * w;
+            hYY += w;
+        }
+        double det = hXX * hYY - hXY * hXY;
+        double stepX = (hYY * gradX - hXY * gradY) / det;
+        double stepY = (hXX * gradY - hXY * gradX) / det;
+        double curVal = getBillLogPosterior(bb, x[bb], y[bb], u);
+        double oldX = x[bb];
+        double oldY = y[bb];
+        for (int ls = 0; ls < MAX_NUM_HALVINGS; ls++) {
+            if (getBillLogPosterior(bb, oldX + stepX, oldY + stepY, u) >= curVal) {
+                x[bb] = oldX + stepX;
+                y[bb] = oldY + stepY;
+                break;
+            }
+            stepX /= 2;
+            stepY /= 2;
+        }
+    }
+
+    /**
+     * Move along the directions that leave the likelihood unchanged, i.e., u
+     * to s * u + c, x to x / s and y to y - c * x / s, to maximize the prior.
+     * Block updates only move slowly along these directions since they are
+     * determined by the prior alone. Since the likelihood is unchanged, the
+     * move is accepted only if the log prior increases.
+     *
+     * @param u Authors' ideal points
+     * @param x Bills' polarities
+     * @param y Bills' popularities
+     */
+    public void updateScaleShift(double[] u, double[] x, double[] y) {
+        double sumUU = 0.0;
+        double sumU = 0.0;
+        double sumUM = 0.0;
+        double sumM = 0.0;
+        for (int aa = 0; aa < A; aa++) {
+            double mean = getAuthorMean(aa);
+            sumUU += u[aa] * u[aa];
+            sumU += u[aa];
+            sumUM += u[aa] * mean;
+            sumM += mean;
+        }
+        double sumXX = 0.0;
+        double sumX = 0.0;
+        double sumXY = 0.0;
+        for (int bb = 0; bb < votes.getNumBills(); bb++) {
+            sumXX += x[bb] * x[bb];
+            sumX += x[bb];
+            sumXY += x[bb] * (y[bb] - billMean);
+        }
+        if (sumUU == 0.0 || sumXX == 0.0) {
+            return;
+        }
+
+        double scale = 1.0;
+        double shift = 0.0;
+        for (int ii = 0; ii < 5; ii++) {
+            // optimal shift given the scale
+            shift = ((sumM - scale * sumU) / authorVar + sumXY / (scale * billVar))
+                    / (A / authorVar + sumXX / (scale * scale * billVar));
+            // Newton steps on the scale given the shift, minimizing
+            // a * s^2 + b * s + c / s^2 + d / s
+            double a = sumUU / (2 * authorVar);
+            double b = (shift * sumU - sumUM) / authorVar;
+            double c = (1 + shift * shift) * sumXX / (2 * billVar);
+            double d = -(billMean * sumX + shift * sumXY) / billVar;
+            for (int jj = 0; jj < 20; jj++) {
+                double s2 = scale * scale;
+                double grad = 2 * a * scale + b - 2 * c / (s2 * scale) - d / s2;
+                double hess = 2 * a + 6 * c / (s2 * s2) + 2 * d / (s2 * scale);
+                double newScale = hess > 0 ? scale - grad / hess : scale / 2;
+                if (newScale <= 0) {
+                    newScale = scale / 2;
+                }
+                if (Math.abs(newScale - scale) < 1E-12 * scale) {
+                    scale = newScale;
+                    break;
+                }
+                scale = newScale;
+            }
+        }
+
+        double curPrior = getLogPrior(u, x, y, 1.0, 0.0);
+        double newPrior = getLogPrior(u, x, y, scale, shift);
+        if (!(newPrior > curPrior)) {
+            return;
+        }
+        for (int aa = 0; aa < A; aa++) {
+            u[aa] = scale * u[aa] + shift;
+        }
+        for (int bb = 0; bb < votes.getNumBills(); bb++) {
+            y[bb] -= shift * x[bb] / scale;
+            x[bb] /= scale;
+        }
+    }
+
+    /**
+     * Log prior after transforming u to s * u + c, x to x / s and y to y - c *
+     * x / s.
+     */
+    private double getLogPrior(double[] u, double[] x, double[] y,
+            double scale, double shift) {
+        double val = 0.0;
+        for (int aa = 0; aa < A; aa++) {
+            double diff = scale * u[aa] + shift - getAuthorMean(aa);
+            val -= 0.5 * diff * diff / authorVar;
+        }
+        for (int bb = 0; bb < votes.getNumBills(); bb++) {
+            double xb = x[bb] / scale;
+            double yb = y[bb] - shift * xb;
+            val -= 0.5 * ((xb - billMean) * (xb - billMean)
+                    + (yb - billMean) * (yb - billMean)) / billVar;
+        }
+        return val;
+    }
+
+    /**
+     * Log posterior (up to a constant) of all parameters.
+     */
+    public double getLogPosterior(double[] u, double[] x, double[] y) {
+        double val = 0.0;
+        for (int aa = 0; aa < A; aa++) {
+            double diff = u[aa] - getAuthorMean(aa);
+            val -= 0.5 * diff * diff / authorVar;
+            int[] bills = votes.getAuthorBills(aa);
+            int[] vals = votes.getAuthorValues(aa);
+            for (int ii = 0; ii < bills.length; ii++) {
+                int bb = bills[ii];
+                val += getLogLikelihood(vals[ii], u[aa] * x[bb] + y[bb]);
+            }
+        }
+        for (int bb = 0; bb < votes.getNumBills(); bb++) {
+            val -= 0.5 * ((x[bb] - billMean) * (x[bb] - billMean)
+                    + (y[bb] - billMean) * (y[bb] - billMean)) / billVar;
+        }
+        return val;
+    }
+
+    private double getAuthorMean(int aa) {
+        return authorMeans == null ? authorMean : authorMeans[aa];
+    }
+
+    private double getAuthorLogPosterior(int aa, double ua, double[] x, double[] y) {
+        double diff = ua - getAuthorMean(aa);
+        double val = -0.5 * diff * diff / authorVar;
+        int[] bills = votes.getAuthorBills(aa);
+        int[] vals = votes.getAuthorValues(aa);
+        for (int ii = 0; ii < bills.length; ii++) {
+            int bb = bills[ii];
+            val += getLogLikelihood(vals[ii], ua * x[bb] + y[bb]);
+        }
+        return val;
+    }
+
+    private double getBillLogPosterior(int bb, double xb, double yb, double[] u) {
+        double val = -0.5 * ((xb - billMean) * (xb - billMean)
+                + (yb - billMean) * (yb - billMean)) / billVar;
+        int[] authors = votes.getBillAuthors(bb);
+        int[] vals = votes.getBillValues(bb);
+        for (int ii = 0; ii < authors.length; ii++) {
+            val += getLogLikelihood(vals[ii], u[authors[ii]] * xb + yb);
+        }
+        return val;
+    }
+
+    /**
+     * Log likelihood of a binary vote given its score, computed without
+     * overflowing for large scores.
+     *
+     * @param vote The vote (0 or 1)
+     * @param score The score
+     */
+    public static double getLogLikelihood(int vote, double score) {
+        double logNorm = score > 0 ? score + Math.log1p(Math.exp(-score))
+                : Math.log1p(Math.exp(score));
+        return vote * score - logNorm;
+    }
+}
@@ -0,0 +1,251 @@
+package votepredictor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Observed training votes indexed both by author and by bill, so that the
+ * conditionals of an author's or a bill's ideal point only visit its own votes.
+ * Votes are numbered in author-major order, i.e., the ii-th vote of author aa
+ * is vote getAuthorOffset(aa) + ii, which allows per-vote values (e.g.,
+ * auxiliary variables) to be stored in a flat array and looked up from bills.
+ * Votes can be added after construction, which renumbers the votes, so that
+ * per-vote values kept elsewhere have to be reallocated.
+ *
+ * @author vietan
+ */
+public class ObservedVotes {
+
+    private final int A;
+    private int B;
+    private final int[] authorOffsets;
+    private final int[][] authorBills;
+    private final int[][] authorValues;
+    private int[][] billAuthors;
+    private int[][] billValues;
+    private int[][] billVoteIndices; // null after adding votes until requested
+
+    /**
+     * @param A Number of authors
+     * @param B Number of bills
+     * @param voteAuthors Author of each observed vote
+     * @param voteBills Bill of each observed vote
+     * @param voteValues Value (0 or 1) of each observed vote
+     */
+    public ObservedVotes(int A, int B,
+            int[] voteAuthors, int[] voteBills, int[] voteValues) {
+        this.A = A;
+        this.B = B;
+        int[] authorCounts = new int[A];
+        int[] billCounts = new int[B];
+        for (int ii = 0; ii < voteAuthors.length; ii++) {
+            authorCounts[voteAuthors[ii]]++;
+            billCounts[voteBills[ii]]++;
+        }
+        this.authorOffsets = new int[A];
+        this.authorBills = new int[A][];
+        this.authorValues = new int[A][];
+        int offset = 0;
+        for (int aa = 0; aa < A; aa++) {
+            this.authorOffsets[aa] = offset;
+            this.authorBills[aa] = new int[authorCounts[aa]];
+            this.authorValues[aa] = new int[authorCounts[aa]];
+            offset += authorCounts[aa];
+        }
+        this.billAuthors = new int[B][];
+        this.billValues = new int[B][];
+        this.billVoteIndices = new int[B][];
+        for (int bb = 0; bb < B; bb++) {
+            this.billAuthors[bb] = new int[billCounts[bb]];
+            this.billValues[bb] = new int[billCounts[bb]];
+            this.billVoteIndices[bb] = new int[billCounts[bb]];
+        }
+        int[] authorPos = new int[A];
+        int[] billPos = new int[B];
+        for (int ii = 0; ii < voteAuthors.length; ii++) {
+            int aa = voteAuthors[ii];
+            int bb = voteBills[ii];
+            int ap = authorPos[aa]++;
+            int bp = billPos[bb]++;
+            authorBills[aa][ap] = bb;
+            authorValues[aa][ap] = voteValues[ii];
+            billAuthors[bb][bp] = aa;
+            billValues[bb][bp] = voteValues[ii];
+            billVoteIndices[bb][bp] = authorOffsets[aa] + ap;
+        }
+    }
+
+    /**
+     * Observed votes of a dense vote matrix.
+     *
+     * @param votes Votes [A][B]
+     * @param mask Observed votes [A][B]
+     * @param A Number of authors
+     * @param B Number of bills
+     */
+    public static ObservedVotes create(int[][] votes, boolean[][] mask, int A, int B) {
+        ArrayList<Integer> voteAuthors = new ArrayList<>();
+        ArrayList<Integer> voteBills = new ArrayList<>();
+        for (int aa = 0; aa < A; aa++) {
+            for (int bb = 0; bb < B; bb++) {
+                if (mask[aa][bb]) {
+                    voteAuthors.add(aa);
+                    voteBills.add(bb);
+                }
+            }
+        }
+        int[] as = new int[voteAuthors.size()];
+        int[] bs = new int[voteBills.size()];
+        int[] vs = new int[voteAuthors.size()];
+        for (int ii = 0; ii < as.length; ii++) {
+            as[ii] = voteAuthors.get(ii);
+            bs[ii] = voteBills.get(ii);
+            vs[ii] = votes[as[ii]][bs[ii]];
+        }
+        return new ObservedVotes(A, B, as, bs, vs);
+    }
+
+    /**
+     * Add new votes, each on a pair of author and bill without an observed
+     * vote, and new bills. Only the lists of the authors and bills of the new
+     * votes are extended.
+     *
+     * @param numBills Number of bills, at least the current number
+     * @param voteAuthors Author of each new vote
+     * @param voteBills Bill of each new vote
+     * @param voteValues Value (0 or 1) of each new vote
+     */
+    public void addVotes(int numBills,
+            int[] voteAuthors, int[] voteBills, int[] voteValues) {
+        if (numBills > B) {
+            billAuthors = Arrays.copyOf(billAuthors, numBills);
+            billValues = Arrays.copyOf(billValues, numBills);
+            for (int bb = B; bb < numBills; bb++) {
+                billAuthors[bb] = new int[0];
+                billValues[bb] = new int[0];
+            }
+            B = numBills;
+        }
+        HashMap<Integer, Integer> authorCounts = new HashMap<>();
+        HashMap<Integer, Integer> billCounts = new HashMap<>();
+        for (int ii = 0; ii < voteAuthors.length; ii++) {
+            increment(authorCounts, voteAuthors[ii]);
+            increment(billCounts, voteBills[ii]);
+        }
+        for (int aa : authorCounts.keySet()) {
+            int size = authorBills[aa].length;
+            authorBills[aa] = Arrays.copyOf(authorBills[aa], size + authorCounts.get(aa));
+            authorValues[aa] = Arrays.copyOf(authorValues[aa], size + authorCounts.get(aa));
+            authorCounts.put(aa, size);
+        }
+        for (int bb : billCounts.keySet()) {
+            int size = billAuthors[bb].length;
+            billAuthors[bb] = Arrays.copyOf(billAuthors[bb], size + billCounts.get(bb));
+            billValues[bb] = Arrays.copyOf(billValues[bb], size + billCounts.get(bb));
+            billCounts.put(bb, size);
+        }
+        for (int ii = 0; ii < voteAuthors.length; ii++) {
+            int aa = voteAuthors[ii];
+            int bb = voteBills[ii];
+            int ap = authorCounts.get(aa);
+            int bp = billCounts.get(bb);
+            authorCounts.put(aa, ap + 1);
+            billCounts.put(bb, bp + 1);
+            authorBills[aa][ap] = bb;
+            authorValues[aa][ap] = voteValues[ii];
+            billAuthors[bb][bp] = aa;
+            billValues[bb][bp] = voteValues[ii];
+        }
+        int offset = 0;
+        for (int aa = 0; aa < A; aa++) {
+            authorOffsets[aa] = offset;
+            offset += authorBills[aa].length;
+        }
+        billVoteIndices = null;
+    }
+
+    /**
+     * Change the value of an observed vote.
+     *
+     * @param aa Author index
+     * @param bb Bill index
+     * @param value New value (0 or 1)
+     */
+    public void setVote(int aa, int bb, int value) {
+        for (int ii = 0; ii < authorBills[aa].length; ii++) {
+            if (authorBills[aa][ii] == bb) {
+                authorValues[aa][ii] = value;
+            }
+        }
+        for (int ii = 0; ii < billAuthors[bb].length; ii++) {
+            if (billAuthors[bb][ii] == aa) {
+                billValues[bb][ii] = value;
+            }
+        }
+    }
+
+    private static void increment(HashMap<Integer, Integer> counts, int key) {
+        Integer count = counts.get(key);
+        counts.put(key, count == null ? 1 : count + 1);
+    }
+
+    public int getNumAuthors() {
+        return this.A;
+    }
+
+    public int getNumBills() {
+        return this.B;
+    }
+
+    public int getNumVotes() {
+        return A == 0 ? 0 : authorOffsets[A - 1] + authorBills[A - 1].length;
+    }
+
+    /**
+     * Index of the first vote of an author.
+     */
+    public int getAuthorOffset(int aa) {
+        return this.authorOffsets[aa];
+    }
+
+    public int[] getAuthorBills(int aa) {
+        return this.authorBills[aa];
+    }
+
+    public int[] getAuthorValues(int aa) {
+        return this.authorValues[aa];
+    }
+
+    public int[] getBillAuthors(int bb) {
+        return this.billAuthors[bb];
+    }
+
+    public int[] getBillValues(int bb) {
+        return this.billValues[bb];
+    }
+
+    /**
+     * Vote index of each vote of a bill.
+     */
+    public int[] getBillVoteIndices(int bb) {
+        if (this.billVoteIndices == null) {
+            // rebuild the bills' lists in author-major order of the votes
+            int[] billPos = new int[B];
+            this.billVoteIndices = new int[B][];
+            for (int bill = 0; bill < B; bill++) {
+                this.billVoteIndices[bill] = new int[billAuthors[bill].length];
+            }
+            for (int aa = 0; aa < A; aa++) {
+                for (int ii = 0; ii < authorBills[aa].length; ii++) {
+                    int bill = authorBills[aa][ii];
+                    int bp = billPos[bill]++;
+                    billAuthors[bill][bp] = aa;
+                    billValues[bill][bp] = authorValues[aa][ii];
+                    billVoteIndices[bill][bp] = authorOffsets[aa] + ii;
+                }
+            }
+        }
+        return this.billVoteIndices[bb];
+    }
+}
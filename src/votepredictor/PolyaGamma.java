@@ -0,0 +1,152 @@
+package votepredictor;
+
+import java.util.Random;
+import org.apache.commons.math3.special.Erf;
+
+/**
+ * Exact draws from the Polya-Gamma distribution PG(1, z) (Polson, Scott and
+ * Windle, Bayesian inference for logistic models using Polya-Gamma latent
+ * variables, JASA 2013), using Devroye's alternating series method with the
+ * truncation point 0.64.
+ *
+ * @author vietan
+ */
+public class PolyaGamma {
+
+    private static final double TRUNC = 0.64;
+    private static final double TRUNC_RECIP = 1.0 / TRUNC;
+    private static final double HALF_PI = 0.5 * Math.PI;
+    private static final double LOG_SQRT_2PI = 0.5 * Math.log(2 * Math.PI);
+
+    private PolyaGamma() {
+    }
+
+    /**
+     * Draw from PG(1, z).
+     *
+     * @param rand Random stream
+     * @param z Tilting parameter
+     */
+    public static double draw(Random rand, double z) {
+        z = Math.abs(z) * 0.5;
+        double fz = 0.125 * Math.PI * Math.PI + 0.5 * z * z;
+        double massExpon = getExponentialMass(z, fz);
+        while (true) {
+            double x;
+            if (rand.nextDouble() < massExpon) {
+                x = TRUNC + getExponential(rand) / fz;
+            } else {
+                x = drawTruncatedInverseGaussian(rand, z);
+            }
+
+            double s = getCoefficient(0, x);
+            double y = rand.nextDouble() * s;
+            int n = 0;
+            while (true) {
+                n++;
+                if (n % 2 == 1) {
+                    s -= getCoefficient(n, x);
+                    if (y <= s) {
+                        return 0.25 * x;
+                    }
+                } else {
+                    s += getCoefficient(n, x);
+                    if (y > s) {
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Mean of PG(1, z).
+     *
+     * @param z Tilting parameter
+     */
+    public static double getMean(double z) {
+        if (Math.abs(z) < 1E-6) {
+            return 0.25;
+        }
+        return Math.tanh(0.5 * z) / (2 * z);
+    }
+
+    /**
+     * Piece n of the alternating series of the density of J*(1, z).
+     */
+    private static double getCoefficient(int n, double x) {
+        double k = (n + 0.5) * Math.PI;
+        if (x > TRUNC) {
+            return k * Math.exp(-0.5 * k * k * x);
+        } else if (x > 0) {
+            double expnt = -1.5 * (Math.log(HALF_PI) + Math.log(x)) + Math.log(k)
+                    - 2.0 * (n + 0.5) * (n + 0.5) / x;
+            return Math.exp(expnt);
+        }
+        return 0.0;
+    }
+
+    /**
+     * Probability of proposing from the truncated exponential part.
+     */
+    private static double getExponentialMass(double z, double fz) {
+        double b = Math.sqrt(1.0 / TRUNC) * (TRUNC * z - 1);
+        double a = -Math.sqrt(1.0 / TRUNC) * (TRUNC * z + 1);
+        double x0 = Math.log(fz) + fz * TRUNC;
+        double xb = x0 - z + getLogNormalCdf(b);
+        double xa = x0 + z + getLogNormalCdf(a);
+        double qdivp = 4 / Math.PI * (Math.exp(xb) + Math.exp(xa));
+        return 1.0 / (1.0 + qdivp);
+    }
+
+    /**
+     * Inverse Gaussian with mean 1 / z and shape 1, truncated to (0, 0.64).
+     */
+    private static double drawTruncatedInverseGaussian(Random rand, double z) {
+        double x = TRUNC + 1.0;
+        if (TRUNC_RECIP > z) { // mean larger than the truncation point
+            double alpha = 0.0;
+            while (rand.nextDouble() > alpha) {
+                double e1 = getExponential(rand);
+                double e2 = getExponential(rand);
+                while (e1 * e1 > 2 * e2 / TRUNC) {
+                    e1 = getExponential(rand);
+                    e2 = getExponential(rand);
+                }
+                x = 1 + e1 * TRUNC;
+                x = TRUNC / (x * x);
+                alpha = Math.exp(-0.5 * z * z * x);
+            }
+        } else {
+            double mu = 1.0 / z;
+            while (x > TRUNC) {
+                double y = rand.nextGaussian();
+                y *= y;
+                double halfMu = 0.5 * mu;
+                double muY = mu * y;
+                x = mu + halfMu * muY - halfMu * Math.sqrt(4 * muY + muY * muY);
+                if (rand.nextDouble() > mu / (mu + x)) {
+                    x = mu * mu / x;
+                }
+            }
+        }
+        return x;
+    }
+
+    private static double getExponential(Random rand) {
+        return -Math.log(1.0 - rand.nextDouble());
+    }
+
+    /**
+     * Log of the standard normal CDF, with an asymptotic expansion in the far
+     * left tail where the CDF underflows.
+     */
+    private static double getLogNormalCdf(double x) {
+        if (x > -30) {
+            return Math.log(0.5 * Erf.erfc(-x / Math.sqrt(2)));
+        }
+        double x2 = x * x;
+        return -0.5 * x2 - Math.log(-x) - LOG_SQRT_2PI
+                + Math.log(1 - 1 / x2 + 3 / (x2 * x2));
+    }
+}
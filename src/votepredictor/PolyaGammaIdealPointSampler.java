@@ -0,0 +1,258 @@
+package votepredictor;
+
+import java.util.ArrayList;
+import java.util.Random;
+import votepredictor.textidealpoint.RandomStreams;
+
+/**
+ * Gibbs sampler of a one-dimensional ideal point model with Polya-Gamma
+ * augmentation, where the probability that author a votes with bill b is
+ * logistic(u_a * x_b + y_b), with Gaussian priors on u, x and y.
+ *
+ * Given an auxiliary variable omega ~ PG(1, u_a * x_b + y_b) for each observed
+ * vote, the conditionals of u_a and of (x_b, y_b) are Gaussian. Each sweep
+ * draws, for every author, the auxiliary variables of its votes and then its
+ * ideal point, and then draws every bill's (x_b, y_b). Authors are independent
+ * given the bills and vice versa, so both steps run in parallel over blocks of
+ * authors and blocks of bills.
+ *
+ * Each block draws from its own stream, derived from the seed of the sweep and
+ * the block index, so samples do not depend on the number of threads.
+ *
+ * @author vietan
+ */
+public class PolyaGammaIdealPointSampler {
+
+    public static final int BLOCK_SIZE = 32;
+
+    private final int A;
+    private final int B;
+    private final ObservedVotes votes;
+    private final double[] omegas;
+    // priors
+    private double[] authorMeans;
+    private double authorMean = 0.0;
+    private double authorVar = 1.0;
+    private double billMean = 0.0;
+    private double billVar = 1.0;
+    // configure
+    private int numThreads = 1;
+
+    /**
+     * @param votes Observed votes
+     */
+    public PolyaGammaIdealPointSampler(ObservedVotes votes) {
+        this.votes = votes;
+        this.A = votes.getNumAuthors();
+        this.B = votes.getNumBills();
+        this.omegas = new double[votes.getNumVotes()];
+    }
+
+    /**
+     * Create a sampler from a dense vote matrix.
+     *
+     * @param votes Votes [A][B]
+     * @param mask Observed votes [A][B]
+     * @param A Number of authors
+     * @param B Number of bills
+     */
+    public static PolyaGammaIdealPointSampler create(int[][] votes, boolean[][] mask,
+            int A, int B) {
+        return new PolyaGammaIdealPointSampler(ObservedVotes.create(votes, mask, A, B));
+    }
+
+    public void setAuthorPrior(double mean, double var) {
+        this.authorMeans = null;
+        this.authorMean = mean;
+        this.authorVar = var;
+    }
+
+    /**
+     * Gaussian prior with an author-specific mean, e.g., the ideal point
+     * predicted from the author's text.
+     *
+     * @param means Prior mean of each author
+     * @param var Prior variance
+     */
+    public void setAuthorPrior(double[] means, double var) {
+        this.authorMeans = means;
+        this.authorVar = var;
+    }
+
+    public void setBillPrior(double mean, double var) {
+        this.billMean = mean;
+        this.billVar = var;
+    }
+
+    public void setNumThreads(int numThreads) {
+        this.numThreads = Math.max(1, numThreads);
+    }
+
+    /**
+     * Auxiliary variables of the observed votes, in the vote order of
+     * ObservedVotes.
+     */
+    public double[] getOmegas() {
+        return this.omegas;
+    }
+
+    /**
+     * One Gibbs sweep over u, then (x, y).
+     *
+     * @param u Authors' ideal points, updated in place
+     * @param x Bills' polarities, updated in place
+     * @param y Bills' popularities, updated in place
+     * @param seed Seed of this sweep
+     */
+    public void sample(final double[] u, final double[] x, final double[] y, long seed) {
+        final RandomStreams streams = new RandomStreams(seed);
+        int numAuthorBlocks = (A + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        runBlocks(numAuthorBlocks, new BlockTask() {
+            @Override
+            public void run(int block) {
+                Random rand = streams.getStream(2L * block);
+                int end = Math.min(A, (block + 1) * BLOCK_SIZE);
+                for (int aa = block * BLOCK_SIZE; aa < end; aa++) {
+                    sampleAuthor(aa, u, x, y, rand);
+                }
+            }
+        });
+        int numBillBlocks = (B + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        runBlocks(numBillBlocks, new BlockTask() {
+            @Override
+            public void run(int block) {
+                Random rand = streams.getStream(2L * block + 1);
+                int end = Math.min(B, (block + 1) * BLOCK_SIZE);
+                for (int bb = block * BLOCK_SIZE; bb < end; bb++) {
+                    sampleBill(bb, u, x, y, rand);
+                }
+            }
+        });
+    }
+
+    /**
+     * Draw the auxiliary variables of an author's votes, then the author's
+     * ideal point from its Gaussian conditional.
+     */
+    private void sampleAuthor(int aa, double[] u, double[] x, double[] y, Random rand) {
+        int[] bills = votes.getAuthorBills(aa);
+        int[] vals = votes.getAuthorValues(aa);
+        int offset = votes.getAuthorOffset(aa);
+        double mean = authorMeans == null ? authorMean : authorMeans[aa];
+        double prec = 1.0 / authorVar;
+        double lin = mean / authorVar;
+        for (int ii = 0; ii < bills.length; ii++) {
+            int bb = bills[ii];
+            double omega = PolyaGamma.draw(rand, u[aa] * x[bb] + y[bb]);
+            omegas[offset + ii] = omega;
+            prec += omega * x[bb] * x[bb];
+            lin += x[bb] * (vals[ii] - 0.5 - omega * y[bb]);
+        }
+        u[aa] = lin / prec + rand.nextGaussian() / Math.sqrt(prec);
+    }
+
+    /**
+     * Draw a bill's polarity and popularity from their bivariate Gaussian
+     * conditional.
+     */
+    private void sampleBill(int bb, double[] u, double[] x, double[] y, Random rand) {
+        int[] authors = votes.getBillAuthors(bb);
+        int[] vals = votes.getBillValues(bb);
+        int[] voteIndices = votes.getBillVoteIndices(bb);
+        double pXX = 1.0 / billVar;
+        double pXY = 0.0;
+        double pYY = 1.0 / billVar;
+        double hX = billMean / billVar;
+        double hY = billMean / billVar;
+        for (int ii = 0; ii < authors.length; ii++) {
+            double ua = u[authors[ii]];
+            double omega = omegas[voteIndices[ii]];
+            double kappa = vals[ii] - 0.5;
+            pXX += omega * ua * ua;
+            pXY += omega * ua;
+            pYY += omega;
+            hX += kappa * ua;
+            hY += kappa;
+        }
+        // mean = P^{-1} h
+        double det = pXX * pYY - pXY * pXY;
+        double meanX = (pYY * hX - pXY * hY) / det;
+        double meanY = (pXX * hY - pXY * hX) / det;
+        // P = L L^T, sample = mean + L^{-T} z
+        double l11 = Math.sqrt(pXX);
+        double l21 = pXY / l11;
+        double l22 = Math.sqrt(pYY - l21 * l21);
+        double z1 = rand.nextGaussian();
+        double z2 = rand.nextGaussian();
+        double v2 = z2 / l22;
+        double v1 = (z1 - l21 * v2) / l11;
+        x[bb] = meanX + v1;
+        y[bb] = meanY + v2;
+    }
+
+    private void runBlocks(int numBlocks, BlockTask task) {
+        int numRunners = Math.min(numThreads, numBlocks);
+        if (numRunners <= 1) {
+            for (int block = 0; block < numBlocks; block++) {
+                task.run(block);
+            }
+            return;
+        }
+        ArrayList<BlockRunner> runners = new ArrayList<>();
+        ArrayList<Thread> threads = new ArrayList<>();
+        for (int tt = 0; tt < numRunners; tt++) {
+            BlockRunner runner = new BlockRunner(task, tt, numRunners, numBlocks);
+            runners.add(runner);
+            Thread thread = new Thread(runner, "polya-gamma-" + tt);
+            threads.add(thread);
+            thread.start();
+        }
+        try {
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+            throw new RuntimeException("Interrupted while sampling ideal points");
+        }
+        for (BlockRunner runner : runners) {
+            if (runner.exception != null) {
+                throw new RuntimeException("Exception while sampling ideal points",
+                        runner.exception);
+            }
+        }
+    }
+
+    interface BlockTask {
+
+        public void run(int block);
+    }
+
+    static class BlockRunner implements Runnable {
+
+        private final BlockTask task;
+        private final int start;
+        private final int step;
+        private final int numBlocks;
+        private RuntimeException exception;
+
+        BlockRunner(BlockTask task, int start, int step, int numBlocks) {
+            this.task = task;
+            this.start = start;
+            this.step = step;
+            this.numBlocks = numBlocks;
+        }
+
+        @Override
+        public void run() {
+            try {
+                for (int block = start; block < numBlocks; block += step) {
+                    task.run(block);
+                }
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+                this.exception = e;
+            }
+        }
+    }
+}
@@ -2,6 +2,11 @@ package votepredictor;
 
 import data.Vote;
 import votepredictor.textidealpoint.AbstractTextIdealPoint;
+import votepredictor.textidealpoint.ActiveComponents;
+import votepredictor.textidealpoint.CountHistogram;
+import votepredictor.textidealpoint.RandomStreams;
+import votepredictor.textidealpoint.SnapshotCache;
+import votepredictor.textidealpoint.TokenStore;
 import cc.mallet.optimize.LimitedMemoryBFGS;
 import cc.mallet.optimize.Optimizable;
 import java.io.BufferedReader;
@@ -11,7 +16,14 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
+import java.util.Random;
 import optimization.RidgeLinearRegressionOptimizable;
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.ArrayRealVector;
+import org.apache.commons.math3.linear.CholeskyDecomposition;
+import org.apache.commons.math3.linear.RealVector;
+import org.apache.commons.math3.special.Gamma;
 import sampler.unsupervised.LDA;
 import sampling.likelihood.DirMult;
 import util.IOUtils;
@@ -21,7 +33,6 @@ import util.RankingItem;
 import util.SamplerUtils;
 import util.SparseVector;
 import util.StatUtils;
-import util.evaluation.Measurement;
 
 /**
  *
@@ -45,7 +56,8 @@ public class SLDAIdealPoint extends AbstractTextIdealPoint {
     // latent variables
     protected DirMult[] topicWords;
     protected DirMult[] docTopics;
-    protected int[][] z;
+    protected TokenStore tokens; // words and topic assignments
+    protected ActiveComponents activeTopics; // topics kept by adaptive truncation
     protected double[] eta; // regression parameters for topics
     protected double[] u; // [A]: authors' scores
     protected double[] x; // [B]
@@ -55,6 +67,31 @@ public class SLDAIdealPoint extends AbstractTextIdealPoint {
     // internal
     protected int posAnchor;
     protected int negAnchor;
+    // count histograms, only available while slice sampling hyperparameters
+    protected CountHistogram topicWordStats;
+    protected CountHistogram docTopicStats;
+    protected double sliceVoteLlh;
+    // log likelihoods maintained while sampling, when incrementalLlh is on
+    protected boolean incrementalLlh;
+    protected boolean llhTracked;
+    protected double trackedWordLlh;
+    protected double trackedTopicLlh;
+    // stochastic variational inference
+    protected boolean svi;
+    protected int sviBatchSize = 256;
+    protected double sviTau = 64.0; // delay of the learning rate
+    protected double sviKappa = 0.7; // forgetting rate of the learning rate
+    protected int sviNumLocalIters = 5;
+    protected double[][] sviTopicWordPriors; // [K][V]
+    protected double[] sviTopicPriorSums; // [K]
+    protected double[][] sviTopicWordStats; // [K][V]: variational topic-word counts / sviScale
+    protected double[] sviTopicStatSums; // [K]
+    protected double sviScale;
+    protected double[][] sviDocTopics; // [D][K]: expected topic counts of each document
+    protected int[] sviBatchWordIndices; // [V]: index of each word type in the current mini-batch, -1 if absent
+    protected double[][] sviAuthorTopics; // [A][K]: expected topic proportions of each author
+    protected double[][] sviEtaStats; // [K][K]: running estimate of sum_a z_a z_a^T, upper triangle
+    protected double[] sviEtaTargets; // [K]: running estimate of sum_a z_a u_a
 
     public SLDAIdealPoint() {
         this.basename = "SLDA-ideal-point";
@@ -64,6 +101,42 @@ public class SLDAIdealPoint extends AbstractTextIdealPoint {
         this.basename = bname;
     }
 
+    /**
+     * Maintain the word and topic log likelihoods incrementally as counts
+     * change while sampling, instead of recomputing them at each reporting
+     * iteration.
+     *
+     * @param incrementalLlh
+     */
+    public void setIncrementalLogLikelihood(boolean incrementalLlh) {
+        this.incrementalLlh = incrementalLlh;
+    }
+
+    /**
+     * Train with stochastic variational inference instead of Gibbs sampling.
+     * Each iteration processes one mini-batch of documents, so MAX_ITER is the
+     * number of mini-batches. The learning rate at iteration t is (tau +
+     * t)^(-kappa). Adaptive truncation is not supported with SVI.
+     *
+     * @param batchSize Number of documents per mini-batch
+     * @param tau Delay of the learning rate
+     * @param kappa Forgetting rate of the learning rate, in (0.5, 1]
+     * @param numLocalIters Number of local updates per document
+     */
+    public void setStochasticVariational(int batchSize, double tau, double kappa,
+            int numLocalIters) {
+        if (isTruncating()) {
+            throw new RuntimeException("Adaptive truncation is not supported"
+                    + " with stochastic variational inference");
+        }
+        this.svi = true;
+        this.sviBatchSize = batchSize;
+        this.sviTau = tau;
+        this.sviKappa = kappa;
+        this.sviNumLocalIters = numLocalIters;
+        this.setName();
+    }
+
     public void setTopicPriors(double[][] topicPriors) {
         if (topicPriors.length != K) {
             throw new MismatchRuntimeException(topicPriors.length, K);
@@ -88,6 +161,7 @@ public class SLDAIdealPoint extends AbstractTextIdealPoint {
                 sampler.MAX_ITER,
                 sampler.LAG,
                 sampler.REP_INTERVAL);
+        this.setAdaptiveTruncation(sampler.truncationMinMass, sampler.truncationNumChecks);
     }
 
     public void configure(
@@ -171,6 +245,12 @@ public class SLDAIdealPoint extends AbstractTextIdealPoint {
                 .append("_m-").append(formatter.format(mu))
                 .append("_s-").append(formatter.format(sigma));
         str.append("_opt-").append(this.paramOptimized);
+        if (svi) {
+            str.append("_svi-").append(sviBatchSize)
+                    .append("-").append(formatter.format(sviTau))
+                    .append("-").append(formatter.format(sviKappa))
+                    .append("-").append(sviNumLocalIters);
+        }
         this.name = str.toString();
     }
 
@@ -186,6 +266,26 @@ public class SLDAIdealPoint extends AbstractTextIdealPoint {
         return this.y;
     }
 
+    /**
+     * The ideal points u are fixed at their initial values, so trace the
+     * predicted ideal points, which move with the topics and the etas.
+     */
+    @Override
+    protected double[] getTracedUs() {
+        return this.authorMeans;
+    }
+
+    @Override
+    protected boolean supportsAdaptiveTruncation() {
+        return !svi; // the SVI updates keep all topics
+    }
+
+    @Override
+    protected boolean supportsUXYUpdate(UXYUpdate update) {
+        // block-Newton passes pre-estimate the ideal points
+        return update != UXYUpdate.POLYA_GAMMA;
+    }
+
     public double[] getPredictedUs() {
         return this.authorMeans;
     }
@@ -388,8 +488,8 @@ public class SLDAIdealPoint extends AbstractTextIdealPoint {
             for (int d = 0; d < D; d++) {
                 assignStr.append(d).append("\n");
                 assignStr.append(DirMult.output(docTopics[d])).append("\n");
-                for (int n = 0; n < z[d].length; n++) {
-                    assignStr.append(z[d][n]).append("\t");
+                for (int ii = tokens.getStart(d); ii < tokens.getEnd(d); ii++) {
+                    assignStr.append(tokens.getZ(ii)).append("\t");
                 }
                 assignStr.append("\n");
             }
@@ -412,6 +512,39 @@ public class SLDAIdealPoint extends AbstractTextIdealPoint {
         return predictionList;
     }
 
+    @Override
+    protected SLDAIdealPoint createFoldInWorker() {
+        SLDAIdealPoint worker = new SLDAIdealPoint(basename);
+        worker.configure(this);
+        worker.setSweepOrder(sweepOrder);
+        return worker;
+    }
+
+    @Override
+    protected void inputFoldInModel(String zipFilepath) {
+        inputModel(zipFilepath);
+        inputBillScore(zipFilepath);
+    }
+
+    @Override
+    protected void initializeFoldIn() {
+        initializeDataStructure();
+    }
+
+    @Override
+    protected void sampleFoldIn(boolean init) {
+        if (init) {
+            sampleZs(!REMOVE, !ADD, !REMOVE, ADD, !OBSERVED);
+        } else {
+            sampleZs(!REMOVE, !ADD, REMOVE, ADD, !OBSERVED);
+        }
+    }
+
+    @Override
+    protected double getFoldInScore(int bb) {
+        return authorMeans[0] * x[bb] + y[bb];
+    }
+
     protected void outputDocTopics(File file) {
         if (verbose) {
             logln("Outputing documents' topic distributions to " + file);
@@ -491,16 +624,33 @@ public class SLDAIdealPoint extends AbstractTextIdealPoint {
         for (int k = 0; k < K; k++) {
             eta[k] = SamplerUtils.getGaussian(mu, sigma);
         }
+        activeTopics = new ActiveComponents(K);
 
         x = new double[B];
         y = new double[B];
         u = new double[A];
     }
 
+    @Override
+    public void shareTokens(AbstractTextIdealPoint other) {
+        TokenStore otherTokens = ((SLDAIdealPoint) other).tokens;
+        if (otherTokens == null) {
+            throw new RuntimeException("Chain " + other.getChain()
+                    + " has not been initialized");
+        }
+        if (otherTokens.getNumDocuments() != D) {
+            throw new MismatchRuntimeException(otherTokens.getNumDocuments(), D);
+        }
+        this.tokens = otherTokens;
+        this.words = null; // new assignments over the shared word types
+    }
+
     protected void initializeDataStructure() {
-        z = new int[D][];
-        for (int d = 0; d < D; d++) {
-            z[d] = new int[words[d].length];
+        if (words != null) {
+            tokens = new TokenStore(words, K);
+            words = null; // the word types are kept by the token store
+        } else {
+            tokens = new TokenStore(tokens, K);
         }
 
         docTopics = new DirMult[D];
@@ -537,24 +687,12 @@ public class SLDAIdealPoint extends AbstractTextIdealPoint {
         
         BayesianIdealPoint bip = new BayesianIdealPoint();
         bip.configure(1.0, 0.01, 5000, 0.0, sigma);
+        if (uxyUpdate == UXYUpdate.NEWTON) {
+            bip.setNewton(newtonTolerance);
+        }
         bip.setTrain(votes, authorIndices, billIndices, validVotes);
 
-        File bipFolder = new File(folder, bip.getName());
-        File bipFile = new File(bipFolder, ModelFile);
-
-        if (bipFile.exists()) {
-            if (verbose) {
-                logln("B.I.P. file exists. Loading from " + bipFile);
-            }
-            bip.input(bipFile);
-        } else {
-            if (verbose) {
-                logln("B.I.P. file not found. Running and outputing to " + bipFile);
-            }
-            IOUtils.createFolder(bipFolder);
-            bip.train();
-            bip.output(bipFile);
-        }
+        trainIdealPoint(bip, ModelFile);
         this.u = bip.getUs();
         this.x = bip.getXs();
         this.y = bip.getYs();
@@ -592,7 +730,7 @@ public class SLDAIdealPoint extends AbstractTextIdealPoint {
         int lda_samplelag = 10;
         double lda_alpha = hyperparams.get(ALPHA);
         double lda_beta = hyperparams.get(BETA);
-        LDA lda = runLDA(words, K, V,
+        LDA lda = runLDA(tokens.getWords(), K, V,
                 null, topicPriors,
                 lda_alpha, lda_beta,
                 lda_burnin, lda_maxiter, lda_samplelag);
@@ -601,17 +739,22 @@ public class SLDAIdealPoint extends AbstractTextIdealPoint {
         // initialize assignments
         for (int dd = 0; dd < D; dd++) {
             int aa = authors[dd];
-            for (int nn = 0; nn < words[dd].length; nn++) {
-                z[dd][nn] = ldaZ[dd][nn];
-                docTopics[dd].increment(z[dd][nn]);
-                topicWords[z[dd][nn]].increment(words[dd][nn]);
-                authorMeans[aa] += eta[z[dd][nn]] / authorTotalWordWeights[aa];
+            for (int nn = 0; nn < tokens.getLength(dd); nn++) {
+                int kk = ldaZ[dd][nn];
+                tokens.setZ(dd, nn, kk);
+                docTopics[dd].increment(kk);
+                topicWords[kk].increment(tokens.getWord(dd, nn));
+                authorMeans[aa] += eta[kk] / authorTotalWordWeights[aa];
             }
         }
     }
 
     @Override
     public void iterate() {
+        if (svi) {
+            iterateStochasticVariational();
+            return;
+        }
         if (verbose) {
             logln("Iterating ...");
         }
@@ -635,11 +778,16 @@ public class SLDAIdealPoint extends AbstractTextIdealPoint {
         logln(getClass().toString());
         startTime = System.currentTimeMillis();
 
+        if (incrementalLlh) {
+            resetTrackedLogLikelihoods();
+        }
+
         for (iter = 0; iter < MAX_ITER; iter++) {
             isReporting = isReporting();
             if (isReporting) {
                 double loglikelihood = this.getLogLikelihood();
                 logLikelihoods.add(loglikelihood);
+                recordTrace(loglikelihood);
                 String str = "\n\nIter " + iter + "/" + MAX_ITER
                         + "\t llh = " + loglikelihood
                         + "\n" + getCurrentState();
@@ -652,21 +800,7 @@ public class SLDAIdealPoint extends AbstractTextIdealPoint {
                         + MiscUtils.formatDouble(u[posAnchor])
                         + ". negative anchor (" + negAnchor + "): "
                         + MiscUtils.formatDouble(u[negAnchor]));
-                logln("--- Evaluating ...");
-                SparseVector[] predictions = predictInMatrix();
-                ArrayList<Measurement> measurements = AbstractVotePredictor
-                        .evaluateAll(votes, validVotes, predictions);
-                for (Measurement m : measurements) {
-                    logln(">>> i >>> " + m.getName() + ": " + m.getValue());
-                }
-
-                predictions = predictOutMatrix();
-                measurements = AbstractVotePredictor
-                        .evaluateAll(votes, validVotes, predictions);
-                for (Measurement m : measurements) {
-                    logln(">>> o >>> " + m.getName() + ": " + m.getValue());
-                }
-                logln("--- MSE: " + getMSE());
+                evaluateIdealPoints(u, authorMeans, x, y, true);
             }
 
             // L-BFGS to update etas
@@ -677,10 +811,17 @@ public class SLDAIdealPoint extends AbstractTextIdealPoint {
             // sample topic assignments
             sampleZs(REMOVE, ADD, REMOVE, ADD, OBSERVED);
 
+            if (isTruncationCheck()) {
+                truncateTopics();
+            }
+
             // parameter optimization
             if (iter % LAG == 0 && iter >= BURN_IN) {
                 if (paramOptimized) { // slice sampling
                     sliceSample();
+                    if (llhTracked) { // concentrations have changed
+                        resetTrackedLogLikelihoods();
+                    }
                     ArrayList<Double> sparams = new ArrayList<Double>();
                     for (double param : this.hyperparams) {
                         sparams.add(param);
@@ -713,6 +854,9 @@ public class SLDAIdealPoint extends AbstractTextIdealPoint {
                     "iter-" + iter + "-" + TopWordFile), 15);
         }
 
+        llhTracked = false;
+        finishEvaluations();
+
         float ellapsedSeconds = (System.currentTimeMillis() - startTime) / (1000);
         logln("Total runtime iterating: " + ellapsedSeconds + " seconds");
 
@@ -721,6 +865,469 @@ public class SLDAIdealPoint extends AbstractTextIdealPoint {
         }
     }
 
+    /**
+     * Train using stochastic variational inference. The topics are updated
+     * from a mini-batch of documents per iteration while each document keeps
+     * its expected topic counts, which are also used to fit the etas. The
+     * supervised term in the local updates has the same form as in the Gibbs
+     * sampler. At the end, each token is assigned to its most likely topic so
+     * that the output state can be used in the same way as that of the Gibbs
+     * sampler.
+     */
+    protected void iterateStochasticVariational() {
+        if (verbose) {
+            logln("Iterating (SVI) ...");
+        }
+        logLikelihoods = new ArrayList<Double>();
+
+        File reportFolderPath = new File(getSamplerFolderPath(), ReportFolder);
+        try {
+            if (report) {
+                IOUtils.createFolder(reportFolderPath);
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            throw new RuntimeException("Exception while creating report folder."
+                    + " " + reportFolderPath);
+        }
+
+        if (log && !isLogging()) {
+            openLogger();
+        }
+
+        logln(getClass().toString());
+        startTime = System.currentTimeMillis();
+
+        initializeStochasticVariational();
+        ArrayList<Integer> docOrder = new ArrayList<>();
+        for (int dd = 0; dd < D; dd++) {
+            docOrder.add(dd);
+        }
+        int batchSize = Math.max(1, Math.min(sviBatchSize, D));
+        int pos = D;
+
+        for (iter = 0; iter < MAX_ITER; iter++) {
+            isReporting = isReporting();
+            if (isReporting) {
+                double loglikelihood = getStochasticVariationalBound();
+                logLikelihoods.add(loglikelihood);
+                recordTrace(loglikelihood);
+                logln("--- Iter " + iter + "/" + MAX_ITER
+                        + "\t word llh = " + MiscUtils.formatDouble(loglikelihood)
+                        + "\t learning rate = "
+                        + MiscUtils.formatDouble(getStochasticVariationalRate())
+                        + "\n" + getCurrentState());
+            }
+
+            if (pos + batchSize > D) { // start a new epoch
+                Collections.shuffle(docOrder, getRandom());
+                pos = 0;
+            }
+            List<Integer> batch = docOrder.subList(pos, pos + batchSize);
+            updateStochasticVariational(batch);
+            updateStochasticVariationalEtas(batch);
+            pos += batchSize;
+
+            // store model
+            if (report && iter > BURN_IN && iter % LAG == 0) {
+                finalizeStochasticVariational();
+                outputState(new File(reportFolderPath, "iter-" + iter + ".zip"));
+                outputTopicTopWords(new File(reportFolderPath,
+                        "iter-" + iter + "-" + TopWordFile), 15);
+            }
+        }
+
+        finalizeStochasticVariational();
+        if (report) { // output the final model
+            outputState(new File(reportFolderPath, "iter-" + iter + ".zip"));
+            outputTopicTopWords(new File(reportFolderPath,
+                    "iter-" + iter + "-" + TopWordFile), 15);
+        }
+
+        float ellapsedSeconds = (System.currentTimeMillis() - startTime) / (1000);
+        logln("Total runtime iterating: " + ellapsedSeconds + " seconds");
+
+        if (log && isLogging()) {
+            closeLogger();
+        }
+    }
+
+    /**
+     * Initialize the variational parameters from the current topic
+     * assignments.
+     */
+    protected void initializeStochasticVariational() {
+        sviTopicWordPriors = new double[K][V];
+        sviTopicPriorSums = new double[K];
+        sviTopicWordStats = new double[K][V];
+        sviTopicStatSums = new double[K];
+        sviScale = 1.0;
+        for (int kk = 0; kk < K; kk++) {
+            double conc = topicWords[kk].getConcentration();
+            for (int vv = 0; vv < V; vv++) {
+                sviTopicWordPriors[kk][vv] = conc * topicWords[kk].getCenterElement(vv);
+                sviTopicPriorSums[kk] += sviTopicWordPriors[kk][vv];
+                sviTopicWordStats[kk][vv] = topicWords[kk].getCount(vv);
+            }
+            sviTopicStatSums[kk] = topicWords[kk].getCountSum();
+        }
+        sviBatchWordIndices = new int[V];
+        Arrays.fill(sviBatchWordIndices, -1);
+        sviDocTopics = new double[D][K];
+        for (int dd = 0; dd < D; dd++) {
+            for (int kk = 0; kk < K; kk++) {
+                sviDocTopics[dd][kk] = docTopics[dd].getCount(kk);
+            }
+        }
+        sviAuthorTopics = new double[A][K];
+        for (int dd = 0; dd < D; dd++) {
+            int aa = authors[dd];
+            for (int kk = 0; kk < K; kk++) {
+                sviAuthorTopics[aa][kk] += sviDocTopics[dd][kk] / authorTotalWordWeights[aa];
+            }
+        }
+        sviEtaStats = new double[K][K];
+        sviEtaTargets = new double[K];
+        for (int aa = 0; aa < A; aa++) {
+            addEtaStatistics(aa, 1.0);
+        }
+    }
+
+    /**
+     * Learning rate of the current iteration.
+     */
+    protected double getStochasticVariationalRate() {
+        return Math.pow(sviTau + iter, -sviKappa);
+    }
+
+    /**
+     * Run the local updates on a mini-batch of documents and take a step on
+     * the variational topics toward the estimate from the mini-batch. Only the
+     * word types in the mini-batch are touched, so the cost does not grow with
+     * the vocabulary size.
+     *
+     * @param batch Indices of documents in the mini-batch
+     */
+    protected void updateStochasticVariational(List<Integer> batch) {
+        long sTime = System.currentTimeMillis();
+        // word types of the mini-batch, in increasing order
+        ArrayList<Integer> batchWordList = new ArrayList<>();
+        for (int dd : batch) {
+            for (int ii = tokens.getStart(dd); ii < tokens.getEnd(dd); ii++) {
+                int vv = tokens.getWord(ii);
+                if (sviBatchWordIndices[vv] < 0) {
+                    sviBatchWordIndices[vv] = batchWordList.size();
+                    batchWordList.add(vv);
+                }
+            }
+        }
+        int[] batchWords = new int[batchWordList.size()];
+        for (int jj = 0; jj < batchWords.length; jj++) {
+            batchWords[jj] = batchWordList.get(jj);
+        }
+        Arrays.sort(batchWords);
+        for (int jj = 0; jj < batchWords.length; jj++) {
+            sviBatchWordIndices[batchWords[jj]] = jj;
+        }
+
+        double[][] elogBetas = new double[batchWords.length][K]; // [batch word][K]
+        for (int kk = 0; kk < K; kk++) {
+            double dgSum = Gamma.digamma(sviTopicPriorSums[kk] + sviScale * sviTopicStatSums[kk]);
+            for (int jj = 0; jj < batchWords.length; jj++) {
+                int vv = batchWords[jj];
+                elogBetas[jj][kk] = Gamma.digamma(sviTopicWordPriors[kk][vv]
+                        + sviScale * sviTopicWordStats[kk][vv]) - dgSum;
+            }
+        }
+
+        double alpha = hyperparams.get(ALPHA);
+        double sd = Math.sqrt(rho);
+        double[][] batchStats = new double[batchWords.length][K]; // [batch word][K]
+        double[] elogTheta = new double[K];
+        double[] logprobs = new double[K];
+        for (int dd : batch) {
+            int aa = authors[dd];
+            int start = tokens.getStart(dd);
+            int length = tokens.getEnd(dd) - start;
+            double[] docCounts = sviDocTopics[dd];
+            double docTotal = 0.0;
+            for (int kk = 0; kk < K; kk++) {
+                docTotal += docCounts[kk];
+                sviAuthorTopics[aa][kk] -= docCounts[kk] / authorTotalWordWeights[aa];
+            }
+            // token responsibilities start from the document proportions
+            double[][] phis = new double[length][K];
+            for (int nn = 0; nn < length; nn++) {
+                for (int kk = 0; kk < K; kk++) {
+                    phis[nn][kk] = docTotal > 0 ? docCounts[kk] / docTotal : 1.0 / K;
+                }
+            }
+
+            for (int ll = 0; ll < sviNumLocalIters; ll++) {
+                double dgTotal = Gamma.digamma(K * alpha + docTotal);
+                for (int kk = 0; kk < K; kk++) {
+                    elogTheta[kk] = Gamma.digamma(alpha + docCounts[kk]) - dgTotal;
+                }
+                for (int nn = 0; nn < length; nn++) {
+                    double[] elogBeta = elogBetas[sviBatchWordIndices[tokens.getWord(start + nn)]];
+                    double[] phi = phis[nn];
+                    for (int kk = 0; kk < K; kk++) {
+                        docCounts[kk] -= phi[kk];
+                        authorMeans[aa] -= phi[kk] * eta[kk] / authorTotalWordWeights[aa];
+                    }
+                    double maxLogprob = Double.NEGATIVE_INFINITY;
+                    for (int kk = 0; kk < K; kk++) {
+                        double aMean = authorMeans[aa] + eta[kk] / authorTotalWordWeights[aa];
+                        logprobs[kk] = elogTheta[kk] + elogBeta[kk]
+                                + StatUtils.logNormalProbability(u[aa], aMean, sd);
+                        maxLogprob = Math.max(maxLogprob, logprobs[kk]);
+                    }
+                    double sum = 0.0;
+                    for (int kk = 0; kk < K; kk++) {
+                        phi[kk] = Math.exp(logprobs[kk] - maxLogprob);
+                        sum += phi[kk];
+                    }
+                    for (int kk = 0; kk < K; kk++) {
+                        phi[kk] /= sum;
+                        docCounts[kk] += phi[kk];
+                        authorMeans[aa] += phi[kk] * eta[kk] / authorTotalWordWeights[aa];
+                    }
+                }
+            }
+
+            for (int nn = 0; nn < length; nn++) {
+                double[] stats = batchStats[sviBatchWordIndices[tokens.getWord(start + nn)]];
+                for (int kk = 0; kk < K; kk++) {
+                    stats[kk] += phis[nn][kk];
+                }
+            }
+            for (int kk = 0; kk < K; kk++) {
+                sviAuthorTopics[aa][kk] += docCounts[kk] / authorTotalWordWeights[aa];
+            }
+        }
+
+        // global step, keeping the statistics scaled lazily
+        double rate = getStochasticVariationalRate();
+        double batchScale = (double) D / batch.size();
+        if (rate >= 1.0) {
+            sviScale = 1.0;
+            for (int kk = 0; kk < K; kk++) {
+                Arrays.fill(sviTopicWordStats[kk], 0.0);
+                sviTopicStatSums[kk] = 0.0;
+            }
+        } else {
+            sviScale *= 1.0 - rate;
+        }
+        double weight = rate * batchScale / sviScale;
+        for (int kk = 0; kk < K; kk++) {
+            for (int jj = 0; jj < batchWords.length; jj++) {
+                if (batchStats[jj][kk] > 0) {
+                    sviTopicWordStats[kk][batchWords[jj]] += weight * batchStats[jj][kk];
+                    sviTopicStatSums[kk] += weight * batchStats[jj][kk];
+                }
+            }
+        }
+        for (int vv : batchWords) {
+            sviBatchWordIndices[vv] = -1;
+        }
+        if (sviScale < 1e-100) {
+            for (int kk = 0; kk < K; kk++) {
+                for (int vv = 0; vv < V; vv++) {
+                    sviTopicWordStats[kk][vv] *= sviScale;
+                }
+                sviTopicStatSums[kk] *= sviScale;
+            }
+            sviScale = 1.0;
+        }
+
+        if (isReporting) {
+            logln("--- --- SVI batch of " + batch.size() + " documents. rate = "
+                    + MiscUtils.formatDouble(rate)
+                    + ". time: " + (System.currentTimeMillis() - sTime));
+        }
+    }
+
+    /**
+     * Take a step on the regression parameters using only the authors of the
+     * mini-batch. The sufficient statistics of the ridge regression, sum_a z_a
+     * z_a^T and sum_a z_a u_a, are moved toward their estimates from the
+     * mini-batch authors with the same learning rate as the topics, and the
+     * etas are set to the posterior mode given these statistics. This avoids
+     * rebuilding the design matrix and running L-BFGS over all authors after
+     * every mini-batch.
+     *
+     * The ideal points u (and the bills' x and y) are kept fixed, as they are
+     * in the Gibbs sampler: u is estimated beforehand by the ideal point
+     * model and is the response that the etas are fitted to.
+     *
+     * @param batch Indices of documents in the mini-batch
+     */
+    protected void updateStochasticVariationalEtas(List<Integer> batch) {
+        long sTime = System.currentTimeMillis();
+        ArrayList<Integer> batchAuthors = new ArrayList<>();
+        boolean[] inBatch = new boolean[A];
+        for (int dd : batch) {
+            if (!inBatch[authors[dd]]) {
+                inBatch[authors[dd]] = true;
+                batchAuthors.add(authors[dd]);
+            }
+        }
+
+        double rate = getStochasticVariationalRate();
+        double decay = rate >= 1.0 ? 0.0 : 1.0 - rate;
+        for (int kk = 0; kk < K; kk++) {
+            for (int ll = 0; ll < K; ll++) {
+                sviEtaStats[kk][ll] *= decay;
+            }
+            sviEtaTargets[kk] *= decay;
+        }
+        double weight = Math.min(rate, 1.0) * A / batchAuthors.size();
+        for (int aa : batchAuthors) {
+            addEtaStatistics(aa, weight);
+        }
+
+        // posterior mode over the active topics
+        int[] active = activeTopics.getIndices();
+        double rhoSquare = rho * rho;
+        double sigmaSquare = sigma * sigma;
+        double[][] precision = new double[active.length][active.length];
+        double[] target = new double[active.length];
+        for (int ii = 0; ii < active.length; ii++) {
+            for (int jj = ii; jj < active.length; jj++) {
+                precision[ii][jj] = sviEtaStats[active[ii]][active[jj]] / rhoSquare;
+                precision[jj][ii] = precision[ii][jj];
+            }
+            precision[ii][ii] += 1.0 / sigmaSquare;
+            target[ii] = sviEtaTargets[active[ii]] / rhoSquare + mu / sigmaSquare;
+        }
+        try {
+            RealVector solution = new CholeskyDecomposition(
+                    new Array2DRowRealMatrix(precision, false)).getSolver()
+                    .solve(new ArrayRealVector(target, false));
+            for (int ii = 0; ii < active.length; ii++) {
+                eta[active[ii]] = solution.getEntry(ii);
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            throw new RuntimeException("Exception while updating etas at iter " + iter);
+        }
+
+        // update author means
+        for (int aa = 0; aa < A; aa++) {
+            authorMeans[aa] = 0.0;
+            for (int kk : active) {
+                authorMeans[aa] += sviAuthorTopics[aa][kk] * eta[kk];
+            }
+        }
+
+        if (isReporting) {
+            logln("--- --- SVI etas from " + batchAuthors.size() + " authors."
+                    + " time: " + (System.currentTimeMillis() - sTime));
+        }
+    }
+
+    /**
+     * Add an author's contribution to the regression statistics.
+     *
+     * @param aa Author index
+     * @param weight Weight of the contribution
+     */
+    private void addEtaStatistics(int aa, double weight) {
+        double[] topics = sviAuthorTopics[aa];
+        for (int kk = 0; kk < K; kk++) {
+            if (topics[kk] == 0) {
+                continue;
+            }
+            double wk = weight * topics[kk];
+            for (int ll = kk; ll < K; ll++) { // upper triangle only
+                sviEtaStats[kk][ll] += wk * topics[ll];
+            }
+            sviEtaTargets[kk] += wk * u[aa];
+        }
+    }
+
+    /**
+     * Log likelihood of all tokens under the expected topics and the expected
+     * document proportions.
+     */
+    protected double getStochasticVariationalBound() {
+        double alpha = hyperparams.get(ALPHA);
+        double[] topicTotals = new double[K];
+        for (int kk = 0; kk < K; kk++) {
+            topicTotals[kk] = sviTopicPriorSums[kk] + sviScale * sviTopicStatSums[kk];
+        }
+        double llh = 0.0;
+        for (int dd = 0; dd < D; dd++) {
+            double docTotal = K * alpha;
+            for (int kk = 0; kk < K; kk++) {
+                docTotal += sviDocTopics[dd][kk];
+            }
+            for (int ii = tokens.getStart(dd); ii < tokens.getEnd(dd); ii++) {
+                int vv = tokens.getWord(ii);
+                double prob = 0.0;
+                for (int kk = 0; kk < K; kk++) {
+                    prob += (alpha + sviDocTopics[dd][kk]) / docTotal
+                            * ((sviTopicWordPriors[kk][vv] + sviScale * sviTopicWordStats[kk][vv])
+                            / topicTotals[kk]);
+                }
+                llh += Math.log(prob);
+            }
+        }
+        return llh;
+    }
+
+    /**
+     * Assign each token to its most likely topic under the variational
+     * parameters and rebuild the counts and the authors' means accordingly.
+     */
+    protected void finalizeStochasticVariational() {
+        double alpha = hyperparams.get(ALPHA);
+        double[][] logBetas = new double[V][K];
+        for (int kk = 0; kk < K; kk++) {
+            double total = sviTopicPriorSums[kk] + sviScale * sviTopicStatSums[kk];
+            for (int vv = 0; vv < V; vv++) {
+                logBetas[vv][kk] = Math.log((sviTopicWordPriors[kk][vv]
+                        + sviScale * sviTopicWordStats[kk][vv]) / total);
+            }
+        }
+        for (int kk = 0; kk < K; kk++) {
+            topicWords[kk] = new DirMult(V, topicWords[kk].getConcentration(),
+                    topicWords[kk].getCenterVector());
+        }
+        Arrays.fill(authorMeans, 0.0);
+        for (int dd = 0; dd < D; dd++) {
+            int aa = authors[dd];
+            docTopics[dd] = new DirMult(K, docTopics[dd].getConcentration(),
+                    docTopics[dd].getCenterVector());
+            for (int ii = tokens.getStart(dd); ii < tokens.getEnd(dd); ii++) {
+                int vv = tokens.getWord(ii);
+                int bestK = 0;
+                double bestLogprob = Double.NEGATIVE_INFINITY;
+                for (int kk = 0; kk < K; kk++) {
+                    double logprob = Math.log(alpha + sviDocTopics[dd][kk]) + logBetas[vv][kk];
+                    if (logprob > bestLogprob) {
+                        bestLogprob = logprob;
+                        bestK = kk;
+                    }
+                }
+                tokens.setZ(ii, bestK);
+                docTopics[dd].increment(bestK);
+                topicWords[bestK].increment(vv);
+                authorMeans[aa] += eta[bestK] / authorTotalWordWeights[aa];
+            }
+        }
+        // the authors' means are kept in expectation while iterating
+        if (iter < MAX_ITER) {
+            Arrays.fill(authorMeans, 0.0);
+            for (int dd = 0; dd < D; dd++) {
+                int aa = authors[dd];
+                for (int kk = 0; kk < K; kk++) {
+                    authorMeans[aa] += sviDocTopics[dd][kk] * eta[kk] / authorTotalWordWeights[aa];
+                }
+            }
+        }
+    }
+
     /**
      * Sample topic assignment for each token.
      *
@@ -740,58 +1347,26 @@ public class SLDAIdealPoint extends AbstractTextIdealPoint {
         }
         long sTime = System.currentTimeMillis();
         numTokensChanged = 0;
-        for (int d = 0; d < D; d++) {
-            int aa = authors[d];
-            for (int n = 0; n < words[d].length; n++) {
-                if (removeFromModel) {
-                    topicWords[z[d][n]].decrement(words[d][n]);
-                }
-                if (removeFromData) {
-                    docTopics[d].decrement(z[d][n]);
-                    authorMeans[aa] -= eta[z[d][n]] / authorTotalWordWeights[aa];
-                }
-
-                double[] logprobs = new double[K];
-                for (int kk = 0; kk < K; kk++) {
-                    logprobs[kk]
-                            = Math.log(docTopics[d].getCount(kk) + hyperparams.get(ALPHA))
-                            + Math.log(topicWords[kk].getProbability(words[d][n]));
-                    if (observe) {
-                        double aMean = authorMeans[aa] + eta[kk] / authorTotalWordWeights[aa];
-                        double resLLh = StatUtils.logNormalProbability(u[aa], aMean, Math.sqrt(rho));
-                        logprobs[kk] += resLLh;
-                    }
-                }
-                int sampledZ = SamplerUtils.logMaxRescaleSample(logprobs);
-                if (sampledZ == K) {
-                    logln("iter = " + iter + ". d = " + d + ". n = " + n);
-                    for (int kk = 0; kk < K; kk++) {
-                        logln("k = " + kk
-                                + ". " + (Math.log(docTopics[d].getCount(kk) + hyperparams.get(ALPHA)))
-                                + ". " + (Math.log(topicWords[kk].getProbability(words[d][n]))));
-                    }
-                    throw new RuntimeException("Out-of-bound sample. "
-                            + "SampledZ = " + sampledZ);
-                }
-
-                if (z[d][n] != sampledZ) {
-                    numTokensChanged++; // for debugging
-                }
-                // update
-                z[d][n] = sampledZ;
-
-                if (addToModel) {
-                    topicWords[z[d][n]].increment(words[d][n]);
+        if (sweepOrder == TokenStore.SweepOrder.WORD) {
+            if (!tokens.hasWordIndex()) {
+                tokens.buildWordIndex(V);
+            }
+            for (int vv = 0; vv < V; vv++) {
+                for (int jj = tokens.getWordStart(vv); jj < tokens.getWordEnd(vv); jj++) {
+                    sampleZ(tokens.getWordTokenDoc(jj), tokens.getWordToken(jj),
+                            removeFromModel, addToModel, removeFromData, addToData, observe);
                 }
-                if (addToData) {
-                    docTopics[d].increment(z[d][n]);
-                    authorMeans[aa] += eta[z[d][n]] / authorTotalWordWeights[aa];
+            }
+        } else {
+            for (int d = 0; d < D; d++) {
+                for (int ii = tokens.getStart(d); ii < tokens.getEnd(d); ii++) {
+                    sampleZ(d, ii, removeFromModel, addToModel, removeFromData, addToData, observe);
                 }
             }
         }
         long eTime = System.currentTimeMillis() - sTime;
         if (isReporting) {
-            logln("--- --- time: " + eTime);
+            logln("--- --- time: " + eTime + " (" + sweepOrder + ")");
             logln("--- --- # tokens: " + numTokens
                     + ". # tokens changed: " + numTokensChanged
                     + " (" + MiscUtils.formatDouble((double) numTokensChanged / numTokens) + ")");
@@ -799,17 +1374,149 @@ public class SLDAIdealPoint extends AbstractTextIdealPoint {
         return eTime;
     }
 
+    /**
+     * Sample the topic assignment of a single token.
+     *
+     * @param d Document index
+     * @param ii Token position in the token store
+     * @param removeFromModel
+     * @param addToModel
+     * @param removeFromData
+     * @param addToData
+     * @param observe
+     */
+    private void sampleZ(int d, int ii,
+            boolean removeFromModel, boolean addToModel,
+            boolean removeFromData, boolean addToData,
+            boolean observe) {
+        int aa = authors[d];
+        int vv = tokens.getWord(ii);
+        int curZ = tokens.getZ(ii);
+        if (removeFromModel) {
+            topicWords[curZ].decrement(vv);
+            if (llhTracked) {
+                trackedWordLlh -= getNextLogProbability(topicWords[curZ], vv);
+            }
+        }
+        if (removeFromData) {
+            docTopics[d].decrement(curZ);
+            if (llhTracked) {
+                trackedTopicLlh -= getNextLogProbability(docTopics[d], curZ);
+            }
+            authorMeans[aa] -= eta[curZ] / authorTotalWordWeights[aa];
+        }
+
+        int[] candidates = activeTopics.getIndices();
+        double[] logprobs = new double[candidates.length];
+        for (int jj = 0; jj < candidates.length; jj++) {
+            int kk = candidates[jj];
+            logprobs[jj]
+                    = Math.log(docTopics[d].getCount(kk) + hyperparams.get(ALPHA))
+                    + Math.log(topicWords[kk].getProbability(vv));
+            if (observe) {
+                double aMean = authorMeans[aa] + eta[kk] / authorTotalWordWeights[aa];
+                double resLLh = StatUtils.logNormalProbability(u[aa], aMean, Math.sqrt(rho));
+                logprobs[jj] += resLLh;
+            }
+        }
+        int sampledIdx = RandomStreams.logMaxRescaleSample(getRandom(), logprobs);
+        if (sampledIdx == candidates.length) {
+            logln("iter = " + iter + ". d = " + d + ". n = " + (ii - tokens.getStart(d)));
+            for (int kk = 0; kk < K; kk++) {
+                logln("k = " + kk
+                        + ". " + (Math.log(docTopics[d].getCount(kk) + hyperparams.get(ALPHA)))
+                        + ". " + (Math.log(topicWords[kk].getProbability(vv))));
+            }
+            throw new RuntimeException("Out-of-bound sample. "
+                    + "SampledZ = " + sampledIdx);
+        }
+        int sampledZ = candidates[sampledIdx];
+
+        if (curZ != sampledZ) {
+            numTokensChanged++; // for debugging
+        }
+        // update
+        tokens.setZ(ii, sampledZ);
+
+        if (addToModel) {
+            if (llhTracked) {
+                trackedWordLlh += getNextLogProbability(topicWords[sampledZ], vv);
+            }
+            topicWords[sampledZ].increment(vv);
+        }
+        if (addToData) {
+            if (llhTracked) {
+                trackedTopicLlh += getNextLogProbability(docTopics[d], sampledZ);
+            }
+            docTopics[d].increment(sampledZ);
+            authorMeans[aa] += eta[sampledZ] / authorTotalWordWeights[aa];
+        }
+    }
+
+    /**
+     * Deactivate the topics whose token counts have stayed below the minimum
+     * and reassign their tokens to the active topics.
+     */
+    protected void truncateTopics() {
+        int[] counts = new int[K];
+        for (int kk = 0; kk < K; kk++) {
+            counts[kk] = topicWords[kk].getCountSum();
+        }
+        ArrayList<Integer> deactivated = activeTopics.update(counts,
+                truncationMinMass * numTokens, truncationNumChecks);
+        if (deactivated.isEmpty()) {
+            return;
+        }
+        int numReassigned = 0;
+        for (int d = 0; d < D; d++) {
+            for (int ii = tokens.getStart(d); ii < tokens.getEnd(d); ii++) {
+                if (!activeTopics.isActive(tokens.getZ(ii))) {
+                    sampleZ(d, ii, REMOVE, ADD, REMOVE, ADD, OBSERVED);
+                    numReassigned++;
+                }
+            }
+        }
+        logln("--- Iter " + iter + ". Deactivated topics " + deactivated
+                + ". # tokens reassigned: " + numReassigned
+                + ". # active topics: " + activeTopics.getNumActive() + "/" + K);
+    }
+
+    /**
+     * Log predictive probability of the next observation of an outcome given
+     * the current counts. Incrementing the count of the outcome changes the
+     * Dirichlet-multinomial log likelihood by exactly this amount.
+     *
+     * @param dirMult The Dirichlet-multinomial
+     * @param idx The outcome
+     */
+    private static double getNextLogProbability(DirMult dirMult, int idx) {
+        double conc = dirMult.getConcentration();
+        return Math.log(conc * dirMult.getCenterElement(idx) + dirMult.getCount(idx))
+                - Math.log(conc + dirMult.getCountSum());
+    }
+
+    /**
+     * Recompute the tracked word and topic log likelihoods from the counts and
+     * start maintaining them incrementally.
+     */
+    protected void resetTrackedLogLikelihoods() {
+        trackedWordLlh = 0.0;
+        for (int k = 0; k < K; k++) {
+            trackedWordLlh += topicWords[k].getLogLikelihood();
+        }
+        trackedTopicLlh = 0.0;
+        for (int d = 0; d < D; d++) {
+            trackedTopicLlh += docTopics[d].getLogLikelihood();
+        }
+        llhTracked = true;
+    }
+
     /**
      * Optimize etas using L-BFGS.
      *
      * @return Elapsed time
      */
     public long updateEtas() {
-        if (isReporting) {
-            logln("+++ Updating etas ...");
-        }
-        long sTime = System.currentTimeMillis();
-
         SparseVector[] designMatrix = new SparseVector[A];
         for (int aa = 0; aa < A; aa++) {
             designMatrix[aa] = new SparseVector(K);
@@ -821,9 +1528,45 @@ public class SLDAIdealPoint extends AbstractTextIdealPoint {
                 designMatrix[aa].change(kk, (double) count / authorTotalWordWeights[aa]);
             }
         }
+        return updateEtas(designMatrix);
+    }
+
+    /**
+     * Optimize etas using L-BFGS given the authors' topic proportions.
+     *
+     * @param designMatrix Topic proportions of each author
+     * @return Elapsed time
+     */
+    protected long updateEtas(SparseVector[] designMatrix) {
+        if (isReporting) {
+            logln("+++ Updating etas ...");
+        }
+        long sTime = System.currentTimeMillis();
 
+        // only the active topics are regressed on
+        int[] active = activeTopics.getIndices();
+        double[] params = eta;
+        SparseVector[] features = designMatrix;
+        if (active.length < K) {
+            int[] compactIndices = new int[K];
+            Arrays.fill(compactIndices, -1);
+            params = new double[active.length];
+            for (int jj = 0; jj < active.length; jj++) {
+                compactIndices[active[jj]] = jj;
+                params[jj] = eta[active[jj]];
+            }
+            features = new SparseVector[designMatrix.length];
+            for (int aa = 0; aa < designMatrix.length; aa++) {
+                features[aa] = new SparseVector(active.length);
+                for (int kk : designMatrix[aa].getIndices()) {
+                    if (compactIndices[kk] >= 0) {
+                        features[aa].set(compactIndices[kk], designMatrix[aa].get(kk));
+                    }
+                }
+            }
+        }
         RidgeLinearRegressionOptimizable optimizable = new RidgeLinearRegressionOptimizable(
-                u, eta, designMatrix, rho, mu, sigma);
+                u, params, features, rho, mu, sigma);
 
         LimitedMemoryBFGS optimizer = new LimitedMemoryBFGS(optimizable);
         boolean converged = false;
@@ -838,8 +1581,8 @@ public class SLDAIdealPoint extends AbstractTextIdealPoint {
         }
 
         // update regression parameters
-        for (int kk = 0; kk < K; kk++) {
-            eta[kk] = optimizable.getParameter(kk);
+        for (int jj = 0; jj < active.length; jj++) {
+            eta[active[jj]] = optimizable.getParameter(jj);
         }
         // update author means
         for (int aa = 0; aa < A; aa++) {
@@ -917,28 +1660,23 @@ public class SLDAIdealPoint extends AbstractTextIdealPoint {
     }
 
     private double getVoteLogLikelihood() {
-        double llh = 0.0;
-        for (int aa = 0; aa < A; aa++) {
-            for (int bb = 0; bb < B; bb++) {
-                if (isValidVote(aa, bb)) {
-                    double score = u[aa] * x[bb] + y[bb];
-                    llh += getVote(aa, bb) * score - Math.log(1 + Math.exp(score));
-                }
-            }
-        }
-        return llh;
+        return getObservedVoteLogLikelihood(u, x, y);
     }
 
     @Override
     public double getLogLikelihood() {
         double wordLlh = 0.0;
-        for (int k = 0; k < K; k++) {
-            wordLlh += topicWords[k].getLogLikelihood();
-        }
-
         double topicLlh = 0.0;
-        for (int d = 0; d < D; d++) {
-            topicLlh += docTopics[d].getLogLikelihood();
+        if (llhTracked) {
+            wordLlh = trackedWordLlh;
+            topicLlh = trackedTopicLlh;
+        } else {
+            for (int k = 0; k < K; k++) {
+                wordLlh += topicWords[k].getLogLikelihood();
+            }
+            for (int d = 0; d < D; d++) {
+                topicLlh += docTopics[d].getLogLikelihood();
+            }
         }
 
         double voteLlh = getVoteLogLikelihood();
@@ -953,8 +1691,39 @@ public class SLDAIdealPoint extends AbstractTextIdealPoint {
         return llh;
     }
 
+    /**
+     * Slice sample the hyperparameters. Only alpha and beta change during
+     * slice sampling, so the count histograms of the topic-word and
+     * doc-topic multinomials and the vote log likelihood are computed once
+     * and reused for every evaluation of the log likelihood.
+     */
+    @Override
+    protected void sliceSample() {
+        topicWordStats = new CountHistogram(V);
+        for (int k = 0; k < K; k++) {
+            topicWordStats.add(topicWords[k]);
+        }
+        docTopicStats = new CountHistogram(K);
+        for (int d = 0; d < D; d++) {
+            docTopicStats.add(docTopics[d]);
+        }
+        sliceVoteLlh = getVoteLogLikelihood();
+        try {
+            super.sliceSample();
+        } finally {
+            topicWordStats = null;
+            docTopicStats = null;
+        }
+    }
+
     @Override
     public double getLogLikelihood(ArrayList<Double> newParams) {
+        if (topicWordStats != null && docTopicStats != null) {
+            double wordLlh = topicWordStats.getLogLikelihood(newParams.get(BETA) * V);
+            double topicLlh = docTopicStats.getLogLikelihood(newParams.get(ALPHA) * K);
+            return wordLlh + topicLlh + sliceVoteLlh;
+        }
+
         double wordLlh = 0.0;
         for (int k = 0; k < K; k++) {
             wordLlh += topicWords[k].getLogLikelihood(newParams.get(BETA) * V,
@@ -1029,8 +1798,8 @@ public class SLDAIdealPoint extends AbstractTextIdealPoint {
             for (int d = 0; d < D; d++) {
                 assignStr.append(d).append("\n");
                 assignStr.append(DirMult.output(docTopics[d])).append("\n");
-                for (int n = 0; n < z[d].length; n++) {
-                    assignStr.append(z[d][n]).append("\t");
+                for (int ii = tokens.getStart(d); ii < tokens.getEnd(d); ii++) {
+                    assignStr.append(tokens.getZ(ii)).append("\t");
                 }
                 assignStr.append("\n");
             }
@@ -1084,7 +1853,7 @@ public class SLDAIdealPoint extends AbstractTextIdealPoint {
 
         try {
             String filename = IOUtils.removeExtension(IOUtils.getFilename(zipFilepath));
-            BufferedReader reader = IOUtils.getBufferedReader(zipFilepath,
+            BufferedReader reader = SnapshotCache.getBufferedReader(zipFilepath,
                     filename + ModelFileExt);
             topicWords = new DirMult[K];
             eta = new double[K];
@@ -1096,6 +1865,15 @@ public class SLDAIdealPoint extends AbstractTextIdealPoint {
                 eta[kk] = Double.parseDouble(reader.readLine());
                 topicWords[kk] = DirMult.input(reader.readLine());
             }
+            // topics emptied by truncation during training stay inactive
+            activeTopics = new ActiveComponents(K);
+            if (isTruncating()) {
+                for (int kk = 0; kk < K; kk++) {
+                    if (topicWords[kk].getCountSum() == 0) {
+                        activeTopics.deactivate(kk);
+                    }
+                }
+            }
 
             wordWeights = new double[V];
             for (int vv = 0; vv < V; vv++) {
@@ -1124,7 +1902,7 @@ public class SLDAIdealPoint extends AbstractTextIdealPoint {
             this.initializeDataStructure();
 
             String filename = IOUtils.removeExtension(IOUtils.getFilename(zipFilepath));
-            BufferedReader reader = IOUtils.getBufferedReader(zipFilepath,
+            BufferedReader reader = SnapshotCache.getBufferedReader(zipFilepath,
                     filename + AssignmentFileExt);
             for (int d = 0; d < D; d++) {
                 int docIdx = Integer.parseInt(reader.readLine().split("\t")[0]);
@@ -1134,12 +1912,12 @@ public class SLDAIdealPoint extends AbstractTextIdealPoint {
                 docTopics[d] = DirMult.input(reader.readLine());
 
                 String[] sline = reader.readLine().split("\t");
-                if (sline.length != words[d].length) {
+                if (sline.length != tokens.getLength(d)) {
                     throw new RuntimeException("[MISMATCH]. Doc "
-                            + d + ". " + sline.length + " vs. " + words[d].length);
+                            + d + ". " + sline.length + " vs. " + tokens.getLength(d));
                 }
-                for (int n = 0; n < words[d].length; n++) {
-                    z[d][n] = Integer.parseInt(sline[n]);
+                for (int n = 0; n < tokens.getLength(d); n++) {
+                    tokens.setZ(d, n, Integer.parseInt(sline[n]));
                 }
             }
             reader.close();
@@ -1156,7 +1934,7 @@ public class SLDAIdealPoint extends AbstractTextIdealPoint {
         }
         try {
             String filename = IOUtils.removeExtension(IOUtils.getFilename(zipFilepath));
-            BufferedReader reader = IOUtils.getBufferedReader(zipFilepath, filename + ".bill");
+            BufferedReader reader = SnapshotCache.getBufferedReader(zipFilepath, filename + ".bill");
 
             int numBills = Integer.parseInt(reader.readLine());
             if (numBills != B) {
@@ -1182,7 +1960,7 @@ public class SLDAIdealPoint extends AbstractTextIdealPoint {
         }
         try {
             String filename = IOUtils.removeExtension(IOUtils.getFilename(zipFilepath));
-            BufferedReader reader = IOUtils.getBufferedReader(zipFilepath, filename + ".author");
+            BufferedReader reader = SnapshotCache.getBufferedReader(zipFilepath, filename + ".author");
             int numAuthors = Integer.parseInt(reader.readLine());
             if (numAuthors != A) {
                 throw new MismatchRuntimeException(numAuthors, A);
@@ -1264,11 +2042,12 @@ public class SLDAIdealPoint extends AbstractTextIdealPoint {
 
         for (int dd = 0; dd < D; dd++) {
             int aa = authors[dd];
-            for (int nn = 0; nn < words[dd].length; nn++) {
-                int kk = z[dd][nn];
+            for (int ii = tokens.getStart(dd); ii < tokens.getEnd(dd); ii++) {
+                int kk = tokens.getZ(ii);
+                double weight = wordWeights[tokens.getWord(ii)];
                 authorNodeProps[aa].change(kk, 1.0);
-                authorNodeWeightedProps[aa].change(kk, wordWeights[words[dd][nn]]);
-                authorNodePolarizedProps[aa].change(kk, wordWeights[words[dd][nn]] * eta[kk]);
+                authorNodeWeightedProps[aa].change(kk, weight);
+                authorNodePolarizedProps[aa].change(kk, weight * eta[kk]);
             }
         }
 
@@ -1304,9 +2083,9 @@ public class SLDAIdealPoint extends AbstractTextIdealPoint {
         }
         for (int dd = 0; dd < D; dd++) {
             int aa = authors[dd];
-            for (int nn = 0; nn < words[dd].length; nn++) {
-                designMatrix[aa].change(z[dd][nn],
-                        wordWeights[words[dd][nn]] / authorTotalWordWeights[aa]);
+            for (int ii = tokens.getStart(dd); ii < tokens.getEnd(dd); ii++) {
+                designMatrix[aa].change(tokens.getZ(ii),
+                        wordWeights[tokens.getWord(ii)] / authorTotalWordWeights[aa]);
             }
         }
         double[][] authorTopicProps = new double[A][K];
@@ -1433,6 +2212,7 @@ public class SLDAIdealPoint extends AbstractTextIdealPoint {
             IOUtils.createFolder(iterPredFolder);
             ArrayList<Thread> threads = new ArrayList<Thread>();
             ArrayList<File> partPredFiles = new ArrayList<>();
+            RandomStreams testStreams = RandomStreams.splitThreadStream();
             for (String filename : filenames) {
                 if (!filename.contains("zip")) {
                     continue;
@@ -1444,6 +2224,9 @@ public class SLDAIdealPoint extends AbstractTextIdealPoint {
                 SLDATestRunner runner = new SLDATestRunner(
                         sampler, stateFile, newDocIndices, newWords,
                         newAuthors, newAuthorIndices, testVotes, partialResultFile);
+                if (testStreams != null) {
+                    runner.setStream(testStreams.getStream(filename));
+                }
                 Thread thread = new Thread(runner);
                 threads.add(thread);
                 partPredFiles.add(partialResultFile);
@@ -1487,6 +2270,7 @@ class SLDATestRunner implements Runnable {
     ArrayList<Integer> testAuthorIndices;
     boolean[][] testVotes;
     File predictionFile;
+    Random stream;
 
     public SLDATestRunner(SLDAIdealPoint sampler,
             File stateFile,
@@ -1506,8 +2290,15 @@ class SLDATestRunner implements Runnable {
         this.predictionFile = outputFile;
     }
 
+    public void setStream(Random stream) {
+        this.stream = stream;
+    }
+
     @Override
     public void run() {
+        if (stream != null) {
+            RandomStreams.setThreadStream(stream);
+        }
         SLDAIdealPoint testSampler = new SLDAIdealPoint();
         testSampler.setVerbose(true);
         testSampler.setDebug(false);
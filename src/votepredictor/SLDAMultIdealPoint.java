@@ -632,42 +632,12 @@ public class SLDAMultIdealPoint extends AbstractTextIdealPoint {
         int lda_burnin = 10;
         int lda_maxiter = 100;
         int lda_samplelag = 10;
-        LDA lda = new LDA();
-        lda.setDebug(debug);
-        lda.setVerbose(verbose);
-        lda.setLog(false);
         double lda_alpha = hyperparams.get(ALPHA);
         double lda_beta = hyperparams.get(BETA);
-
-        lda.configure(folder, V, K, lda_alpha, lda_beta, InitialState.RANDOM, false,
-                lda_burnin, lda_maxiter, lda_samplelag, lda_samplelag);
-
-        int[][] ldaZ = null;
-        try {
-            File ldaFile = new File(lda.getSamplerFolderPath(), basename + ".zip");
-            lda.train(words, null);
-            if (ldaFile.exists()) {
-                if (verbose) {
-                    logln("--- --- LDA file exists. Loading from " + ldaFile);
-                }
-                lda.inputState(ldaFile);
-            } else {
-                if (verbose) {
-                    logln("--- --- LDA not found. Running LDA ...");
-                }
-                lda.initialize();
-                lda.iterate();
-                IOUtils.createFolder(lda.getSamplerFolderPath());
-                lda.outputState(ldaFile);
-                lda.setWordVocab(wordVocab);
-                lda.outputTopicTopWords(new File(lda.getSamplerFolderPath(), TopWordFile), 20);
-            }
-            ldaZ = lda.getZs();
-        } catch (Exception e) {
-            e.printStackTrace();
-            throw new RuntimeException("Exception while running LDA for initialization");
-        }
-        setLog(log);
+        LDA lda = runLDA(words, K, V, null, null,
+                lda_alpha, lda_beta,
+                lda_burnin, lda_maxiter, lda_samplelag);
+        int[][] ldaZ = lda.getZs();
 
         // initialize assignments
         for (int dd = 0; dd < D; dd++) {
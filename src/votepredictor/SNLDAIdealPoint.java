@@ -1,6 +1,11 @@
 package votepredictor;
 
 import votepredictor.textidealpoint.AbstractTextIdealPoint;
+import votepredictor.textidealpoint.ActiveComponents;
+import votepredictor.textidealpoint.HTMLReportWriter;
+import votepredictor.textidealpoint.SnapshotCache;
+import votepredictor.textidealpoint.TopRanker;
+import votepredictor.textidealpoint.CountHistogram;
 import cc.mallet.optimize.LimitedMemoryBFGS;
 import data.Author;
 import data.Vote;
@@ -65,9 +70,15 @@ public class SNLDAIdealPoint extends AbstractTextIdealPoint {
     protected int numTokensChanged;
     protected double[] background;
     protected int numTokensAccepted;
+    protected int cachedDoc = -1; // document whose path statistics are cached
     protected ArrayList<String> labelVocab;
     protected int posAnchor;
     protected int negAnchor;
+    // statistics only available while slice sampling hyperparameters
+    protected CountHistogram[] levelWordStats;  // [L]: topic-word counts of nodes at each level
+    protected ArrayList<int[]> sliceWidthCounts; // children's token counts of each internal node
+    protected ArrayList<Integer> sliceWidthLevels;
+    protected double sliceFixedLlh; // log likelihood terms not depending on hyperparameters
 
     public SNLDAIdealPoint() {
         this.basename = "SNLDA-ideal-point";
@@ -101,6 +112,7 @@ public class SNLDAIdealPoint extends AbstractTextIdealPoint {
                 sampler.MAX_ITER,
                 sampler.LAG,
                 sampler.REP_INTERVAL);
+        this.setAdaptiveTruncation(sampler.truncationMinMass, sampler.truncationNumChecks);
     }
 
     public void configure(String folder,
@@ -254,6 +266,11 @@ public class SNLDAIdealPoint extends AbstractTextIdealPoint {
         return this.y;
     }
 
+    @Override
+    protected double[] getTracedUs() {
+        return this.u;
+    }
+
     protected double getAlpha(int l) {
         return this.hyperparams.get(l);
     }
@@ -282,6 +299,16 @@ public class SNLDAIdealPoint extends AbstractTextIdealPoint {
         return this.gamma_scales[l];
     }
 
+    @Override
+    protected boolean supportsAdaptiveTruncation() {
+        return true;
+    }
+
+    @Override
+    protected boolean supportsUXYUpdate(UXYUpdate update) {
+        return true;
+    }
+
     public double[] getPredictedUs() {
         return this.authorMeans;
     }
@@ -493,6 +520,58 @@ public class SNLDAIdealPoint extends AbstractTextIdealPoint {
         }
     }
 
+    @Override
+    protected SNLDAIdealPoint createFoldInWorker() {
+        SNLDAIdealPoint worker = new SNLDAIdealPoint(basename);
+        worker.configure(this);
+        return worker;
+    }
+
+    @Override
+    protected void inputFoldInModel(String zipFilepath) {
+        inputModel(zipFilepath);
+        inputBillScore(zipFilepath);
+        Stack<Node> stack = new Stack<>();
+        stack.add(root);
+        while (!stack.isEmpty()) {
+            Node node = stack.pop();
+            for (Node child : node.getChildren()) {
+                stack.add(child);
+            }
+            node.getContent().clear();
+        }
+    }
+
+    @Override
+    protected void initializeFoldIn() {
+        // clear the assignments of the previously folded-in documents
+        Stack<Node> stack = new Stack<>();
+        stack.add(root);
+        while (!stack.isEmpty()) {
+            Node node = stack.pop();
+            for (Node child : node.getChildren()) {
+                stack.add(child);
+            }
+            node.tokenCounts = new SparseCount();
+            node.subtreeTokenCounts = new SparseCount();
+        }
+        initializeDataStructure();
+    }
+
+    @Override
+    protected void sampleFoldIn(boolean init) {
+        if (init) {
+            sampleZs(!REMOVE, !ADD, !REMOVE, ADD, !OBSERVED);
+        } else {
+            sampleZs(!REMOVE, !ADD, REMOVE, ADD, !OBSERVED);
+        }
+    }
+
+    @Override
+    protected double getFoldInScore(int bb) {
+        return authorMeans[0] * x[bb] + y[bb];
+    }
+
     @Override
     public void initialize() {
         if (verbose) {
@@ -575,6 +654,24 @@ public class SNLDAIdealPoint extends AbstractTextIdealPoint {
             issueNode.initializeGlobalTheta();
             issueNode.initializeGlobalPi();
         }
+        initializeActiveChildren();
+    }
+
+    /**
+     * Keep all children of every internal node.
+     */
+    private void initializeActiveChildren() {
+        Stack<Node> stack = new Stack<>();
+        stack.add(root);
+        while (!stack.isEmpty()) {
+            Node node = stack.pop();
+            for (Node child : node.getChildren()) {
+                stack.add(child);
+            }
+            if (!node.isLeaf()) {
+                node.activeChildren = new ActiveComponents(node.getNumChildren());
+            }
+        }
     }
 
     protected void initializeDataStructure() {
@@ -678,6 +775,7 @@ public class SNLDAIdealPoint extends AbstractTextIdealPoint {
             if (isReporting) {
                 double loglikelihood = this.getLogLikelihood();
                 logLikelihoods.add(loglikelihood);
+                recordTrace(loglikelihood);
                 String str = "\n\nIter " + iter + "/" + MAX_ITER
                         + "\t llh = " + loglikelihood
                         + "\n" + getCurrentState();
@@ -703,6 +801,10 @@ public class SNLDAIdealPoint extends AbstractTextIdealPoint {
             updateUXY();
             sampleZs(REMOVE, ADD, REMOVE, ADD, OBSERVED);
 
+            if (isTruncationCheck()) {
+                truncateNodes();
+            }
+
             // parameter optimization
             if (iter % LAG == 0 && iter >= BURN_IN) {
                 if (paramOptimized) { // slice sampling
@@ -767,6 +869,9 @@ public class SNLDAIdealPoint extends AbstractTextIdealPoint {
                 tempNode.subtreeTokenCounts.increment(dd);
                 tempNode = tempNode.getParent();
             }
+            if (dd == cachedDoc) {
+                updateDocumentPathCache(node, 1);
+            }
         }
     }
 
@@ -789,12 +894,56 @@ public class SNLDAIdealPoint extends AbstractTextIdealPoint {
                 tempNode.subtreeTokenCounts.decrement(dd);
                 tempNode = tempNode.getParent();
             }
+            if (dd == cachedDoc) {
+                updateDocumentPathCache(node, -1);
+            }
         }
         if (removeFromModel) {
             node.getContent().decrement(words[dd][nn]);
         }
     }
 
+    /**
+     * Load the token counts of a document into the path cache stored at each
+     * node. The cached path probabilities are then kept up to date
+     * incrementally by {@link #addToken} and {@link #removeToken} while the
+     * tokens of this document are being sampled.
+     *
+     * @param dd Document index
+     */
+    private void cacheDocumentPath(int dd) {
+        Stack<Node> stack = new Stack<>();
+        stack.add(root);
+        while (!stack.isEmpty()) {
+            Node node = stack.pop();
+            for (Node child : node.getChildren()) {
+                stack.add(child);
+            }
+            node.docTokenCount = node.tokenCounts.getCount(dd);
+            node.docSubtreeTokenCount = node.subtreeTokenCounts.getCount(dd);
+            node.docPathValid = false;
+        }
+        this.cachedDoc = dd;
+    }
+
+    /**
+     * Update the cached path counts after a token of the cached document has
+     * been added to or removed from a node. Only the node and its ancestors
+     * are affected, and their path probabilities are marked for recomputation.
+     *
+     * @param node The node
+     * @param delta +1 when adding a token, -1 when removing a token
+     */
+    private void updateDocumentPathCache(Node node, int delta) {
+        node.docTokenCount += delta;
+        Node tempNode = node;
+        while (tempNode != null) {
+            tempNode.docSubtreeTokenCount += delta;
+            tempNode.docPathValid = false;
+            tempNode = tempNode.getParent();
+        }
+    }
+
     /**
      * Sample node assignment for all tokens.
      *
@@ -814,6 +963,7 @@ public class SNLDAIdealPoint extends AbstractTextIdealPoint {
         numTokensChanged = 0;
         numTokensAccepted = 0;
         for (int dd = 0; dd < D; dd++) {
+            cacheDocumentPath(dd);
             for (int nn = 0; nn < words[dd].length; nn++) {
                 // remove
                 removeToken(dd, nn, z[dd][nn], removeFromData, removeFromModel);
@@ -848,6 +998,7 @@ public class SNLDAIdealPoint extends AbstractTextIdealPoint {
                 addToken(dd, nn, z[dd][nn], addToData, addToModel);
             }
         }
+        this.cachedDoc = -1;
         long eTime = System.currentTimeMillis() - sTime;
         if (isReporting) {
             logln("--- --- time: " + eTime);
@@ -873,25 +1024,19 @@ public class SNLDAIdealPoint extends AbstractTextIdealPoint {
         if (curNode.isLeaf()) {
             return curNode;
         }
-        int level = curNode.getLevel();
-        double lAlpha = getAlpha(level);
-        double gammaScale = getGammaScale(level);
+        curNode.updateDocPathProbs();
 
         double stayprob = 0.0;
         if (hasRootTopic || (!hasRootTopic && !curNode.isRoot())) {
-            stayprob = (curNode.tokenCounts.getCount(dd) + gammaScale * curNode.pi)
-                    / (curNode.subtreeTokenCounts.getCount(dd) + gammaScale);
+            stayprob = curNode.docStayProb;
         }
         double passprob = 1.0 - stayprob;
 
         int KK = curNode.getNumChildren();
         double[] probs = new double[KK + 1];
-        double norm = curNode.subtreeTokenCounts.getCount(dd)
-                - curNode.tokenCounts.getCount(dd) + lAlpha * KK;
-        for (Node child : curNode.getChildren()) {
-            int kk = child.getIndex();
-            double pathprob = (child.subtreeTokenCounts.getCount(dd)
-                    + lAlpha * KK * curNode.theta[kk]) / norm;
+        for (int kk : curNode.activeChildren.getIndices()) {
+            Node child = curNode.getChild(kk);
+            double pathprob = curNode.docPathProbs[kk];
             double wordprob = child.getPhi(words[dd][nn]);
             probs[kk] = passprob * pathprob * wordprob;
         }
@@ -955,23 +1100,17 @@ public class SNLDAIdealPoint extends AbstractTextIdealPoint {
             return new double[2]; // stay with probabilities 1
         }
 
-        int KK = source.getNumChildren();
-        double lAlpha = getAlpha(level);
-        double gammaScale = getGammaScale(level);
-        double stayprob = (source.tokenCounts.getCount(dd) + gammaScale * source.pi)
-                / (source.subtreeTokenCounts.getCount(dd) + gammaScale);
+        source.updateDocPathProbs();
+        double stayprob = source.docStayProb;
         double passprob = 1.0 - stayprob;
 
         double pNum = 0.0;
         double pDen = 0.0;
         double aNum = 0.0;
         double aDen = 0.0;
-        double norm = source.subtreeTokenCounts.getCount(dd)
-                - source.tokenCounts.getCount(dd) + lAlpha * KK;
-        for (Node child : source.getChildren()) {
-            int kk = child.getIndex();
-            double pathprob = (child.subtreeTokenCounts.getCount(dd)
-                    + lAlpha * KK * source.theta[kk]) / norm;
+        for (int kk : source.activeChildren.getIndices()) {
+            Node child = source.getChild(kk);
+            double pathprob = source.docPathProbs[kk];
             double wordprob = child.getPhi(words[dd][nn]);
 
             double aVal = passprob * pathprob;
@@ -1012,8 +1151,13 @@ public class SNLDAIdealPoint extends AbstractTextIdealPoint {
         }
         long sTime = System.currentTimeMillis();
 
-        // list of nodes
-        ArrayList<Node> nodeList = getNodeList();
+        // list of nodes, without those removed by truncation
+        ArrayList<Node> nodeList = new ArrayList<>();
+        for (Node node : getNodeList()) {
+            if (node.isActive()) {
+                nodeList.add(node);
+            }
+        }
         int N = nodeList.size();
 
         // design matrix
@@ -1070,6 +1214,60 @@ public class SNLDAIdealPoint extends AbstractTextIdealPoint {
         return eTime;
     }
 
+    /**
+     * Deactivate the children whose subtrees' token counts have stayed below
+     * the minimum and reassign the tokens of the deactivated subtrees by
+     * sampling new paths among the active nodes.
+     */
+    protected void truncateNodes() {
+        double minCount = truncationMinMass * numTokens;
+        ArrayList<String> deactivated = new ArrayList<>();
+        Stack<Node> stack = new Stack<>();
+        stack.add(root);
+        while (!stack.isEmpty()) {
+            Node node = stack.pop();
+            if (node.isLeaf()) {
+                continue;
+            }
+            int[] counts = new int[node.getNumChildren()];
+            for (Node child : node.getChildren()) {
+                counts[child.getIndex()] = child.subtreeTokenCounts.getCountSum();
+            }
+            for (int kk : node.activeChildren.update(counts, minCount, truncationNumChecks)) {
+                deactivated.add(node.getChild(kk).getPathString());
+            }
+            for (int kk : node.activeChildren.getIndices()) {
+                stack.add(node.getChild(kk));
+            }
+        }
+        if (deactivated.isEmpty()) {
+            return;
+        }
+        int numReassigned = 0;
+        for (int dd = 0; dd < D; dd++) {
+            cacheDocumentPath(dd);
+            for (int nn = 0; nn < words[dd].length; nn++) {
+                if (!z[dd][nn].isActive()) {
+                    removeToken(dd, nn, z[dd][nn], REMOVE, REMOVE);
+                    z[dd][nn] = sampleNode(dd, nn, root);
+                    addToken(dd, nn, z[dd][nn], ADD, ADD);
+                    numReassigned++;
+                }
+            }
+        }
+        this.cachedDoc = -1;
+        int numActive = 0;
+        ArrayList<Node> nodeList = getNodeList();
+        for (Node node : nodeList) {
+            if (node.isActive()) {
+                numActive++;
+            }
+        }
+        logln("--- Iter " + iter + ". Deactivated nodes " + deactivated
+                + ". # tokens reassigned: " + numReassigned
+                + ". # active nodes: " + numActive + "/" + nodeList.size());
+    }
+
     /**
      * Flatten the nodes in the tree excluding the root node.
      *
@@ -1092,7 +1290,8 @@ public class SNLDAIdealPoint extends AbstractTextIdealPoint {
     }
 
     /**
-     * Update U, X and Y.
+     * Update U, X and Y, using block-Newton passes or a Polya-Gamma Gibbs
+     * sweep if enabled.
      *
      * @return Elapsed time
      */
@@ -1101,9 +1300,15 @@ public class SNLDAIdealPoint extends AbstractTextIdealPoint {
             logln("+++ Updating UXY ...");
         }
         long sTime = System.currentTimeMillis();
-        for (int ii = 0; ii < numSteps; ii++) {
-            updateUs();
-            updateXYs();
+        if (uxyUpdate == UXYUpdate.NEWTON) {
+            updateUXYNewton(u, x, y, authorMeans, sigma, mu, sigma);
+        } else if (uxyUpdate == UXYUpdate.POLYA_GAMMA) {
+            sampleUXYPolyaGamma(u, x, y, authorMeans, sigma, mu, sigma);
+        } else {
+            for (int ii = 0; ii < numSteps; ii++) {
+                updateUs();
+                updateXYs();
+            }
         }
         long eTime = System.currentTimeMillis() - sTime;
         if (isReporting) {
@@ -1160,15 +1365,7 @@ public class SNLDAIdealPoint extends AbstractTextIdealPoint {
 
     @Override
     public double getLogLikelihood() {
-        double voteLlh = 0.0;
-        for (int aa = 0; aa < A; aa++) {
-            for (int bb = 0; bb < B; bb++) {
-                if (isValidVote(aa, bb)) {
-                    double score = u[aa] * x[bb] + y[bb];
-                    voteLlh += getVote(aa, bb) * score - Math.log(1 + Math.exp(score));
-                }
-            }
-        }
+        double voteLlh = getVoteLogLikelihood();
 
         double wordLlh = 0.0;
         double horizontalLlh = 0.0;
@@ -1219,21 +1416,106 @@ public class SNLDAIdealPoint extends AbstractTextIdealPoint {
         return llh;
     }
 
+    private double getVoteLogLikelihood() {
+        return getObservedVoteLogLikelihood(u, x, y);
+    }
+
+    /**
+     * Log likelihood of the per-document horizontal and vertical choices made
+     * at an internal node.
+     *
+     * @param node The node
+     */
+    private double getLocalLogLikelihood(Node node) {
+        int level = node.getLevel();
+        double llh = 0.0;
+        for (int dd : node.subtreeTokenCounts.getIndices()) {
+            // horizontal
+            SparseCount counts = new SparseCount();
+            for (Node child : node.getChildren()) {
+                counts.changeCount(child.getIndex(), child.subtreeTokenCounts.getCount(dd));
+            }
+            llh += SamplerUtils.computeLogLhood(counts, node.theta);
+
+            // vertical
+            int[] vertCounts = new int[2];
+            vertCounts[0] = node.tokenCounts.getCount(dd);
+            vertCounts[1] = node.subtreeTokenCounts.getCount(dd) - vertCounts[0];
+            llh += SamplerUtils.computeLogLhood(vertCounts,
+                    node.subtreeTokenCounts.getCount(dd),
+                    getGammaMeanVector(level), getGammaScale(level));
+        }
+        return llh;
+    }
+
+    private int[] getChildrenTokenCounts(Node node) {
+        int[] counts = new int[node.getNumChildren()];
+        for (int kk = 0; kk < node.getNumChildren(); kk++) {
+            counts[kk] = node.getChild(kk).subtreeTokenCounts.getCountSum();
+        }
+        return counts;
+    }
+
+    /**
+     * Slice sample the hyperparameters. The vote and per-document terms do not
+     * depend on alpha and beta, and the topic-word counts do not change during
+     * slice sampling. These are therefore summarized once (count histograms
+     * per level for the topic-word terms) and reused for every evaluation of
+     * the log likelihood.
+     */
+    @Override
+    protected void sliceSample() {
+        levelWordStats = new CountHistogram[L];
+        for (int ll = 0; ll < L; ll++) {
+            levelWordStats[ll] = new CountHistogram(V);
+        }
+        sliceWidthCounts = new ArrayList<>();
+        sliceWidthLevels = new ArrayList<>();
+        sliceFixedLlh = getVoteLogLikelihood();
+        Stack<Node> stack = new Stack<>();
+        stack.add(root);
+        while (!stack.isEmpty()) {
+            Node node = stack.pop();
+            for (Node child : node.getChildren()) {
+                stack.add(child);
+            }
+            if (!node.isRoot()) {
+                levelWordStats[node.getLevel()].add(node.getContent());
+            }
+            if (!node.isLeaf()) {
+                sliceFixedLlh += getLocalLogLikelihood(node);
+                sliceWidthCounts.add(getChildrenTokenCounts(node));
+                sliceWidthLevels.add(node.getLevel());
+            }
+        }
+        try {
+            super.sliceSample();
+        } finally {
+            levelWordStats = null;
+            sliceWidthCounts = null;
+            sliceWidthLevels = null;
+        }
+    }
+
     @Override
     public double getLogLikelihood(ArrayList<Double> newParams) {
-        double voteLlh = 0.0;
-        for (int aa = 0; aa < A; aa++) {
-            for (int bb = 0; bb < B; bb++) {
-                if (isValidVote(aa, bb)) {
-                    double score = u[aa] * x[bb] + y[bb];
-                    voteLlh += getVote(aa, bb) * score - Math.log(1 + Math.exp(score));
-                }
+        if (levelWordStats != null) {
+            double llh = sliceFixedLlh;
+            for (int ll = 1; ll < L; ll++) {
+                llh += levelWordStats[ll].getLogLikelihood(getBeta(newParams, ll) * V);
+            }
+            for (int ii = 0; ii < sliceWidthCounts.size(); ii++) {
+                int[] counts = sliceWidthCounts.get(ii);
+                llh += SamplerUtils.computeLogLhood(counts, StatUtils.sum(counts),
+                        getAlpha(newParams, sliceWidthLevels.get(ii)));
             }
+            return llh;
         }
 
+        double voteLlh = getVoteLogLikelihood();
         double wordLlh = 0.0;
+        double localLlh = 0.0;
         double horizontalLlh = 0.0;
-        double verticalLlh = 0.0;
         Stack<Node> stack = new Stack<>();
         stack.add(root);
         while (!stack.isEmpty()) {
@@ -1249,37 +1531,16 @@ public class SNLDAIdealPoint extends AbstractTextIdealPoint {
             }
 
             if (!node.isLeaf()) {
-                // local
-                for (int dd : node.subtreeTokenCounts.getIndices()) {
-                    // horizontal
-                    SparseCount counts = new SparseCount();
-                    for (Node child : node.getChildren()) {
-                        counts.changeCount(child.getIndex(), child.subtreeTokenCounts.getCount(dd));
-                    }
-                    horizontalLlh += SamplerUtils.computeLogLhood(counts, node.theta);
-
-                    // vertical
-                    int[] vertCounts = new int[2];
-                    vertCounts[0] = node.tokenCounts.getCount(dd);
-                    vertCounts[1] = node.subtreeTokenCounts.getCount(dd) - vertCounts[0];
-                    verticalLlh += SamplerUtils.computeLogLhood(vertCounts,
-                            node.subtreeTokenCounts.getCount(dd),
-                            getGammaMeanVector(level), getGammaScale(level));
-                }
+                localLlh += getLocalLogLikelihood(node);
 
                 // global width
-                int[] counts = new int[node.getNumChildren()];
-                int countSum = 0;
-                for (int kk = 0; kk < node.getNumChildren(); kk++) {
-                    counts[kk] = node.getChild(kk).subtreeTokenCounts.getCountSum();
-                    countSum += counts[kk];
-                }
-                horizontalLlh += SamplerUtils.computeLogLhood(counts, countSum,
+                int[] counts = getChildrenTokenCounts(node);
+                horizontalLlh += SamplerUtils.computeLogLhood(counts, StatUtils.sum(counts),
                         getAlpha(newParams, level));
             }
         }
 
-        double llh = voteLlh + wordLlh + horizontalLlh + verticalLlh;
+        double llh = voteLlh + wordLlh + localLlh + horizontalLlh;
         return llh;
     }
 
@@ -1402,7 +1663,7 @@ public class SNLDAIdealPoint extends AbstractTextIdealPoint {
         }
         try {
             String filename = IOUtils.removeExtension(IOUtils.getFilename(zipFilepath));
-            BufferedReader reader = IOUtils.getBufferedReader(zipFilepath, filename + AuthorFileExt);
+            BufferedReader reader = SnapshotCache.getBufferedReader(zipFilepath, filename + AuthorFileExt);
 
             u = new double[A];
             for (int aa = 0; aa < A; aa++) {
@@ -1431,7 +1692,7 @@ public class SNLDAIdealPoint extends AbstractTextIdealPoint {
         }
         try {
             String filename = IOUtils.removeExtension(IOUtils.getFilename(zipFilepath));
-            BufferedReader reader = IOUtils.getBufferedReader(zipFilepath, filename + BillFileExt);
+            BufferedReader reader = SnapshotCache.getBufferedReader(zipFilepath, filename + BillFileExt);
             x = new double[B];
             y = new double[B];
             for (int bb = 0; bb < B; bb++) {
@@ -1465,7 +1726,7 @@ public class SNLDAIdealPoint extends AbstractTextIdealPoint {
         }
         try {
             String filename = IOUtils.removeExtension(IOUtils.getFilename(zipFilepath));
-            BufferedReader reader = IOUtils.getBufferedReader(zipFilepath, filename + ModelFileExt);
+            BufferedReader reader = SnapshotCache.getBufferedReader(zipFilepath, filename + ModelFileExt);
             wordWeights = new double[V];
             for (int vv = 0; vv < V; vv++) {
                 String[] sline = reader.readLine().split("\t");
@@ -1518,6 +1779,16 @@ public class SNLDAIdealPoint extends AbstractTextIdealPoint {
                 nodeMap.put(pathStr, node);
             }
             reader.close();
+
+            // subtrees emptied by truncation during training stay inactive
+            initializeActiveChildren();
+            if (isTruncating()) {
+                for (Node node : getNodeList()) {
+                    if (node.subtreeTokenCounts.getCountSum() == 0) {
+                        node.getParent().activeChildren.deactivate(node.getIndex());
+                    }
+                }
+            }
         } catch (Exception e) {
             e.printStackTrace();
             throw new RuntimeException("Exception while loading model from "
@@ -1541,7 +1812,7 @@ public class SNLDAIdealPoint extends AbstractTextIdealPoint {
             }
 
             String filename = IOUtils.removeExtension(IOUtils.getFilename(zipFilepath));
-            BufferedReader reader = IOUtils.getBufferedReader(zipFilepath, filename + AssignmentFileExt);
+            BufferedReader reader = SnapshotCache.getBufferedReader(zipFilepath, filename + AssignmentFileExt);
             for (int dd = 0; dd < z.length; dd++) {
                 for (int nn = 0; nn < z[dd].length; nn++) {
                     String[] sline = reader.readLine().split("\t");
@@ -1759,59 +2030,58 @@ public class SNLDAIdealPoint extends AbstractTextIdealPoint {
             logln("Outputing top words to file " + outputFile);
         }
 
-        StringBuilder str = new StringBuilder();
-        Stack<Node> stack = new Stack<Node>();
-        stack.add(root);
-        while (!stack.isEmpty()) {
-            Node node = stack.pop();
-
-            ArrayList<RankingItem<Node>> rankChildren = new ArrayList<RankingItem<Node>>();
-            for (Node child : node.getChildren()) {
-                rankChildren.add(new RankingItem<Node>(child, child.eta));
-            }
-            Collections.sort(rankChildren);
-            for (RankingItem<Node> item : rankChildren) {
-                stack.add(item.getObject());
-            }
+        try {
+            BufferedWriter writer = IOUtils.getBufferedWriter(outputFile);
+            Stack<Node> stack = new Stack<Node>();
+            stack.add(root);
+            while (!stack.isEmpty()) {
+                Node node = stack.pop();
+                StringBuilder str = new StringBuilder();
+
+                ArrayList<RankingItem<Node>> rankChildren = new ArrayList<RankingItem<Node>>();
+                for (Node child : node.getChildren()) {
+                    rankChildren.add(new RankingItem<Node>(child, child.eta));
+                }
+                Collections.sort(rankChildren);
+                for (RankingItem<Node> item : rankChildren) {
+                    stack.add(item.getObject());
+                }
 
-            double[] nodeTopic = node.getMLEPhi();
-            String[] topWords = getTopWords(nodeTopic, numWords);
+                double[] nodeTopic = node.getMLEPhi();
+                String[] topWords = getTopWords(nodeTopic, numWords);
 
-            // top words according to the distribution
-            for (int i = 0; i < node.getLevel(); i++) {
-                str.append("   ");
-            }
-            str.append(node.getPathString())
-                    .append(" (").append(node.born)
-                    .append("; ").append(node.getContent().getCountSum())
-                    .append("; ").append(MiscUtils.formatDouble(node.eta))
-                    .append(")");
-            if (node.getLevel() == 1) {
-                if (labelVocab != null && labelVocab.size() == K) {
-                    str.append(" ").append(labelVocab.get(node.getIndex()));
+                // top words according to the distribution
+                for (int i = 0; i < node.getLevel(); i++) {
+                    str.append("   ");
                 }
-            }
-            str.append("\n");
+                str.append(node.getPathString())
+                        .append(" (").append(node.born)
+                        .append("; ").append(node.getContent().getCountSum())
+                        .append("; ").append(MiscUtils.formatDouble(node.eta))
+                        .append(")");
+                if (node.getLevel() == 1) {
+                    if (labelVocab != null && labelVocab.size() == K) {
+                        str.append(" ").append(labelVocab.get(node.getIndex()));
+                    }
+                }
+                str.append("\n");
 
-            // words with highest probabilities
-            for (int i = 0; i < node.getLevel(); i++) {
-                str.append("   ");
-            }
-            for (String topWord : topWords) {
-                str.append(topWord).append(" ");
-            }
-            str.append("\n");
+                // words with highest probabilities
+                for (int i = 0; i < node.getLevel(); i++) {
+                    str.append("   ");
+                }
+                for (String topWord : topWords) {
+                    str.append(topWord).append(" ");
+                }
+                str.append("\n");
 
-            // top assigned words
-            for (int i = 0; i < node.getLevel(); i++) {
-                str.append("   ");
+                // top assigned words
+                for (int i = 0; i < node.getLevel(); i++) {
+                    str.append("   ");
+                }
+                str.append(node.getTopObservations()).append("\n\n");
+                writer.write(str.toString());
             }
-            str.append(node.getTopObservations()).append("\n\n");
-        }
-
-        try {
-            BufferedWriter writer = IOUtils.getBufferedWriter(outputFile);
-            writer.write(str.toString());
             writer.close();
         } catch (IOException e) {
             e.printStackTrace();
@@ -1898,14 +2168,15 @@ public class SNLDAIdealPoint extends AbstractTextIdealPoint {
             logln("--- Outputing result to HTML file " + htmlFile);
         }
 
-        StringBuilder str = new StringBuilder();
-        str.append("<table>\n");
-        str.append("<tbody>\n");
+        HTMLReportWriter writer = new HTMLReportWriter(htmlFile);
+        writer.write("<table>\n");
+        writer.write("<tbody>\n");
 
         Stack<Node> stack = new Stack<>();
         stack.add(root);
         while (!stack.isEmpty()) {
             Node node = stack.pop();
+            StringBuilder str = new StringBuilder();
             ArrayList<RankingItem<Node>> rankChildren = new ArrayList<RankingItem<Node>>();
             for (Node child : node.getChildren()) {
                 rankChildren.add(new RankingItem<Node>(child, child.eta));
@@ -1961,7 +2232,7 @@ public class SNLDAIdealPoint extends AbstractTextIdealPoint {
                 str.append("</tr>\n");
 
                 // snippets
-                ArrayList<RankingItem<Integer>> rankDocs = rankDocuments(node);
+                ArrayList<RankingItem<Integer>> rankDocs = rankDocuments(node, 10);
                 str.append("<tr class=\"level").append(node.getLevel()).append("\"")
                         .append(" id=\"").append(node.getPathString()).append("\"")
                         .append(" style=\"display:none;\"")
@@ -2012,23 +2283,29 @@ public class SNLDAIdealPoint extends AbstractTextIdealPoint {
                 str.append("</td>\n");
                 str.append("</tr>\n");
             }
+            writer.write(str.toString());
         }
-        str.append("</tbody>\n");
-        str.append("</table>\n");
-        HTMLUtils.outputHTMLFile(htmlFile, str.toString());
+        writer.write("</tbody>\n");
+        writer.write("</table>\n");
+        writer.close();
     }
 
-    private ArrayList<RankingItem<Integer>> rankDocuments(Node node) {
-        ArrayList<RankingItem<Integer>> rankDocs = new ArrayList<>();
+    /**
+     * Documents having the highest proportions of tokens assigned to a node.
+     *
+     * @param node The node
+     * @param numDocs Number of documents
+     */
+    private ArrayList<RankingItem<Integer>> rankDocuments(Node node, int numDocs) {
+        TopRanker<Integer> ranker = new TopRanker<>(numDocs);
         for (int ii : node.tokenCounts.getIndices()) {
             if (words[ii].length < 20) {
                 continue;
             }
             double val = (double) node.tokenCounts.getCount(ii) / words[ii].length;
-            rankDocs.add(new RankingItem<Integer>(ii, val));
+            ranker.add(ii, val);
         }
-        Collections.sort(rankDocs);
-        return rankDocs;
+        return ranker.getRankedItems();
     }
 
     class Node extends TreeNode<Node, DirMult> {
@@ -2039,10 +2316,18 @@ public class SNLDAIdealPoint extends AbstractTextIdealPoint {
         protected double eta; // regression parameter
         protected double pi;
         protected double[] theta;
+        protected ActiveComponents activeChildren; // children kept by adaptive truncation
 
         // estimated topics after training, which is used for test
         protected double[] phihat;
 
+        // path statistics of the document currently being sampled
+        protected int docTokenCount;
+        protected int docSubtreeTokenCount;
+        protected double docStayProb;
+        protected double[] docPathProbs;
+        protected boolean docPathValid;
+
         public Node(int iter, int index, int level, DirMult content, Node parent,
                 double eta) {
             super(index, level, content, parent);
@@ -2074,6 +2359,41 @@ public class SNLDAIdealPoint extends AbstractTextIdealPoint {
             return this.getContent().isEmpty();
         }
 
+        /**
+         * Whether this node and all of its ancestors are kept by adaptive
+         * truncation.
+         */
+        boolean isActive() {
+            return parent == null
+                    || (parent.activeChildren.isActive(index) && parent.isActive());
+        }
+
+        /**
+         * Recompute the stay probability and the path probabilities to each
+         * child for the cached document if any count in this subtree has
+         * changed since they were last computed.
+         */
+        void updateDocPathProbs() {
+            if (docPathValid) {
+                return;
+            }
+            int KK = getNumChildren();
+            double lAlpha = getAlpha(level);
+            double gammaScale = getGammaScale(level);
+            docStayProb = (docTokenCount + gammaScale * pi)
+                    / (docSubtreeTokenCount + gammaScale);
+            if (docPathProbs == null || docPathProbs.length != KK) {
+                docPathProbs = new double[KK];
+            }
+            double norm = docSubtreeTokenCount - docTokenCount + lAlpha * KK;
+            for (Node child : getChildren()) {
+                int kk = child.getIndex();
+                docPathProbs[kk] = (child.docSubtreeTokenCount
+                        + lAlpha * KK * theta[kk]) / norm;
+            }
+            docPathValid = true;
+        }
+
         void initializeGlobalPi() {
             this.pi = getGammaMean(level);
         }
@@ -2093,13 +2413,7 @@ public class SNLDAIdealPoint extends AbstractTextIdealPoint {
         }
 
         String[] getTopWords(int numTopWords) {
-            ArrayList<RankingItem<String>> topicSortedVocab
-                    = IOUtils.getSortedVocab(getMLEPhi(), wordVocab);
-            String[] topWords = new String[numTopWords];
-            for (int i = 0; i < numTopWords; i++) {
-                topWords[i] = topicSortedVocab.get(i).getObject();
-            }
-            return topWords;
+            return TopRanker.getTopWords(getMLEPhi(), wordVocab, numTopWords);
         }
 
         String getTopObservations() {
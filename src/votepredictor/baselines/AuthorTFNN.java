@@ -1,5 +1,6 @@
 package votepredictor.baselines;
 
+import data.FoldView;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
@@ -104,9 +105,10 @@ public class AuthorTFNN extends AbstractVotePredictor {
         for (int aa = 0; aa < A; aa++) {
             this.authorVectors[aa] = new SparseVector(V);
         }
+        int[] inverseAuthorIndices = FoldView.getInverseIndices(authorIndices);
         for (int dd : docIndices) {
             int author = authors[dd];
-            int aa = authorIndices.indexOf(author);
+            int aa = FoldView.getPosition(inverseAuthorIndices, author);
             if (aa < 0) {
                 continue;
             }
@@ -140,9 +142,10 @@ public class AuthorTFNN extends AbstractVotePredictor {
                 docIndices.add(dd);
             }
         }
+        int[] inverseAuthorIndices = FoldView.getInverseIndices(authorIndices);
         for (int dd : docIndices) {
             int author = authors[dd];
-            int aa = authorIndices.indexOf(author);
+            int aa = FoldView.getPosition(inverseAuthorIndices, author);
             if (aa < 0) {
                 continue;
             }
@@ -1,6 +1,7 @@
 package votepredictor.baselines;
 
 import cc.mallet.optimize.LimitedMemoryBFGS;
+import data.FoldView;
 import data.Vote;
 import de.bwaldvogel.liblinear.Feature;
 import de.bwaldvogel.liblinear.FeatureNode;
@@ -227,9 +228,10 @@ public class LogisticRegression extends AbstractVotePredictor {
             this.authorVectors[aa] = new SparseVector(V + totalF);
         }
         // lexical features
+        int[] inverseAuthorIndices = FoldView.getInverseIndices(this.authorIndices);
         for (int dd : docIndices) {
             int author = authors[dd];
-            int aa = this.authorIndices.indexOf(author);
+            int aa = FoldView.getPosition(inverseAuthorIndices, author);
             if (aa < 0) {
                 continue;
             }
@@ -448,9 +450,10 @@ public class LogisticRegression extends AbstractVotePredictor {
                 docIndices.add(dd);
             }
         }
+        int[] inverseAuthorIndices = FoldView.getInverseIndices(authorIndices);
         for (int dd : docIndices) {
             int author = authors[dd];
-            int aa = authorIndices.indexOf(author);
+            int aa = FoldView.getPosition(inverseAuthorIndices, author);
             if (aa < 0) {
                 continue;
             }
@@ -5,9 +5,21 @@ import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Random;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import sampler.unsupervised.LDA;
 import util.IOUtils;
 import util.MiscUtils;
+import util.MismatchRuntimeException;
+import util.SparseVector;
+import util.evaluation.Measurement;
+import votepredictor.AbstractVotePredictor;
+import votepredictor.BayesianIdealPoint;
+import votepredictor.NewtonIdealPointOptimizer;
+import votepredictor.ObservedVotes;
+import votepredictor.PolyaGammaIdealPointSampler;
 
 /**
  *
@@ -38,13 +50,44 @@ public abstract class AbstractTextIdealPoint extends AbstractSampler {
     protected int B; // number of bills
     protected boolean[] validAs; // flag voters with no training vote
     protected boolean[] validBs; // flag bills with no training vote
+    protected int[] obsVoteAuthors; // author of each observed training vote
+    protected int[] obsVoteBills; // bill of each observed training vote
     // configure
     protected WordWeightType wordWeightType;
+    protected TokenStore.SweepOrder sweepOrder = TokenStore.SweepOrder.DOCUMENT;
     protected double[] wordWeights;
     protected double[] authorTotalWordWeights;
 
     protected ArrayList<String> authorVocab;
     protected ArrayList<String> voteVocab;
+    // multiple chains
+    protected int chainIndex = -1;
+    protected ArrayList<Double> traceLogLikelihoods;
+    protected ArrayList<double[]> traceUs;
+    // updates of the ideal points
+    protected UXYUpdate uxyUpdate = UXYUpdate.GRADIENT;
+    protected double newtonTolerance = 1E-6;
+    protected int newtonMaxIter = 20;
+    protected int polyaGammaNumThreads = 1;
+    private ObservedVotes observedVotes;
+    private NewtonIdealPointOptimizer uxyOptimizer;
+    private PolyaGammaIdealPointSampler uxySampler;
+    // evaluation at reporting iterations
+    protected boolean backgroundEvaluation;
+    private ThreadPoolExecutor evaluator;
+    // folder of initial states (ideal points, LDA) shared across samplers
+    protected String initFolder;
+    private static final HashMap<String, Object> initLocks = new HashMap<>();
+    // number of threads of the LDA initialization, 1 for the exact sampler
+    protected int ldaInitNumThreads = 1;
+    // adaptive truncation of components holding few tokens
+    protected double truncationMinMass;
+    protected int truncationNumChecks = 2;
+
+    public enum UXYUpdate {
+
+        GRADIENT, NEWTON, POLYA_GAMMA
+    }
 
     public void setAuthorVocab(ArrayList<String> authorVoc) {
         this.authorVocab = authorVoc;
@@ -58,6 +101,495 @@ public abstract class AbstractTextIdealPoint extends AbstractSampler {
         this.voteVocab = voteVoc;
     }
 
+    /**
+     * Run this sampler as one of multiple chains. Chain 0 uses the regular
+     * sampler folder while other chains report to a chain-tagged subfolder.
+     * After burn-in, the log likelihood and the authors' ideal points are
+     * recorded at every reporting iteration for convergence diagnostics.
+     *
+     * @param chainIndex Index of the chain
+     */
+    public void setChain(int chainIndex) {
+        this.chainIndex = chainIndex;
+        this.traceLogLikelihoods = new ArrayList<>();
+        this.traceUs = new ArrayList<>();
+    }
+
+    /**
+     * Update the ideal points with block-Newton passes instead of gradient
+     * steps with a fixed learning rate. Models that do not support it reject
+     * it. Call after configure, which resets the name.
+     *
+     * @param tolerance Convergence tolerance of the Newton passes
+     * @param maxIter Maximum number of Newton passes per update
+     */
+    public void setNewtonUXY(double tolerance, int maxIter) {
+        if (!supportsUXYUpdate(UXYUpdate.NEWTON)) {
+            throw new RuntimeException(getClass().getSimpleName()
+                    + " does not support block-Newton updates of the ideal points");
+        }
+        if (this.uxyUpdate == UXYUpdate.GRADIENT && this.name != null) {
+            this.name += "_newton-" + tolerance;
+        }
+        this.uxyUpdate = UXYUpdate.NEWTON;
+        this.newtonTolerance = tolerance;
+        this.newtonMaxIter = maxIter;
+    }
+
+    /**
+     * Sample the ideal points with one Polya-Gamma augmented Gibbs sweep per
+     * iteration instead of taking gradient steps. Models that do not support it
+     * reject it. Call after configure, which resets the name.
+     *
+     * @param numThreads Number of threads sampling blocks of authors and bills
+     */
+    public void setPolyaGammaUXY(int numThreads) {
+        if (!supportsUXYUpdate(UXYUpdate.POLYA_GAMMA)) {
+            throw new RuntimeException(getClass().getSimpleName()
+                    + " does not support Polya-Gamma sampling of the ideal points");
+        }
+        if (this.uxyUpdate == UXYUpdate.GRADIENT && this.name != null) {
+            this.name += "_pg";
+        }
+        this.uxyUpdate = UXYUpdate.POLYA_GAMMA;
+        this.polyaGammaNumThreads = numThreads;
+    }
+
+    public UXYUpdate getUXYUpdate() {
+        return this.uxyUpdate;
+    }
+
+    /**
+     * Whether the model implements a way of updating the ideal points. Models
+     * that implement block-Newton or Polya-Gamma updates override this.
+     *
+     * @param update The update
+     */
+    protected boolean supportsUXYUpdate(UXYUpdate update) {
+        return update == UXYUpdate.GRADIENT;
+    }
+
+    /**
+     * Deactivate components (e.g., topics) whose share of the training tokens
+     * stays below a minimum, checked every sample lag iterations. Deactivated
+     * components are no longer considered for any token nor in the regression.
+     * Models that do not support it reject a positive minimum. Call after
+     * configure, which resets the name.
+     *
+     * @param minMass Minimum fraction of the tokens of an active component, 0
+     * to disable truncation
+     * @param numChecks Number of consecutive checks below the minimum before a
+     * component is deactivated
+     */
+    public void setAdaptiveTruncation(double minMass, int numChecks) {
+        if (minMass > 0 && !supportsAdaptiveTruncation()) {
+            throw new RuntimeException(getClass().getSimpleName()
+                    + " does not support adaptive truncation");
+        }
+        if (minMass > 0 && this.truncationMinMass <= 0 && this.name != null) {
+            this.name += "_trunc-" + minMass;
+        }
+        this.truncationMinMass = minMass;
+        this.truncationNumChecks = numChecks;
+    }
+
+    /**
+     * Whether the model implements adaptive truncation. Models that do
+     * override this.
+     */
+    protected boolean supportsAdaptiveTruncation() {
+        return false;
+    }
+
+    public boolean isTruncating() {
+        return this.truncationMinMass > 0;
+    }
+
+    /**
+     * Whether the active components are checked at the current iteration.
+     */
+    protected boolean isTruncationCheck() {
+        return isTruncating() && iter > 0 && iter % LAG == 0;
+    }
+
+    /**
+     * Observed training votes, indexed by author and by bill.
+     */
+    protected ObservedVotes getObservedVotes() {
+        if (observedVotes == null) {
+            int[] voteValues = new int[obsVoteAuthors.length];
+            for (int ii = 0; ii < voteValues.length; ii++) {
+                voteValues[ii] = getVote(obsVoteAuthors[ii], obsVoteBills[ii]);
+            }
+            observedVotes = new ObservedVotes(A, B,
+                    obsVoteAuthors, obsVoteBills, voteValues);
+        }
+        return observedVotes;
+    }
+
+    /**
+     * Update authors' ideal points and bills' polarities and popularities with
+     * block-Newton passes on the observed training votes.
+     *
+     * @param u Authors' ideal points
+     * @param x Bills' polarities
+     * @param y Bills' popularities
+     * @param authorMeans Prior mean of each author's ideal point
+     * @param authorVar Prior variance of authors' ideal points
+     * @param billMean Prior mean of bills' polarities and popularities
+     * @param billVar Prior variance of bills' polarities and popularities
+     * @return Number of passes
+     */
+    protected int updateUXYNewton(double[] u, double[] x, double[] y,
+            double[] authorMeans, double authorVar,
+            double billMean, double billVar) {
+        if (uxyOptimizer == null) {
+            uxyOptimizer = new NewtonIdealPointOptimizer(getObservedVotes());
+        }
+        uxyOptimizer.setAuthorPrior(authorMeans, authorVar);
+        uxyOptimizer.setBillPrior(billMean, billVar);
+        uxyOptimizer.setTolerance(newtonTolerance);
+        uxyOptimizer.setMaxIterations(newtonMaxIter);
+        double logPosterior = uxyOptimizer.optimize(u, x, y);
+        if (isReporting) {
+            logln("--- --- Newton passes: " + uxyOptimizer.getNumIterations()
+                    + ". log posterior: " + MiscUtils.formatDouble(logPosterior));
+        }
+        return uxyOptimizer.getNumIterations();
+    }
+
+    /**
+     * Sample authors' ideal points and bills' polarities and popularities with
+     * one Polya-Gamma augmented Gibbs sweep on the observed training votes.
+     *
+     * @param u Authors' ideal points
+     * @param x Bills' polarities
+     * @param y Bills' popularities
+     * @param authorMeans Prior mean of each author's ideal point
+     * @param authorVar Prior variance of authors' ideal points
+     * @param billMean Prior mean of bills' polarities and popularities
+     * @param billVar Prior variance of bills' polarities and popularities
+     */
+    protected void sampleUXYPolyaGamma(double[] u, double[] x, double[] y,
+            double[] authorMeans, double authorVar,
+            double billMean, double billVar) {
+        if (uxySampler == null) {
+            uxySampler = new PolyaGammaIdealPointSampler(getObservedVotes());
+        }
+        uxySampler.setAuthorPrior(authorMeans, authorVar);
+        uxySampler.setBillPrior(billMean, billVar);
+        uxySampler.setNumThreads(polyaGammaNumThreads);
+        uxySampler.sample(u, x, y, getRandom().nextLong());
+    }
+
+    public int getChain() {
+        return this.chainIndex;
+    }
+
+    /**
+     * Share the word types of another chain on the same data, so that the
+     * chains do not each keep a copy of the tokens. Call after the other chain
+     * has been initialized and before this one is. Samplers that keep
+     * references to the input documents already share them.
+     *
+     * @param other An initialized chain
+     */
+    public void shareTokens(AbstractTextIdealPoint other) {
+    }
+
+    public ArrayList<Double> getTraceLogLikelihoods() {
+        return this.traceLogLikelihoods;
+    }
+
+    public ArrayList<double[]> getTraceUs() {
+        return this.traceUs;
+    }
+
+    /**
+     * Authors' ideal points recorded for convergence diagnostics, null if the
+     * model does not have a single ideal point per author or does not sample
+     * it. Samplers that keep u fixed should return the quantity they actually
+     * update (e.g., the predicted ideal points), since chains started from the
+     * same initial u would otherwise look converged.
+     */
+    protected double[] getTracedUs() {
+        return null;
+    }
+
+    /**
+     * Record the current sample of a chain.
+     *
+     * @param llh Current log likelihood
+     */
+    protected void recordTrace(double llh) {
+        if (chainIndex < 0 || iter < BURN_IN) {
+            return;
+        }
+        traceLogLikelihoods.add(llh);
+        double[] us = getTracedUs();
+        if (us != null) {
+            traceUs.add(us.clone());
+        }
+    }
+
+    /**
+     * Set the folder where initial states (Bayesian ideal points, LDA) are
+     * stored. Samplers with the same initialization folder reuse each other's
+     * initial states when they are configured alike.
+     *
+     * @param initFolder Initialization folder
+     */
+    public void setInitializationFolder(String initFolder) {
+        this.initFolder = initFolder;
+    }
+
+    /**
+     * Set the number of threads used to run LDA for initialization. With more
+     * than one thread, the approximate document-partitioned ParallelLDA is
+     * used instead of the exact sequential LDA sampler.
+     *
+     * @param numThreads Number of threads
+     */
+    public void setLDAInitializationThreads(int numThreads) {
+        this.ldaInitNumThreads = Math.max(1, numThreads);
+    }
+
+    /**
+     * Folder of initial states, which is the sampler's output folder unless
+     * set otherwise.
+     */
+    public String getInitializationFolder() {
+        if (this.initFolder == null) {
+            return this.folder;
+        }
+        return this.initFolder;
+    }
+
+    /**
+     * Lock guarding the creation of an initial state file, so that concurrent
+     * samplers compute it once and the others load it.
+     *
+     * @param file Initial state file
+     */
+    protected static Object getInitializationLock(File file) {
+        String path = file.getAbsolutePath();
+        synchronized (initLocks) {
+            Object lock = initLocks.get(path);
+            if (lock == null) {
+                lock = new Object();
+                initLocks.put(path, lock);
+            }
+            return lock;
+        }
+    }
+
+    /**
+     * Load the ideal points estimated by a Bayesian ideal point model from the
+     * initialization folder, or estimate and store them if they have not been.
+     *
+     * @param bip Configured Bayesian ideal point model with training data
+     * @param modelFilename Name of the model file
+     */
+    protected void trainIdealPoint(BayesianIdealPoint bip, String modelFilename) {
+        File bipFolder = new File(getInitializationFolder(), bip.getName());
+        File bipFile = new File(bipFolder, modelFilename);
+        synchronized (getInitializationLock(bipFile)) {
+            if (bipFile.exists()) {
+                if (verbose) {
+                    logln("B.I.P. file exists. Loading from " + bipFile);
+                }
+                bip.input(bipFile);
+            } else {
+                if (verbose) {
+                    logln("B.I.P. file not found. Running and outputing to " + bipFile);
+                }
+                IOUtils.createFolder(bipFolder);
+                bip.train();
+                bip.output(bipFile);
+            }
+        }
+    }
+
+    /**
+     * Evaluate predictions at reporting iterations on a background thread
+     * instead of pausing sampling.
+     *
+     * @param backgroundEvaluation Whether to evaluate in the background
+     */
+    public void setBackgroundEvaluation(boolean backgroundEvaluation) {
+        this.backgroundEvaluation = backgroundEvaluation;
+    }
+
+    /**
+     * Evaluate predictions of the training votes, using the authors' ideal
+     * points (in-matrix) and the ideal points predicted from their text
+     * (out-matrix), and log the measurements with the MSE between the two. In
+     * background mode, copies of the parameters are evaluated on a single
+     * background thread, so that results are logged in iteration order while
+     * sampling continues.
+     *
+     * @param us Authors' ideal points
+     * @param predUs Ideal points predicted from text
+     * @param xs Bills' polarities
+     * @param ys Bills' popularities
+     * @param all Whether to use AbstractVotePredictor.evaluateAll
+     */
+    protected void evaluateIdealPoints(double[] us, double[] predUs,
+            double[] xs, double[] ys, final boolean all) {
+        final int evalIter = iter;
+        final double[] evalUs = us.clone();
+        final double[] evalPredUs = predUs.clone();
+        final double[] evalXs = xs.clone();
+        final double[] evalYs = ys.clone();
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                StringBuilder str = new StringBuilder();
+                str.append("--- Evaluating iter ").append(evalIter).append(" ...");
+                appendMeasurements(str, ">>> i >>> ",
+                        getPredictions(evalUs, evalXs, evalYs), all);
+                appendMeasurements(str, ">>> o >>> ",
+                        getPredictions(evalPredUs, evalXs, evalYs), all);
+                double mse = 0.0;
+                for (int aa = 0; aa < A; aa++) {
+                    double diff = evalUs[aa] - evalPredUs[aa];
+                    mse += diff * diff;
+                }
+                str.append("\n--- MSE: ").append(mse / A);
+                logln(str.toString());
+            }
+        };
+        if (!backgroundEvaluation) {
+            task.run();
+            return;
+        }
+        if (evaluator == null) {
+            evaluator = new ThreadPoolExecutor(1, 1, 1, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>());
+            evaluator.allowCoreThreadTimeOut(true);
+        }
+        evaluator.execute(task);
+    }
+
+    private void appendMeasurements(StringBuilder str, String prefix,
+            SparseVector[] predictions, boolean all) {
+        ArrayList<Measurement> measurements = all
+                ? AbstractVotePredictor.evaluateAll(votes, validVotes, predictions)
+                : AbstractVotePredictor.evaluate(votes, validVotes, predictions);
+        for (Measurement m : measurements) {
+            str.append("\n").append(prefix).append(m.getName())
+                    .append(": ").append(m.getValue());
+        }
+    }
+
+    /**
+     * Predicted probabilities of the training votes.
+     *
+     * @param us Authors' ideal points
+     * @param xs Bills' polarities
+     * @param ys Bills' popularities
+     */
+    protected SparseVector[] getPredictions(double[] us, double[] xs, double[] ys) {
+        SparseVector[] predictions = new SparseVector[validVotes.length];
+        for (int aa = 0; aa < A; aa++) {
+            int author = authorIndices.get(aa);
+            predictions[author] = new SparseVector(validVotes[author].length);
+            for (int bb = 0; bb < B; bb++) {
+                if (isValidVote(aa, bb)) {
+                    double score = Math.exp(us[aa] * xs[bb] + ys[bb]);
+                    predictions[author].set(billIndices.get(bb), score / (1.0 + score));
+                }
+            }
+        }
+        return predictions;
+    }
+
+    /**
+     * Wait for the pending background evaluations.
+     */
+    public void finishEvaluations() {
+        if (evaluator == null) {
+            return;
+        }
+        evaluator.shutdown();
+        try {
+            evaluator.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+            throw new RuntimeException("Interrupted while waiting for evaluations");
+        }
+        evaluator = null;
+    }
+
+    @Override
+    public void closeLogger() {
+        finishEvaluations();
+        super.closeLogger();
+    }
+
+    /**
+     * Replace the generator shared by all samplers (AbstractSampler.rand),
+     * which is used for slice sampling and Metropolis-Hastings steps.
+     *
+     * @param random The generator
+     */
+    static void setSharedSamplerRandom(Random random) {
+        rand = random;
+    }
+
+    /**
+     * Random stream of the current thread. This is the shared SamplerUtils
+     * generator unless RandomStreams are installed.
+     */
+    protected Random getRandom() {
+        return RandomStreams.getThreadStream();
+    }
+
+    /**
+     * Top words of a distribution over the vocabulary, selected with a bounded
+     * heap instead of sorting the whole vocabulary.
+     *
+     * @param distribution The distribution
+     * @param numWords Number of top words
+     */
+    @Override
+    public String[] getTopWords(double[] distribution, int numWords) {
+        if (this.wordVocab == null) {
+            throw new RuntimeException("Word vocab empty");
+        }
+        if (distribution.length != this.wordVocab.size()) {
+            throw new MismatchRuntimeException(distribution.length, this.wordVocab.size());
+        }
+        return TopRanker.getTopWords(distribution, wordVocab, numWords);
+    }
+
+    @Override
+    protected void outputZipFile(String filepath, String contentStr,
+            String entryFile) throws Exception {
+        super.outputZipFile(filepath, contentStr, entryFile);
+        SnapshotCache.getInstance().invalidate(filepath);
+    }
+
+    @Override
+    protected void outputZipFile(String filepath, ArrayList<String> contentStrs,
+            ArrayList<String> entryFiles) throws Exception {
+        super.outputZipFile(filepath, contentStrs, entryFiles);
+        SnapshotCache.getInstance().invalidate(filepath);
+    }
+
+    @Override
+    public String getSamplerFolderPath() {
+        if (chainIndex > 0) {
+            return new File(super.getSamplerFolderPath(),
+                    MultiChainRunner.ChainFolderPrefix + chainIndex).getAbsolutePath();
+        }
+        return super.getSamplerFolderPath();
+    }
+
+    public void setSweepOrder(TokenStore.SweepOrder order) {
+        this.sweepOrder = order;
+    }
+
     public void setVotes(int[][] v) {
         this.votes = v;
     }
@@ -70,6 +602,26 @@ public abstract class AbstractTextIdealPoint extends AbstractSampler {
         return this.validVotes[this.authorIndices.get(aa)][this.billIndices.get(bb)];
     }
 
+    /**
+     * Log likelihood of the observed training votes under the logistic ideal
+     * point model. Only the observed votes are visited instead of all A x B
+     * author-bill pairs.
+     *
+     * @param us Authors' ideal points
+     * @param xs Bills' polarities
+     * @param ys Bills' popularities
+     */
+    protected double getObservedVoteLogLikelihood(double[] us, double[] xs, double[] ys) {
+        double llh = 0.0;
+        for (int ii = 0; ii < obsVoteAuthors.length; ii++) {
+            int aa = obsVoteAuthors[ii];
+            int bb = obsVoteBills[ii];
+            double score = us[aa] * xs[bb] + ys[bb];
+            llh += getVote(aa, bb) * score - Math.log(1 + Math.exp(score));
+        }
+        return llh;
+    }
+
     protected void setTestConfigurations() {
         setTestConfigurations(100, 250, 10, 5);
     }
@@ -92,37 +644,65 @@ public abstract class AbstractTextIdealPoint extends AbstractSampler {
      * @param K Number of topics
      */
     public LDA runLDA(int K) {
-        int lda_burnin = 250;
-        int lda_maxiter = 500;
-        int lda_samplelag = 25;
-        LDA lda = new LDA();
+        return runLDA(words, K, V, null, null, 0.1, 0.1, 250, 500, 25);
+    }
+
+    /**
+     * Run LDA for initialization. Runs are loaded from the LDA initialization
+     * cache if it is enabled, or from the initialization folder otherwise.
+     * With more than one LDA initialization thread, LDA is run with
+     * ParallelLDA.
+     */
+    @Override
+    public LDA runLDA(int[][] words, int K, int V,
+            double[][] docPriors, double[][] topicPriors,
+            double lda_alpha, double lda_beta,
+            int lda_burnin, int lda_maxiter, int lda_samplelag) {
+        if (LDAInitCache.getInstance().isEnabled()) {
+            return LDAInitCache.getInstance().runLDA(words, K, V,
+                    docPriors, topicPriors, lda_alpha, lda_beta,
+                    lda_burnin, lda_maxiter, lda_samplelag, ldaInitNumThreads);
+        }
+
+        boolean parallel = ldaInitNumThreads > 1;
+        LDAInitCache.CachedLDA lda = new LDAInitCache.CachedLDA();
         lda.setDebug(false);
         lda.setVerbose(verbose);
         lda.setLog(false);
-        double lda_alpha = 0.1;
-        double lda_beta = 0.1;
-
-        lda.configure(folder, V, K, lda_alpha, lda_beta, InitialState.RANDOM, false,
+        lda.configure(getInitializationFolder(), V, K, lda_alpha, lda_beta,
+                InitialState.RANDOM, false,
                 lda_burnin, lda_maxiter, lda_samplelag, lda_samplelag);
 
         try {
-            File ldaFile = new File(lda.getSamplerFolderPath(), basename + ".zip");
+            File ldaFile = new File(lda.getSamplerFolderPath(),
+                    basename + (parallel ? "_parallel" : "") + ".zip");
             lda.train(words, null);
-            if (ldaFile.exists()) {
-                if (verbose) {
-                    logln("--- --- LDA file exists. Loading from " + ldaFile);
-                }
-                lda.inputState(ldaFile);
-            } else {
-                if (verbose) {
-                    logln("--- --- LDA not found. Running LDA ...");
+            synchronized (getInitializationLock(ldaFile)) {
+                if (ldaFile.exists()) {
+                    if (verbose) {
+                        logln("--- --- LDA file exists. Loading from " + ldaFile);
+                    }
+                    lda.inputState(ldaFile);
+                } else {
+                    if (verbose) {
+                        logln("--- --- LDA not found. Running LDA"
+                                + (parallel ? " with " + ldaInitNumThreads + " threads" : "")
+                                + " ...");
+                    }
+                    if (parallel) {
+                        lda.setAssignments(new ParallelLDA(ldaInitNumThreads).sample(
+                                words, K, V, docPriors, topicPriors,
+                                lda_alpha, lda_beta, lda_maxiter),
+                                docPriors, topicPriors);
+                    } else {
+                        lda.initialize(docPriors, topicPriors);
+                        lda.iterate();
+                    }
+                    IOUtils.createFolder(lda.getSamplerFolderPath());
+                    lda.outputState(ldaFile);
+                    lda.setWordVocab(wordVocab);
+                    lda.outputTopicTopWords(new File(lda.getSamplerFolderPath(), TopWordFile), 20);
                 }
-                lda.initialize();
-                lda.iterate();
-                IOUtils.createFolder(lda.getSamplerFolderPath());
-                lda.outputState(ldaFile);
-                lda.setWordVocab(wordVocab);
-                lda.outputTopicTopWords(new File(lda.getSamplerFolderPath(), TopWordFile), 20);
             }
         } catch (Exception e) {
             e.printStackTrace();
@@ -211,14 +791,27 @@ public abstract class AbstractTextIdealPoint extends AbstractSampler {
         // skip voters/bills which don't have any vote
         this.validAs = new boolean[A];
         this.validBs = new boolean[B];
+        ArrayList<Integer> obsAs = new ArrayList<>();
+        ArrayList<Integer> obsBs = new ArrayList<>();
         for (int aa = 0; aa < A; aa++) {
             for (int bb = 0; bb < B; bb++) {
                 if (isValidVote(aa, bb)) {
                     this.validAs[aa] = true;
                     this.validBs[bb] = true;
+                    obsAs.add(aa);
+                    obsBs.add(bb);
                 }
             }
         }
+        this.obsVoteAuthors = new int[obsAs.size()];
+        this.obsVoteBills = new int[obsBs.size()];
+        for (int ii = 0; ii < obsAs.size(); ii++) {
+            this.obsVoteAuthors[ii] = obsAs.get(ii);
+            this.obsVoteBills[ii] = obsBs.get(ii);
+        }
+        this.observedVotes = null;
+        this.uxyOptimizer = null;
+        this.uxySampler = null;
 
         this.setWordWeightType();
 
@@ -232,6 +825,115 @@ public abstract class AbstractTextIdealPoint extends AbstractSampler {
         }
     }
 
+    /**
+     * Create a sampler configured as this one to fold in new authors. Models
+     * that support fold-in override this together with inputFoldInModel,
+     * initializeFoldIn, sampleFoldIn and getFoldInScore.
+     */
+    protected AbstractTextIdealPoint createFoldInWorker() {
+        throw new RuntimeException(getClass().getSimpleName()
+                + " does not support fold-in");
+    }
+
+    /**
+     * Load the model parameters and the bill parameters from a trained state.
+     *
+     * @param zipFilepath Trained state file
+     */
+    protected void inputFoldInModel(String zipFilepath) {
+        throw new RuntimeException(getClass().getSimpleName()
+                + " does not support fold-in");
+    }
+
+    /**
+     * Reset the assignments before folding in a new set of documents.
+     */
+    protected void initializeFoldIn() {
+        throw new RuntimeException(getClass().getSimpleName()
+                + " does not support fold-in");
+    }
+
+    /**
+     * Sample the assignments of the new documents, keeping the model fixed.
+     *
+     * @param init Whether this is the first sweep
+     */
+    protected void sampleFoldIn(boolean init) {
+        throw new RuntimeException(getClass().getSimpleName()
+                + " does not support fold-in");
+    }
+
+    /**
+     * Score of the new author voting with a bill given the current
+     * assignments.
+     *
+     * @param bb Bill index
+     */
+    protected double getFoldInScore(int bb) {
+        throw new RuntimeException(getClass().getSimpleName()
+                + " does not support fold-in");
+    }
+
+    /**
+     * Load a trained state to fold in new authors. The bills must be the
+     * training bills, in the same order as in training.
+     *
+     * @param stateFile Trained state file
+     * @param billIndices Indices of the training bills
+     */
+    public void inputFoldInState(File stateFile, ArrayList<Integer> billIndices) {
+        this.billIndices = billIndices;
+        this.B = billIndices.size();
+        this.inputFoldInModel(stateFile.getAbsolutePath());
+        if (this.wordWeights == null) { // models not storing their word weights
+            this.wordWeights = new double[V];
+            Arrays.fill(this.wordWeights, 1.0);
+        }
+    }
+
+    /**
+     * Fold in the documents of a new author using the model loaded by
+     * inputFoldInState, and predict the probabilities that the author votes
+     * with each bill, averaged over the sweeps after burn-in.
+     *
+     * @param newWords Words of the author's documents
+     * @param numIters Number of sweeps
+     * @param burnIn Number of burn-in sweeps
+     * @return Probability of voting with each bill
+     */
+    public double[] foldIn(int[][] newWords, int numIters, int burnIn) {
+        this.A = 1;
+        this.authorIndices = new ArrayList<>();
+        this.authorIndices.add(0);
+        this.validAs = new boolean[A];
+        this.D = newWords.length;
+        this.docIndices = new ArrayList<>();
+        for (int dd = 0; dd < D; dd++) {
+            this.docIndices.add(dd);
+        }
+        this.words = newWords;
+        this.authors = new int[D];
+        this.prepareDataStatistics();
+
+        this.initializeFoldIn();
+        double[] probs = new double[B];
+        int count = 0;
+        for (iter = 0; iter < numIters; iter++) {
+            this.sampleFoldIn(iter == 0);
+            if (iter >= burnIn || iter == numIters - 1) {
+                for (int bb = 0; bb < B; bb++) {
+                    double score = Math.exp(getFoldInScore(bb));
+                    probs[bb] += score / (1.0 + score);
+                }
+                count++;
+            }
+        }
+        for (int bb = 0; bb < B; bb++) {
+            probs[bb] /= count;
+        }
+        return probs;
+    }
+
     /**
      * Pre-computed statistics.
      */
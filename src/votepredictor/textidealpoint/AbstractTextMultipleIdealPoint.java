@@ -59,7 +59,7 @@ public abstract class AbstractTextMultipleIdealPoint extends AbstractTextIdealPo
         }
         try {
             String filename = IOUtils.removeExtension(IOUtils.getFilename(zipFilepath));
-            BufferedReader reader = IOUtils.getBufferedReader(zipFilepath, filename + BillFileExt);
+            BufferedReader reader = SnapshotCache.getBufferedReader(zipFilepath, filename + BillFileExt);
 
             int numBills = Integer.parseInt(reader.readLine());
             if (numBills != B) {
@@ -88,7 +88,7 @@ public abstract class AbstractTextMultipleIdealPoint extends AbstractTextIdealPo
         }
         try {
             String filename = IOUtils.removeExtension(IOUtils.getFilename(zipFilepath));
-            BufferedReader reader = IOUtils.getBufferedReader(zipFilepath, filename + AuthorFileExt);
+            BufferedReader reader = SnapshotCache.getBufferedReader(zipFilepath, filename + AuthorFileExt);
             int numAuthors = Integer.parseInt(reader.readLine());
             if (numAuthors != A) {
                 throw new MismatchRuntimeException(numAuthors, A);
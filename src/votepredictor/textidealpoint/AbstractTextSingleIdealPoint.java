@@ -34,6 +34,11 @@ public abstract class AbstractTextSingleIdealPoint extends AbstractTextIdealPoin
         return this.x;
     }
 
+    @Override
+    protected double[] getTracedUs() {
+        return this.u;
+    }
+
     public double[] getYs() {
         return this.y;
     }
@@ -47,7 +52,18 @@ public abstract class AbstractTextSingleIdealPoint extends AbstractTextIdealPoin
     }
 
     /**
-     * Update ideal point model's parameters using gradient ascent.
+     * Prior means of authors' ideal points, used by block-Newton updates.
+     *
+     * @return The prior means, null if block-Newton updates are not supported
+     */
+    protected double[] getAuthorPriorMeans() {
+        return null;
+    }
+
+    /**
+     * Update ideal point model's parameters using gradient ascent, or
+     * block-Newton passes or a Polya-Gamma Gibbs sweep if enabled and
+     * supported.
      *
      * @return Elapsed time
      */
@@ -56,9 +72,17 @@ public abstract class AbstractTextSingleIdealPoint extends AbstractTextIdealPoin
             logln("+++ Updating UXY ...");
         }
         long sTime = System.currentTimeMillis();
-        for (int step = 0; step < numSteps; step++) {
-            updateUs();
-            updateXYs();
+        double[] authorMeans = uxyUpdate != UXYUpdate.GRADIENT
+                ? getAuthorPriorMeans() : null;
+        if (authorMeans != null && uxyUpdate == UXYUpdate.NEWTON) {
+            updateUXYNewton(u, x, y, authorMeans, rho, 0.0, sigma);
+        } else if (authorMeans != null) {
+            sampleUXYPolyaGamma(u, x, y, authorMeans, rho, 0.0, sigma);
+        } else {
+            for (int step = 0; step < numSteps; step++) {
+                updateUs();
+                updateXYs();
+            }
         }
         long eTime = System.currentTimeMillis() - sTime;
         if (isReporting) {
@@ -93,24 +117,12 @@ public abstract class AbstractTextSingleIdealPoint extends AbstractTextIdealPoin
     protected void initializeIdealPoint() {
         BayesianIdealPoint bip = new BayesianIdealPoint();
         bip.configure(1.0, 0.01, 50000, 0.0, sigma);
+        if (uxyUpdate == UXYUpdate.NEWTON) {
+            bip.setNewton(newtonTolerance);
+        }
         bip.setTrain(votes, authorIndices, billIndices, validVotes);
 
-        File bipFolder = new File(folder, bip.getName());
-        File bipFile = new File(bipFolder, ModelFile);
-
-        if (bipFile.exists()) {
-            if (verbose) {
-                logln("B.I.P. file exists. Loading from " + bipFile);
-            }
-            bip.input(bipFile);
-        } else {
-            if (verbose) {
-                logln("B.I.P. file not found. Running and outputing to " + bipFile);
-            }
-            IOUtils.createFolder(bipFolder);
-            bip.train();
-            bip.output(bipFile);
-        }
+        trainIdealPoint(bip, ModelFile);
         this.u = bip.getUs();
         this.x = bip.getXs();
         this.y = bip.getYs();
@@ -181,7 +193,7 @@ public abstract class AbstractTextSingleIdealPoint extends AbstractTextIdealPoin
         }
         try {
             String filename = IOUtils.removeExtension(IOUtils.getFilename(zipFilepath));
-            BufferedReader reader = IOUtils.getBufferedReader(zipFilepath, filename + BillFileExt);
+            BufferedReader reader = SnapshotCache.getBufferedReader(zipFilepath, filename + BillFileExt);
 
             int numBills = Integer.parseInt(reader.readLine());
             if (numBills != B) {
@@ -212,7 +224,7 @@ public abstract class AbstractTextSingleIdealPoint extends AbstractTextIdealPoin
         }
         try {
             String filename = IOUtils.removeExtension(IOUtils.getFilename(zipFilepath));
-            BufferedReader reader = IOUtils.getBufferedReader(zipFilepath, filename + AuthorFileExt);
+            BufferedReader reader = SnapshotCache.getBufferedReader(zipFilepath, filename + AuthorFileExt);
             int numAuthors = Integer.parseInt(reader.readLine());
             if (numAuthors != A) {
                 throw new MismatchRuntimeException(numAuthors, A);
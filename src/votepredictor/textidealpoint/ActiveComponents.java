@@ -0,0 +1,107 @@
+package votepredictor.textidealpoint;
+
+import java.util.ArrayList;
+
+/**
+ * Active components (e.g., topics) of a model with adaptive truncation.
+ * Samplers only consider the active components as candidates for each token
+ * and in the regression, so that the cost per iteration shrinks with the
+ * number of active components. A component is deactivated once its token
+ * count has stayed below a minimum at a number of consecutive checks; its
+ * tokens are then reassigned to the active components by the sampler.
+ * Deactivated components are never reactivated.
+ *
+ * @author vietan
+ */
+public class ActiveComponents {
+
+    private final boolean[] active;
+    private final int[] numLowChecks; // [k]: number of consecutive checks below the minimum
+    private int[] indices;
+
+    /**
+     * @param numComponents Number of components, all of which are active
+     */
+    public ActiveComponents(int numComponents) {
+        this.active = new boolean[numComponents];
+        this.numLowChecks = new int[numComponents];
+        this.indices = new int[numComponents];
+        for (int kk = 0; kk < numComponents; kk++) {
+            this.active[kk] = true;
+            this.indices[kk] = kk;
+        }
+    }
+
+    public int getNumComponents() {
+        return this.active.length;
+    }
+
+    public int getNumActive() {
+        return this.indices.length;
+    }
+
+    public boolean isActive(int kk) {
+        return this.active[kk];
+    }
+
+    /**
+     * Indices of the active components in increasing order. The returned array
+     * must not be modified.
+     */
+    public int[] getIndices() {
+        return this.indices;
+    }
+
+    /**
+     * Deactivate a component. The last active component cannot be
+     * deactivated.
+     *
+     * @param kk Component index
+     * @return Whether the component has been deactivated
+     */
+    public boolean deactivate(int kk) {
+        if (!active[kk] || indices.length == 1) {
+            return false;
+        }
+        active[kk] = false;
+        int[] newIndices = new int[indices.length - 1];
+        int ii = 0;
+        for (int jj : indices) {
+            if (jj != kk) {
+                newIndices[ii++] = jj;
+            }
+        }
+        indices = newIndices;
+        return true;
+    }
+
+    /**
+     * Record the token counts of the components at a check and deactivate the
+     * active components whose counts have been below the minimum at the last
+     * given number of checks.
+     *
+     * @param counts Token count of each component
+     * @param minCount Minimum token count of an active component
+     * @param numChecks Number of consecutive checks below the minimum before
+     * a component is deactivated
+     * @return Newly deactivated components
+     */
+    public ArrayList<Integer> update(int[] counts, double minCount, int numChecks) {
+        if (counts.length != active.length) {
+            throw new RuntimeException("Dimensions mismatch. " + counts.length
+                    + " vs. " + active.length);
+        }
+        ArrayList<Integer> deactivated = new ArrayList<>();
+        for (int kk : indices.clone()) {
+            if (counts[kk] < minCount) {
+                numLowChecks[kk]++;
+            } else {
+                numLowChecks[kk] = 0;
+            }
+            if (numLowChecks[kk] >= numChecks && deactivate(kk)) {
+                deactivated.add(kk);
+            }
+        }
+        return deactivated;
+    }
+}
@@ -27,14 +27,13 @@ public class AuthorRSLDA extends AbstractSampler {
 
     public static final int ALPHA = 0;
     public static final int BETA = 1;
-    public static final int INVALID_TOPIC = -1;
+    public static final int INVALID_TOPIC = TokenStore.INVALID_TOPIC;
     protected double rho;
     protected double mu;
     protected double sigma;
 
     // inputs
     protected int[][] words; // original documents
-    protected boolean[][] validTokens;
     protected int[] authors;
     protected double[] responses; // author responses
 
@@ -45,13 +44,14 @@ public class AuthorRSLDA extends AbstractSampler {
     // derive
     protected int D;
     // latent variables
-    protected int[][] z;
+    protected TokenStore tokens; // words, validity and topic assignments
     protected DirMult[] docTopics;
     protected DirMult[] topicWords;
     protected double[] eta;
 
     protected double[] authorMeans;
     protected int[] authorTokenCounts;
+    protected TokenStore.SweepOrder sweepOrder = TokenStore.SweepOrder.DOCUMENT;
     private double sqrtRho;
 
     public AuthorRSLDA() {
@@ -139,8 +139,16 @@ public class AuthorRSLDA extends AbstractSampler {
                 + "_opt-" + this.paramOptimized;
     }
 
+    public void setSweepOrder(TokenStore.SweepOrder order) {
+        this.sweepOrder = order;
+    }
+
     public int[][] getZs() {
-        return this.z;
+        return this.tokens.getZs();
+    }
+
+    public int getZ(int dd, int nn) {
+        return this.tokens.getZ(dd, nn);
     }
 
     public double[] getEtas() {
@@ -148,7 +156,7 @@ public class AuthorRSLDA extends AbstractSampler {
     }
 
     public boolean getValidToken(int dd, int nn) {
-        return this.validTokens[dd][nn];
+        return this.tokens.isValid(dd, nn);
     }
 
     protected void evaluate() {
@@ -176,15 +184,15 @@ public class AuthorRSLDA extends AbstractSampler {
         this.D = docWords.length;
         this.words = docWords;
         this.authors = docAuthors;
-        this.validTokens = docValidTokens;
+        this.tokens = new TokenStore(docWords, docValidTokens, K);
         this.responses = authorResponses;
 
         this.numTokens = 0;
         this.authorTokenCounts = new int[A];
         for (int dd = 0; dd < D; dd++) {
             int aa = authors[dd];
-            for (int nn = 0; nn < words[dd].length; nn++) {
-                if (validTokens[dd][nn]) {
+            for (int ii = tokens.getStart(dd); ii < tokens.getEnd(dd); ii++) {
+                if (tokens.isValid(ii)) {
                     this.numTokens++;
                     this.authorTokenCounts[aa]++;
                 }
@@ -264,15 +272,7 @@ public class AuthorRSLDA extends AbstractSampler {
     }
 
     protected void initializeDataStructure() {
-        z = new int[D][];
-        for (int dd = 0; dd < D; dd++) {
-            z[dd] = new int[words[dd].length];
-            for (int nn = 0; nn < words[dd].length; nn++) {
-                if (!validTokens[dd][nn]) {
-                    z[dd][nn] = INVALID_TOPIC;
-                }
-            }
-        }
+        tokens.clearAssignments();
 
         docTopics = new DirMult[D];
         for (int d = 0; d < D; d++) {
@@ -324,62 +324,26 @@ public class AuthorRSLDA extends AbstractSampler {
         }
         long sTime = System.currentTimeMillis();
         numTokensChanged = 0;
-        for (int d = 0; d < D; d++) {
-            int aa = authors[d];
-            for (int n = 0; n < words[d].length; n++) {
-                if (!validTokens[d][n]) {
-                    continue;
-                }
-
-                if (removeFromModel) {
-                    topicWords[z[d][n]].decrement(words[d][n]);
-                }
-                if (removeFromData) {
-                    docTopics[d].decrement(z[d][n]);
-                    authorMeans[aa] -= eta[z[d][n]] / authorTokenCounts[aa];
-                }
-
-                double[] logprobs = new double[K];
-                for (int kk = 0; kk < K; kk++) {
-                    logprobs[kk]
-                            = Math.log(docTopics[d].getCount(kk) + hyperparams.get(ALPHA))
-                            + Math.log(topicWords[kk].getProbability(words[d][n]));
-                    if (observe) {
-                        double aMean = authorMeans[aa] + eta[kk] / authorTokenCounts[aa];
-                        double resLLh = StatUtils.logNormalProbability(responses[aa], aMean, Math.sqrt(rho));
-                        logprobs[kk] += resLLh;
-                    }
-                }
-                int sampledZ = SamplerUtils.logMaxRescaleSample(logprobs);
-                if (sampledZ == K) {
-                    logln("iter = " + iter + ". d = " + d + ". n = " + n);
-                    for (int kk = 0; kk < K; kk++) {
-                        logln("k = " + kk
-                                + ". " + (Math.log(docTopics[d].getCount(kk) + hyperparams.get(ALPHA)))
-                                + ". " + (Math.log(topicWords[kk].getProbability(words[d][n]))));
-                    }
-                    throw new RuntimeException("Out-of-bound sample. "
-                            + "SampledZ = " + sampledZ);
-                }
-
-                if (z[d][n] != sampledZ) {
-                    numTokensChanged++; // for debugging
-                }
-                // update
-                z[d][n] = sampledZ;
-
-                if (addToModel) {
-                    topicWords[z[d][n]].increment(words[d][n]);
+        if (sweepOrder == TokenStore.SweepOrder.WORD) {
+            if (!tokens.hasWordIndex()) {
+                tokens.buildWordIndex(V);
+            }
+            for (int vv = 0; vv < V; vv++) {
+                for (int jj = tokens.getWordStart(vv); jj < tokens.getWordEnd(vv); jj++) {
+                    sampleZ(tokens.getWordTokenDoc(jj), tokens.getWordToken(jj),
+                            removeFromModel, addToModel, removeFromData, addToData, observe);
                 }
-                if (addToData) {
-                    docTopics[d].increment(z[d][n]);
-                    authorMeans[aa] += eta[z[d][n]] / authorTokenCounts[aa];
+            }
+        } else {
+            for (int d = 0; d < D; d++) {
+                for (int ii = tokens.getStart(d); ii < tokens.getEnd(d); ii++) {
+                    sampleZ(d, ii, removeFromModel, addToModel, removeFromData, addToData, observe);
                 }
             }
         }
         long eTime = System.currentTimeMillis() - sTime;
         if (isReporting) {
-            logln("--- --- time: " + eTime);
+            logln("--- --- time: " + eTime + " (" + sweepOrder + ")");
             logln("--- --- # tokens: " + numTokens
                     + ". # tokens changed: " + numTokensChanged
                     + " (" + MiscUtils.formatDouble((double) numTokensChanged / numTokens) + ")");
@@ -387,6 +351,75 @@ public class AuthorRSLDA extends AbstractSampler {
         return eTime;
     }
 
+    /**
+     * Sample the topic assignment of a single token. Invalid tokens are
+     * skipped.
+     *
+     * @param d Document index
+     * @param ii Token position in the token store
+     * @param removeFromModel
+     * @param addToModel
+     * @param removeFromData
+     * @param addToData
+     * @param observe
+     */
+    private void sampleZ(int d, int ii,
+            boolean removeFromModel, boolean addToModel,
+            boolean removeFromData, boolean addToData,
+            boolean observe) {
+        int curZ = tokens.getZ(ii);
+        if (curZ == INVALID_TOPIC) {
+            return;
+        }
+        int aa = authors[d];
+        int vv = tokens.getWord(ii);
+
+        if (removeFromModel) {
+            topicWords[curZ].decrement(vv);
+        }
+        if (removeFromData) {
+            docTopics[d].decrement(curZ);
+            authorMeans[aa] -= eta[curZ] / authorTokenCounts[aa];
+        }
+
+        double[] logprobs = new double[K];
+        for (int kk = 0; kk < K; kk++) {
+            logprobs[kk]
+                    = Math.log(docTopics[d].getCount(kk) + hyperparams.get(ALPHA))
+                    + Math.log(topicWords[kk].getProbability(vv));
+            if (observe) {
+                double aMean = authorMeans[aa] + eta[kk] / authorTokenCounts[aa];
+                double resLLh = StatUtils.logNormalProbability(responses[aa], aMean, Math.sqrt(rho));
+                logprobs[kk] += resLLh;
+            }
+        }
+        int sampledZ = SamplerUtils.logMaxRescaleSample(logprobs);
+        if (sampledZ == K) {
+            logln("iter = " + iter + ". d = " + d + ". n = " + (ii - tokens.getStart(d)));
+            for (int kk = 0; kk < K; kk++) {
+                logln("k = " + kk
+                        + ". " + (Math.log(docTopics[d].getCount(kk) + hyperparams.get(ALPHA)))
+                        + ". " + (Math.log(topicWords[kk].getProbability(vv))));
+            }
+            throw new RuntimeException("Out-of-bound sample. "
+                    + "SampledZ = " + sampledZ);
+        }
+
+        if (curZ != sampledZ) {
+            numTokensChanged++; // for debugging
+        }
+        // update
+        tokens.setZ(ii, sampledZ);
+
+        if (addToModel) {
+            topicWords[sampledZ].increment(vv);
+        }
+        if (addToData) {
+            docTopics[d].increment(sampledZ);
+            authorMeans[aa] += eta[sampledZ] / authorTokenCounts[aa];
+        }
+    }
+
     /**
      * Optimize etas using L-BFGS.
      *
@@ -483,8 +516,8 @@ public class AuthorRSLDA extends AbstractSampler {
             for (int d = 0; d < D; d++) {
                 assignStr.append(d).append("\n");
                 assignStr.append(DirMult.output(docTopics[d])).append("\n");
-                for (int n = 0; n < z[d].length; n++) {
-                    assignStr.append(z[d][n]).append("\t");
+                for (int ii = tokens.getStart(d); ii < tokens.getEnd(d); ii++) {
+                    assignStr.append(tokens.getZ(ii)).append("\t");
                 }
                 assignStr.append("\n");
             }
@@ -577,7 +610,7 @@ public class AuthorRSLDA extends AbstractSampler {
                             + d + ". " + sline.length + " vs. " + words[d].length);
                 }
                 for (int n = 0; n < words[d].length; n++) {
-                    z[d][n] = Integer.parseInt(sline[n]);
+                    tokens.setZ(d, n, Integer.parseInt(sline[n]));
                 }
             }
             reader.close();
@@ -0,0 +1,159 @@
+package votepredictor.textidealpoint;
+
+import java.util.ArrayList;
+import sampling.likelihood.DirMult;
+import util.SamplerUtils;
+
+/**
+ * Sufficient statistics of a group of Dirichlet-multinomials sharing the same
+ * concentration parameter. This is used to evaluate their joint log likelihood
+ * for many candidate concentrations (e.g., during slice sampling) without
+ * rescanning all the counts. Multinomials with a uniform base measure are
+ * reduced to two histograms: the number of cells having count c and the
+ * number of multinomials having total count n. Since cells with zero count
+ * cancel out in the likelihood, each evaluation costs O(max count) for these.
+ * Multinomials with a non-uniform base measure only keep their non-zero cells.
+ *
+ * The histograms are a snapshot and need to be rebuilt whenever the counts of
+ * the added multinomials change.
+ *
+ * @author vietan
+ */
+public class CountHistogram {
+
+    private final int dim;
+    // uniform base measure
+    private int numUniforms;
+    private int[] cellHist;     // [c]: number of cells having count c > 0
+    private int[] totalHist;    // [n]: number of multinomials having total count n
+    // non-uniform base measure
+    private final ArrayList<int[]> sparseCounts;
+    private final ArrayList<double[]> sparseCenters;
+    private final ArrayList<Double> sparseCenterSums;
+    private final ArrayList<Integer> sparseCountSums;
+
+    /**
+     * @param dim Dimension of the multinomials
+     */
+    public CountHistogram(int dim) {
+        this.dim = dim;
+        this.cellHist = new int[1];
+        this.totalHist = new int[1];
+        this.sparseCounts = new ArrayList<>();
+        this.sparseCenters = new ArrayList<>();
+        this.sparseCenterSums = new ArrayList<>();
+        this.sparseCountSums = new ArrayList<>();
+    }
+
+    public int getDimension() {
+        return this.dim;
+    }
+
+    /**
+     * Add the current counts of a Dirichlet-multinomial.
+     *
+     * @param dirMult The Dirichlet-multinomial
+     */
+    public void add(DirMult dirMult) {
+        if (dirMult.getDimension() != dim) {
+            throw new RuntimeException("Dimensions mismatch. " + dirMult.getDimension()
+                    + " vs. " + dim);
+        }
+        double[] center = dirMult.getCenterVector();
+        if (isUniform(center)) {
+            numUniforms++;
+            for (int idx : dirMult.getSparseCounts().getIndices()) {
+                int count = dirMult.getCount(idx);
+                if (count > 0) {
+                    cellHist = increment(cellHist, count);
+                }
+            }
+            totalHist = increment(totalHist, dirMult.getCountSum());
+        } else {
+            ArrayList<Integer> indices = new ArrayList<>();
+            for (int idx : dirMult.getSparseCounts().getIndices()) {
+                if (dirMult.getCount(idx) > 0) {
+                    indices.add(idx);
+                }
+            }
+            int[] counts = new int[indices.size()];
+            double[] centers = new double[indices.size()];
+            for (int ii = 0; ii < counts.length; ii++) {
+                counts[ii] = dirMult.getCount(indices.get(ii));
+                centers[ii] = center[indices.get(ii)];
+            }
+            double centerSum = 0.0;
+            for (double c : center) {
+                centerSum += c;
+            }
+            sparseCounts.add(counts);
+            sparseCenters.add(centers);
+            sparseCenterSums.add(centerSum);
+            sparseCountSums.add(dirMult.getCountSum());
+        }
+    }
+
+    /**
+     * Joint log likelihood of all added multinomials under a new concentration
+     * parameter, keeping their base measures.
+     *
+     * @param concentration The concentration parameter
+     */
+    public double getLogLikelihood(double concentration) {
+        double llh = 0.0;
+        if (numUniforms > 0) {
+            double alpha = concentration / dim;
+            double lgAlpha = SamplerUtils.logGammaStirling(alpha);
+            llh += numUniforms * SamplerUtils.logGammaStirling(concentration);
+            for (int nn = 0; nn < totalHist.length; nn++) {
+                if (totalHist[nn] > 0) {
+                    llh -= totalHist[nn] * SamplerUtils.logGammaStirling(nn + concentration);
+                }
+            }
+            for (int cc = 1; cc < cellHist.length; cc++) {
+                if (cellHist[cc] > 0) {
+                    llh += cellHist[cc] * (SamplerUtils.logGammaStirling(alpha + cc) - lgAlpha);
+                }
+            }
+        }
+
+        for (int jj = 0; jj < sparseCounts.size(); jj++) {
+            int[] counts = sparseCounts.get(jj);
+            double[] centers = sparseCenters.get(jj);
+            double conc = concentration * sparseCenterSums.get(jj);
+            llh += SamplerUtils.logGammaStirling(conc)
+                    - SamplerUtils.logGammaStirling(sparseCountSums.get(jj) + conc);
+            for (int ii = 0; ii < counts.length; ii++) {
+                double alpha = concentration * centers[ii];
+                llh += SamplerUtils.logGammaStirling(alpha + counts[ii])
+                        - SamplerUtils.logGammaStirling(alpha);
+            }
+        }
+        return llh;
+    }
+
+    /**
+     * Whether a base measure is the uniform distribution, which the histograms
+     * assume when they split the concentration evenly across the cells.
+     */
+    private static boolean isUniform(double[] center) {
+        double value = 1.0 / center.length;
+        double tolerance = 1e-12 * value; // rounding errors
+        for (int ii = 0; ii < center.length; ii++) {
+            if (Math.abs(center[ii] - value) > tolerance) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int[] increment(int[] hist, int count) {
+        if (count >= hist.length) {
+            int[] newHist = new int[Math.max(count + 1, 2 * hist.length)];
+            System.arraycopy(hist, 0, newHist, 0, hist.length);
+            hist = newHist;
+        }
+        hist[count]++;
+        return hist;
+    }
+}
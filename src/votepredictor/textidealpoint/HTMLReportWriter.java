@@ -0,0 +1,70 @@
+package votepredictor.textidealpoint;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import util.HTMLUtils;
+import util.IOUtils;
+
+/**
+ * Write an HTML report incrementally to a buffered stream instead of building
+ * the whole page in memory. The page has the same header and footer as the
+ * one written by HTMLUtils.outputHTMLFile.
+ *
+ * @author vietan
+ */
+public class HTMLReportWriter {
+
+    private final File file;
+    private final BufferedWriter writer;
+
+    /**
+     * Open a report and write its header.
+     *
+     * @param file The output file
+     */
+    public HTMLReportWriter(File file) {
+        this.file = file;
+        try {
+            this.writer = IOUtils.getBufferedWriter(file);
+            writer.write("<!DOCTYPE html>\n<html>\n");
+            writer.write("<head>\n");
+            writer.write("<meta charset=\"UTF-8\">\n");
+            writer.write("<link type=\"text/css\" rel=\"stylesheet\" href=\""
+                    + HTMLUtils.CSS_URL + "\">\n");
+            writer.write("<script type=\"text/javascript\" src=\""
+                    + HTMLUtils.JS_URL + "\"></script>\n");
+            writer.write("<title>Agenda-setting and Framing in U.S. Congress</title>\n");
+            writer.write("</head>\n");
+            writer.write("<body>\n");
+        } catch (IOException e) {
+            e.printStackTrace();
+            throw new RuntimeException("Exception while outputing HTML to " + file);
+        }
+    }
+
+    public HTMLReportWriter write(String str) {
+        try {
+            writer.write(str);
+        } catch (IOException e) {
+            e.printStackTrace();
+            throw new RuntimeException("Exception while outputing HTML to " + file);
+        }
+        return this;
+    }
+
+    /**
+     * Write the footer and close the report.
+     */
+    public void close() {
+        try {
+            writer.write("\n");
+            writer.write("</body>\n");
+            writer.write("</html>\n");
+            writer.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+            throw new RuntimeException("Exception while outputing HTML to " + file);
+        }
+    }
+}
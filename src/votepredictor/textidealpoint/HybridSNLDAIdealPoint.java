@@ -25,7 +25,6 @@ import util.RankingItem;
 import util.SamplerUtils;
 import util.SparseVector;
 import util.StatUtils;
-import util.evaluation.Measurement;
 import util.govtrack.GTLegislator;
 import votepredictor.AbstractVotePredictor;
 
@@ -401,21 +400,7 @@ public class HybridSNLDAIdealPoint extends AbstractTextSingleIdealPoint {
         } else {
             logln("--- Sampling. " + str);
         }
-        logln("--- Evaluating ...");
-        SparseVector[] predictions = predictInMatrix();
-        ArrayList<Measurement> measurements = AbstractVotePredictor
-                .evaluate(votes, validVotes, predictions);
-        for (Measurement m : measurements) {
-            logln(">>> i >>> " + m.getName() + ": " + m.getValue());
-        }
-
-        predictions = predictOutMatrix();
-        measurements = AbstractVotePredictor
-                .evaluate(votes, validVotes, predictions);
-        for (Measurement m : measurements) {
-            logln(">>> o >>> " + m.getName() + ": " + m.getValue());
-        }
-        logln("--- MSE: " + getMSE());
+        evaluateIdealPoints(u, getAuthorPriorMeans(), x, y, false);
         return str;
     }
 
@@ -726,6 +711,20 @@ public class HybridSNLDAIdealPoint extends AbstractTextSingleIdealPoint {
         return lps;
     }
 
+    @Override
+    protected boolean supportsUXYUpdate(UXYUpdate update) {
+        return true;
+    }
+
+    @Override
+    protected double[] getAuthorPriorMeans() {
+        double[] means = new double[A];
+        for (int aa = 0; aa < A; aa++) {
+            means[aa] = topicVals[aa] + lexicalVals[aa];
+        }
+        return means;
+    }
+
     @Override
     protected void updateUs() {
         double aRate = getLearningRate();
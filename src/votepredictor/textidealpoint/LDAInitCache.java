@@ -0,0 +1,370 @@
+package votepredictor.textidealpoint;
+
+import core.AbstractSampler.InitialState;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import sampler.unsupervised.LDA;
+import util.IOUtils;
+
+/**
+ * Process-wide, content-addressed cache of the LDA runs used to initialize
+ * topic assignments. A run is stored under a hash of its token data and LDA
+ * settings (K, V, alpha, beta, number of iterations, priors, the installed
+ * random seed and whether ParallelLDA is used), so any later run with the
+ * same inputs loads it instead of running LDA, whichever sampler, experiment
+ * folder or process asks for it. Without an installed seed, a cached run with
+ * the same inputs is reused.
+ *
+ * Only the final topic assignments are stored, gzipped with one byte (or
+ * short) per token. The document-topic and topic-word counts are rebuilt from
+ * them when loading.
+ *
+ * The cache is disabled until its folder is set.
+ *
+ * @author vietan
+ */
+public class LDAInitCache {
+
+    public static final String CacheExt = ".lda";
+    private static final int FORMAT_VERSION = 1;
+    private static final LDAInitCache instance = new LDAInitCache();
+
+    private File folder;
+    private boolean verbose = true;
+    private final HashMap<String, Object> locks;
+    private long numHits;
+    private long numMisses;
+
+    public LDAInitCache() {
+        this.locks = new HashMap<>();
+    }
+
+    public static LDAInitCache getInstance() {
+        return instance;
+    }
+
+    /**
+     * Set the folder of the cached runs.
+     *
+     * @param folder Cache folder, null to disable the cache
+     */
+    public synchronized void setFolder(File folder) {
+        this.folder = folder;
+        if (folder != null) {
+            IOUtils.createFolder(folder);
+        }
+    }
+
+    public synchronized File getFolder() {
+        return this.folder;
+    }
+
+    public synchronized boolean isEnabled() {
+        return this.folder != null;
+    }
+
+    public void setVerbose(boolean verbose) {
+        this.verbose = verbose;
+    }
+
+    public synchronized long getNumHits() {
+        return this.numHits;
+    }
+
+    public synchronized long getNumMisses() {
+        return this.numMisses;
+    }
+
+    /**
+     * Run LDA, or load the final assignments of an identical run from the
+     * cache.
+     *
+     * @param words Token data
+     * @param K Number of topics
+     * @param V Vocabulary size
+     * @param docPriors Document-topic priors (can be null)
+     * @param topicPriors Topic-word priors (can be null)
+     * @param alpha Document-topic hyperparameter
+     * @param beta Topic-word hyperparameter
+     * @param burnIn Number of burn-in iterations
+     * @param maxIter Number of iterations
+     * @param sampleLag Sample lag
+     * @param numThreads Number of threads, 1 to run the exact LDA sampler and
+     * more to run ParallelLDA
+     */
+    public LDA runLDA(int[][] words, int K, int V,
+            double[][] docPriors, double[][] topicPriors,
+            double alpha, double beta,
+            int burnIn, int maxIter, int sampleLag, int numThreads) {
+        File cacheFolder = getFolder();
+        if (cacheFolder == null) {
+            throw new RuntimeException("LDA initialization cache is disabled");
+        }
+        int numBlocks = numThreads > 1 ? ParallelLDA.NUM_BLOCKS : 0;
+        String key = getKey(words, K, V, docPriors, topicPriors, alpha, beta,
+                burnIn, maxIter, sampleLag, numBlocks);
+        File cacheFile = new File(cacheFolder, key + CacheExt);
+
+        CachedLDA lda = new CachedLDA();
+        lda.setDebug(false);
+        lda.setVerbose(false);
+        lda.setLog(false);
+        lda.setReport(false);
+        lda.configure(cacheFolder.getAbsolutePath(), V, K, alpha, beta,
+                InitialState.RANDOM, false, burnIn, maxIter, sampleLag, sampleLag);
+        lda.train(words, null);
+
+        synchronized (getLock(key)) {
+            if (cacheFile.exists()) {
+                if (verbose) {
+                    System.out.println("--- --- Loading LDA initialization from " + cacheFile);
+                }
+                lda.setAssignments(inputAssignments(cacheFile, words), docPriors, topicPriors);
+                synchronized (this) {
+                    numHits++;
+                }
+            } else {
+                if (verbose) {
+                    System.out.println("--- --- LDA initialization not cached. Running LDA ...");
+                }
+                if (numBlocks > 0) {
+                    lda.setAssignments(new ParallelLDA(numThreads).sample(
+                            words, K, V, docPriors, topicPriors, alpha, beta, maxIter),
+                            docPriors, topicPriors);
+                } else {
+                    lda.initialize(docPriors, topicPriors);
+                    lda.iterate();
+                }
+                outputAssignments(cacheFile, lda.getZs(), K);
+                synchronized (this) {
+                    numMisses++;
+                }
+            }
+        }
+        return lda;
+    }
+
+    private synchronized Object getLock(String key) {
+        Object lock = locks.get(key);
+        if (lock == null) {
+            lock = new Object();
+            locks.put(key, lock);
+        }
+        return lock;
+    }
+
+    /**
+     * Hash of the token data and the LDA settings.
+     *
+     * @param numBlocks Number of ParallelLDA blocks, 0 for the exact sampler
+     */
+    static String getKey(int[][] words, int K, int V,
+            double[][] docPriors, double[][] topicPriors,
+            double alpha, double beta,
+            int burnIn, int maxIter, int sampleLag, int numBlocks) {
+        try {
+            Hasher hasher = new Hasher(MessageDigest.getInstance("SHA-256"));
+            hasher.putInt(FORMAT_VERSION);
+            hasher.putInt(K);
+            hasher.putInt(V);
+            hasher.putDouble(alpha);
+            hasher.putDouble(beta);
+            hasher.putInt(burnIn);
+            hasher.putInt(maxIter);
+            hasher.putInt(sampleLag);
+            if (numBlocks > 0) {
+                hasher.putInt(numBlocks);
+            }
+            RandomStreams streams = RandomStreams.getInstalled();
+            hasher.putLong(streams == null ? 0L : 1L);
+            hasher.putLong(streams == null ? 0L : streams.getSeed());
+            hasher.putInt(words.length);
+            for (int[] doc : words) {
+                hasher.putInt(doc.length);
+                for (int token : doc) {
+                    hasher.putInt(token);
+                }
+            }
+            hasher.putMatrix(docPriors);
+            hasher.putMatrix(topicPriors);
+            return hasher.digest();
+        } catch (Exception e) {
+            e.printStackTrace();
+            throw new RuntimeException("Exception while hashing LDA initialization");
+        }
+    }
+
+    static void outputAssignments(File file, int[][] zs, int K) {
+        File tempFile = null;
+        try {
+            tempFile = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new GZIPOutputStream(new FileOutputStream(tempFile))));
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(K);
+            out.writeInt(zs.length);
+            for (int[] docZs : zs) {
+                out.writeInt(docZs.length);
+                for (int z : docZs) {
+                    writeTopic(out, z, K);
+                }
+            }
+            out.close();
+            if (!tempFile.renameTo(file)) {
+                throw new RuntimeException("Cannot rename " + tempFile + " to " + file);
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            if (tempFile != null) {
+                tempFile.delete();
+            }
+            throw new RuntimeException("Exception while outputing LDA initialization to " + file);
+        }
+    }
+
+    static int[][] inputAssignments(File file, int[][] words) {
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(
+                    new GZIPInputStream(new FileInputStream(file))));
+            int version = in.readInt();
+            if (version != FORMAT_VERSION) {
+                in.close();
+                throw new RuntimeException("Unsupported format version " + version);
+            }
+            int K = in.readInt();
+            int D = in.readInt();
+            if (D != words.length) {
+                in.close();
+                throw new RuntimeException("Mismatched number of documents. "
+                        + D + " vs. " + words.length);
+            }
+            int[][] zs = new int[D][];
+            for (int dd = 0; dd < D; dd++) {
+                int length = in.readInt();
+                if (length != words[dd].length) {
+                    in.close();
+                    throw new RuntimeException("Mismatched length of document " + dd
+                            + ". " + length + " vs. " + words[dd].length);
+                }
+                zs[dd] = new int[length];
+                for (int nn = 0; nn < length; nn++) {
+                    zs[dd][nn] = readTopic(in, K);
+                }
+            }
+            in.close();
+            return zs;
+        } catch (Exception e) {
+            e.printStackTrace();
+            throw new RuntimeException("Exception while inputing LDA initialization from " + file);
+        }
+    }
+
+    private static void writeTopic(DataOutputStream out, int z, int K) throws Exception {
+        if (K <= 256) {
+            out.writeByte(z);
+        } else if (K <= 65536) {
+            out.writeShort(z);
+        } else {
+            out.writeInt(z);
+        }
+    }
+
+    private static int readTopic(DataInputStream in, int K) throws Exception {
+        if (K <= 256) {
+            return in.readUnsignedByte();
+        } else if (K <= 65536) {
+            return in.readUnsignedShort();
+        } else {
+            return in.readInt();
+        }
+    }
+
+    /**
+     * LDA whose final assignments can be set directly, e.g., from the cache
+     * or from ParallelLDA.
+     */
+    static class CachedLDA extends LDA {
+
+        private static final long serialVersionUID = 1L;
+
+        void setAssignments(int[][] zs, double[][] docPriors, double[][] topicPriors) {
+            initializeModelStructure(topicPriors);
+            initializeDataStructure(docPriors);
+            for (int dd = 0; dd < D; dd++) {
+                for (int nn = 0; nn < words[dd].length; nn++) {
+                    z[dd][nn] = zs[dd][nn];
+                    docTopics[dd].increment(z[dd][nn]);
+                    topicWords[z[dd][nn]].increment(words[dd][nn]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Feed primitive values to a message digest through a buffer.
+     */
+    static class Hasher {
+
+        private final MessageDigest digest;
+        private final ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+
+        Hasher(MessageDigest digest) {
+            this.digest = digest;
+        }
+
+        private void ensureRemaining(int numBytes) {
+            if (buffer.remaining() < numBytes) {
+                digest.update(buffer.array(), 0, buffer.position());
+                buffer.clear();
+            }
+        }
+
+        void putInt(int value) {
+            ensureRemaining(4);
+            buffer.putInt(value);
+        }
+
+        void putLong(long value) {
+            ensureRemaining(8);
+            buffer.putLong(value);
+        }
+
+        void putDouble(double value) {
+            putLong(Double.doubleToLongBits(value));
+        }
+
+        void putMatrix(double[][] matrix) {
+            if (matrix == null) {
+                putInt(-1);
+                return;
+            }
+            putInt(matrix.length);
+            for (double[] row : matrix) {
+                putInt(row.length);
+                for (double value : row) {
+                    putDouble(value);
+                }
+            }
+        }
+
+        String digest() {
+            digest.update(buffer.array(), 0, buffer.position());
+            buffer.clear();
+            StringBuilder str = new StringBuilder();
+            for (byte b : digest.digest()) {
+                str.append(String.format("%02x", b & 0xff));
+            }
+            return str.toString();
+        }
+    }
+}
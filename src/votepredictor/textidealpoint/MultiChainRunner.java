@@ -0,0 +1,322 @@
+package votepredictor.textidealpoint;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import util.IOUtils;
+import util.MiscUtils;
+
+/**
+ * Run multiple Markov chains of a text ideal point sampler concurrently, one
+ * thread per chain. Chains are created by a task so that they all share the
+ * same read-only inputs (words, authors, votes) through setupData, which keeps
+ * references to the input arrays instead of copying them. Samplers that copy
+ * the words into a token store share the store of chain 0 (see shareTokens).
+ *
+ * Chain 0 is initialized first so that any initialization cached on disk
+ * (e.g., ideal points or LDA) is computed once and reused by the other chains.
+ * After sampling, convergence across chains is measured by the split potential
+ * scale reduction factor (R-hat) of the log likelihood and of each author's
+ * ideal point as traced by the sampler (see getTracedUs), using the samples
+ * recorded after burn-in.
+ *
+ * When RandomStreams are installed, each chain samples from its own stream
+ * keyed by the chain index, so runs are reproducible for a given seed.
+ *
+ * @author vietan
+ * @param <S> Sampler type
+ */
+public class MultiChainRunner<S extends AbstractTextIdealPoint> {
+
+    public static final String ChainFolderPrefix = "chain-";
+    public static final String DiagnosticFile = "chain-diagnostics.txt";
+
+    /**
+     * Create and run a single chain.
+     *
+     * @param <S> Sampler type
+     */
+    public interface ChainTask<S> {
+
+        /**
+         * Create a configured sampler with its data set up.
+         *
+         * @param chain Chain index
+         */
+        public S createChain(int chain);
+
+        public void initializeChain(S sampler);
+
+        public void iterateChain(S sampler);
+    }
+
+    private final int numChains;
+    private final ChainTask<S> task;
+    private ArrayList<S> chains;
+    private boolean verbose;
+    private volatile boolean failed;
+
+    /**
+     * @param numChains Number of chains
+     * @param task Task that creates and runs each chain
+     */
+    public MultiChainRunner(int numChains, ChainTask<S> task) {
+        this.numChains = Math.max(1, numChains);
+        this.task = task;
+    }
+
+    public void setVerbose(boolean verbose) {
+        this.verbose = verbose;
+    }
+
+    public ArrayList<S> getChains() {
+        return this.chains;
+    }
+
+    /**
+     * Run all chains.
+     *
+     * @return The samplers, ordered by chain index
+     */
+    public ArrayList<S> run() {
+        chains = new ArrayList<>();
+        failed = false;
+        for (int cc = 0; cc < numChains; cc++) {
+            S sampler = task.createChain(cc);
+            sampler.setChain(cc);
+            chains.add(sampler);
+        }
+
+        RandomStreams chainStreams = RandomStreams.splitThreadStream();
+        CountDownLatch firstInitialized = new CountDownLatch(1);
+        ArrayList<ChainRunner> runners = new ArrayList<>();
+        ArrayList<Thread> threads = new ArrayList<>();
+        for (int cc = 0; cc < numChains; cc++) {
+            ChainRunner runner = new ChainRunner(cc, firstInitialized,
+                    chainStreams == null ? null : chainStreams.getStream(cc));
+            runners.add(runner);
+            Thread thread = new Thread(runner, "chain-" + cc);
+            threads.add(thread);
+            thread.start();
+        }
+        try {
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+            throw new RuntimeException("Interrupted while running chains");
+        }
+        for (ChainRunner runner : runners) {
+            if (runner.exception != null) {
+                throw new RuntimeException("Exception while running chain "
+                        + runner.chain, runner.exception);
+            }
+        }
+
+        if (verbose) {
+            System.out.println("--- Ran " + numChains + " chains. R-hat llh = "
+                    + MiscUtils.formatDouble(getLogLikelihoodRhat())
+                    + ". max R-hat u = "
+                    + MiscUtils.formatDouble(getMaxAuthorRhat()));
+        }
+        return chains;
+    }
+
+    /**
+     * Split R-hat of the log likelihood.
+     */
+    public double getLogLikelihoodRhat() {
+        ArrayList<double[]> traces = new ArrayList<>();
+        for (S sampler : chains) {
+            ArrayList<Double> llhs = sampler.getTraceLogLikelihoods();
+            double[] trace = new double[llhs.size()];
+            for (int ii = 0; ii < trace.length; ii++) {
+                trace[ii] = llhs.get(ii);
+            }
+            traces.add(trace);
+        }
+        return computeRhat(traces);
+    }
+
+    /**
+     * Split R-hat of each author's traced ideal point, null if the sampler
+     * does not record ideal points.
+     */
+    public double[] getAuthorRhats() {
+        for (S sampler : chains) {
+            if (sampler.getTraceUs().isEmpty()) {
+                return null;
+            }
+        }
+        int numAuthors = chains.get(0).getTraceUs().get(0).length;
+        double[] rhats = new double[numAuthors];
+        for (int aa = 0; aa < numAuthors; aa++) {
+            ArrayList<double[]> traces = new ArrayList<>();
+            for (S sampler : chains) {
+                ArrayList<double[]> us = sampler.getTraceUs();
+                double[] trace = new double[us.size()];
+                for (int ii = 0; ii < trace.length; ii++) {
+                    trace[ii] = us.get(ii)[aa];
+                }
+                traces.add(trace);
+            }
+            rhats[aa] = computeRhat(traces);
+        }
+        return rhats;
+    }
+
+    private double getMaxAuthorRhat() {
+        double[] rhats = getAuthorRhats();
+        if (rhats == null) {
+            return Double.NaN;
+        }
+        double max = Double.NaN;
+        for (double rhat : rhats) {
+            if (!Double.isNaN(rhat) && (Double.isNaN(max) || rhat > max)) {
+                max = rhat;
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Output the convergence diagnostics.
+     *
+     * @param file Output file
+     */
+    public void outputDiagnostics(File file) {
+        if (verbose) {
+            System.out.println("--- Outputing chain diagnostics to " + file);
+        }
+        try {
+            BufferedWriter writer = IOUtils.getBufferedWriter(file);
+            writer.write("# chains\t" + numChains + "\n");
+            for (S sampler : chains) {
+                writer.write("chain " + sampler.getChain()
+                        + "\t# samples\t" + sampler.getTraceLogLikelihoods().size() + "\n");
+            }
+            writer.write("llh\t" + getLogLikelihoodRhat() + "\n");
+            double[] rhats = getAuthorRhats();
+            if (rhats != null) {
+                writer.write("max-u\t" + getMaxAuthorRhat() + "\n");
+                ArrayList<String> authorVocab = chains.get(0).getAuthorVocab();
+                for (int aa = 0; aa < rhats.length; aa++) {
+                    String author = authorVocab == null ? Integer.toString(aa) : authorVocab.get(aa);
+                    writer.write("u\t" + author + "\t" + rhats[aa] + "\n");
+                }
+            }
+            writer.close();
+        } catch (Exception e) {
+            e.printStackTrace();
+            throw new RuntimeException("Exception while outputing to " + file);
+        }
+    }
+
+    /**
+     * Split R-hat (Gelman et al., Bayesian Data Analysis, 3rd ed.): each chain
+     * is split into two halves, which are treated as separate chains. Chains
+     * are truncated to the length of the shortest one.
+     *
+     * @param traces Samples of a scalar from each chain
+     * @return R-hat, NaN if there are fewer than 4 samples per chain or if all
+     * chains are constant at the same value (e.g., a fixed parameter)
+     */
+    public static double computeRhat(ArrayList<double[]> traces) {
+        int length = Integer.MAX_VALUE;
+        for (double[] trace : traces) {
+            length = Math.min(length, trace.length);
+        }
+        int n = length / 2;
+        int m = 2 * traces.size();
+        if (n < 2 || m < 2) {
+            return Double.NaN;
+        }
+        double[] means = new double[m];
+        double[] vars = new double[m];
+        for (int cc = 0; cc < traces.size(); cc++) {
+            double[] trace = traces.get(cc);
+            int start = trace.length - 2 * n; // drop the earliest samples
+            for (int hh = 0; hh < 2; hh++) {
+                int jj = 2 * cc + hh;
+                int offset = start + hh * n;
+                for (int ii = 0; ii < n; ii++) {
+                    means[jj] += trace[offset + ii];
+                }
+                means[jj] /= n;
+                for (int ii = 0; ii < n; ii++) {
+                    double diff = trace[offset + ii] - means[jj];
+                    vars[jj] += diff * diff;
+                }
+                vars[jj] /= n - 1;
+            }
+        }
+        double mean = 0.0;
+        double within = 0.0;
+        for (int jj = 0; jj < m; jj++) {
+            mean += means[jj];
+            within += vars[jj];
+        }
+        mean /= m;
+        within /= m;
+        double between = 0.0;
+        for (int jj = 0; jj < m; jj++) {
+            between += (means[jj] - mean) * (means[jj] - mean);
+        }
+        between *= (double) n / (m - 1);
+        double tolerance = 1e-24 * Math.max(1.0, mean * mean); // rounding errors
+        if (within <= tolerance) { // constant chains carry no information
+            return between <= tolerance ? Double.NaN : Double.POSITIVE_INFINITY;
+        }
+        double varPlus = (n - 1.0) / n * within + between / n;
+        return Math.sqrt(varPlus / within);
+    }
+
+    class ChainRunner implements Runnable {
+
+        private final int chain;
+        private final CountDownLatch firstInitialized;
+        private final Random stream;
+        private Exception exception;
+
+        ChainRunner(int chain, CountDownLatch firstInitialized, Random stream) {
+            this.chain = chain;
+            this.firstInitialized = firstInitialized;
+            this.stream = stream;
+        }
+
+        @Override
+        public void run() {
+            S sampler = chains.get(chain);
+            if (stream != null) {
+                RandomStreams.setThreadStream(stream);
+            }
+            try {
+                if (chain == 0) {
+                    try {
+                        task.initializeChain(sampler);
+                    } catch (Exception e) {
+                        failed = true; // before the other chains are released
+                        throw e;
+                    } finally {
+                        firstInitialized.countDown();
+                    }
+                } else {
+                    firstInitialized.await();
+                    if (failed) {
+                        return;
+                    }
+                    sampler.shareTokens(chains.get(0));
+                    task.initializeChain(sampler);
+                }
+                task.iterateChain(sampler);
+            } catch (Exception e) {
+                e.printStackTrace();
+                this.exception = e;
+                failed = true;
+            }
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package votepredictor.textidealpoint;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Approximate collapsed Gibbs sampler of LDA that samples blocks of documents
+ * in parallel (AD-LDA). In each iteration, every block samples its documents
+ * against a private copy of the topic-word counts taken at the start of the
+ * iteration, and the changes of all blocks are merged into the global counts
+ * at the end of the iteration.
+ *
+ * Documents are split into a fixed number of blocks, each with its own random
+ * stream, so that the output does not depend on the number of threads. Since
+ * blocks see each other's changes only once per iteration, the output differs
+ * from that of the sequential sampler; use the segan LDA sampler when exact
+ * sequential sampling is needed.
+ *
+ * @author vietan
+ */
+public class ParallelLDA {
+
+    public static final int NUM_BLOCKS = 16;
+    private final int numThreads;
+    // data and hyperparameters of the current run
+    private int[][] words;
+    private int K;
+    private int V;
+    private double[][] docPriors;
+    private double[][] topicPriors;
+    private double alpha;
+    private double beta;
+    // state
+    private int[][] z;
+    private int[][] docTopicCounts;
+    private int[][] topicWordCounts;
+    private int[] topicCounts;
+    private int[][] blockDocs;
+    private int[][] blockChanges; // [block]: (word, old topic, new topic) triples
+    private int[] numBlockChanges;
+
+    /**
+     * @param numThreads Number of threads
+     */
+    public ParallelLDA(int numThreads) {
+        this.numThreads = Math.max(1, numThreads);
+    }
+
+    /**
+     * Sample topic assignments.
+     *
+     * @param words Token data
+     * @param K Number of topics
+     * @param V Vocabulary size
+     * @param docPriors Document-topic priors (can be null)
+     * @param topicPriors Topic-word priors (can be null)
+     * @param alpha Document-topic hyperparameter
+     * @param beta Topic-word hyperparameter
+     * @param numIters Number of iterations
+     * @return Topic assignments of all tokens after the last iteration
+     */
+    public int[][] sample(int[][] words, int K, int V,
+            double[][] docPriors, double[][] topicPriors,
+            double alpha, double beta, int numIters) {
+        this.words = words;
+        this.K = K;
+        this.V = V;
+        this.docPriors = docPriors;
+        this.topicPriors = topicPriors;
+        this.alpha = alpha;
+        this.beta = beta;
+
+        RandomStreams streams = new RandomStreams(RandomStreams.getThreadStream().nextLong());
+        initialize(streams.getStream(-1));
+        for (int iter = 0; iter < numIters; iter++) {
+            iterate(streams, iter);
+        }
+        return z;
+    }
+
+    private void initialize(Random rand) {
+        int D = words.length;
+        z = new int[D][];
+        docTopicCounts = new int[D][K];
+        topicWordCounts = new int[K][V];
+        topicCounts = new int[K];
+        for (int dd = 0; dd < D; dd++) {
+            z[dd] = new int[words[dd].length];
+            for (int nn = 0; nn < words[dd].length; nn++) {
+                int kk = rand.nextInt(K);
+                z[dd][nn] = kk;
+                docTopicCounts[dd][kk]++;
+                topicWordCounts[kk][words[dd][nn]]++;
+                topicCounts[kk]++;
+            }
+        }
+
+        // contiguous blocks of about the same number of tokens
+        long numTokens = 0;
+        for (int[] doc : words) {
+            numTokens += doc.length;
+        }
+        ArrayList<ArrayList<Integer>> blocks = new ArrayList<>();
+        for (int bb = 0; bb < NUM_BLOCKS; bb++) {
+            blocks.add(new ArrayList<Integer>());
+        }
+        long count = 0;
+        for (int dd = 0; dd < D; dd++) {
+            int bb = (int) Math.min(NUM_BLOCKS - 1, count * NUM_BLOCKS / Math.max(1, numTokens));
+            blocks.get(bb).add(dd);
+            count += words[dd].length;
+        }
+        blockDocs = new int[NUM_BLOCKS][];
+        blockChanges = new int[NUM_BLOCKS][];
+        numBlockChanges = new int[NUM_BLOCKS];
+        for (int bb = 0; bb < NUM_BLOCKS; bb++) {
+            blockDocs[bb] = new int[blocks.get(bb).size()];
+            int blockTokens = 0;
+            for (int ii = 0; ii < blockDocs[bb].length; ii++) {
+                blockDocs[bb][ii] = blocks.get(bb).get(ii);
+                blockTokens += words[blockDocs[bb][ii]].length;
+            }
+            blockChanges[bb] = new int[3 * blockTokens];
+        }
+    }
+
+    private void iterate(final RandomStreams streams, final int iter) {
+        int numRunners = Math.min(numThreads, NUM_BLOCKS);
+        ArrayList<BlockRunner> runners = new ArrayList<>();
+        for (int tt = 0; tt < numRunners; tt++) {
+            runners.add(new BlockRunner(tt, numRunners, streams, iter));
+        }
+        if (numRunners == 1) {
+            runners.get(0).run();
+        } else {
+            ArrayList<Thread> threads = new ArrayList<>();
+            for (int tt = 0; tt < numRunners; tt++) {
+                Thread thread = new Thread(runners.get(tt), "parallel-lda-" + tt);
+                threads.add(thread);
+                thread.start();
+            }
+            try {
+                for (Thread thread : threads) {
+                    thread.join();
+                }
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+                throw new RuntimeException("Interrupted while running parallel LDA");
+            }
+        }
+        for (BlockRunner runner : runners) {
+            if (runner.exception != null) {
+                throw new RuntimeException("Exception while running parallel LDA",
+                        runner.exception);
+            }
+        }
+
+        // reconcile the topic-word counts
+        for (int bb = 0; bb < NUM_BLOCKS; bb++) {
+            int[] changes = blockChanges[bb];
+            for (int ii = 0; ii < numBlockChanges[bb]; ii += 3) {
+                topicWordCounts[changes[ii + 1]][changes[ii]]--;
+                topicCounts[changes[ii + 1]]--;
+                topicWordCounts[changes[ii + 2]][changes[ii]]++;
+                topicCounts[changes[ii + 2]]++;
+            }
+        }
+    }
+
+    /**
+     * Sample the documents of a block against the local topic-word counts,
+     * which hold the global counts at the start of the iteration plus the
+     * changes made by this block so far.
+     */
+    private void sampleBlock(int bb, Random rand, int[][] localTopicWords,
+            int[] localTopics, double[] probs) {
+        int[] changes = blockChanges[bb];
+        int numChanges = 0;
+        double betaV = beta * V;
+        for (int dd : blockDocs[bb]) {
+            int[] docCounts = docTopicCounts[dd];
+            for (int nn = 0; nn < words[dd].length; nn++) {
+                int vv = words[dd][nn];
+                int oldK = z[dd][nn];
+                docCounts[oldK]--;
+                localTopicWords[oldK][vv]--;
+                localTopics[oldK]--;
+
+                double sum = 0.0;
+                for (int kk = 0; kk < K; kk++) {
+                    double docPrior = docPriors == null ? alpha : alpha * K * docPriors[dd][kk];
+                    double wordPrior = topicPriors == null ? beta : betaV * topicPriors[kk][vv];
+                    sum += (docCounts[kk] + docPrior)
+                            * (localTopicWords[kk][vv] + wordPrior)
+                            / (localTopics[kk] + betaV);
+                    probs[kk] = sum;
+                }
+                double r = rand.nextDouble() * sum;
+                int newK = 0;
+                while (newK < K - 1 && probs[newK] <= r) {
+                    newK++;
+                }
+
+                z[dd][nn] = newK;
+                docCounts[newK]++;
+                localTopicWords[newK][vv]++;
+                localTopics[newK]++;
+                if (newK != oldK) {
+                    changes[numChanges++] = vv;
+                    changes[numChanges++] = oldK;
+                    changes[numChanges++] = newK;
+                }
+            }
+        }
+        numBlockChanges[bb] = numChanges;
+    }
+
+    class BlockRunner implements Runnable {
+
+        private final int start;
+        private final int step;
+        private final RandomStreams streams;
+        private final int iter;
+        private RuntimeException exception;
+
+        BlockRunner(int start, int step, RandomStreams streams, int iter) {
+            this.start = start;
+            this.step = step;
+            this.streams = streams;
+            this.iter = iter;
+        }
+
+        @Override
+        public void run() {
+            try {
+                int[][] localTopicWords = new int[K][V];
+                int[] localTopics = new int[K];
+                double[] probs = new double[K];
+                for (int bb = start; bb < NUM_BLOCKS; bb += step) {
+                    for (int kk = 0; kk < K; kk++) {
+                        System.arraycopy(topicWordCounts[kk], 0, localTopicWords[kk], 0, V);
+                    }
+                    System.arraycopy(topicCounts, 0, localTopics, 0, K);
+                    sampleBlock(bb, streams.getStream((long) iter * NUM_BLOCKS + bb),
+                            localTopicWords, localTopics, probs);
+                }
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+                this.exception = e;
+            }
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package votepredictor.textidealpoint;
+
+import java.util.ArrayList;
+import java.util.Random;
+import util.SamplerUtils;
+
+/**
+ * Deterministic random number streams for parallel sampling. Streams are
+ * derived from a run seed and a key (e.g., a chain, a fold, a partition of
+ * documents), so a stream only depends on what it is used for and not on which
+ * thread runs it or in which order. Runs are then reproducible for a given
+ * seed, whatever the number of threads.
+ *
+ * A thread uses a stream by setting it as its thread stream. Once installed,
+ * the shared SamplerUtils generator and the generator shared by all samplers
+ * (AbstractSampler.rand, used for slice sampling and Metropolis-Hastings
+ * steps) delegate to the stream of the calling thread, so draws made inside
+ * library code (e.g., DirMult, LDA) also come from that stream. Threads
+ * without a stream share the main stream of the run. Before installing, the
+ * thread stream of every thread is the shared SamplerUtils generator, which
+ * keeps the default behavior unchanged.
+ *
+ * @author vietan
+ */
+public class RandomStreams {
+
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+    private static final ThreadLocal<Random> threadStreams = new ThreadLocal<>();
+    private static volatile RandomStreams installed;
+    private static volatile Random mainStream;
+
+    private final long seed;
+
+    /**
+     * @param seed Seed of the run
+     */
+    public RandomStreams(long seed) {
+        this.seed = seed;
+    }
+
+    public long getSeed() {
+        return this.seed;
+    }
+
+    /**
+     * Independent stream for a key.
+     *
+     * @param key The key
+     */
+    public Random getStream(long key) {
+        return new Random(mix(seed + GOLDEN_GAMMA * mix(key + 1)));
+    }
+
+    /**
+     * Independent stream for a string key, e.g., the name of a state file.
+     *
+     * @param key The key
+     */
+    public Random getStream(String key) {
+        return getStream((long) key.hashCode());
+    }
+
+    /**
+     * SplitMix64 finalizer.
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Route the shared SamplerUtils and sampler generators to per-thread
+     * streams derived from a seed.
+     *
+     * @param seed Seed of the run
+     */
+    public static synchronized void install(long seed) {
+        installed = new RandomStreams(seed);
+        mainStream = installed.getStream(-1L);
+        SamplerUtils.rand = new ThreadStreamRandom();
+        AbstractTextIdealPoint.setSharedSamplerRandom(new ThreadStreamRandom());
+    }
+
+    /**
+     * Streams of the installed run, null if streams are not installed.
+     */
+    public static RandomStreams getInstalled() {
+        return installed;
+    }
+
+    /**
+     * Streams for the sub-tasks of the current thread (e.g., chains, folds),
+     * seeded from the stream of the current thread so that nested parallel
+     * tasks get distinct but reproducible streams.
+     *
+     * @return The streams, null if streams are not installed
+     */
+    public static RandomStreams splitThreadStream() {
+        if (installed == null) {
+            return null;
+        }
+        return new RandomStreams(getThreadStream().nextLong());
+    }
+
+    public static void setThreadStream(Random stream) {
+        threadStreams.set(stream);
+    }
+
+    public static void clearThreadStream() {
+        threadStreams.remove();
+    }
+
+    /**
+     * Stream of the current thread.
+     */
+    public static Random getThreadStream() {
+        Random stream = threadStreams.get();
+        if (stream != null) {
+            return stream;
+        }
+        Random main = mainStream;
+        return main == null ? SamplerUtils.rand : main;
+    }
+
+    /**
+     * Sample an index given unnormalized probabilities. Same as
+     * SamplerUtils.scaleSample but drawing from the given stream.
+     *
+     * @param rand The stream
+     * @param distribution Unnormalized probabilities
+     */
+    public static int scaleSample(Random rand, double[] distribution) {
+        double sum = 0.0;
+        for (double p : distribution) {
+            sum += p;
+        }
+        return scaleSample(rand, distribution, sum);
+    }
+
+    /**
+     * Sample an index given unnormalized probabilities and their sum.
+     *
+     * @param rand The stream
+     * @param distribution Unnormalized probabilities
+     * @param sum Sum of the probabilities
+     */
+    public static int scaleSample(Random rand, double[] distribution, double sum) {
+        double cumsum = 0.0;
+        double val = rand.nextDouble() * sum;
+        int idx;
+        for (idx = 0; idx < distribution.length; idx++) {
+            cumsum += distribution[idx];
+            if (cumsum > val) {
+                break;
+            }
+        }
+        return idx;
+    }
+
+    /**
+     * Sample an index given unnormalized log probabilities, which are rescaled
+     * by their maximum. Same as SamplerUtils.logMaxRescaleSample but drawing
+     * from the given stream.
+     *
+     * @param rand The stream
+     * @param logDistribution Unnormalized log probabilities
+     */
+    public static int logMaxRescaleSample(Random rand, double[] logDistribution) {
+        double max = Double.NEGATIVE_INFINITY;
+        for (double val : logDistribution) {
+            if (val > max) {
+                max = val;
+            }
+        }
+        double sum = 0.0;
+        double[] distribution = new double[logDistribution.length];
+        for (int ii = 0; ii < logDistribution.length; ii++) {
+            distribution[ii] = Math.exp(logDistribution[ii] - max);
+            sum += distribution[ii];
+        }
+        return scaleSample(rand, distribution, sum);
+    }
+
+    public static int logMaxRescaleSample(Random rand, ArrayList<Double> logDistribution) {
+        double[] logs = new double[logDistribution.size()];
+        for (int ii = 0; ii < logs.length; ii++) {
+            logs[ii] = logDistribution.get(ii);
+        }
+        return logMaxRescaleSample(rand, logs);
+    }
+
+    /**
+     * Generator that delegates every draw to the stream of the calling
+     * thread. Gaussian draws are delegated as well so that the cached second
+     * Gaussian of java.util.Random is never shared across threads.
+     */
+    static class ThreadStreamRandom extends Random {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected int next(int bits) {
+            Random stream = getThreadStream();
+            if (stream == this) {
+                throw new IllegalStateException("Recursive random stream");
+            }
+            return nextBits(stream, bits);
+        }
+
+        @Override
+        public double nextGaussian() {
+            return getThreadStream().nextGaussian();
+        }
+
+        @Override
+        public synchronized void setSeed(long seed) {
+            // seeding is done through RandomStreams.install
+        }
+
+        private static int nextBits(Random stream, int bits) {
+            return stream.nextInt() >>> (32 - bits);
+        }
+    }
+}
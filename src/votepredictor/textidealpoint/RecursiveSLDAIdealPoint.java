@@ -197,7 +197,7 @@ public class RecursiveSLDAIdealPoint extends AbstractTextSingleIdealPoint {
         for (int d = 0; d < D; d++) {
             for (int n = 0; n < words[d].length; n++) {
                 if (root.getValidToken(d, n)) {
-                    zs[0][d][n] = root.z[d][n];
+                    zs[0][d][n] = root.getZ(d, n);
                 }
             }
         }
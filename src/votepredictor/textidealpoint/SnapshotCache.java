@@ -0,0 +1,250 @@
+package votepredictor.textidealpoint;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import util.IOUtils;
+
+/**
+ * Process-wide, memory-bounded LRU cache of decompressed snapshot files (e.g.,
+ * iter-N.zip). The first read of a snapshot decompresses all of its entries
+ * (model, assignments, bill scores, author scores) at once; later reads of the
+ * same snapshot, from any sampler or thread, are served from memory as long as
+ * the file has not been modified.
+ *
+ * Only the decompressed text is shared. Each reader still builds its own
+ * objects from it since loaded components (e.g., DirMult counts) are modified
+ * by the sampler that loads them. When caching is disabled or a snapshot does
+ * not fit in the cache, only the requested entry is read, as without the
+ * cache.
+ *
+ * @author vietan
+ */
+public class SnapshotCache {
+
+    public static final long DEFAULT_CAPACITY = Runtime.getRuntime().maxMemory() / 16; // chars
+    private static final SnapshotCache instance = new SnapshotCache(DEFAULT_CAPACITY);
+
+    private final LinkedHashMap<String, Snapshot> snapshots;
+    private long capacity;
+    private long size;
+    private long numHits;
+    private long numMisses;
+
+    public SnapshotCache(long capacity) {
+        this.capacity = capacity;
+        this.snapshots = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    public static SnapshotCache getInstance() {
+        return instance;
+    }
+
+    /**
+     * Reader of an entry of a zipped snapshot. Drop-in replacement of
+     * IOUtils.getBufferedReader(zipFilepath, entryName).
+     *
+     * @param zipFilepath Snapshot file
+     * @param entryName Entry
+     */
+    public static BufferedReader getBufferedReader(String zipFilepath, String entryName)
+            throws Exception {
+        Snapshot snapshot = instance.getSnapshot(zipFilepath);
+        if (snapshot == null) {
+            return IOUtils.getBufferedReader(zipFilepath, entryName);
+        }
+        return new BufferedReader(new StringReader(snapshot.getEntry(zipFilepath, entryName)));
+    }
+
+    /**
+     * Set the maximum number of cached characters. A non-positive capacity
+     * disables caching.
+     *
+     * @param capacity Maximum number of characters
+     */
+    public synchronized void setCapacity(long capacity) {
+        this.capacity = capacity;
+        evict();
+    }
+
+    public synchronized long getCapacity() {
+        return this.capacity;
+    }
+
+    public synchronized long getSize() {
+        return this.size;
+    }
+
+    public synchronized long getNumHits() {
+        return this.numHits;
+    }
+
+    public synchronized long getNumMisses() {
+        return this.numMisses;
+    }
+
+    /**
+     * Drop a snapshot, e.g., after it is rewritten.
+     *
+     * @param zipFilepath Snapshot file
+     */
+    public synchronized void invalidate(String zipFilepath) {
+        Snapshot snapshot = snapshots.remove(getKey(zipFilepath));
+        if (snapshot != null) {
+            size -= snapshot.size;
+        }
+    }
+
+    public synchronized void clear() {
+        snapshots.clear();
+        size = 0;
+    }
+
+    /**
+     * Content of an entry of a zipped snapshot.
+     *
+     * @param zipFilepath Snapshot file
+     * @param entryName Entry
+     */
+    public String getEntry(String zipFilepath, String entryName) throws Exception {
+        Snapshot snapshot = getSnapshot(zipFilepath);
+        if (snapshot != null) {
+            return snapshot.getEntry(zipFilepath, entryName);
+        }
+        try (ZipFile zipFile = new ZipFile(zipFilepath)) {
+            ZipEntry zipEntry = zipFile.getEntry(entryName);
+            if (zipEntry == null) {
+                throw new RuntimeException("Entry " + entryName
+                        + " not found in " + zipFilepath);
+            }
+            return readEntry(zipFile, zipEntry);
+        }
+    }
+
+    /**
+     * Cached snapshot, which is loaded if it fits in the cache.
+     *
+     * @param zipFilepath Snapshot file
+     * @return The snapshot, null if it is not cached
+     */
+    private Snapshot getSnapshot(String zipFilepath) throws Exception {
+        File file = new File(zipFilepath);
+        if (!file.exists()) {
+            throw new FileNotFoundException(zipFilepath);
+        }
+        String key = getKey(zipFilepath);
+        long lastModified = file.lastModified();
+        long length = file.length();
+        synchronized (this) {
+            Snapshot snapshot = snapshots.get(key);
+            if (snapshot != null) {
+                if (snapshot.lastModified == lastModified && snapshot.length == length) {
+                    numHits++;
+                    return snapshot;
+                }
+                snapshots.remove(key);
+                size -= snapshot.size;
+            }
+            numMisses++;
+            if (capacity <= 0) {
+                return null;
+            }
+        }
+
+        // the uncompressed sizes in the central directory bound the number of
+        // characters, so snapshots that cannot fit are not decompressed
+        long numBytes = 0;
+        try (ZipFile zipFile = new ZipFile(file)) {
+            Enumeration<? extends ZipEntry> zipEntries = zipFile.entries();
+            while (zipEntries.hasMoreElements()) {
+                numBytes += Math.max(0, zipEntries.nextElement().getSize());
+            }
+        }
+        synchronized (this) {
+            if (numBytes > capacity) {
+                return null;
+            }
+        }
+
+        // decompress outside the lock so that different snapshots are read
+        // concurrently
+        Snapshot snapshot = new Snapshot(file, lastModified, length);
+        synchronized (this) {
+            if (capacity > 0 && snapshot.size <= capacity) {
+                Snapshot old = snapshots.put(key, snapshot);
+                if (old != null) {
+                    size -= old.size;
+                }
+                size += snapshot.size;
+                evict();
+            }
+        }
+        return snapshot;
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<String, Snapshot>> it = snapshots.entrySet().iterator();
+        while (size > Math.max(0, capacity) && it.hasNext()) { // least recently used first
+            size -= it.next().getValue().size;
+            it.remove();
+        }
+    }
+
+    private static String getKey(String zipFilepath) {
+        return new File(zipFilepath).getAbsolutePath();
+    }
+
+    private static String readEntry(ZipFile zipFile, ZipEntry zipEntry) throws Exception {
+        StringBuilder str = new StringBuilder();
+        try (InputStreamReader reader = new InputStreamReader(
+                zipFile.getInputStream(zipEntry), "UTF-8")) {
+            char[] buffer = new char[8192];
+            int numRead;
+            while ((numRead = reader.read(buffer)) != -1) {
+                str.append(buffer, 0, numRead);
+            }
+        }
+        return str.toString();
+    }
+
+    static class Snapshot {
+
+        final long lastModified;
+        final long length;
+        final HashMap<String, String> entries;
+        long size;
+
+        Snapshot(File file, long lastModified, long length) throws Exception {
+            this.lastModified = lastModified;
+            this.length = length;
+            this.entries = new HashMap<>();
+            try (ZipFile zipFile = new ZipFile(file)) {
+                Enumeration<? extends ZipEntry> zipEntries = zipFile.entries();
+                while (zipEntries.hasMoreElements()) {
+                    ZipEntry zipEntry = zipEntries.nextElement();
+                    String content = readEntry(zipFile, zipEntry);
+                    entries.put(zipEntry.getName(), content);
+                    size += content.length();
+                }
+            }
+        }
+
+        String getEntry(String zipFilepath, String entryName) {
+            String content = entries.get(entryName);
+            if (content == null) {
+                throw new RuntimeException("Entry " + entryName
+                        + " not found in " + zipFilepath);
+            }
+            return content;
+        }
+    }
+}
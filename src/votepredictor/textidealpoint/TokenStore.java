@@ -0,0 +1,328 @@
+package votepredictor.textidealpoint;
+
+/**
+ * Compact storage for the tokens of a set of documents and their topic
+ * assignments. Word types of all documents are stored in one flat array with
+ * document offsets (compressed sparse row layout), and the assignments are kept
+ * in the narrowest primitive array that can hold the number of topics (byte,
+ * short or int). Tokens of document d occupy positions
+ * [getStart(d), getEnd(d)) so samplers can sweep the whole corpus with a
+ * single sequential index. Once a store is built, samplers read word types
+ * from it and do not need to keep the documents as jagged arrays.
+ *
+ * @author vietan
+ */
+public class TokenStore {
+
+    /**
+     * Order in which tokens are visited during a sampling sweep. DOCUMENT
+     * visits all tokens of a document before moving to the next one. WORD
+     * visits all occurrences of a word type before moving to the next one, so
+     * the counts of that word type in all topics stay in cache.
+     */
+    public enum SweepOrder {
+
+        DOCUMENT, WORD
+    }
+
+    public static final int INVALID_TOPIC = -1;
+    private final int[] words;      // [N]: word type of each token
+    private final int[] docStarts;  // [D + 1]: position of the first token of each document
+    private final int K;
+    // only one of these is allocated depending on K
+    private byte[] byteZs;
+    private short[] shortZs;
+    private int[] intZs;
+    // inverted index, built on demand for word-major sweeps
+    private int[] wordStarts;       // [V + 1]: position of the first occurrence of each word type
+    private int[] wordTokens;       // [N]: token positions grouped by word type
+    private int[] wordTokenDocs;    // [N]: document of each entry in wordTokens
+
+    /**
+     * Create a store where all tokens are valid.
+     *
+     * @param docWords Word types of each document
+     * @param K Number of topics
+     */
+    public TokenStore(int[][] docWords, int K) {
+        this(docWords, null, K);
+    }
+
+    /**
+     * Create a store from a set of documents.
+     *
+     * @param docWords Word types of each document
+     * @param validTokens Flag tokens to be sampled, null if all are valid.
+     * Invalid tokens are assigned to INVALID_TOPIC.
+     * @param K Number of topics
+     */
+    public TokenStore(int[][] docWords, boolean[][] validTokens, int K) {
+        this.K = K;
+        int D = docWords.length;
+        this.docStarts = new int[D + 1];
+        for (int dd = 0; dd < D; dd++) {
+            this.docStarts[dd + 1] = this.docStarts[dd] + docWords[dd].length;
+        }
+        int N = this.docStarts[D];
+        this.words = new int[N];
+        for (int dd = 0; dd < D; dd++) {
+            System.arraycopy(docWords[dd], 0, this.words, docStarts[dd], docWords[dd].length);
+        }
+
+        if (K <= Byte.MAX_VALUE) {
+            this.byteZs = new byte[N];
+        } else if (K <= Short.MAX_VALUE) {
+            this.shortZs = new short[N];
+        } else {
+            this.intZs = new int[N];
+        }
+
+        if (validTokens != null) {
+            for (int dd = 0; dd < D; dd++) {
+                for (int nn = 0; nn < docWords[dd].length; nn++) {
+                    if (!validTokens[dd][nn]) {
+                        setZ(docStarts[dd] + nn, INVALID_TOPIC);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Create a store over the same tokens as another one. The word types are
+     * shared, the assignments are new and only the invalid tokens of the other
+     * store are carried over.
+     *
+     * @param store Store to share the word types with
+     * @param K Number of topics
+     */
+    public TokenStore(TokenStore store, int K) {
+        this.K = K;
+        this.docStarts = store.docStarts;
+        this.words = store.words;
+        int N = this.words.length;
+        if (K <= Byte.MAX_VALUE) {
+            this.byteZs = new byte[N];
+        } else if (K <= Short.MAX_VALUE) {
+            this.shortZs = new short[N];
+        } else {
+            this.intZs = new int[N];
+        }
+        for (int ii = 0; ii < N; ii++) {
+            if (!store.isValid(ii)) {
+                setZ(ii, INVALID_TOPIC);
+            }
+        }
+    }
+
+    public int getNumTopics() {
+        return this.K;
+    }
+
+    public int getNumDocuments() {
+        return this.docStarts.length - 1;
+    }
+
+    public int getNumTokens() {
+        return this.words.length;
+    }
+
+    /**
+     * Position of the first token of a document.
+     *
+     * @param dd Document index
+     */
+    public int getStart(int dd) {
+        return this.docStarts[dd];
+    }
+
+    /**
+     * Position after the last token of a document.
+     *
+     * @param dd Document index
+     */
+    public int getEnd(int dd) {
+        return this.docStarts[dd + 1];
+    }
+
+    public int getLength(int dd) {
+        return this.docStarts[dd + 1] - this.docStarts[dd];
+    }
+
+    public int getWord(int ii) {
+        return this.words[ii];
+    }
+
+    public int getWord(int dd, int nn) {
+        return this.words[docStarts[dd] + nn];
+    }
+
+    public int getZ(int ii) {
+        if (byteZs != null) {
+            return byteZs[ii];
+        } else if (shortZs != null) {
+            return shortZs[ii];
+        } else {
+            return intZs[ii];
+        }
+    }
+
+    public int getZ(int dd, int nn) {
+        return getZ(docStarts[dd] + nn);
+    }
+
+    public void setZ(int ii, int kk) {
+        if (byteZs != null) {
+            byteZs[ii] = (byte) kk;
+        } else if (shortZs != null) {
+            shortZs[ii] = (short) kk;
+        } else {
+            intZs[ii] = kk;
+        }
+    }
+
+    public void setZ(int dd, int nn, int kk) {
+        setZ(docStarts[dd] + nn, kk);
+    }
+
+    public boolean isValid(int ii) {
+        return getZ(ii) != INVALID_TOPIC;
+    }
+
+    public boolean isValid(int dd, int nn) {
+        return isValid(docStarts[dd] + nn);
+    }
+
+    /**
+     * Build the inverted index from word types to token positions, grouping
+     * all occurrences of each word type together. Within a word type,
+     * occurrences are ordered by position in the corpus.
+     *
+     * @param V Vocabulary size
+     */
+    public void buildWordIndex(int V) {
+        int N = words.length;
+        this.wordStarts = new int[V + 1];
+        for (int ii = 0; ii < N; ii++) {
+            this.wordStarts[words[ii] + 1]++;
+        }
+        for (int vv = 0; vv < V; vv++) {
+            this.wordStarts[vv + 1] += this.wordStarts[vv];
+        }
+        this.wordTokens = new int[N];
+        this.wordTokenDocs = new int[N];
+        int[] nexts = new int[V];
+        System.arraycopy(this.wordStarts, 0, nexts, 0, V);
+        for (int dd = 0; dd < getNumDocuments(); dd++) {
+            for (int ii = docStarts[dd]; ii < docStarts[dd + 1]; ii++) {
+                int jj = nexts[words[ii]]++;
+                this.wordTokens[jj] = ii;
+                this.wordTokenDocs[jj] = dd;
+            }
+        }
+    }
+
+    public boolean hasWordIndex() {
+        return this.wordStarts != null;
+    }
+
+    /**
+     * Number of word types covered by the inverted index.
+     */
+    public int getNumWordTypes() {
+        return this.wordStarts.length - 1;
+    }
+
+    /**
+     * Position in the inverted index of the first occurrence of a word type.
+     *
+     * @param vv Word type
+     */
+    public int getWordStart(int vv) {
+        return this.wordStarts[vv];
+    }
+
+    /**
+     * Position in the inverted index after the last occurrence of a word type.
+     *
+     * @param vv Word type
+     */
+    public int getWordEnd(int vv) {
+        return this.wordStarts[vv + 1];
+    }
+
+    /**
+     * Token position of an entry in the inverted index.
+     *
+     * @param jj Position in the inverted index
+     */
+    public int getWordToken(int jj) {
+        return this.wordTokens[jj];
+    }
+
+    /**
+     * Document of an entry in the inverted index.
+     *
+     * @param jj Position in the inverted index
+     */
+    public int getWordTokenDoc(int jj) {
+        return this.wordTokenDocs[jj];
+    }
+
+    /**
+     * Reset the assignments of all valid tokens to topic 0.
+     */
+    public void clearAssignments() {
+        for (int ii = 0; ii < words.length; ii++) {
+            if (isValid(ii)) {
+                setZ(ii, 0);
+            }
+        }
+    }
+
+    /**
+     * Get the word types of a document as an int array.
+     *
+     * @param dd Document index
+     */
+    public int[] getWords(int dd) {
+        int[] docWords = new int[getLength(dd)];
+        System.arraycopy(words, docStarts[dd], docWords, 0, docWords.length);
+        return docWords;
+    }
+
+    /**
+     * Get the word types of all documents as jagged int arrays.
+     */
+    public int[][] getWords() {
+        int[][] docWords = new int[getNumDocuments()][];
+        for (int dd = 0; dd < docWords.length; dd++) {
+            docWords[dd] = getWords(dd);
+        }
+        return docWords;
+    }
+
+    /**
+     * Get the assignments of a document as an int array.
+     *
+     * @param dd Document index
+     */
+    public int[] getZs(int dd) {
+        int[] docZs = new int[getLength(dd)];
+        for (int ii = docStarts[dd]; ii < docStarts[dd + 1]; ii++) {
+            docZs[ii - docStarts[dd]] = getZ(ii);
+        }
+        return docZs;
+    }
+
+    /**
+     * Get the assignments of all documents as jagged int arrays.
+     */
+    public int[][] getZs() {
+        int[][] zs = new int[getNumDocuments()][];
+        for (int dd = 0; dd < zs.length; dd++) {
+            zs[dd] = getZs(dd);
+        }
+        return zs;
+    }
+}
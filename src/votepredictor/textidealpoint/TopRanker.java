@@ -0,0 +1,130 @@
+package votepredictor.textidealpoint;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import util.RankingItem;
+
+/**
+ * Bounded selection of the items with the highest values. Only the current
+ * top items are kept in a min-heap, so selecting the top k of n items takes
+ * O(n log k) time and O(k) memory instead of sorting all n items. The selected
+ * items are in the same order as the first k items after sorting all items
+ * with Collections.sort on RankingItem, i.e., by decreasing value with ties
+ * kept in insertion order.
+ *
+ * @author vietan
+ * @param <T> Item type
+ */
+public class TopRanker<T> {
+
+    private final int capacity;
+    private final PriorityQueue<Entry<T>> heap;
+    private long numAdded;
+
+    /**
+     * @param capacity Maximum number of items kept
+     */
+    public TopRanker(int capacity) {
+        this.capacity = Math.max(0, capacity);
+        this.heap = new PriorityQueue<>(Math.max(1, this.capacity), new Comparator<Entry<T>>() {
+            @Override
+            public int compare(Entry<T> e1, Entry<T> e2) { // worst item first
+                int cmp = Double.compare(e1.value, e2.value);
+                if (cmp != 0) {
+                    return cmp;
+                }
+                return Long.compare(e2.order, e1.order);
+            }
+        });
+    }
+
+    public int getCapacity() {
+        return this.capacity;
+    }
+
+    public int size() {
+        return this.heap.size();
+    }
+
+    /**
+     * Add an item.
+     *
+     * @param item The item
+     * @param value Its value
+     */
+    public void add(T item, double value) {
+        long order = numAdded++;
+        if (capacity == 0) {
+            return;
+        }
+        if (heap.size() < capacity) {
+            heap.add(new Entry<>(item, value, order));
+        } else if (Double.compare(value, heap.peek().value) > 0) { // later ties lose
+            heap.poll();
+            heap.add(new Entry<>(item, value, order));
+        }
+    }
+
+    /**
+     * Selected items, ordered by decreasing value.
+     */
+    public ArrayList<RankingItem<T>> getRankedItems() {
+        ArrayList<Entry<T>> entries = new ArrayList<>(heap);
+        Collections.sort(entries, Collections.reverseOrder(heap.comparator()));
+        ArrayList<RankingItem<T>> items = new ArrayList<>();
+        for (Entry<T> entry : entries) {
+            items.add(new RankingItem<T>(entry.item, entry.value));
+        }
+        return items;
+    }
+
+    /**
+     * Indices of the largest values of an array, ordered by decreasing value.
+     *
+     * @param values The values
+     * @param k Maximum number of indices
+     */
+    public static int[] getTopIndices(double[] values, int k) {
+        TopRanker<Integer> ranker = new TopRanker<>(k);
+        for (int ii = 0; ii < values.length; ii++) {
+            ranker.add(ii, values[ii]);
+        }
+        ArrayList<RankingItem<Integer>> items = ranker.getRankedItems();
+        int[] indices = new int[items.size()];
+        for (int ii = 0; ii < indices.length; ii++) {
+            indices[ii] = items.get(ii).getObject();
+        }
+        return indices;
+    }
+
+    /**
+     * Top words of a distribution over the vocabulary.
+     *
+     * @param distribution The distribution
+     * @param vocab The word vocabulary
+     * @param k Number of top words
+     */
+    public static String[] getTopWords(double[] distribution, ArrayList<String> vocab, int k) {
+        int[] indices = getTopIndices(distribution, k);
+        String[] topWords = new String[indices.length];
+        for (int ii = 0; ii < indices.length; ii++) {
+            topWords[ii] = vocab.get(indices[ii]);
+        }
+        return topWords;
+    }
+
+    static class Entry<T> {
+
+        final T item;
+        final double value;
+        final long order;
+
+        Entry(T item, double value, long order) {
+            this.item = item;
+            this.value = value;
+            this.order = order;
+        }
+    }
+}
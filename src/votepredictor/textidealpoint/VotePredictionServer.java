@@ -0,0 +1,211 @@
+package votepredictor.textidealpoint;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Local HTTP front end of a VotePredictionService, listening on the loopback
+ * address only.
+ *
+ * GET /models lists the resident models.
+ *
+ * POST /predict?model=NAME takes one document per line of the request body
+ * and returns the probability that the author votes with each bill. Documents
+ * are raw text, or whitespace-separated word indices with tokens=true.
+ *
+ * Responses are JSON.
+ *
+ * @author vietan
+ */
+public class VotePredictionServer {
+
+    private final VotePredictionService service;
+    private HttpServer server;
+    private ExecutorService executor;
+
+    public VotePredictionServer(VotePredictionService service) {
+        this.service = service;
+    }
+
+    /**
+     * Start serving requests.
+     *
+     * @param port Port
+     * @param numThreads Number of requests handled concurrently
+     */
+    public void start(int port, int numThreads) throws IOException {
+        this.server = HttpServer.create(
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        this.server.createContext("/models", new ModelsHandler());
+        this.server.createContext("/predict", new PredictHandler());
+        this.executor = Executors.newFixedThreadPool(numThreads);
+        this.server.setExecutor(executor);
+        this.server.start();
+        System.out.println("Serving vote predictions at http://"
+                + server.getAddress().getHostString() + ":"
+                + server.getAddress().getPort());
+    }
+
+    public int getPort() {
+        return this.server.getAddress().getPort();
+    }
+
+    public void stop() {
+        this.server.stop(0);
+        this.executor.shutdown();
+    }
+
+    class ModelsHandler implements HttpHandler {
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if (!exchange.getRequestMethod().equals("GET")) {
+                respond(exchange, 405, getError("Use GET"));
+                return;
+            }
+            StringBuilder str = new StringBuilder();
+            str.append("{\"models\":[");
+            ArrayList<String> names = service.getModelNames();
+            for (int ii = 0; ii < names.size(); ii++) {
+                if (ii > 0) {
+                    str.append(",");
+                }
+                str.append(quote(names.get(ii)));
+            }
+            str.append("]}");
+            respond(exchange, 200, str.toString());
+        }
+    }
+
+    class PredictHandler implements HttpHandler {
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if (!exchange.getRequestMethod().equals("POST")) {
+                respond(exchange, 405, getError("Use POST"));
+                return;
+            }
+            HashMap<String, String> params = getParameters(exchange.getRequestURI().getRawQuery());
+            String name = params.get("model");
+            if (name == null) {
+                respond(exchange, 400, getError("Missing parameter model"));
+                return;
+            }
+            try {
+                long sTime = System.currentTimeMillis();
+                ArrayList<String> docs = readLines(exchange);
+                double[] probs;
+                if (Boolean.parseBoolean(params.get("tokens"))) {
+                    probs = service.predict(name, parseTokens(docs));
+                } else {
+                    probs = service.predict(name, docs.toArray(new String[docs.size()]));
+                }
+                ArrayList<String> bills = service.getBillLabels(name);
+                StringBuilder str = new StringBuilder();
+                str.append("{\"model\":").append(quote(name));
+                str.append(",\"time\":").append(System.currentTimeMillis() - sTime);
+                str.append(",\"predictions\":[");
+                for (int bb = 0; bb < probs.length; bb++) {
+                    if (bb > 0) {
+                        str.append(",");
+                    }
+                    str.append("{\"bill\":").append(quote(bills.get(bb)))
+                            .append(",\"prob\":").append(probs[bb]).append("}");
+                }
+                str.append("]}");
+                respond(exchange, 200, str.toString());
+            } catch (IllegalArgumentException e) {
+                respond(exchange, 400, getError(e.getMessage()));
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+                respond(exchange, 500, getError("Exception while predicting: " + e));
+            }
+        }
+    }
+
+    private static ArrayList<String> readLines(HttpExchange exchange) throws IOException {
+        ArrayList<String> lines = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(
+                exchange.getRequestBody(), StandardCharsets.UTF_8));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (!line.trim().isEmpty()) {
+                lines.add(line);
+            }
+        }
+        reader.close();
+        return lines;
+    }
+
+    private static int[][] parseTokens(ArrayList<String> docs) {
+        int[][] docWords = new int[docs.size()][];
+        for (int dd = 0; dd < docs.size(); dd++) {
+            String[] sline = docs.get(dd).trim().split("\\s+");
+            docWords[dd] = new int[sline.length];
+            for (int nn = 0; nn < sline.length; nn++) {
+                try {
+                    docWords[dd][nn] = Integer.parseInt(sline[nn]);
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Invalid word index " + sline[nn]);
+                }
+            }
+        }
+        return docWords;
+    }
+
+    private static HashMap<String, String> getParameters(String query) throws IOException {
+        HashMap<String, String> params = new HashMap<>();
+        if (query == null) {
+            return params;
+        }
+        for (String pair : query.split("&")) {
+            int idx = pair.indexOf('=');
+            if (idx > 0) {
+                params.put(URLDecoder.decode(pair.substring(0, idx), "UTF-8"),
+                        URLDecoder.decode(pair.substring(idx + 1), "UTF-8"));
+            }
+        }
+        return params;
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        OutputStream out = exchange.getResponseBody();
+        out.write(bytes);
+        out.close();
+    }
+
+    private static String getError(String message) {
+        return "{\"error\":" + quote(message) + "}";
+    }
+
+    private static String quote(String str) {
+        StringBuilder quoted = new StringBuilder("\"");
+        for (int ii = 0; ii < str.length(); ii++) {
+            char c = str.charAt(ii);
+            if (c == '"' || c == '\\') {
+                quoted.append('\\').append(c);
+            } else if (c < 0x20) {
+                quoted.append(String.format("\\u%04x", (int) c));
+            } else {
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+}
@@ -0,0 +1,271 @@
+package votepredictor.textidealpoint;
+
+import data.CorpusProcessor;
+import data.ParallelCorpusProcessor;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Predict the votes of new authors from their text using trained models kept
+ * in memory. Each resident model holds a pool of samplers, each loaded once
+ * with the trained state. A request takes a sampler from the pool, folds in the
+ * author's documents with a short run of the model's test-time sampler and
+ * returns the sampler to the pool, so that concurrent requests on the same
+ * model run on different samplers.
+ *
+ * @author vietan
+ */
+public class VotePredictionService {
+
+    public static final int DEFAULT_NUM_ITERS = 30;
+    public static final int DEFAULT_BURN_IN = 10;
+    private final LinkedHashMap<String, ResidentModel> models;
+    private int numIters = DEFAULT_NUM_ITERS;
+    private int burnIn = DEFAULT_BURN_IN;
+    private boolean verbose = true;
+
+    public VotePredictionService() {
+        this.models = new LinkedHashMap<>();
+    }
+
+    public void setVerbose(boolean verbose) {
+        this.verbose = verbose;
+    }
+
+    /**
+     * Set the number of fold-in sweeps per request.
+     *
+     * @param numIters Number of sweeps
+     * @param burnIn Number of burn-in sweeps
+     */
+    public void setFoldInIterations(int numIters, int burnIn) {
+        this.numIters = numIters;
+        this.burnIn = burnIn;
+    }
+
+    /**
+     * Load a trained model.
+     *
+     * @param name Name of the model in requests
+     * @param sampler Sampler configured as in training. Its word vocabulary is
+     * used to map raw text and its vote vocabulary, if set, to label bills.
+     * @param corpProc Corpus processor configured as when the data were
+     * formatted, used to tokenize raw text. If null, only requests with word
+     * indices are served.
+     * @param stateFile Trained state file
+     * @param billIndices Indices of the training bills
+     * @param numWorkers Number of requests on this model served concurrently
+     */
+    public synchronized void addModel(String name,
+            AbstractTextIdealPoint sampler,
+            CorpusProcessor corpProc,
+            File stateFile,
+            ArrayList<Integer> billIndices,
+            int numWorkers) {
+        if (verbose) {
+            System.out.println("Loading model " + name + " from " + stateFile
+                    + " with " + numWorkers + " workers");
+        }
+        ArrayList<String> wordVocab = sampler.getWordVocab();
+        if (corpProc != null && wordVocab == null) {
+            throw new IllegalArgumentException("Model " + name + " has no word vocabulary");
+        }
+        ResidentModel model = new ResidentModel(name, sampler.V, wordVocab,
+                billIndices, sampler.voteVocab, numWorkers);
+        RandomStreams streams = RandomStreams.getInstalled();
+        if (streams == null) {
+            streams = new RandomStreams(System.nanoTime());
+        }
+        for (int ii = 0; ii < numWorkers; ii++) {
+            AbstractTextIdealPoint worker = sampler.createFoldInWorker();
+            worker.setVerbose(false);
+            worker.setDebug(false);
+            worker.setLog(false);
+            worker.setReport(false);
+            worker.inputFoldInState(stateFile, billIndices);
+            CorpusProcessor workerProc = null;
+            if (corpProc != null) {
+                workerProc = new ParallelCorpusProcessor(corpProc, 1);
+                workerProc.setVocab(model.sortedWordVocab);
+            }
+            model.workers.add(new Worker(worker, workerProc,
+                    streams.getStream(name + ":" + ii)));
+        }
+        models.put(name, model);
+    }
+
+    public synchronized ArrayList<String> getModelNames() {
+        return new ArrayList<>(models.keySet());
+    }
+
+    /**
+     * Labels of the bills of a model, in the order of the predictions.
+     *
+     * @param name Model name
+     */
+    public ArrayList<String> getBillLabels(String name) {
+        return getModel(name).billLabels;
+    }
+
+    /**
+     * Predict the probabilities that a new author votes with each bill.
+     *
+     * @param name Model name
+     * @param docWords Word indices of the author's documents
+     */
+    public double[] predict(String name, int[][] docWords) {
+        ResidentModel model = getModel(name);
+        int numTokens = 0;
+        for (int[] doc : docWords) {
+            for (int vv : doc) {
+                if (vv < 0 || vv >= model.numWords) {
+                    throw new IllegalArgumentException("Word index " + vv
+                            + " out of range [0, " + model.numWords + ")");
+                }
+            }
+            numTokens += doc.length;
+        }
+        if (numTokens == 0) {
+            throw new IllegalArgumentException("No words to predict from");
+        }
+        Worker worker = takeWorker(model);
+        try {
+            RandomStreams.setThreadStream(worker.stream);
+            return worker.sampler.foldIn(docWords, numIters, burnIn);
+        } finally {
+            RandomStreams.clearThreadStream();
+            model.workers.add(worker);
+        }
+    }
+
+    /**
+     * Predict the probabilities that a new author votes with each bill from
+     * raw text. The documents are tokenized by the model's corpus processor
+     * against its vocabulary in the same way as the training data.
+     *
+     * @param name Model name
+     * @param docs The author's documents
+     */
+    public double[] predict(String name, String[] docs) {
+        ResidentModel model = getModel(name);
+        if (model.sortedWordVocab == null) {
+            throw new IllegalArgumentException("Model " + name + " has no word vocabulary");
+        }
+        Worker worker = takeWorker(model);
+        try {
+            if (worker.corpProc == null) {
+                throw new IllegalArgumentException("Model " + name
+                        + " has no corpus processor. Send word indices instead");
+            }
+            int[][] docWords = tokenize(model, worker.corpProc, docs);
+            int numTokens = 0;
+            for (int[] doc : docWords) {
+                numTokens += doc.length;
+            }
+            if (numTokens == 0) {
+                throw new IllegalArgumentException("None of the words are in the"
+                        + " vocabulary of model " + name);
+            }
+            RandomStreams.setThreadStream(worker.stream);
+            return worker.sampler.foldIn(docWords, numIters, burnIn);
+        } finally {
+            RandomStreams.clearThreadStream();
+            model.workers.add(worker);
+        }
+    }
+
+    /**
+     * Map raw documents to word indices of a model.
+     *
+     * @param model The model
+     * @param corpProc Corpus processor with the model's sorted vocabulary
+     * @param docs Raw documents
+     */
+    private static int[][] tokenize(ResidentModel model, CorpusProcessor corpProc,
+            String[] docs) {
+        corpProc.setRawTexts(docs);
+        corpProc.process();
+        int[][] docWords = corpProc.getNumerics();
+        for (int[] doc : docWords) {
+            for (int nn = 0; nn < doc.length; nn++) {
+                doc[nn] = model.sortedWordIndices[doc[nn]];
+            }
+        }
+        return docWords;
+    }
+
+    private static Worker takeWorker(ResidentModel model) {
+        try {
+            return model.workers.take();
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+            throw new RuntimeException("Interrupted while waiting for model " + model.name);
+        }
+    }
+
+    private synchronized ResidentModel getModel(String name) {
+        ResidentModel model = models.get(name);
+        if (model == null) {
+            throw new IllegalArgumentException("Model " + name + " not found");
+        }
+        return model;
+    }
+
+    static class Worker {
+
+        final AbstractTextIdealPoint sampler;
+        final CorpusProcessor corpProc;
+        final Random stream;
+
+        Worker(AbstractTextIdealPoint sampler, CorpusProcessor corpProc, Random stream) {
+            this.sampler = sampler;
+            this.corpProc = corpProc;
+            this.stream = stream;
+        }
+    }
+
+    static class ResidentModel {
+
+        final String name;
+        final int numWords;
+        final ArrayList<String> sortedWordVocab;
+        final int[] sortedWordIndices; // index in the model's vocab of each sorted word
+        final ArrayList<String> billLabels;
+        final BlockingQueue<Worker> workers;
+
+        ResidentModel(String name, int numWords, ArrayList<String> wordVocab,
+                ArrayList<Integer> billIndices, ArrayList<String> voteVocab,
+                int numWorkers) {
+            this.name = name;
+            this.numWords = numWords;
+            if (wordVocab == null) {
+                this.sortedWordVocab = null;
+                this.sortedWordIndices = null;
+            } else {
+                // the corpus processor looks words up with binary search
+                this.sortedWordVocab = new ArrayList<>(wordVocab);
+                Collections.sort(this.sortedWordVocab);
+                HashMap<String, Integer> wordIndices = new HashMap<>();
+                for (int vv = 0; vv < wordVocab.size(); vv++) {
+                    wordIndices.put(wordVocab.get(vv), vv);
+                }
+                this.sortedWordIndices = new int[sortedWordVocab.size()];
+                for (int ii = 0; ii < sortedWordIndices.length; ii++) {
+                    this.sortedWordIndices[ii] = wordIndices.get(sortedWordVocab.get(ii));
+                }
+            }
+            this.billLabels = new ArrayList<>();
+            for (int bill : billIndices) {
+                this.billLabels.add(voteVocab == null
+                        ? Integer.toString(bill) : voteVocab.get(bill));
+            }
+            this.workers = new ArrayBlockingQueue<>(numWorkers);
+        }
+    }
+}
@@ -333,20 +333,7 @@ public class HybridSLDAIdealPoint extends AbstractTextSingleIdealPoint {
         } else {
             logln("--- Sampling. " + str);
         }
-        logln("--- Evaluating ...");
-        SparseVector[] predictions = predictInMatrix();
-        ArrayList<Measurement> measurements = AbstractVotePredictor
-                .evaluate(votes, validVotes, predictions);
-        for (Measurement m : measurements) {
-            logln(">>> i >>> " + m.getName() + ": " + m.getValue());
-        }
-
-        predictions = predictOutMatrix();
-        measurements = AbstractVotePredictor.evaluate(votes, validVotes, predictions);
-        for (Measurement m : measurements) {
-            logln(">>> o >>> " + m.getName() + ": " + m.getValue());
-        }
-        logln("--- MSE: " + getMSE());
+        evaluateIdealPoints(u, getAuthorPriorMeans(), x, y, false);
         return str;
     }
 
@@ -632,6 +619,20 @@ public class HybridSLDAIdealPoint extends AbstractTextSingleIdealPoint {
         return eTime;
     }
 
+    @Override
+    protected boolean supportsUXYUpdate(UXYUpdate update) {
+        return true;
+    }
+
+    @Override
+    protected double[] getAuthorPriorMeans() {
+        double[] means = new double[A];
+        for (int aa = 0; aa < A; aa++) {
+            means[aa] = topVals[aa] + lexVals[aa];
+        }
+        return means;
+    }
+
     @Override
     protected void updateUs() {
         double aRate = getLearningRate();
@@ -20,7 +20,6 @@ import util.RankingItem;
 import util.SamplerUtils;
 import util.SparseVector;
 import util.StatUtils;
-import util.evaluation.Measurement;
 import util.evaluation.MimnoTopicCoherence;
 import votepredictor.AbstractVotePredictor;
 import votepredictor.textidealpoint.AbstractTextSingleIdealPoint;
@@ -375,20 +374,7 @@ public class LexicalSLDAIdealPoint extends AbstractTextSingleIdealPoint {
     }
 
     private void evaluate() {
-        logln("--- Evaluating ...");
-        SparseVector[] predictions = predictInMatrix();
-        ArrayList<Measurement> measurements = AbstractVotePredictor
-                .evaluate(votes, validVotes, predictions);
-        for (Measurement m : measurements) {
-            logln(">>> i >>> " + m.getName() + ": " + m.getValue());
-        }
-
-        predictions = predictOutMatrix();
-        measurements = AbstractVotePredictor.evaluate(votes, validVotes, predictions);
-        for (Measurement m : measurements) {
-            logln(">>> o >>> " + m.getName() + ": " + m.getValue());
-        }
-        logln("--- MSE: " + getMSE());
+        evaluateIdealPoints(u, getAuthorPriorMeans(), x, y, false);
     }
 
     @Override
@@ -703,6 +689,20 @@ public class LexicalSLDAIdealPoint extends AbstractTextSingleIdealPoint {
         return eTime;
     }
 
+    @Override
+    protected boolean supportsUXYUpdate(UXYUpdate update) {
+        return true;
+    }
+
+    @Override
+    protected double[] getAuthorPriorMeans() {
+        double[] means = new double[A];
+        for (int aa = 0; aa < A; aa++) {
+            means[aa] = zaEta[aa] + waTau[aa];
+        }
+        return means;
+    }
+
     @Override
     protected void updateUs() {
         double aRate = getLearningRate();
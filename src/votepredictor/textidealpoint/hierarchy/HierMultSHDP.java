@@ -32,6 +32,9 @@ import util.govtrack.GTLegislator;
 import votepredictor.AbstractVotePredictor;
 import votepredictor.BayesianIdealPoint;
 import votepredictor.textidealpoint.AbstractTextSingleIdealPoint;
+import votepredictor.textidealpoint.HTMLReportWriter;
+import votepredictor.textidealpoint.SnapshotCache;
+import votepredictor.textidealpoint.TopRanker;
 
 /**
  *
@@ -297,6 +300,15 @@ public class HierMultSHDP extends AbstractTextSingleIdealPoint {
         return this.us;
     }
 
+    /**
+     * The ideal points are not updated during sampling (see iterate), so there
+     * is nothing to diagnose across chains.
+     */
+    @Override
+    protected double[] getTracedUs() {
+        return null;
+    }
+
     @Override
     public void initialize() {
         initialize(priorTopics);
@@ -345,28 +357,22 @@ public class HierMultSHDP extends AbstractTextSingleIdealPoint {
         }
     }
 
+    @Override
+    protected boolean supportsUXYUpdate(UXYUpdate update) {
+        // block-Newton passes pre-estimate the ideal points
+        return update != UXYUpdate.POLYA_GAMMA;
+    }
+
     @Override
     protected void initializeIdealPoint() {
         BayesianIdealPoint bip = new BayesianIdealPoint();
         bip.configure(1.0, epsilon, 50000, 0.0, sigma);
+        if (uxyUpdate == UXYUpdate.NEWTON) {
+            bip.setNewton(newtonTolerance);
+        }
         bip.setTrain(votes, authorIndices, billIndices, validVotes);
 
-        File bipFolder = new File(folder, bip.getName());
-        File bipFile = new File(bipFolder, "model");
-
-        if (bipFile.exists()) {
-            if (verbose) {
-                logln("B.I.P. file exists. Loading from " + bipFile);
-            }
-            bip.input(bipFile);
-        } else {
-            if (verbose) {
-                logln("B.I.P. file not found. Running and outputing to " + bipFile);
-            }
-            IOUtils.createFolder(bipFolder);
-            bip.train();
-            bip.output(bipFile);
-        }
+        trainIdealPoint(bip, "model");
         this.u = bip.getUs();
         this.x = bip.getXs();
         this.y = bip.getYs(); // initialize y to make sure the signs are correct
@@ -824,6 +830,10 @@ public class HierMultSHDP extends AbstractTextSingleIdealPoint {
         }
 
 //        updateUXY();
+
+        if (chainIndex >= 0 && isReporting) {
+            recordTrace(getLogLikelihood());
+        }
     }
 
     protected long sampleZs(
@@ -1646,7 +1656,7 @@ public class HierMultSHDP extends AbstractTextSingleIdealPoint {
 
         try {
             String filename = IOUtils.removeExtension(IOUtils.getFilename(zipFilepath));
-            BufferedReader reader = IOUtils.getBufferedReader(zipFilepath,
+            BufferedReader reader = SnapshotCache.getBufferedReader(zipFilepath,
                     filename + ModelFileExt);
 
             this.topics = new Topic[K];
@@ -1693,7 +1703,7 @@ public class HierMultSHDP extends AbstractTextSingleIdealPoint {
             this.initializeDataStructure();
 
             String filename = IOUtils.removeExtension(IOUtils.getFilename(zipFilepath));
-            BufferedReader reader = IOUtils.getBufferedReader(zipFilepath,
+            BufferedReader reader = SnapshotCache.getBufferedReader(zipFilepath,
                     filename + AssignmentFileExt);
 
             for (int dd = 0; dd < D; dd++) {
@@ -1740,7 +1750,7 @@ public class HierMultSHDP extends AbstractTextSingleIdealPoint {
         }
         try {
             String filename = IOUtils.removeExtension(IOUtils.getFilename(zipFilepath));
-            BufferedReader reader = IOUtils.getBufferedReader(zipFilepath, filename + AuthorFileExt);
+            BufferedReader reader = SnapshotCache.getBufferedReader(zipFilepath, filename + AuthorFileExt);
             int numAuthors = Integer.parseInt(reader.readLine());
             if (numAuthors != A) {
                 throw new MismatchRuntimeException(numAuthors, A);
@@ -1763,7 +1773,7 @@ public class HierMultSHDP extends AbstractTextSingleIdealPoint {
         }
         try {
             String filename = IOUtils.removeExtension(IOUtils.getFilename(zipFilepath));
-            BufferedReader reader = IOUtils.getBufferedReader(zipFilepath, filename + AuthorFileExt + ".singleip");
+            BufferedReader reader = SnapshotCache.getBufferedReader(zipFilepath, filename + AuthorFileExt + ".singleip");
             String line = reader.readLine();
             if (line.isEmpty()) {
                 return;
@@ -1796,7 +1806,7 @@ public class HierMultSHDP extends AbstractTextSingleIdealPoint {
         }
         try {
             String filename = IOUtils.removeExtension(IOUtils.getFilename(zipFilepath));
-            BufferedReader reader = IOUtils.getBufferedReader(zipFilepath, filename + BillFileExt);
+            BufferedReader reader = SnapshotCache.getBufferedReader(zipFilepath, filename + BillFileExt);
 
             int numBills = Integer.parseInt(reader.readLine());
             if (numBills != B) {
@@ -1990,11 +2000,14 @@ public class HierMultSHDP extends AbstractTextSingleIdealPoint {
         if (verbose) {
             logln("Outputing to HTML file " + outputFile);
         }
-        StringBuilder str = new StringBuilder();
-        str.append("<table>\n");
-        str.append("<tbody>\n");
+        HTMLReportWriter writer = new HTMLReportWriter(outputFile);
+        writer.write("<table>\n");
+        writer.write("<tbody>\n");
 
+        ArrayList<HashMap<Integer, ArrayList<RankingItem<Integer>>>> frameRankDocs
+                = rankDocuments(20);
         for (int kk = 0; kk < K; kk++) {
+            StringBuilder str = new StringBuilder();
             // first-level topics
             Topic topic = topics[kk];
             String firstLevelColor = "#FFFF99";
@@ -2055,7 +2068,7 @@ public class HierMultSHDP extends AbstractTextSingleIdealPoint {
                 str.append("</tr>\n");
 
                 // snippets
-                ArrayList<RankingItem<Integer>> rankDocs = rankDocuments(frame);
+                ArrayList<RankingItem<Integer>> rankDocs = frameRankDocs.get(kk).get(jj);
                 str.append("<tr class=\"level2").append("\"")
                         .append(" id=\"").append(framePathStr).append("\"")
                         .append(" style=\"display:none;\"")
@@ -2104,23 +2117,63 @@ public class HierMultSHDP extends AbstractTextSingleIdealPoint {
                 str.append("</tr>\n");
 //            }
             }
+            writer.write(str.toString());
         }
-        str.append("</tbody>\n");
-        str.append("</table>\n");
-        HTMLUtils.outputHTMLFile(outputFile, str.toString());
+        writer.write("</tbody>\n");
+        writer.write("</table>\n");
+        writer.close();
     }
 
-    private ArrayList<RankingItem<Integer>> rankDocuments(Frame node) {
-        ArrayList<RankingItem<Integer>> rankDocs = new ArrayList<>();
+    /**
+     * Documents having the highest proportions of tokens assigned to each
+     * frame. The rankers of all frames are filled in one pass over the
+     * documents' frame counts. Frames with fewer documents than requested are
+     * then padded with the first documents not assigned to them, which is
+     * where these documents would be ranked.
+     *
+     * @param numDocs Number of documents per frame
+     * @return Ranked documents of each frame, indexed by topic then by frame
+     * index
+     */
+    private ArrayList<HashMap<Integer, ArrayList<RankingItem<Integer>>>> rankDocuments(
+            int numDocs) {
+        ArrayList<HashMap<Integer, TopRanker<Integer>>> rankers = new ArrayList<>();
+        for (int kk = 0; kk < K; kk++) {
+            HashMap<Integer, TopRanker<Integer>> topicRankers = new HashMap<>();
+            for (Frame frame : topics[kk].getFrames()) {
+                topicRankers.put(frame.index, new TopRanker<Integer>(numDocs));
+            }
+            rankers.add(topicRankers);
+        }
         for (int dd = 0; dd < D; dd++) {
             if (words[dd].length < 10) {
                 continue;
             }
-            double count = docFramesCounts[dd][node.topicIndex].getCount(node.index);
-            double val = (double) count / words[dd].length;
-            rankDocs.add(new RankingItem<Integer>(dd, val));
+            for (int kk = 0; kk < K; kk++) {
+                for (int jj : docFramesCounts[dd][kk].getIndices()) {
+                    int count = docFramesCounts[dd][kk].getCount(jj);
+                    TopRanker<Integer> ranker = rankers.get(kk).get(jj);
+                    if (count > 0 && ranker != null) {
+                        ranker.add(dd, (double) count / words[dd].length);
+                    }
+                }
+            }
+        }
+
+        ArrayList<HashMap<Integer, ArrayList<RankingItem<Integer>>>> rankDocs = new ArrayList<>();
+        for (int kk = 0; kk < K; kk++) {
+            HashMap<Integer, ArrayList<RankingItem<Integer>>> topicRankDocs = new HashMap<>();
+            for (int jj : rankers.get(kk).keySet()) {
+                TopRanker<Integer> ranker = rankers.get(kk).get(jj);
+                for (int dd = 0; dd < D && ranker.size() < numDocs; dd++) {
+                    if (words[dd].length >= 10 && docFramesCounts[dd][kk].getCount(jj) <= 0) {
+                        ranker.add(dd, 0.0);
+                    }
+                }
+                topicRankDocs.put(jj, ranker.getRankedItems());
+            }
+            rankDocs.add(topicRankDocs);
         }
-        Collections.sort(rankDocs);
         return rankDocs;
     }
 
@@ -2300,16 +2353,16 @@ public class HierMultSHDP extends AbstractTextSingleIdealPoint {
                 for (RankingItem<Integer> sortedFrame : sortedFrames) {
                     int jj = sortedFrame.getObject();
                     Frame frame = topics[kk].getFrame(jj);
-                    ArrayList<RankingItem<Integer>> rankAuthors = new ArrayList<>();
+                    TopRanker<Integer> authorRanker = new TopRanker<>(10);
                     for (int aa = 0; aa < A; aa++) {
                         double val = 0.0;
                         if (!isBackedOff(aa, kk)) {
                             val = (double) auFrameCounts[aa][kk].getCount(jj)
                                     / auFrameCounts[aa][kk].getCountSum();
                         }
-                        rankAuthors.add(new RankingItem<Integer>(aa, val));
+                        authorRanker.add(aa, val);
                     }
-                    Collections.sort(rankAuthors);
+                    ArrayList<RankingItem<Integer>> rankAuthors = authorRanker.getRankedItems();
                     String frameLabel = "Frame " + kk + ":" + jj;
                     distrs = topics[kk].getFrame(jj).phi.getDistribution();
                     topWords = getTopWords(distrs, 15);
@@ -2360,13 +2413,8 @@ public class HierMultSHDP extends AbstractTextSingleIdealPoint {
 
                     // rank doc by matching top words
                     ArrayList<Integer> topWordIndices = new ArrayList<>();
-                    ArrayList<RankingItem<Integer>> rankWs = new ArrayList<>();
-                    for (int vv = 0; vv < V; vv++) {
-                        rankWs.add(new RankingItem<Integer>(vv, distrs[vv]));
-                    }
-                    Collections.sort(rankWs);
-                    for (int yy = 0; yy < 15; yy++) {
-                        topWordIndices.add(rankWs.get(yy).getObject());
+                    for (int vv : TopRanker.getTopIndices(distrs, 15)) {
+                        topWordIndices.add(vv);
                     }
 
                     // documents
@@ -2390,14 +2438,14 @@ public class HierMultSHDP extends AbstractTextSingleIdealPoint {
                                 + "]"
                                 + "\n");
                         // rank document
-                        ArrayList<RankingItem<Integer>> rankDocs = new ArrayList<>();
+                        TopRanker<Integer> docRanker = new TopRanker<>(5);
                         for (int dd : authorDocIndices[aa]) {
                             int count = docFramesCounts[dd][kk].getCount(jj);
                             if (count > 0) {
-                                rankDocs.add(new RankingItem<Integer>(dd, (double) count));
+                                docRanker.add(dd, (double) count);
                             }
                         }
-                        Collections.sort(rankDocs);
+                        ArrayList<RankingItem<Integer>> rankDocs = docRanker.getRankedItems();
 
                         for (int yy = 0; yy < Math.min(5, rankDocs.size()); yy++) {
                             RankingItem<Integer> rankDoc = rankDocs.get(yy);
@@ -2426,7 +2474,7 @@ public class HierMultSHDP extends AbstractTextSingleIdealPoint {
                         }
 
                         // rank document according to its words matching the top words of the frame
-                        ArrayList<RankingItem<Integer>> rankMatchDocs = new ArrayList<>();
+                        TopRanker<Integer> matchDocRanker = new TopRanker<>(10);
                         for (int dd : authorDocIndices[aa]) {
                             int count = docFramesCounts[dd][kk].getCount(jj);
                             if (count < 0) {
@@ -2437,9 +2485,9 @@ public class HierMultSHDP extends AbstractTextSingleIdealPoint {
                             for (int nn = 0; nn < words[dd].length; nn++) {
                                 score += getScore(topWordIndices, words[dd][nn]);
                             }
-                            rankMatchDocs.add(new RankingItem<Integer>(dd, score));
+                            matchDocRanker.add(dd, score);
                         }
-                        Collections.sort(rankMatchDocs);
+                        ArrayList<RankingItem<Integer>> rankMatchDocs = matchDocRanker.getRankedItems();
 
                         for (int yy = 0; yy < Math.min(10, rankMatchDocs.size()); yy++) {
                             RankingItem<Integer> rankDoc = rankMatchDocs.get(yy);
@@ -3093,6 +3141,51 @@ public class HierMultSHDP extends AbstractTextSingleIdealPoint {
         return predictionList;
     }
 
+    @Override
+    protected HierMultSHDP createFoldInWorker() {
+        HierMultSHDP worker = new HierMultSHDP(basename);
+        worker.configure(this);
+        return worker;
+    }
+
+    @Override
+    protected void inputFoldInModel(String zipFilepath) {
+        inputBillIdealPoints(zipFilepath);
+        inputModel(zipFilepath);
+        for (int kk = 0; kk < K; kk++) {
+            topics[kk].phi.clear();
+            for (Frame frame : topics[kk].getFrames()) {
+                frame.phi.clear();
+            }
+        }
+    }
+
+    @Override
+    protected void initializeFoldIn() {
+        initializeDataStructure();
+        us = new double[A][K];
+    }
+
+    @Override
+    protected void sampleFoldIn(boolean init) {
+        if (init) {
+            sampleZs(!REMOVE, !ADD, !REMOVE, ADD, !OBSERVED, !EXTEND);
+        } else {
+            sampleZs(!REMOVE, !ADD, REMOVE, ADD, !OBSERVED, !EXTEND);
+        }
+    }
+
+    @Override
+    protected double getFoldInScore(int bb) {
+        double score = y[bb];
+        for (int kk = 0; kk < K; kk++) {
+            if (!isBackedOff(0, kk)) {
+                score += x[bb] * billThetas[bb].get(kk) * getLexicalU(0, kk);
+            }
+        }
+        return score;
+    }
+
     /**
      * Run Gibbs sampling on test data using multiple models learned which are
      * stored in the ReportFolder. The runs on multiple models are parallel.